@@ -0,0 +1,334 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.structs.viewformat.NotesViewColumnFormatStruct;
+import com.mindoo.domino.jna.internal.structs.viewformat.NotesViewTableFormatStruct;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils.LineBreakConversion;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Binary fixtures for the benchmarks in the C API memory layout (ITEM_TABLE, LIST, RANGE,
+ * VIEW_TABLE_FORMAT etc.), so that the decoders can run without a Notes runtime.<br>
+ * <br>
+ * By default, the fixtures are generated in Java. To replay data recorded on a
+ * Notes client or Domino server (e.g. a summary buffer written to disk with
+ * {@link Pointer#getByteArray(long, int)}), set the system property
+ * <code>{@value #PROP_FIXTURESDIR}</code> to a directory that contains files
+ * like <code>summarybuffer.bin</code> or <code>viewformat.bin</code>. Files have
+ * to use the byte order of the platform running the benchmarks.
+ *
+ * @author Karsten Lehmann
+ */
+public class BenchmarkFixtures {
+	/** system property with a directory of recorded fixtures */
+	public static final String PROP_FIXTURESDIR = "dominojna.benchmarks.fixtures";
+
+	public static final String FIXTURE_SUMMARYBUFFER = "summarybuffer";
+	public static final String FIXTURE_TEXTLIST = "textlist";
+	public static final String FIXTURE_NUMBERLIST = "numberlist";
+	public static final String FIXTURE_TIMEDATELIST = "timedatelist";
+	public static final String FIXTURE_VIEWFORMAT = "viewformat";
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Returns a recorded fixture from the directory specified via {@link #PROP_FIXTURESDIR}
+	 * or the generated default
+	 *
+	 * @param name fixture name without ".bin" extension
+	 * @param generated generated fixture data
+	 * @return fixture data
+	 */
+	public static byte[] loadOrDefault(String name, byte[] generated) {
+		String fixturesDir = System.getProperty(PROP_FIXTURESDIR);
+		if (fixturesDir!=null && fixturesDir.length()>0) {
+			File file = new File(fixturesDir, name+".bin");
+			if (file.exists()) {
+				try {
+					return Files.readAllBytes(file.toPath());
+				} catch (IOException e) {
+					throw new IllegalStateException("Error reading fixture file "+file.getAbsolutePath(), e);
+				}
+			}
+		}
+		return generated;
+	}
+
+	/**
+	 * Copies fixture data to native memory
+	 *
+	 * @param data data
+	 * @return memory
+	 */
+	public static Memory toMemory(byte[] data) {
+		Memory mem = new Memory(Math.max(1, data.length));
+		mem.write(0, data, 0, data.length);
+		return mem;
+	}
+
+	/**
+	 * Creates a string with the specified length that contains ASCII characters and
+	 * optionally some Latin-1 characters
+	 *
+	 * @param length string length
+	 * @param withLatin1 true to add Latin-1 characters like umlauts
+	 * @return string
+	 */
+	public static String createText(int length, boolean withLatin1) {
+		String ascii = "The quick brown fox jumps over the lazy dog. ";
+		String latin1 = "Grüße aus Köln, à bientôt. ";
+		String pattern = withLatin1 ? ascii+latin1 : ascii;
+
+		StringBuilder sb = new StringBuilder(length);
+		while (sb.length() < length) {
+			sb.append(pattern);
+		}
+		sb.setLength(length);
+		return sb.toString();
+	}
+
+	/**
+	 * Encodes a string to LMBCS
+	 *
+	 * @param str string
+	 * @return LMBCS data
+	 */
+	public static byte[] toLMBCS(String str) {
+		ByteBuffer buf = ByteBuffer.allocate(NotesStringUtils.getLMBCSLength(str, LineBreakConversion.NULL));
+		NotesStringUtils.toLMBCS(str, LineBreakConversion.NULL, buf);
+		return buf.array();
+	}
+
+	/**
+	 * Creates the value of a text list item (LIST followed by the text lengths and the packed texts)
+	 *
+	 * @param values list values
+	 * @return data without the data type WORD
+	 */
+	public static byte[] createTextList(List<String> values) {
+		List<byte[]> lmbcsValues = new ArrayList<byte[]>(values.size());
+		int textSize = 0;
+		for (String currValue : values) {
+			byte[] currLMBCS = toLMBCS(currValue);
+			lmbcsValues.add(currLMBCS);
+			textSize += currLMBCS.length;
+		}
+
+		ByteBuffer buf = allocate(2 + 2*values.size() + textSize);
+		buf.putShort((short) (values.size() & 0xffff));
+		for (byte[] currLMBCS : lmbcsValues) {
+			buf.putShort((short) (currLMBCS.length & 0xffff));
+		}
+		for (byte[] currLMBCS : lmbcsValues) {
+			buf.put(currLMBCS);
+		}
+		return buf.array();
+	}
+
+	/**
+	 * Creates the value of a number list item (RANGE followed by the NUMBER values)
+	 *
+	 * @param values list values
+	 * @return data without the data type WORD
+	 */
+	public static byte[] createNumberList(double[] values) {
+		ByteBuffer buf = allocate(NotesConstants.rangeSize + 8*values.length);
+		buf.putShort((short) (values.length & 0xffff));
+		buf.putShort((short) 0);
+		for (double currValue : values) {
+			buf.putDouble(currValue);
+		}
+		return buf.array();
+	}
+
+	/**
+	 * Creates the value of a date list item (RANGE followed by the TIMEDATE values)
+	 *
+	 * @param values list values
+	 * @return data without the data type WORD
+	 */
+	public static byte[] createTimeDateList(List<Calendar> values) {
+		ByteBuffer buf = allocate(NotesConstants.rangeSize + 8*values.size());
+		buf.putShort((short) (values.size() & 0xffff));
+		buf.putShort((short) 0);
+		for (Calendar currValue : values) {
+			int[] innards = NotesDateTimeUtils.calendarToInnards(currValue, true, true);
+			buf.putInt(innards[0]);
+			buf.putInt(innards[1]);
+		}
+		return buf.array();
+	}
+
+	/**
+	 * Creates a summary buffer like the one NSFSearch returns for each document (ITEM_TABLE
+	 * followed by ITEM structures and item names / values) with text, number, date and list items
+	 *
+	 * @param listSize number of values in the list items
+	 * @return data
+	 */
+	public static byte[] createSummaryBuffer(int listSize) {
+		List<String> itemNames = new ArrayList<String>();
+		List<byte[]> itemValues = new ArrayList<byte[]>();
+
+		itemNames.add("Form");
+		itemValues.add(withDataType(NotesItem.TYPE_TEXT, toLMBCS("Person")));
+
+		itemNames.add("Subject");
+		itemValues.add(withDataType(NotesItem.TYPE_TEXT, toLMBCS(createText(120, true))));
+
+		itemNames.add("Body");
+		itemValues.add(withDataType(NotesItem.TYPE_TEXT, toLMBCS(createText(1000, false))));
+
+		itemNames.add("Amount");
+		ByteBuffer numberBuf = allocate(8);
+		numberBuf.putDouble(12345.67);
+		itemValues.add(withDataType(NotesItem.TYPE_NUMBER, numberBuf.array()));
+
+		itemNames.add("Created");
+		int[] innards = NotesDateTimeUtils.calendarToInnards(Calendar.getInstance(), true, true);
+		ByteBuffer timeBuf = allocate(8);
+		timeBuf.putInt(innards[0]);
+		timeBuf.putInt(innards[1]);
+		itemValues.add(withDataType(NotesItem.TYPE_TIME, timeBuf.array()));
+
+		itemNames.add("Categories");
+		itemValues.add(withDataType(NotesItem.TYPE_TEXT_LIST, createTextList(createTextListValues(listSize))));
+
+		itemNames.add("Values");
+		itemValues.add(withDataType(NotesItem.TYPE_NUMBER_RANGE, createNumberList(createNumberListValues(listSize))));
+
+		itemNames.add("Dates");
+		itemValues.add(withDataType(NotesItem.TYPE_TIME_RANGE, createTimeDateList(createTimeDateListValues(listSize))));
+
+		ByteArrayOutputStream namesAndValuesOut = new ByteArrayOutputStream();
+		ByteBuffer itemsBuf = allocate(itemNames.size() * NotesConstants.tableItemSize);
+
+		for (int i=0; i<itemNames.size(); i++) {
+			byte[] currNameLMBCS = toLMBCS(itemNames.get(i));
+			byte[] currValue = itemValues.get(i);
+
+			itemsBuf.putShort((short) (currNameLMBCS.length & 0xffff));
+			itemsBuf.putShort((short) (currValue.length & 0xffff));
+
+			namesAndValuesOut.write(currNameLMBCS, 0, currNameLMBCS.length);
+			namesAndValuesOut.write(currValue, 0, currValue.length);
+		}
+
+		byte[] namesAndValues = namesAndValuesOut.toByteArray();
+		int totalLength = 4 + itemsBuf.capacity() + namesAndValues.length;
+
+		ByteBuffer buf = allocate(totalLength);
+		buf.putShort((short) (totalLength & 0xffff));
+		buf.putShort((short) (itemNames.size() & 0xffff));
+		buf.put(itemsBuf.array());
+		buf.put(namesAndValues);
+		return buf.array();
+	}
+
+	/**
+	 * Creates a $VIEWFORMAT item value (VIEW_TABLE_FORMAT followed by VIEW_COLUMN_FORMAT structures
+	 * and the column item names and titles)
+	 *
+	 * @param columnCount number of columns
+	 * @return data without the data type WORD
+	 */
+	public static byte[] createViewFormat(int columnCount) {
+		List<byte[]> itemNames = new ArrayList<byte[]>(columnCount);
+		List<byte[]> titles = new ArrayList<byte[]>(columnCount);
+
+		int totalLength = NotesConstants.notesViewTableFormatSize + columnCount * NotesConstants.notesViewColumnFormatSize;
+		for (int i=0; i<columnCount; i++) {
+			byte[] currItemName = toLMBCS("$"+i);
+			byte[] currTitle = toLMBCS("Column title "+(i+1));
+			itemNames.add(currItemName);
+			titles.add(currTitle);
+			totalLength += currItemName.length + currTitle.length;
+		}
+
+		Memory mem = new Memory(totalLength);
+		mem.clear();
+
+		NotesViewTableFormatStruct tableFormat = NotesViewTableFormatStruct.newInstance(mem);
+		tableFormat.Header.Version = 1;
+		tableFormat.Columns = (short) (columnCount & 0xffff);
+		tableFormat.ItemSequenceNumber = (short) (columnCount & 0xffff);
+		tableFormat.write();
+
+		Pointer currPtr = mem.share(NotesConstants.notesViewTableFormatSize);
+		for (int i=0; i<columnCount; i++) {
+			NotesViewColumnFormatStruct colFormat = NotesViewColumnFormatStruct.newInstance(currPtr);
+			colFormat.Signature = NotesConstants.VIEW_COLUMN_FORMAT_SIGNATURE;
+			colFormat.ItemNameSize = (short) (itemNames.get(i).length & 0xffff);
+			colFormat.TitleSize = (short) (titles.get(i).length & 0xffff);
+			colFormat.DisplayWidth = 80;
+			colFormat.write();
+
+			currPtr = currPtr.share(NotesConstants.notesViewColumnFormatSize);
+		}
+
+		for (int i=0; i<columnCount; i++) {
+			byte[] currItemName = itemNames.get(i);
+			currPtr.write(0, currItemName, 0, currItemName.length);
+			currPtr = currPtr.share(currItemName.length);
+
+			byte[] currTitle = titles.get(i);
+			currPtr.write(0, currTitle, 0, currTitle.length);
+			currPtr = currPtr.share(currTitle.length);
+		}
+
+		return mem.getByteArray(0, totalLength);
+	}
+
+	public static List<String> createTextListValues(int size) {
+		List<String> values = new ArrayList<String>(size);
+		for (int i=0; i<size; i++) {
+			values.add("Category "+(i+1)+(i%3==0 ? " äöü" : ""));
+		}
+		return values;
+	}
+
+	public static double[] createNumberListValues(int size) {
+		double[] values = new double[size];
+		for (int i=0; i<size; i++) {
+			values[i] = i * 1.5;
+		}
+		return values;
+	}
+
+	public static List<Calendar> createTimeDateListValues(int size) {
+		List<Calendar> values = new ArrayList<Calendar>(size);
+		for (int i=0; i<size; i++) {
+			Calendar cal = Calendar.getInstance();
+			cal.set(Calendar.MILLISECOND, 0);
+			cal.add(Calendar.DATE, -i);
+			values.add(cal);
+		}
+		return values;
+	}
+
+	private static byte[] withDataType(int dataType, byte[] value) {
+		ByteBuffer buf = allocate(2 + value.length);
+		buf.putShort((short) (dataType & 0xffff));
+		buf.put(value);
+		return buf.array();
+	}
+
+	private static ByteBuffer allocate(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+	}
+}
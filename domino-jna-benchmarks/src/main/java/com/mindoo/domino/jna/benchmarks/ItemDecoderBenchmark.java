@@ -0,0 +1,79 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.internal.ItemDecoder;
+import com.sun.jna.Memory;
+
+/**
+ * Benchmarks for decoding list item values with {@link ItemDecoder}
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemDecoderBenchmark {
+	@Param({"10", "1000"})
+	public int listSize;
+
+	private Memory m_textList;
+	private Memory m_numberList;
+	private int m_numberListLength;
+	private Memory m_timeDateList;
+
+	@Setup
+	public void setup() {
+		m_textList = BenchmarkFixtures.toMemory(BenchmarkFixtures.loadOrDefault(BenchmarkFixtures.FIXTURE_TEXTLIST,
+				BenchmarkFixtures.createTextList(BenchmarkFixtures.createTextListValues(listSize))));
+
+		byte[] numberList = BenchmarkFixtures.loadOrDefault(BenchmarkFixtures.FIXTURE_NUMBERLIST,
+				BenchmarkFixtures.createNumberList(BenchmarkFixtures.createNumberListValues(listSize)));
+		m_numberList = BenchmarkFixtures.toMemory(numberList);
+		m_numberListLength = numberList.length;
+
+		m_timeDateList = BenchmarkFixtures.toMemory(BenchmarkFixtures.loadOrDefault(BenchmarkFixtures.FIXTURE_TIMEDATELIST,
+				BenchmarkFixtures.createTimeDateList(BenchmarkFixtures.createTimeDateListValues(listSize))));
+	}
+
+	@Benchmark
+	public List<Object> decodeTextList() {
+		return ItemDecoder.decodeTextListValue(m_textList, false);
+	}
+
+	@Benchmark
+	public List<Object> decodeTextListLazy() {
+		return ItemDecoder.decodeTextListValue(m_textList, true);
+	}
+
+	@Benchmark
+	public List<Object> decodeNumberList() {
+		return ItemDecoder.decodeNumberList(m_numberList, m_numberListLength);
+	}
+
+	@Benchmark
+	public List<Object> decodeTimeDateList() {
+		return ItemDecoder.decodeTimeDateList(m_timeDateList);
+	}
+
+	@Benchmark
+	public List<Object> decodeTimeDateListAsNotesTimeDate() {
+		return ItemDecoder.decodeTimeDateListAsNotesTimeDate(m_timeDateList);
+	}
+}
@@ -0,0 +1,67 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils.LineBreakConversion;
+import com.sun.jna.Memory;
+
+/**
+ * Benchmarks for the LMBCS conversion in {@link NotesStringUtils}. Only ASCII and
+ * Latin-1 data is used, because other characters are converted by the C API.
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LMBCSConversionBenchmark {
+	@Param({"16", "1024"})
+	public int length;
+
+	@Param({"false", "true"})
+	public boolean latin1;
+
+	private String m_text;
+	private byte[] m_lmbcs;
+	private ByteBuffer m_targetBuffer;
+
+	@Setup
+	public void setup() {
+		m_text = BenchmarkFixtures.createText(length, latin1);
+		m_lmbcs = BenchmarkFixtures.toLMBCS(m_text);
+		m_targetBuffer = ByteBuffer.allocate(m_lmbcs.length);
+	}
+
+	@Benchmark
+	public String fromLMBCS() {
+		return NotesStringUtils.fromLMBCS(m_lmbcs);
+	}
+
+	@Benchmark
+	public Memory toLMBCS() {
+		return NotesStringUtils.toLMBCS(m_text, true);
+	}
+
+	@Benchmark
+	public int toLMBCSIntoBuffer() {
+		m_targetBuffer.clear();
+		return NotesStringUtils.toLMBCS(m_text, LineBreakConversion.NULL, m_targetBuffer);
+	}
+}
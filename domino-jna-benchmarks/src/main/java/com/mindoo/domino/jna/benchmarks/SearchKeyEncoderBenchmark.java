@@ -0,0 +1,53 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.internal.NotesSearchKeyEncoder;
+import com.sun.jna.Memory;
+
+/**
+ * Benchmarks for encoding view lookup keys with {@link NotesSearchKeyEncoder}
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchKeyEncoderBenchmark {
+	private Object[] m_stringKey;
+	private Object[] m_mixedKeys;
+
+	@Setup
+	public void setup() {
+		m_stringKey = new Object[] {"Lehmann, Karsten"};
+
+		Calendar cal = Calendar.getInstance();
+		m_mixedKeys = new Object[] {"Köln", Double.valueOf(42), cal, new NotesTimeDate(cal)};
+	}
+
+	@Benchmark
+	public Memory encodeStringKey() throws Exception {
+		return NotesSearchKeyEncoder.b64_encodeKeys(m_stringKey);
+	}
+
+	@Benchmark
+	public Memory encodeMixedKeys() throws Exception {
+		return NotesSearchKeyEncoder.b64_encodeKeys(m_mixedKeys);
+	}
+}
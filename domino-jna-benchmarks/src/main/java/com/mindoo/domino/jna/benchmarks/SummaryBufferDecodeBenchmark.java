@@ -0,0 +1,71 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
+import com.sun.jna.Memory;
+
+/**
+ * Benchmarks for decoding NSFSearch summary buffers with
+ * {@link NotesLookupResultBufferDecoder#decodeItemTable(com.sun.jna.Pointer, boolean, boolean, boolean)}
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryBufferDecodeBenchmark {
+	@Param({"5", "50"})
+	public int listSize;
+
+	private Memory m_summaryBuffer;
+
+	@Setup
+	public void setup() {
+		byte[] data = BenchmarkFixtures.loadOrDefault(BenchmarkFixtures.FIXTURE_SUMMARYBUFFER,
+				BenchmarkFixtures.createSummaryBuffer(listSize));
+		m_summaryBuffer = BenchmarkFixtures.toMemory(data);
+	}
+
+	@Benchmark
+	public IItemTableData decodeAllValues() {
+		return NotesLookupResultBufferDecoder.decodeItemTable(m_summaryBuffer, false, false, true);
+	}
+
+	@Benchmark
+	public IItemTableData decodeAllValuesLazyStrings() {
+		return NotesLookupResultBufferDecoder.decodeItemTable(m_summaryBuffer, true, false, true);
+	}
+
+	@Benchmark
+	public void decodeOnDemandAndReadAll(Blackhole bh) {
+		IItemTableData data = NotesLookupResultBufferDecoder.decodeItemTable(m_summaryBuffer, false, false, false);
+		int itemsCount = data.getItemsCount();
+		for (int i=0; i<itemsCount; i++) {
+			bh.consume(data.getItemValue(i));
+		}
+	}
+
+	@Benchmark
+	public Object decodeOnDemandAndReadOne() {
+		IItemTableData data = NotesLookupResultBufferDecoder.decodeItemTable(m_summaryBuffer, false, false, false);
+		return data.get("Subject");
+	}
+}
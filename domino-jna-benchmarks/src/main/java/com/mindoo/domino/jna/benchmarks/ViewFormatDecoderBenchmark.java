@@ -0,0 +1,51 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.NotesViewFormat;
+import com.mindoo.domino.jna.internal.ViewFormatDecoder;
+import com.sun.jna.Memory;
+
+/**
+ * Benchmarks for decoding the $VIEWFORMAT item with {@link ViewFormatDecoder}
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewFormatDecoderBenchmark {
+	@Param({"5", "50"})
+	public int columnCount;
+
+	private Memory m_viewFormat;
+	private int m_viewFormatLength;
+
+	@Setup
+	public void setup() {
+		byte[] data = BenchmarkFixtures.loadOrDefault(BenchmarkFixtures.FIXTURE_VIEWFORMAT,
+				BenchmarkFixtures.createViewFormat(columnCount));
+		m_viewFormat = BenchmarkFixtures.toMemory(data);
+		m_viewFormatLength = data.length;
+	}
+
+	@Benchmark
+	public NotesViewFormat decodeViewFormat() {
+		return ViewFormatDecoder.decodeViewFormat(m_viewFormat, m_viewFormatLength);
+	}
+}
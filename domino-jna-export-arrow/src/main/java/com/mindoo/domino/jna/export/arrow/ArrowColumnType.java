@@ -0,0 +1,30 @@
+package com.mindoo.domino.jna.export.arrow;
+
+/**
+ * Arrow data type that a view column gets exported to by the {@link ArrowViewExporter}
+ * 
+ * @author Karsten Lehmann
+ */
+public enum ArrowColumnType {
+	/** UTF-8 string, numbers and timedates are converted to their string representation */
+	TEXT,
+	/** 64 bit floating point number */
+	NUMBER,
+	/** timestamp in milliseconds, time zone UTC */
+	DATETIME,
+	/** list of UTF-8 strings */
+	TEXT_LIST,
+	/** list of 64 bit floating point numbers */
+	NUMBER_LIST,
+	/** list of timestamps in milliseconds, time zone UTC */
+	DATETIME_LIST;
+	
+	/**
+	 * Checks if this type stores multiple values per row
+	 * 
+	 * @return true for list types
+	 */
+	public boolean isList() {
+		return this==TEXT_LIST || this==NUMBER_LIST || this==DATETIME_LIST;
+	}
+}
@@ -0,0 +1,696 @@
+package com.mindoo.domino.jna.export.arrow;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesCollectionPosition;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesViewColumn;
+import com.mindoo.domino.jna.NotesViewEntryCursor;
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.internal.NotesConstants;
+
+/**
+ * Exports the column values of a {@link NotesCollection} to the columnar
+ * <a href="https://arrow.apache.org">Apache Arrow</a> IPC format, which can be read by
+ * analytics tools like pandas, DuckDB or Spark without going through the C API.<br>
+ * <br>
+ * The view is read in batches with {@link NotesCollection#readEntriesAsCursor(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet)}
+ * and the column values are copied from the read buffer into the Arrow vectors without creating
+ * intermediate view entry objects. Each batch is written as one Arrow record batch and its vector
+ * memory gets released afterwards, so memory usage is bounded by the batch size and not by the
+ * size of the view.<br>
+ * <br>
+ * View columns do not carry a data type, so the Arrow type of each column is derived from
+ * the values of the first batch: columns with numbers only become {@link ArrowColumnType#NUMBER},
+ * columns with timedates only become {@link ArrowColumnType#DATETIME} and all others
+ * {@link ArrowColumnType#TEXT}. If a column contains multiple values in any entry of the first batch,
+ * the list variant of the type is used. Use {@link #setColumnType(String, ArrowColumnType)} to
+ * specify the type if the first batch is not representative.<br>
+ * <br>
+ * The export does not restart when the view index changes while reading; use a view with a
+ * current index or call {@link NotesCollection#update()} before the export.
+ *
+ * @author Karsten Lehmann
+ */
+public class ArrowViewExporter {
+	/** name of the Arrow field containing the note id of each entry */
+	public static final String NOTEID_FIELD = "$noteid";
+	/** julian day of 1970-01-01 */
+	private static final long JULIAN_DAY_1970 = 2440588;
+	private static final long MILLIS_PER_DAY = 24*60*60*1000;
+	/** return value of {@link #toEpochMillis(int[])} for timedates without date part */
+	static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private NotesCollection m_collection;
+	private int m_batchSize;
+	private boolean m_includeNoteId;
+	private boolean m_documentsOnly;
+	private long m_allocationLimit;
+	private Map<String,ArrowColumnType> m_columnTypes;
+
+	/**
+	 * Creates a new exporter
+	 *
+	 * @param collection collection to export
+	 */
+	public ArrowViewExporter(NotesCollection collection) {
+		m_collection = collection;
+		m_batchSize = 10000;
+		m_includeNoteId = true;
+		m_documentsOnly = true;
+		m_allocationLimit = Long.MAX_VALUE;
+		m_columnTypes = new HashMap<String,ArrowColumnType>();
+	}
+
+	/**
+	 * Returns the collection to export
+	 *
+	 * @return collection
+	 */
+	public NotesCollection getCollection() {
+		return m_collection;
+	}
+
+	/**
+	 * Returns the max number of rows of each Arrow record batch
+	 *
+	 * @return batch size
+	 */
+	public int getBatchSize() {
+		return m_batchSize;
+	}
+
+	/**
+	 * Sets the max number of rows of each Arrow record batch, defaults to 10000. The view entries
+	 * of one batch are held in memory until the batch gets written.
+	 *
+	 * @param batchSize batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize<1) {
+			throw new IllegalArgumentException("Batch size must be at least 1: "+batchSize);
+		}
+		m_batchSize = batchSize;
+	}
+
+	/**
+	 * Returns whether the note id of each entry is exported as first field {@link #NOTEID_FIELD}
+	 *
+	 * @return true to export note ids
+	 */
+	public boolean isIncludeNoteId() {
+		return m_includeNoteId;
+	}
+
+	/**
+	 * Sets whether the note id of each entry is exported as first field {@link #NOTEID_FIELD}, defaults to true
+	 *
+	 * @param includeNoteId true to export note ids
+	 */
+	public void setIncludeNoteId(boolean includeNoteId) {
+		m_includeNoteId = includeNoteId;
+	}
+
+	/**
+	 * Returns whether only document entries are exported
+	 *
+	 * @return true to skip categories and totals
+	 */
+	public boolean isDocumentsOnly() {
+		return m_documentsOnly;
+	}
+
+	/**
+	 * Sets whether only document entries are exported, defaults to true. Use false to
+	 * export category and total rows as well.
+	 *
+	 * @param documentsOnly true to skip categories and totals
+	 */
+	public void setDocumentsOnly(boolean documentsOnly) {
+		m_documentsOnly = documentsOnly;
+	}
+
+	/**
+	 * Returns the max number of bytes the Arrow vectors may allocate
+	 *
+	 * @return limit
+	 */
+	public long getAllocationLimit() {
+		return m_allocationLimit;
+	}
+
+	/**
+	 * Sets the max number of bytes the Arrow vectors may allocate, defaults to no limit.
+	 * The export fails with an out of memory exception if one batch needs more memory.
+	 *
+	 * @param allocationLimit limit in bytes
+	 */
+	public void setAllocationLimit(long allocationLimit) {
+		m_allocationLimit = allocationLimit;
+	}
+
+	/**
+	 * Sets the Arrow data type of a column instead of deriving it from the first batch
+	 *
+	 * @param columnNameOrTitle programmatic column name or column title
+	 * @param type type
+	 */
+	public void setColumnType(String columnNameOrTitle, ArrowColumnType type) {
+		m_columnTypes.put(columnNameOrTitle.toLowerCase(Locale.ENGLISH), type);
+	}
+
+	/**
+	 * Writes the view data in the Arrow IPC file format (random access, usually stored
+	 * with the file extension .arrow)
+	 *
+	 * @param file target file
+	 * @return number of exported rows
+	 * @throws IOException in case of I/O errors
+	 */
+	public long exportToFile(File file) throws IOException {
+		final FileOutputStream fOut = new FileOutputStream(file);
+		try {
+			return export(new WriterFactory() {
+
+				@Override
+				public ArrowWriter createWriter(VectorSchemaRoot root, DictionaryProvider dictProvider) {
+					return new ArrowFileWriter(root, dictProvider, fOut.getChannel());
+				}
+			});
+		}
+		finally {
+			fOut.close();
+		}
+	}
+
+	/**
+	 * Writes the view data in the Arrow IPC streaming format. The stream does not get closed.
+	 *
+	 * @param out target stream
+	 * @return number of exported rows
+	 * @throws IOException in case of I/O errors
+	 */
+	public long exportToStream(final OutputStream out) throws IOException {
+		return export(new WriterFactory() {
+
+			@Override
+			public ArrowWriter createWriter(VectorSchemaRoot root, DictionaryProvider dictProvider) {
+				return new ArrowStreamWriter(root, dictProvider, new NonClosingOutputStream(out));
+			}
+		});
+	}
+
+	/**
+	 * Creates the Arrow writer for the export
+	 */
+	private static interface WriterFactory {
+
+		public ArrowWriter createWriter(VectorSchemaRoot root, DictionaryProvider dictProvider);
+
+	}
+
+	/**
+	 * Column of the export with the position of its value in the view entry
+	 */
+	static class ExportColumn {
+		private String m_name;
+		private int m_columnValuesIndex;
+		private ArrowColumnType m_type;
+
+		public ExportColumn(String name, int columnValuesIndex, ArrowColumnType type) {
+			m_name = name;
+			m_columnValuesIndex = columnValuesIndex;
+			m_type = type;
+		}
+	}
+
+	private long export(WriterFactory writerFactory) throws IOException {
+		EnumSet<Navigate> nav = m_documentsOnly ? EnumSet.of(Navigate.NEXT_NONCATEGORY) : EnumSet.of(Navigate.NEXT);
+		EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES);
+
+		//start position is updated by each read operation
+		NotesCollectionPosition pos = new NotesCollectionPosition("0");
+		int returnCount = m_batchSize;
+		NotesViewEntryCursor cursor = m_collection.readEntriesAsCursor(pos, nav, 1, nav, returnCount, returnMask);
+
+		//the first batch is used to compute the schema
+		List<ExportColumn> columns = getExportColumns(cursor);
+		Schema schema = createSchema(columns);
+
+		BufferAllocator allocator = new RootAllocator(m_allocationLimit);
+		try {
+			VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+			try {
+				ArrowWriter writer = writerFactory.createWriter(root, new DictionaryProvider.MapDictionaryProvider());
+				try {
+					writer.start();
+
+					int[] innards = new int[2];
+
+					long totalRows = 0;
+					int rowsInBatch = 0;
+					root.allocateNew();
+
+					while (true) {
+						rowsInBatch = writeEntries(cursor, columns, root, rowsInBatch, innards);
+
+						//NIFReadEntries returns less entries than requested if its buffer is full
+						int entriesRead = cursor.getEntryCount();
+						boolean moreToDo = entriesRead>0 && (cursor.hasMoreToDo() || entriesRead==returnCount);
+
+						if (rowsInBatch>0 && (rowsInBatch>=m_batchSize || !moreToDo)) {
+							root.setRowCount(rowsInBatch);
+							writer.writeBatch();
+							totalRows += rowsInBatch;
+							rowsInBatch = 0;
+
+							//release the vector memory of this batch
+							root.clear();
+							if (moreToDo) {
+								root.allocateNew();
+							}
+						}
+
+						if (!moreToDo) {
+							break;
+						}
+
+						returnCount = m_batchSize - rowsInBatch;
+						cursor = m_collection.readEntriesAsCursor(pos, nav, 1, nav, returnCount, returnMask);
+					}
+
+					writer.end();
+					return totalRows;
+				}
+				finally {
+					writer.close();
+				}
+			}
+			finally {
+				root.close();
+			}
+		}
+		finally {
+			allocator.close();
+		}
+	}
+
+	/**
+	 * Copies the entries of a cursor into the vectors of the record batch
+	 *
+	 * @param cursor cursor positioned before its first entry
+	 * @param columns columns of the export
+	 * @param root record batch with vectors created from {@link #createSchema(List)}
+	 * @param firstRow row in the vectors for the first entry of the cursor
+	 * @param innards temp array for timedate values
+	 * @return row after the last written entry
+	 */
+	int writeEntries(NotesViewEntryCursor cursor, List<ExportColumn> columns, VectorSchemaRoot root,
+			int firstRow, int[] innards) {
+		List<FieldVector> vectors = root.getFieldVectors();
+		int firstColumnVectorIdx = m_includeNoteId ? 1 : 0;
+		IntVector noteIdVector = m_includeNoteId ? (IntVector) vectors.get(0) : null;
+
+		int row = firstRow;
+		while (cursor.next()) {
+			if (noteIdVector!=null) {
+				noteIdVector.setSafe(row, cursor.getNoteId());
+			}
+			for (int i=0; i<columns.size(); i++) {
+				ExportColumn currCol = columns.get(i);
+				writeValue(cursor, currCol.m_columnValuesIndex, currCol.m_type,
+						vectors.get(firstColumnVectorIdx + i), row, innards);
+			}
+			row++;
+		}
+		return row;
+	}
+
+	/**
+	 * Collects the view columns with values and computes their Arrow types
+	 *
+	 * @param firstBatch cursor with the first batch of entries, used to derive the column types
+	 * @return columns
+	 */
+	private List<ExportColumn> getExportColumns(NotesViewEntryCursor firstBatch) {
+		List<ExportColumn> columns = new ArrayList<ExportColumn>();
+
+		for (NotesViewColumn currCol : m_collection.getColumns()) {
+			int colValuesIndex = currCol.getColumnValuesIndex();
+			if (colValuesIndex==65535) {
+				//static column value, not part of the summary buffer
+				continue;
+			}
+			String name = currCol.getItemName();
+
+			ArrowColumnType type = m_columnTypes.get(name.toLowerCase(Locale.ENGLISH));
+			if (type==null && currCol.getTitle()!=null) {
+				type = m_columnTypes.get(currCol.getTitle().toLowerCase(Locale.ENGLISH));
+			}
+			if (type==null) {
+				type = inferColumnType(firstBatch, colValuesIndex);
+			}
+			columns.add(new ExportColumn(name, colValuesIndex, type));
+		}
+		return columns;
+	}
+
+	/**
+	 * Derives the Arrow type of a column from the data types of its values
+	 *
+	 * @param cursor cursor, gets reset to the first entry
+	 * @param columnIndex column values index
+	 * @return type
+	 */
+	ArrowColumnType inferColumnType(NotesViewEntryCursor cursor, int columnIndex) {
+		boolean hasText = false;
+		boolean hasNumber = false;
+		boolean hasTime = false;
+		boolean hasMultipleValues = false;
+
+		cursor.reset();
+		while (cursor.next()) {
+			int dataType = cursor.getColumnDataType(columnIndex);
+			if (dataType==0) {
+				continue;
+			}
+			switch (dataType) {
+			case NotesItem.TYPE_NUMBER:
+			case NotesItem.TYPE_NUMBER_RANGE:
+				hasNumber = true;
+				break;
+			case NotesItem.TYPE_TIME:
+			case NotesItem.TYPE_TIME_RANGE:
+				hasTime = true;
+				break;
+			default:
+				hasText = true;
+			}
+			if (cursor.getListSize(columnIndex)>1) {
+				hasMultipleValues = true;
+			}
+		}
+		cursor.reset();
+
+		if (hasNumber && !hasText && !hasTime) {
+			return hasMultipleValues ? ArrowColumnType.NUMBER_LIST : ArrowColumnType.NUMBER;
+		}
+		else if (hasTime && !hasText && !hasNumber) {
+			return hasMultipleValues ? ArrowColumnType.DATETIME_LIST : ArrowColumnType.DATETIME;
+		}
+		else {
+			return hasMultipleValues ? ArrowColumnType.TEXT_LIST : ArrowColumnType.TEXT;
+		}
+	}
+
+	Schema createSchema(List<ExportColumn> columns) {
+		List<Field> fields = new ArrayList<Field>();
+		if (m_includeNoteId) {
+			fields.add(Field.nullable(NOTEID_FIELD, new ArrowType.Int(32, true)));
+		}
+		for (ExportColumn currCol : columns) {
+			ArrowType valueType;
+			switch (currCol.m_type) {
+			case NUMBER:
+			case NUMBER_LIST:
+				valueType = new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+				break;
+			case DATETIME:
+			case DATETIME_LIST:
+				valueType = new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
+				break;
+			default:
+				valueType = ArrowType.Utf8.INSTANCE;
+			}
+
+			if (currCol.m_type.isList()) {
+				Field valueField = Field.nullable(ListVector.DATA_VECTOR_NAME, valueType);
+				fields.add(new Field(currCol.m_name, FieldType.nullable(ArrowType.List.INSTANCE),
+						Collections.singletonList(valueField)));
+			}
+			else {
+				fields.add(Field.nullable(currCol.m_name, valueType));
+			}
+		}
+		return new Schema(fields);
+	}
+
+	/**
+	 * Copies a column value of the current cursor entry into an Arrow vector
+	 *
+	 * @param cursor cursor
+	 * @param columnIndex column values index
+	 * @param type target type
+	 * @param vector target vector
+	 * @param row row in the vector
+	 * @param innards temp array for timedate values
+	 */
+	private void writeValue(NotesViewEntryCursor cursor, int columnIndex, ArrowColumnType type,
+			FieldVector vector, int row, int[] innards) {
+
+		int dataType = cursor.getColumnDataType(columnIndex);
+
+		switch (type) {
+		case TEXT: {
+			VarCharVector textVector = (VarCharVector) vector;
+			String value = getText(cursor, columnIndex, dataType, 0, innards);
+			if (value==null) {
+				textVector.setNull(row);
+			}
+			else {
+				textVector.setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+			}
+			break;
+		}
+		case NUMBER: {
+			Float8Vector numberVector = (Float8Vector) vector;
+			if ((dataType==NotesItem.TYPE_NUMBER || dataType==NotesItem.TYPE_NUMBER_RANGE) &&
+					cursor.getListSize(columnIndex)>0) {
+				numberVector.setSafe(row, cursor.getDoubleAt(columnIndex, 0, 0));
+			}
+			else {
+				numberVector.setNull(row);
+			}
+			break;
+		}
+		case DATETIME: {
+			TimeStampMilliTZVector timeVector = (TimeStampMilliTZVector) vector;
+			long millis = NO_TIMESTAMP;
+			if (cursor.getTimeDateInnardsAt(columnIndex, 0, innards)) {
+				millis = toEpochMillis(innards);
+			}
+			if (millis==NO_TIMESTAMP) {
+				timeVector.setNull(row);
+			}
+			else {
+				timeVector.setSafe(row, millis);
+			}
+			break;
+		}
+		case TEXT_LIST: {
+			ListVector listVector = (ListVector) vector;
+			VarCharVector textVector = (VarCharVector) listVector.getDataVector();
+			int offset = listVector.startNewValue(row);
+			int count = 0;
+			if (dataType==NotesItem.TYPE_TEXT_LIST) {
+				for (String currValue : cursor.getStringList(columnIndex, Collections.<String>emptyList())) {
+					textVector.setSafe(offset + count, currValue.getBytes(StandardCharsets.UTF_8));
+					count++;
+				}
+			}
+			else {
+				int listSize = cursor.getListSize(columnIndex);
+				for (int i=0; i<listSize; i++) {
+					String currValue = getText(cursor, columnIndex, dataType, i, innards);
+					if (currValue!=null) {
+						textVector.setSafe(offset + count, currValue.getBytes(StandardCharsets.UTF_8));
+						count++;
+					}
+				}
+			}
+			listVector.endValue(row, count);
+			break;
+		}
+		case NUMBER_LIST: {
+			ListVector listVector = (ListVector) vector;
+			Float8Vector numberVector = (Float8Vector) listVector.getDataVector();
+			int offset = listVector.startNewValue(row);
+			int count = 0;
+			if (dataType==NotesItem.TYPE_NUMBER || dataType==NotesItem.TYPE_NUMBER_RANGE) {
+				int listSize = cursor.getListSize(columnIndex);
+				for (; count<listSize; count++) {
+					numberVector.setSafe(offset + count, cursor.getDoubleAt(columnIndex, count, 0));
+				}
+			}
+			listVector.endValue(row, count);
+			break;
+		}
+		case DATETIME_LIST: {
+			ListVector listVector = (ListVector) vector;
+			TimeStampMilliTZVector timeVector = (TimeStampMilliTZVector) listVector.getDataVector();
+			int offset = listVector.startNewValue(row);
+			int count = 0;
+			int listSize = cursor.getListSize(columnIndex);
+			for (int i=0; i<listSize; i++) {
+				if (cursor.getTimeDateInnardsAt(columnIndex, i, innards)) {
+					long millis = toEpochMillis(innards);
+					if (millis!=NO_TIMESTAMP) {
+						timeVector.setSafe(offset + count, millis);
+						count++;
+					}
+				}
+			}
+			listVector.endValue(row, count);
+			break;
+		}
+		}
+	}
+
+	/**
+	 * Returns a column value as string, converting numbers and timedates
+	 *
+	 * @param cursor cursor
+	 * @param columnIndex column values index
+	 * @param dataType data type of the column value
+	 * @param listIndex index in the value list
+	 * @param innards temp array for timedate values
+	 * @return string or null if empty
+	 */
+	private String getText(NotesViewEntryCursor cursor, int columnIndex, int dataType, int listIndex, int[] innards) {
+		switch (dataType) {
+		case NotesItem.TYPE_TEXT:
+			return listIndex==0 ? cursor.getString(columnIndex, null) : null;
+		case NotesItem.TYPE_TEXT_LIST:
+			if (listIndex==0) {
+				return cursor.getString(columnIndex, null);
+			}
+			List<String> values = cursor.getStringList(columnIndex, Collections.<String>emptyList());
+			return listIndex<values.size() ? values.get(listIndex) : null;
+		case NotesItem.TYPE_NUMBER:
+		case NotesItem.TYPE_NUMBER_RANGE:
+			if (listIndex>=cursor.getListSize(columnIndex)) {
+				return null;
+			}
+			double number = cursor.getDoubleAt(columnIndex, listIndex, 0);
+			if (number==Math.rint(number) && !Double.isInfinite(number) && Math.abs(number)<Long.MAX_VALUE) {
+				return Long.toString((long) number);
+			}
+			return Double.toString(number);
+		case NotesItem.TYPE_TIME:
+		case NotesItem.TYPE_TIME_RANGE:
+			if (!cursor.getTimeDateInnardsAt(columnIndex, listIndex, innards)) {
+				return null;
+			}
+			return formatTimeDate(innards);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Converts timedate innards to milliseconds since 1970-01-01 UTC. Date-only values
+	 * are returned as midnight UTC.
+	 *
+	 * @param innards innards
+	 * @return milliseconds or {@link #NO_TIMESTAMP} for time-only values
+	 */
+	static long toEpochMillis(int[] innards) {
+		if (innards[1]==NotesConstants.ANYDAY) {
+			return NO_TIMESTAMP;
+		}
+		long julianDay = innards[1] & 0xffffff;
+		long millis = (julianDay - JULIAN_DAY_1970) * MILLIS_PER_DAY;
+		if (innards[0]!=NotesConstants.ALLDAY) {
+			//innards[0] contains hundredths of seconds since midnight UTC
+			millis += innards[0] * 10L;
+		}
+		return millis;
+	}
+
+	/**
+	 * Formats timedate innards in ISO 8601 format, using only the date or time part
+	 * for date-only and time-only values
+	 *
+	 * @param innards innards
+	 * @return formatted value
+	 */
+	static String formatTimeDate(int[] innards) {
+		boolean hasDate = innards[1]!=NotesConstants.ANYDAY;
+		boolean hasTime = innards[0]!=NotesConstants.ALLDAY;
+
+		if (!hasDate) {
+			return LocalTime.ofNanoOfDay(innards[0] * 10L * 1000000L).toString();
+		}
+		if (!hasTime) {
+			return LocalDate.ofEpochDay((innards[1] & 0xffffff) - JULIAN_DAY_1970).toString();
+		}
+		return Instant.ofEpochMilli(toEpochMillis(innards)).toString();
+	}
+
+	/**
+	 * Wrapper that prevents the Arrow writer from closing the caller's stream
+	 */
+	private static class NonClosingOutputStream extends OutputStream {
+		private OutputStream m_out;
+
+		public NonClosingOutputStream(OutputStream out) {
+			m_out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			m_out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			m_out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			m_out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			m_out.flush();
+		}
+	}
+}
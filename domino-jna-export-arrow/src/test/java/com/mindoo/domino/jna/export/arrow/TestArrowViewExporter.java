@@ -0,0 +1,355 @@
+package com.mindoo.domino.jna.export.arrow;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesViewEntryCursor;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.export.arrow.ArrowViewExporter.ExportColumn;
+import com.mindoo.domino.jna.internal.NotesConstants;
+
+/**
+ * Tests the type inference and value conversion of {@link ArrowViewExporter} with
+ * view read buffers built in memory, does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestArrowViewExporter {
+	private static final long JULIAN_DAY_1970 = 2440588;
+	/** timezone and DST flags in the upper byte of the date innard, must be ignored */
+	private static final int ZONE_BITS = 0x85 << 24;
+
+	private static final int COL_TEXT = 0;
+	private static final int COL_NUMBER = 1;
+	private static final int COL_TIME = 2;
+	private static final int COL_MIXED = 3;
+	private static final int COL_NUMBERLIST = 4;
+	private static final int COL_TIMELIST = 5;
+	private static final int COL_EMPTY = 6;
+
+	private static int[] innards(LocalDate date, int hundredths) {
+		int julianDay = (int) (date.toEpochDay() + JULIAN_DAY_1970);
+		return new int[] {hundredths, julianDay | ZONE_BITS};
+	}
+
+	private static long epochMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+		return ZonedDateTime.of(year, month, day, hour, minute, second, millis * 1000000, ZoneOffset.UTC)
+				.toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Builds column values in the format of an ITEM_VALUE_TABLE entry, each value starting with its data type WORD
+	 */
+	private static class ValueBuilder {
+		private ByteArrayOutputStream m_out = new ByteArrayOutputStream();
+		private ByteBuffer m_buf = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+
+		private ValueBuilder word(int value) {
+			m_buf.clear();
+			m_buf.putShort((short) value);
+			m_out.write(m_buf.array(), 0, 2);
+			return this;
+		}
+
+		private ValueBuilder dword(int value) {
+			m_buf.clear();
+			m_buf.putInt(value);
+			m_out.write(m_buf.array(), 0, 4);
+			return this;
+		}
+
+		private ValueBuilder number(double value) {
+			m_buf.clear();
+			m_buf.putDouble(value);
+			m_out.write(m_buf.array(), 0, 8);
+			return this;
+		}
+
+		private ValueBuilder timeDate(int[] innards) {
+			return dword(innards[0]).dword(innards[1]);
+		}
+
+		private ValueBuilder bytes(byte[] data) {
+			m_out.write(data, 0, data.length);
+			return this;
+		}
+
+		private byte[] toByteArray() {
+			return m_out.toByteArray();
+		}
+	}
+
+	private static byte[] empty() {
+		return new byte[0];
+	}
+
+	private static byte[] text(String value) {
+		return new ValueBuilder().word(NotesItem.TYPE_TEXT).bytes(value.getBytes(StandardCharsets.US_ASCII)).toByteArray();
+	}
+
+	private static byte[] textList(String... values) {
+		ValueBuilder builder = new ValueBuilder().word(NotesItem.TYPE_TEXT_LIST).word(values.length);
+		for (String currValue : values) {
+			builder.word(currValue.length());
+		}
+		for (String currValue : values) {
+			builder.bytes(currValue.getBytes(StandardCharsets.US_ASCII));
+		}
+		return builder.toByteArray();
+	}
+
+	private static byte[] number(double value) {
+		return new ValueBuilder().word(NotesItem.TYPE_NUMBER).number(value).toByteArray();
+	}
+
+	private static byte[] numberList(double... values) {
+		ValueBuilder builder = new ValueBuilder().word(NotesItem.TYPE_NUMBER_RANGE).word(values.length).word(0);
+		for (double currValue : values) {
+			builder.number(currValue);
+		}
+		return builder.toByteArray();
+	}
+
+	private static byte[] time(int[] innards) {
+		return new ValueBuilder().word(NotesItem.TYPE_TIME).timeDate(innards).toByteArray();
+	}
+
+	private static byte[] timeList(int[]... values) {
+		ValueBuilder builder = new ValueBuilder().word(NotesItem.TYPE_TIME_RANGE).word(values.length).word(0);
+		for (int[] currValue : values) {
+			builder.timeDate(currValue);
+		}
+		return builder.toByteArray();
+	}
+
+	/**
+	 * Creates a cursor over a buffer in the format of NIFReadEntries with
+	 * {@link ReadMask#NOTEID} and {@link ReadMask#SUMMARYVALUES}
+	 *
+	 * @param noteIds note ids of the entries
+	 * @param columnValues column values of each entry
+	 * @return cursor
+	 */
+	private static NotesViewEntryCursor createCursor(int[] noteIds, byte[][]... columnValues) {
+		ValueBuilder builder = new ValueBuilder();
+		for (int i=0; i<noteIds.length; i++) {
+			byte[][] entryValues = columnValues[i];
+			int totalLength = 4 + 2*entryValues.length;
+			for (byte[] currValue : entryValues) {
+				totalLength += currValue.length;
+			}
+
+			builder.dword(noteIds[i]);
+			builder.word(totalLength).word(entryValues.length);
+			for (byte[] currValue : entryValues) {
+				builder.word(currValue.length);
+			}
+			for (byte[] currValue : entryValues) {
+				builder.bytes(currValue);
+			}
+		}
+		byte[] data = builder.toByteArray();
+		ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+		return new NotesViewEntryCursor(null, data, buf, 0, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES),
+				null, 0, noteIds.length, (short) 0, 0, null);
+	}
+
+	private static final int[] DATETIME_1 = innards(LocalDate.of(2021, 6, 15), ((12*60 + 30)*60 + 15)*100 + 25);
+	private static final int[] DATEONLY = innards(LocalDate.of(1969, 12, 31), NotesConstants.ALLDAY);
+	private static final int[] TIMEONLY = new int[] {(8*60*60)*100, NotesConstants.ANYDAY};
+
+	private static NotesViewEntryCursor createFirstBatch() {
+		return createCursor(new int[] {4, 8, 12},
+				new byte[][] {text("single"), number(1.5), time(DATETIME_1), number(42),
+					numberList(1), timeList(DATETIME_1), empty()},
+				new byte[][] {textList("a", "b", "c"), empty(), time(DATEONLY), text("text"),
+					numberList(2, 3.5), timeList(DATEONLY, TIMEONLY, DATETIME_1), empty()},
+				new byte[][] {empty(), number(-7), empty(), time(DATETIME_1),
+					empty(), empty(), empty()});
+	}
+
+	private static List<String> texts(ListVector vector, int row) {
+		List<String> texts = new ArrayList<String>();
+		for (Object currValue : (List<?>) vector.getObject(row)) {
+			texts.add(currValue.toString());
+		}
+		return texts;
+	}
+
+	@Test
+	public void testToEpochMillis() {
+		Assert.assertEquals(0, ArrowViewExporter.toEpochMillis(new int[] {0, (int) JULIAN_DAY_1970}));
+		Assert.assertEquals(epochMillis(2021, 6, 15, 12, 30, 15, 250), ArrowViewExporter.toEpochMillis(DATETIME_1));
+		//date-only values are returned as midnight UTC, also before 1970
+		Assert.assertEquals(-24*60*60*1000L, ArrowViewExporter.toEpochMillis(DATEONLY));
+		Assert.assertEquals(ArrowViewExporter.NO_TIMESTAMP, ArrowViewExporter.toEpochMillis(TIMEONLY));
+
+		//the zone bits must not change the value
+		int[] withoutZone = new int[] {DATETIME_1[0], DATETIME_1[1] & 0xffffff};
+		Assert.assertEquals(ArrowViewExporter.toEpochMillis(withoutZone), ArrowViewExporter.toEpochMillis(DATETIME_1));
+	}
+
+	@Test
+	public void testFormatTimeDate() {
+		Assert.assertEquals("2021-06-15T12:30:15.250Z", ArrowViewExporter.formatTimeDate(DATETIME_1));
+		Assert.assertEquals("1969-12-31", ArrowViewExporter.formatTimeDate(DATEONLY));
+		Assert.assertEquals("08:00", ArrowViewExporter.formatTimeDate(TIMEONLY));
+	}
+
+	@Test
+	public void testInferColumnTypesFromFirstBatch() {
+		ArrowViewExporter exporter = new ArrowViewExporter(null);
+		NotesViewEntryCursor cursor = createFirstBatch();
+
+		Assert.assertEquals(ArrowColumnType.TEXT_LIST, exporter.inferColumnType(cursor, COL_TEXT));
+		Assert.assertEquals(ArrowColumnType.NUMBER, exporter.inferColumnType(cursor, COL_NUMBER));
+		Assert.assertEquals(ArrowColumnType.DATETIME, exporter.inferColumnType(cursor, COL_TIME));
+		Assert.assertEquals(ArrowColumnType.TEXT, exporter.inferColumnType(cursor, COL_MIXED));
+		Assert.assertEquals(ArrowColumnType.NUMBER_LIST, exporter.inferColumnType(cursor, COL_NUMBERLIST));
+		Assert.assertEquals(ArrowColumnType.DATETIME_LIST, exporter.inferColumnType(cursor, COL_TIMELIST));
+		//columns without any value in the first batch are exported as text
+		Assert.assertEquals(ArrowColumnType.TEXT, exporter.inferColumnType(cursor, COL_EMPTY));
+		Assert.assertEquals(ArrowColumnType.TEXT, exporter.inferColumnType(cursor, 99));
+
+		//the cursor is reset for the export
+		Assert.assertEquals(-1, cursor.getIndex());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(4, cursor.getNoteId());
+	}
+
+	@Test
+	public void testCreateSchema() {
+		ArrowViewExporter exporter = new ArrowViewExporter(null);
+		List<ExportColumn> columns = Arrays.asList(
+				new ExportColumn("num", 0, ArrowColumnType.NUMBER),
+				new ExportColumn("dates", 1, ArrowColumnType.DATETIME_LIST));
+
+		Schema schema = exporter.createSchema(columns);
+		List<Field> fields = schema.getFields();
+		Assert.assertEquals(3, fields.size());
+		Assert.assertEquals(ArrowViewExporter.NOTEID_FIELD, fields.get(0).getName());
+		Assert.assertEquals(new ArrowType.Int(32, true), fields.get(0).getType());
+		Assert.assertEquals(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE), fields.get(1).getType());
+		Assert.assertTrue(fields.get(1).isNullable());
+		Assert.assertEquals(ArrowType.List.INSTANCE, fields.get(2).getType());
+		Assert.assertEquals(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC"), fields.get(2).getChildren().get(0).getType());
+
+		exporter.setIncludeNoteId(false);
+		Assert.assertEquals("num", exporter.createSchema(columns).getFields().get(0).getName());
+	}
+
+	@Test
+	public void testWriteEntries() {
+		ArrowViewExporter exporter = new ArrowViewExporter(null);
+		NotesViewEntryCursor cursor = createFirstBatch();
+
+		List<ExportColumn> columns = new ArrayList<ExportColumn>();
+		for (int i=COL_TEXT; i<=COL_EMPTY; i++) {
+			columns.add(new ExportColumn("col"+i, i, exporter.inferColumnType(cursor, i)));
+		}
+		//text export of a number list
+		columns.add(new ExportColumn("numbertext", COL_NUMBERLIST, ArrowColumnType.TEXT_LIST));
+		//type does not match the column values
+		columns.add(new ExportColumn("wrongtype", COL_TEXT, ArrowColumnType.NUMBER));
+
+		BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+		try {
+			VectorSchemaRoot root = VectorSchemaRoot.create(exporter.createSchema(columns), allocator);
+			try {
+				root.allocateNew();
+				//second batch appended to the rows of the first batch
+				int rows = exporter.writeEntries(cursor, columns, root, 0, new int[2]);
+				Assert.assertEquals(3, rows);
+				rows = exporter.writeEntries(createCursor(new int[] {16},
+						new byte[][] {text("next"), number(0), empty(), empty(), empty(), empty(), empty()}),
+						columns, root, rows, new int[2]);
+				Assert.assertEquals(4, rows);
+				root.setRowCount(rows);
+
+				IntVector noteIds = (IntVector) root.getVector(ArrowViewExporter.NOTEID_FIELD);
+				Assert.assertEquals(Arrays.asList(4, 8, 12, 16),
+						Arrays.asList(noteIds.get(0), noteIds.get(1), noteIds.get(2), noteIds.get(3)));
+
+				ListVector textList = (ListVector) root.getVector("col"+COL_TEXT);
+				Assert.assertEquals(Arrays.asList("single"), texts(textList, 0));
+				Assert.assertEquals(Arrays.asList("a", "b", "c"), texts(textList, 1));
+				Assert.assertTrue(texts(textList, 2).isEmpty());
+				Assert.assertEquals(Arrays.asList("next"), texts(textList, 3));
+
+				Float8Vector numbers = (Float8Vector) root.getVector("col"+COL_NUMBER);
+				Assert.assertEquals(1.5, numbers.get(0), 0);
+				Assert.assertTrue(numbers.isNull(1));
+				Assert.assertEquals(-7, numbers.get(2), 0);
+				Assert.assertEquals(0, numbers.get(3), 0);
+
+				TimeStampMilliTZVector times = (TimeStampMilliTZVector) root.getVector("col"+COL_TIME);
+				Assert.assertEquals(epochMillis(2021, 6, 15, 12, 30, 15, 250), times.get(0));
+				Assert.assertEquals(-24*60*60*1000L, times.get(1));
+				Assert.assertTrue(times.isNull(2));
+				Assert.assertTrue(times.isNull(3));
+
+				VarCharVector mixed = (VarCharVector) root.getVector("col"+COL_MIXED);
+				Assert.assertEquals("42", mixed.getObject(0).toString());
+				Assert.assertEquals("text", mixed.getObject(1).toString());
+				Assert.assertEquals("2021-06-15T12:30:15.250Z", mixed.getObject(2).toString());
+				Assert.assertTrue(mixed.isNull(3));
+
+				ListVector numberList = (ListVector) root.getVector("col"+COL_NUMBERLIST);
+				Assert.assertEquals(Arrays.asList(1d), numberList.getObject(0));
+				Assert.assertEquals(Arrays.asList(2d, 3.5d), numberList.getObject(1));
+				Assert.assertEquals(Arrays.asList(), numberList.getObject(2));
+
+				//time-only values are skipped in timestamp lists
+				ListVector timeList = (ListVector) root.getVector("col"+COL_TIMELIST);
+				Assert.assertEquals(Arrays.asList(epochMillis(2021, 6, 15, 12, 30, 15, 250)), timeList.getObject(0));
+				Assert.assertEquals(Arrays.asList(-24*60*60*1000L, epochMillis(2021, 6, 15, 12, 30, 15, 250)),
+						timeList.getObject(1));
+
+				VarCharVector empty = (VarCharVector) root.getVector("col"+COL_EMPTY);
+				for (int i=0; i<rows; i++) {
+					Assert.assertTrue(empty.isNull(i));
+				}
+
+				ListVector numberText = (ListVector) root.getVector("numbertext");
+				Assert.assertEquals(Arrays.asList("1"), texts(numberText, 0));
+				Assert.assertEquals(Arrays.asList("2", "3.5"), texts(numberText, 1));
+
+				Float8Vector wrongType = (Float8Vector) root.getVector("wrongtype");
+				Assert.assertTrue(wrongType.isNull(0));
+				Assert.assertTrue(wrongType.isNull(1));
+			}
+			finally {
+				root.close();
+			}
+		}
+		finally {
+			allocator.close();
+		}
+	}
+}
@@ -13,8 +13,13 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 import javax.sql.DataSource;
@@ -99,6 +104,11 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 			+ "__seqtime_innard0, "
 			+ "__seqtime_innard1 "
 			+ "FROM docs where __unid=? LIMIT 1;";
+	private static final String SQL_FINDDOCSBYUNIDS = "SELECT "
+			+ "__unid "
+			+ "FROM docs where __unid IN (";
+	/** max number of UNIDs in a single lookup, below the host parameter limit of SQLite (999) */
+	private static final int MAX_UNIDS_PER_LOOKUP = 500;
 	private static final String SQL_SCANDATABASE = "SELECT "
 			+ "__unid, "
 			+ "__seq, "
@@ -134,6 +144,8 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 		private PreparedStatement m_stmtInsertDominoDocReaders;
 		private PreparedStatement m_stmtUpdateDominoDoc;
 		private PreparedStatement m_stmtDeleteAllDominoDocReaders;
+		private Map<String,DocRow> m_pendingChanges = new LinkedHashMap<String,DocRow>();
+		private int m_uncommittedChanges;
 		
 		public SyncContext(ISyncTarget<AbstractSQLSyncTarget.SyncContext> target) {
 			this.target = target;
@@ -202,6 +214,7 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 				}
 				m_stmtDeleteAllDominoDocReaders = null;
 			}
+			m_pendingChanges.clear();
 			this.target = null;
 		}
 		
@@ -302,6 +315,25 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 		}
 	}
 
+	/**
+	 * Column values of a single document row, computed when the change gets reported,
+	 * because summary buffer and note are not valid anymore when buffered changes
+	 * get written
+	 */
+	private static class DocRow {
+		private String unid;
+		private boolean removal;
+		private int seq;
+		private int[] seqTimeInnards;
+		private long seqTimeMillis;
+		private List<String> readers;
+		private String flagsJson;
+		private String form;
+		private String json;
+		private String customText;
+		private byte[] customBinary;
+	}
+	
 	/**
 	 * Creates a new sync target for the specified JDBC url
 	 * 
@@ -339,6 +371,25 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 		return getConnection().prepareStatement(SQL_FINDDOCBYUNID);
 	}
 
+	/**
+	 * Creates a statement to check which of a number of UNIDs exist in the database
+	 * 
+	 * @param numUnids number of UNID parameters
+	 * @return statement
+	 * @throws SQLException in case of SQL errors
+	 */
+	protected PreparedStatement createStatementFindDocumentsByUnids(int numUnids) throws SQLException {
+		StringBuilder sql = new StringBuilder(SQL_FINDDOCSBYUNIDS);
+		for (int i=0; i<numUnids; i++) {
+			if (i>0) {
+				sql.append(", ");
+			}
+			sql.append("?");
+		}
+		sql.append(");");
+		return getConnection().prepareStatement(sql.toString());
+	}
+
 	protected PreparedStatement createStatementScanDatabase() throws SQLException {
 		return getConnection().prepareStatement(SQL_SCANDATABASE);
 	}
@@ -608,6 +659,8 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 	}
 
 	public void clear(SyncContext ctx) {
+		ctx.m_pendingChanges.clear();
+		
 		Statement stmt = null;
 		try {
 			stmt = getConnection().createStatement();
@@ -675,8 +728,6 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 
 	public TargetResult noteChangedMatchingFormula(SyncContext ctx, NotesOriginatorIdData oid, IItemTableData summaryBufferData,
 			NotesNote note) {
-		NotesOriginatorIdData oidInDb = findDocumentByUnid(ctx, oid);
-
 		List<String> readers = getReaders(oid, summaryBufferData, note);
 		if (readers!=null) {
 			//convert to lowercase, because reader fields are case-insensitive
@@ -687,6 +738,14 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 			readers = readersLC;
 		}
 
+		if (getChangeBufferSize()>1) {
+			//decide between insert and update when the buffer gets written
+			bufferChange(ctx, createDocRow(oid, summaryBufferData, note, readers));
+			return TargetResult.Updated;
+		}
+		
+		NotesOriginatorIdData oidInDb = findDocumentByUnid(ctx, oid);
+
 		if (oidInDb==null) {
 			try {
 				PreparedStatement insertDocStmt = ctx.getStatementInsertDominoDoc();
@@ -710,46 +769,28 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 	}
 
 	/**
-	 * Method to fill the parameters of an update statement that updates an
-	 * existing document in the database
+	 * Computes the column values of a document row
 	 * 
-	 * @param ctx sync context
-	 * @param stmt update statement
 	 * @param oid note originator id
 	 * @param summaryBufferData summary buffer if specified in {@link #getWhichDataToRead()}
 	 * @param note note  if specified in {@link #getWhichDataToRead()}
 	 * @param readers readers of this note converted to lowercase or null if there are no restrictions
-	 * @throws SQLException in case of SQL errors
+	 * @return row data
 	 */
-	private void updateDocumentRowWithData(SyncContext ctx, PreparedStatement stmt,
-			NotesOriginatorIdData oid, IItemTableData summaryBufferData,
-			NotesNote note, List<String> readers) throws SQLException {
-
-		String unid = oid.getUNID();
-		int seq = oid.getSequence();
-		int[] seqTimeInnards = oid.getSequenceTimeInnards();
-
-		stmt.setString(1, unid);
-		stmt.setInt(2, seq);
-		stmt.setLong(3, seqTimeInnards[0]);
-		stmt.setLong(4, seqTimeInnards[1]);
-		Calendar seqTimeCal = NotesDateTimeUtils.innardsToCalendar(seqTimeInnards);
-		stmt.setLong(5, seqTimeCal.getTimeInMillis());
-		stmt.setLong(6, seqTimeCal.getTimeInMillis());
-
-		int numReaders;
-		if (readers==null) {
-			numReaders = 0;
-		}
-		else {
-			numReaders = readers.size();
-		}
-		stmt.setInt(7, numReaders);
+	private DocRow createDocRow(NotesOriginatorIdData oid, IItemTableData summaryBufferData,
+			NotesNote note, List<String> readers) {
+		DocRow row = new DocRow();
+		row.unid = oid.getUNID();
+		row.seq = oid.getSequence();
+		row.seqTimeInnards = oid.getSequenceTimeInnards();
+		Calendar seqTimeCal = NotesDateTimeUtils.innardsToCalendar(row.seqTimeInnards);
+		row.seqTimeMillis = seqTimeCal.getTimeInMillis();
+		row.readers = readers;
 
 		List<String> flags = getFlags(oid, summaryBufferData, note);
 		if (flags==null)
 			flags=Collections.emptyList();
-		stmt.setString(8, new JSONArray(flags).toString());
+		row.flagsJson = new JSONArray(flags).toString();
 
 		String form = null;
 		if (summaryBufferData!=null) {
@@ -760,24 +801,72 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 		}
 		if (form==null)
 			form = "";
-		stmt.setString(9, form);
+		row.form = form;
 
 		String jsonStr = toJson(oid, summaryBufferData, note);
 		if (jsonStr==null)
 			jsonStr = "{}";
-		stmt.setString(10, jsonStr);
+		row.json = jsonStr;
 
-		String customTextData = getCustomTextData(oid, summaryBufferData, note);
-		if (customTextData!=null) {
-			stmt.setString(11, customTextData);
+		row.customText = getCustomTextData(oid, summaryBufferData, note);
+		row.customBinary = getCustomBinaryData(oid, summaryBufferData, note);
+		return row;
+	}
+
+	/**
+	 * Fills the first 12 parameters of the insert and update statement with
+	 * the document row data
+	 * 
+	 * @param stmt insert or update statement
+	 * @param row row data
+	 * @throws SQLException in case of SQL errors
+	 */
+	private void bindDocRow(PreparedStatement stmt, DocRow row) throws SQLException {
+		stmt.setString(1, row.unid);
+		stmt.setInt(2, row.seq);
+		stmt.setLong(3, row.seqTimeInnards[0]);
+		stmt.setLong(4, row.seqTimeInnards[1]);
+		stmt.setLong(5, row.seqTimeMillis);
+		stmt.setLong(6, row.seqTimeMillis);
+		stmt.setInt(7, row.readers==null ? 0 : row.readers.size());
+		stmt.setString(8, row.flagsJson);
+		stmt.setString(9, row.form);
+		stmt.setString(10, row.json);
+
+		if (row.customText!=null) {
+			stmt.setString(11, row.customText);
+		}
+		else {
+			stmt.setNull(11, Types.VARCHAR);
 		}
 		
-		byte[] customBinaryData = getCustomBinaryData(oid, summaryBufferData, note);
-		if (customBinaryData!=null) {
-			stmt.setBytes(12, customBinaryData);
+		if (row.customBinary!=null) {
+			stmt.setBytes(12, row.customBinary);
+		}
+		else {
+			stmt.setNull(12, Types.BLOB);
 		}
+	}
+	
+	/**
+	 * Method to fill the parameters of an update statement that updates an
+	 * existing document in the database
+	 * 
+	 * @param ctx sync context
+	 * @param stmt update statement
+	 * @param oid note originator id
+	 * @param summaryBufferData summary buffer if specified in {@link #getWhichDataToRead()}
+	 * @param note note  if specified in {@link #getWhichDataToRead()}
+	 * @param readers readers of this note converted to lowercase or null if there are no restrictions
+	 * @throws SQLException in case of SQL errors
+	 */
+	private void updateDocumentRowWithData(SyncContext ctx, PreparedStatement stmt,
+			NotesOriginatorIdData oid, IItemTableData summaryBufferData,
+			NotesNote note, List<String> readers) throws SQLException {
 
-		stmt.setString(13, unid);
+		DocRow row = createDocRow(oid, summaryBufferData, note, readers);
+		bindDocRow(stmt, row);
+		stmt.setString(13, row.unid);
 		
 		stmt.addBatch();
 		ctx.setChanged(ctx.getChanged()+1);
@@ -787,14 +876,14 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 
 		//flush old readers
 		PreparedStatement deleteAllDocReaders = ctx.getStatementDeleteAllDocReaders();
-		deleteAllDocReaders.setString(1, unid);
+		deleteAllDocReaders.setString(1, row.unid);
 		deleteAllDocReaders.executeUpdate();
 		
 		if (readers!=null) {
 			//and write new readers
 			PreparedStatement insertDocReadersStmt = ctx.getStatementInsertDominoDocReaders();
 			for (String currReader : readers) {
-				insertDocReadersStmt.setString(1, unid);
+				insertDocReadersStmt.setString(1, row.unid);
 				insertDocReadersStmt.setString(2, currReader);
 				
 				insertDocReadersStmt.addBatch();
@@ -818,73 +907,210 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 			NotesOriginatorIdData oid, IItemTableData summaryBufferData,
 			NotesNote note, List<String> readers) throws SQLException {
 
-		String unid = oid.getUNID();
-		int seq = oid.getSequence();
-		int[] seqTimeInnards = oid.getSequenceTimeInnards();
+		DocRow row = createDocRow(oid, summaryBufferData, note, readers);
+		bindDocRow(stmt, row);
 		
-		stmt.setString(1, unid);
-		stmt.setInt(2, seq);
-		stmt.setLong(3, seqTimeInnards[0]);
-		stmt.setLong(4, seqTimeInnards[1]);
-		Calendar seqTimeCal = NotesDateTimeUtils.innardsToCalendar(seqTimeInnards);
-		stmt.setLong(5, seqTimeCal.getTimeInMillis());
-		stmt.setLong(6, seqTimeCal.getTimeInMillis());
-
-		int numReaders;
-		if (readers==null) {
-			numReaders = 0;
+		stmt.addBatch();
+		ctx.setAdded(ctx.getAdded()+1);
+		if ((ctx.getAdded() % getMaxBatchSize()) == 0) {
+			executeBatchedInserts(ctx);
 		}
-		else {
-			numReaders = readers.size();
+
+		if (readers!=null && !readers.isEmpty()) {
+			PreparedStatement insertDocReadersStmt = ctx.getStatementInsertDominoDocReaders();
+			for (String currReader : readers) {
+				insertDocReadersStmt.setString(1, row.unid);
+				insertDocReadersStmt.setString(2, currReader);
+				
+				insertDocReadersStmt.addBatch();
+			}
+			insertDocReadersStmt.executeBatch();
 		}
-		stmt.setInt(7, numReaders);
+	}
 
-		List<String> flags = getFlags(oid, summaryBufferData, note);
-		if (flags==null)
-			flags=Collections.emptyList();
-		stmt.setString(8, new JSONArray(flags).toString());
+	/**
+	 * Adds a document change to the change buffer of the sync context and writes
+	 * the buffer when it is full. A previous change of the same document in the
+	 * buffer gets replaced.
+	 * 
+	 * @param ctx sync context
+	 * @param row row data
+	 */
+	private void bufferChange(SyncContext ctx, DocRow row) {
+		//remove first so that the change moves to the end of the buffer
+		ctx.m_pendingChanges.remove(row.unid);
+		ctx.m_pendingChanges.put(row.unid, row);
 		
-		String form = null;
-		if (summaryBufferData!=null) {
-			form = summaryBufferData.getAsString("form", null);
+		if (ctx.m_pendingChanges.size() >= getChangeBufferSize()) {
+			writeBufferedChanges(ctx);
 		}
-		if (form==null && note!=null) {
-			form = note.getItemValueString("form");
-		}
-		if (form==null)
-			form = "";
-		stmt.setString(9, form);
-
-		String jsonStr = toJson(oid, summaryBufferData, note);
-		if (jsonStr==null)
-			jsonStr = "{}";
-		stmt.setString(10, jsonStr);
+	}
 
-		String customTextData = getCustomTextData(oid, summaryBufferData, note);
-		if (customTextData!=null) {
-			stmt.setString(11, customTextData);
+	/**
+	 * Writes the buffered document changes to the database. Existing documents are
+	 * looked up with one query per 500 UNIDs, document rows and readers
+	 * are written with JDBC batches. Commits the transaction if {@link #getCommitBatchSize()}
+	 * changes have been written since the last commit.
+	 * 
+	 * @param ctx sync context
+	 */
+	protected void writeBufferedChanges(SyncContext ctx) {
+		Map<String,DocRow> pendingChanges = ctx.m_pendingChanges;
+		if (pendingChanges.isEmpty()) {
+			return;
 		}
 		
-		byte[] customBinaryData = getCustomBinaryData(oid, summaryBufferData, note);
-		if (customBinaryData!=null) {
-			stmt.setBytes(12, customBinaryData);
+		Set<String> existingUnids = findExistingUnids(pendingChanges.keySet());
+		
+		int added = 0;
+		int changed = 0;
+		int removed = 0;
+		int readersAdded = 0;
+		
+		try {
+			PreparedStatement insertDocStmt = ctx.getStatementInsertDominoDoc();
+			PreparedStatement updateDocStmt = ctx.getStatementUpdateDominoDoc();
+			PreparedStatement removeDocStmt = ctx.getStatementRemoveDominoDocByUnid();
+			PreparedStatement deleteAllDocReadersStmt = ctx.getStatementDeleteAllDocReaders();
+			PreparedStatement insertDocReadersStmt = ctx.getStatementInsertDominoDocReaders();
+			
+			for (DocRow currRow : pendingChanges.values()) {
+				boolean exists = existingUnids.contains(currRow.unid);
+				
+				if (exists) {
+					//flush old readers
+					deleteAllDocReadersStmt.setString(1, currRow.unid);
+					deleteAllDocReadersStmt.addBatch();
+				}
+				
+				if (currRow.removal) {
+					if (exists) {
+						removeDocStmt.setString(1, currRow.unid);
+						removeDocStmt.addBatch();
+						removed++;
+					}
+					continue;
+				}
+				
+				if (exists) {
+					bindDocRow(updateDocStmt, currRow);
+					updateDocStmt.setString(13, currRow.unid);
+					updateDocStmt.addBatch();
+					changed++;
+				}
+				else {
+					bindDocRow(insertDocStmt, currRow);
+					insertDocStmt.addBatch();
+					added++;
+				}
+				
+				if (currRow.readers!=null) {
+					for (String currReader : currRow.readers) {
+						insertDocReadersStmt.setString(1, currRow.unid);
+						insertDocReadersStmt.setString(2, currReader);
+						insertDocReadersStmt.addBatch();
+						readersAdded++;
+					}
+				}
+			}
+			
+			if ((changed+removed)>0) {
+				deleteAllDocReadersStmt.executeBatch();
+			}
+			if (removed>0) {
+				removeDocStmt.executeBatch();
+			}
+			if (changed>0) {
+				updateDocStmt.executeBatch();
+			}
+			if (added>0) {
+				insertDocStmt.executeBatch();
+			}
+			if (readersAdded>0) {
+				insertDocReadersStmt.executeBatch();
+			}
+		}
+		catch (SQLException e) {
+			throw new SqlSyncException("Error writing "+pendingChanges.size()+" buffered document changes to database "+m_jdbcUrl, e);
 		}
 		
-		stmt.addBatch();
-		ctx.setAdded(ctx.getAdded()+1);
-		if ((ctx.getAdded() % getMaxBatchSize()) == 0) {
-			executeBatchedInserts(ctx);
+		ctx.setAdded(ctx.getAdded()+added);
+		ctx.setChanged(ctx.getChanged()+changed);
+		ctx.setRemoved(ctx.getRemoved()+removed);
+		ctx.m_uncommittedChanges += pendingChanges.size();
+		pendingChanges.clear();
+		
+		int commitBatchSize = getCommitBatchSize();
+		if (commitBatchSize>0 && ctx.m_uncommittedChanges>=commitBatchSize) {
+			try {
+				getConnection().commit();
+			} catch (SQLException e) {
+				throw new SqlSyncException("Error committing current transaction", e);
+			}
+			ctx.m_uncommittedChanges = 0;
 		}
+	}
+	
+	/**
+	 * Checks which of the specified UNIDs exist in the database
+	 * 
+	 * @param unids UNIDs
+	 * @return existing UNIDs
+	 */
+	private Set<String> findExistingUnids(Set<String> unids) {
+		Set<String> existingUnids = new HashSet<String>();
+		
+		Iterator<String> unidsIt = unids.iterator();
+		PreparedStatement fullLookupStmt = null;
+		
+		try {
+			while (unidsIt.hasNext()) {
+				List<String> currUnids = new ArrayList<String>(Math.min(unids.size(), MAX_UNIDS_PER_LOOKUP));
+				while (currUnids.size()<MAX_UNIDS_PER_LOOKUP && unidsIt.hasNext()) {
+					currUnids.add(unidsIt.next());
+				}
 
-		if (numReaders>0) {
-			PreparedStatement insertDocReadersStmt = ctx.getStatementInsertDominoDocReaders();
-			for (String currReader : readers) {
-				insertDocReadersStmt.setString(1, unid);
-				insertDocReadersStmt.setString(2, currReader);
+				PreparedStatement lookupStmt;
+				if (currUnids.size()==MAX_UNIDS_PER_LOOKUP) {
+					//reuse the statement for full chunks
+					if (fullLookupStmt==null) {
+						fullLookupStmt = createStatementFindDocumentsByUnids(MAX_UNIDS_PER_LOOKUP);
+					}
+					lookupStmt = fullLookupStmt;
+				}
+				else {
+					lookupStmt = createStatementFindDocumentsByUnids(currUnids.size());
+				}
 				
-				insertDocReadersStmt.addBatch();
+				try {
+					for (int i=0; i<currUnids.size(); i++) {
+						lookupStmt.setString(i+1, currUnids.get(i));
+					}
+					ResultSet rs = lookupStmt.executeQuery();
+					while (rs.next()) {
+						existingUnids.add(rs.getString("__unid"));
+					}
+					rs.close();
+				}
+				finally {
+					if (lookupStmt!=fullLookupStmt) {
+						lookupStmt.close();
+					}
+				}
+			}
+			return existingUnids;
+		}
+		catch (SQLException e) {
+			throw new SqlSyncException("Error scanning table docs of database "+m_jdbcUrl+" for "+unids.size()+" UNIDs", e);
+		}
+		finally {
+			if (fullLookupStmt!=null) {
+				try {
+					fullLookupStmt.close();
+				} catch (SQLException e) {
+					log(Level.SEVERE, "Could not close statement", e);
+				}
 			}
-			insertDocReadersStmt.executeBatch();
 		}
 	}
 
@@ -962,6 +1188,11 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 			NotesNote note);
 
 	public TargetResult noteChangedNotMatchingFormula(SyncContext ctx, NotesOriginatorIdData oid) {
+		if (getChangeBufferSize()>1) {
+			bufferRemoval(ctx, oid);
+			return TargetResult.Removed;
+		}
+		
 		NotesOriginatorIdData oidInDb = findDocumentByUnid(ctx, oid);
 		if (oidInDb==null)
 			return TargetResult.None;
@@ -982,6 +1213,19 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 		}
 	}
 
+	/**
+	 * Adds a document removal to the change buffer of the sync context
+	 * 
+	 * @param ctx sync context
+	 * @param oid note originator id
+	 */
+	private void bufferRemoval(SyncContext ctx, NotesOriginatorIdData oid) {
+		DocRow row = new DocRow();
+		row.unid = oid.getUNID();
+		row.removal = true;
+		bufferChange(ctx, row);
+	}
+	
 	/**
 	 * Searches for a document by its UNID in the database
 	 * 
@@ -1013,6 +1257,11 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 	}
 
 	public TargetResult noteDeleted(SyncContext ctx, NotesOriginatorIdData oid) {
+		if (getChangeBufferSize()>1) {
+			bufferRemoval(ctx, oid);
+			return TargetResult.Removed;
+		}
+		
 		NotesOriginatorIdData oidInDb = findDocumentByUnid(ctx, oid);
 		if (oidInDb==null)
 			return TargetResult.None;
@@ -1056,6 +1305,8 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 	}
 
 	public void abort(SyncContext ctx, Throwable t) {
+		ctx.m_pendingChanges.clear();
+		
 		try {
 			ctx.getStatementFindDominoDocByUnid().close();
 		} catch (SQLException e1) {
@@ -1109,11 +1360,50 @@ public abstract class AbstractSQLSyncTarget implements ISyncTarget<AbstractSQLSy
 		return 1000;
 	}
 	
+	/**
+	 * Override this method to buffer document changes in the sync context and write them
+	 * in blocks. Instead of looking up each changed document by UNID and writing
+	 * it and its readers separately, the existing documents of a block are found with a single
+	 * <code>IN (...)</code> query and all rows are written with JDBC batches, which reduces
+	 * the number of database roundtrips for initial syncs from one per document to a few
+	 * per block.<br>
+	 * <br>
+	 * Since it is not known before writing the block whether a document gets added or
+	 * updated, {@link #noteChangedMatchingFormula(SyncContext, NotesOriginatorIdData, IItemTableData, NotesNote)}
+	 * returns {@link TargetResult#Updated} and the removal methods return {@link TargetResult#Removed}
+	 * in this mode. The exact numbers are written to the sync history.<br>
+	 * <br>
+	 * The default implementation returns 0 to write each change immediately.
+	 * 
+	 * @return number of changes to buffer, values of 1 or lower disable buffering
+	 */
+	protected int getChangeBufferSize() {
+		return 0;
+	}
+	
+	/**
+	 * Override this method to commit the transaction after a number of buffered changes
+	 * have been written (see {@link #getChangeBufferSize()}), e.g. to reduce the transaction
+	 * size for big initial syncs. Please note that a sync that gets aborted afterwards
+	 * can only roll back the changes since the last commit, but since the sync end date is
+	 * only written at the end, the next sync run processes the same documents again.<br>
+	 * <br>
+	 * The default implementation returns 0 to write all changes in a single transaction.
+	 * 
+	 * @return number of written changes before committing or 0 to only commit at the end of the sync
+	 */
+	protected int getCommitBatchSize() {
+		return 0;
+	}
+	
 	public void endingSync(SyncContext ctx, String selectionFormulaForNextSync, String dbInstanceId,
 			NotesTimeDate startingDateForNextSync) {
 
 		ctx.setEndDateTime(System.currentTimeMillis());
 
+		//write buffered changes
+		writeBufferedChanges(ctx);
+		
 		//write batched deletes
 		executeBatchedRemoves(ctx);
 		
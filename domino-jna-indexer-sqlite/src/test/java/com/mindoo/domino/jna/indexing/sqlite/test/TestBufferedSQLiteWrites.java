@@ -0,0 +1,197 @@
+package com.mindoo.domino.jna.indexing.sqlite.test;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.indexing.sql.AbstractSQLSyncTarget.SyncContext;
+import com.mindoo.domino.jna.indexing.sqlite.AbstractSQLiteSyncTarget;
+import com.mindoo.domino.jna.sync.ISyncTarget.TargetResult;
+import com.mindoo.domino.jna.sync.NotesOriginatorIdData;
+
+/**
+ * Tests the buffered batch writes of the SQL sync target against a SQLite
+ * database file, does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestBufferedSQLiteWrites {
+	private static final NotesTimeDate SYNC_END_DATE = new NotesTimeDate(new int[] {1000, 2000});
+
+	/**
+	 * Sync target that gets the readers and custom text of each note from maps
+	 */
+	private static class BufferedSyncTarget extends AbstractSQLiteSyncTarget {
+		private int m_changeBufferSize;
+		private Map<String,List<String>> m_readers = new HashMap<String,List<String>>();
+		private Map<String,String> m_customText = new HashMap<String,String>();
+
+		public BufferedSyncTarget(String jdbcUrl) {
+			super(jdbcUrl);
+		}
+
+		@Override
+		protected int getChangeBufferSize() {
+			return m_changeBufferSize;
+		}
+
+		@Override
+		public EnumSet<DataToRead> getWhichDataToRead() {
+			return EnumSet.of(DataToRead.SummaryBufferAllItems);
+		}
+
+		@Override
+		public Map<String, String> getSummaryBufferItemsAndFormulas() {
+			return null;
+		}
+
+		@Override
+		protected List<String> getReaders(NotesOriginatorIdData oid, IItemTableData summaryBufferData, NotesNote note) {
+			return m_readers.get(oid.getUNID());
+		}
+
+		@Override
+		protected String getCustomTextData(NotesOriginatorIdData oid, IItemTableData summaryBufferData,
+				NotesNote note) {
+			return m_customText.get(oid.getUNID());
+		}
+
+		@Override
+		protected String toJson(NotesOriginatorIdData oid, IItemTableData summaryBufferData, NotesNote note) {
+			JSONObject json = new JSONObject();
+			json.put("seq", oid.getSequence());
+			return json.toString();
+		}
+	}
+
+	private static NotesOriginatorIdData oid(String unid, int seq) {
+		return new NotesOriginatorIdData(unid, seq, new int[] {seq, 7});
+	}
+
+	private static String createUnid(char c) {
+		char[] unid = new char[32];
+		Arrays.fill(unid, c);
+		return new String(unid);
+	}
+
+	@Test
+	public void testInsertUpdateAndDeleteInOneBufferFlush() throws Exception {
+		File dbFile = File.createTempFile("bufferedsync", ".sqlite");
+		BufferedSyncTarget target = new BufferedSyncTarget("jdbc:sqlite:"+dbFile.getAbsolutePath());
+
+		String unidA = createUnid('A');
+		String unidB = createUnid('B');
+		String unidC = createUnid('C');
+		String unidD = createUnid('D');
+		String unidE = createUnid('E');
+
+		try {
+			//initial content, written without buffering
+			target.m_readers.put(unidA, Arrays.asList("CN=Old Reader/O=Org"));
+			target.m_customText.put(unidA, "custom A");
+
+			SyncContext ctx = target.startingSync("replicaid");
+			Assert.assertEquals(TargetResult.Added, target.noteChangedMatchingFormula(ctx, oid(unidA, 1), null, null));
+			Assert.assertEquals(TargetResult.Added, target.noteChangedMatchingFormula(ctx, oid(unidB, 1), null, null));
+			Assert.assertEquals(TargetResult.Added, target.noteChangedMatchingFormula(ctx, oid(unidC, 1), null, null));
+			target.endingSync(ctx, "SELECT @All", "instanceid", SYNC_END_DATE);
+
+			Assert.assertEquals(Arrays.asList(unidA, unidB, unidC), readUnids(target));
+			Assert.assertEquals("custom A", readColumn(target, unidA, "__customtext"));
+
+			//second sync with buffered changes that are all written when the sync ends
+			target.m_changeBufferSize = 100;
+			target.m_readers.put(unidA, Arrays.asList("CN=New Reader/O=Org", "[Admin]"));
+			target.m_customText.remove(unidA);
+			target.m_readers.put(unidD, Arrays.asList("CN=Reader D/O=Org"));
+
+			ctx = target.startingSync("replicaid");
+			//insert, update, delete, removal for not matching formula and deletion of an unknown note
+			Assert.assertEquals(TargetResult.Updated, target.noteChangedMatchingFormula(ctx, oid(unidD, 1), null, null));
+			Assert.assertEquals(TargetResult.Updated, target.noteChangedMatchingFormula(ctx, oid(unidA, 2), null, null));
+			Assert.assertEquals(TargetResult.Removed, target.noteDeleted(ctx, oid(unidB, 2)));
+			Assert.assertEquals(TargetResult.Removed, target.noteChangedNotMatchingFormula(ctx, oid(unidC, 2)));
+			Assert.assertEquals(TargetResult.Removed, target.noteDeleted(ctx, oid(unidE, 1)));
+			//a later change of the same note replaces the buffered one
+			Assert.assertEquals(TargetResult.Updated, target.noteChangedMatchingFormula(ctx, oid(unidA, 3), null, null));
+
+			//nothing written yet
+			Assert.assertEquals(Arrays.asList(unidA, unidB, unidC), readUnids(target));
+
+			target.endingSync(ctx, "SELECT @All", "instanceid", SYNC_END_DATE);
+
+			Assert.assertEquals(Arrays.asList(unidA, unidD), readUnids(target));
+			Assert.assertEquals("3", readColumn(target, unidA, "__seq"));
+			Assert.assertEquals("{\"seq\":3}", readColumn(target, unidA, "__json"));
+			Assert.assertEquals("2", readColumn(target, unidA, "__numreaders"));
+			//custom text is set to NULL if there is no value anymore
+			Assert.assertNull(readColumn(target, unidA, "__customtext"));
+			Assert.assertNull(readColumn(target, unidD, "__customtext"));
+
+			Assert.assertEquals(Arrays.asList("[admin]", "cn=new reader/o=org"), readReaders(target, unidA));
+			Assert.assertEquals(Arrays.asList("cn=reader d/o=org"), readReaders(target, unidD));
+			Assert.assertEquals(new ArrayList<String>(), readReaders(target, unidB));
+
+			//exact counts are written to the sync history
+			Assert.assertEquals(Arrays.asList("1", "1", "2"), readSyncHistoryCounts(target, "instanceid"));
+		}
+		finally {
+			target.closeConnection();
+			dbFile.delete();
+		}
+	}
+
+	private static List<String> query(BufferedSyncTarget target, String sql, String... params) throws SQLException {
+		List<String> result = new ArrayList<String>();
+		PreparedStatement stmt = target.getConnection().prepareStatement(sql);
+		try {
+			for (int i=0; i<params.length; i++) {
+				stmt.setString(i+1, params[i]);
+			}
+			ResultSet rs = stmt.executeQuery();
+			int columnCount = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				for (int i=1; i<=columnCount; i++) {
+					result.add(rs.getString(i));
+				}
+			}
+			rs.close();
+		}
+		finally {
+			stmt.close();
+		}
+		return result;
+	}
+
+	private static List<String> readUnids(BufferedSyncTarget target) throws SQLException {
+		return query(target, "SELECT __unid FROM docs ORDER BY __unid");
+	}
+
+	private static String readColumn(BufferedSyncTarget target, String unid, String column) throws SQLException {
+		List<String> values = query(target, "SELECT "+column+" FROM docs WHERE __unid=?", unid);
+		Assert.assertEquals(1, values.size());
+		return values.get(0);
+	}
+
+	private static List<String> readReaders(BufferedSyncTarget target, String unid) throws SQLException {
+		return query(target, "SELECT __reader FROM docreaders WHERE __unid=? ORDER BY __reader", unid);
+	}
+
+	private static List<String> readSyncHistoryCounts(BufferedSyncTarget target, String dbInstanceId) throws SQLException {
+		return query(target, "SELECT added, changed, removed FROM synchistory WHERE dbinstanceid=?", dbInstanceId);
+	}
+}
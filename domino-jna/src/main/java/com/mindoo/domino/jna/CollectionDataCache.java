@@ -1,22 +1,28 @@
 package com.mindoo.domino.jna;
 
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback;
 import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
 import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
 
 /**
  * LRU cache class to be returned in {@link ViewLookupCallback#createDataCache()} in order to let NIF
  * improve lookup performance by skipping already known collection data.<br>
  * <br>
+ * The cache is thread-safe and designed to be shared between threads reading the same view:
+ * the entries are distributed across a number of segments with their own locks, so that concurrent
+ * lookups only block each other when they access the same segment. The cache size can be limited
+ * by number of entries and by the estimated heap size of the cached data.<br>
+ * <br>
  * Please note that according to IBM dev, this optimized view reading (differential view reads) does
  * only work in views that are not permuted (where documents do not appear multiple times, because
  * "Show multiple values as separate entries" has been set on any view column).
@@ -24,47 +30,84 @@ import com.mindoo.domino.jna.constants.ReadMask;
  * @author Karsten Lehmann
  */
 public class CollectionDataCache implements Serializable {
-	private static final long serialVersionUID = 522152090817358117L;
-	
+	private static final long serialVersionUID = 522152090817358118L;
+
+	private static final int DEFAULT_SEGMENT_COUNT = 16;
+
 	private int m_maxSize;
-	private Map<Integer,CacheableViewEntryData> m_cacheEntries;
+	private long m_maxSizeInBytes;
+	private Segment[] m_segments;
+	private int m_segmentShift;
+
+	/** lock to serialize cache writes, flushes and state snapshots; entry lookups only use the segment locks */
+	private final ReentrantLock m_writeLock = new ReentrantLock();
 	private NotesTimeDate m_diffTime;
-	private ReentrantReadWriteLock m_rwLock = new ReentrantReadWriteLock();
 	private EnumSet<ReadMask> m_readMask;
+
+	private final LongAdder m_hits = new LongAdder();
+	private final LongAdder m_misses = new LongAdder();
+	private final LongAdder m_evictions = new LongAdder();
+	private final LongAdder m_flushes = new LongAdder();
+
 	private static ThreadLocal<Long> m_cacheUseCounter = new ThreadLocal<Long>();
-	
+
 	/**
 	 * Creates a new instance of an unbounded cache
 	 */
 	public CollectionDataCache() {
 		this(Integer.MAX_VALUE);
 	}
-	
+
 	/**
 	 * Creates a new instance
 	 * 
 	 * @param maxSize maximum number of entries in the LRU cache
 	 */
 	public CollectionDataCache(final int maxSize) {
+		this(maxSize, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param maxSize maximum number of entries in the LRU cache
+	 * @param maxSizeInBytes maximum estimated heap size of the cached entry data in bytes
+	 */
+	public CollectionDataCache(final int maxSize, long maxSizeInBytes) {
 		if (maxSize <= 0)
 			throw new IllegalArgumentException("Max size must be greater than 0: "+maxSize);
-		
+		if (maxSizeInBytes <= 0)
+			throw new IllegalArgumentException("Max size in bytes must be greater than 0: "+maxSizeInBytes);
+
 		m_maxSize = maxSize;
-		
-		//set up LRU cache map
-		m_cacheEntries = Collections.synchronizedMap(new LinkedHashMap<Integer, CacheableViewEntryData>(16, 0.75f, true) {
-			@Override
-			protected boolean removeEldestEntry(java.util.Map.Entry<Integer, CacheableViewEntryData> eldest) {
-				if (size() > maxSize) {
-					return true;
-				}
-				else {
-					return false;
-				}
-			}
-		});
+		m_maxSizeInBytes = maxSizeInBytes;
+
+		//use less segments for small caches, so that the per segment limits stay meaningful
+		int segmentCount = DEFAULT_SEGMENT_COUNT;
+		while (segmentCount > 1 && maxSize / segmentCount < 16) {
+			segmentCount >>= 1;
+		}
+
+		m_segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+		m_segments = new Segment[segmentCount];
+
+		int maxSegmentSize = (int) Math.max(1, ((long) maxSize + segmentCount - 1) / segmentCount);
+		long maxSegmentSizeInBytes = maxSizeInBytes==Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, maxSizeInBytes / segmentCount);
+
+		for (int i=0; i<segmentCount; i++) {
+			m_segments[i] = new Segment(maxSegmentSize, maxSegmentSizeInBytes);
+		}
+	}
+
+	private Segment getSegment(int noteId) {
+		if (m_segments.length==1) {
+			return m_segments[0];
+		}
+		//note ids are multiples of 4, so spread the bits before picking the segment
+		int hash = noteId * 0x9E3779B9;
+		return m_segments[hash >>> m_segmentShift];
 	}
-	
+
 	/**
 	 * Returns the maximum number of entries in the cache
 	 * 
@@ -73,22 +116,84 @@ public class CollectionDataCache implements Serializable {
 	public int getMaxCacheSize() {
 		return m_maxSize;
 	}
-	
+
+	/**
+	 * Returns the maximum estimated heap size of the cached data
+	 * 
+	 * @return size in bytes or {@link Long#MAX_VALUE} if unbounded
+	 */
+	public long getMaxCacheSizeInBytes() {
+		return m_maxSizeInBytes;
+	}
+
 	/**
 	 * Returns the current number of entries in the cache
 	 * 
 	 * @return size
 	 */
 	public int size() {
-		m_rwLock.readLock().lock();
-		try {
-			return m_cacheEntries.size();
+		int size = 0;
+		for (Segment currSegment : m_segments) {
+			synchronized (currSegment) {
+				size += currSegment.m_entries.size();
+			}
 		}
-		finally {
-			m_rwLock.readLock().unlock();
+		return size;
+	}
+
+	/**
+	 * Returns the estimated heap size of the cached data
+	 * 
+	 * @return size in bytes
+	 */
+	public long sizeInBytes() {
+		long size = 0;
+		for (Segment currSegment : m_segments) {
+			synchronized (currSegment) {
+				size += currSegment.m_sizeInBytes;
+			}
 		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of view entries where NIF skipped reading the data and we
+	 * could fill in the data from the cache. The counter is shared between all threads using the cache.
+	 * 
+	 * @return hits
+	 */
+	public long getHitCount() {
+		return m_hits.sum();
+	}
+
+	/**
+	 * Returns the number of view entries where NIF skipped reading the data, but the cache
+	 * no longer contained it (e.g. because it has been evicted in the meantime)
+	 * 
+	 * @return misses
+	 */
+	public long getMissCount() {
+		return m_misses.sum();
+	}
+
+	/**
+	 * Returns the number of cache entries removed because the cache size limits were exceeded
+	 * 
+	 * @return evictions
+	 */
+	public long getEvictionCount() {
+		return m_evictions.sum();
 	}
-	
+
+	/**
+	 * Returns how often the cache has been flushed because of view index changes or different read masks
+	 * 
+	 * @return flushes
+	 */
+	public long getFlushCount() {
+		return m_flushes.sum();
+	}
+
 	/**
 	 * Enables taking cache usage stats for the current thread
 	 */
@@ -105,7 +210,7 @@ public class CollectionDataCache implements Serializable {
 	public void disableUsageStats() {
 		m_cacheUseCounter.set(null);
 	}
-	
+
 	/**
 	 * Method to check whether taking cache usage stats for the
 	 * current thread is enabled
@@ -115,9 +220,10 @@ public class CollectionDataCache implements Serializable {
 	public boolean isUsageStatsEnabled() {
 		return m_cacheUseCounter.get() != null;
 	}
-	
+
 	/**
 	 * Returns a statistic value with the number of view entries where we could use the cache data
+	 * in the current thread. See {@link #getHitCount()} for the number across all threads.
 	 * 
 	 * @return count or -1 if logging stats are not enabled
 	 */
@@ -128,7 +234,7 @@ public class CollectionDataCache implements Serializable {
 		}
 		return -1;
 	}
-	
+
 	/**
 	 * Sets the cache usage stats to 0
 	 */
@@ -138,22 +244,31 @@ public class CollectionDataCache implements Serializable {
 			m_cacheUseCounter.set(Long.valueOf(0));
 		}
 	}
-	
+
 	/**
 	 * Removes all data from the cache
 	 */
 	public void flush() {
-		m_rwLock.writeLock().lock();
+		m_writeLock.lock();
 		try {
 			m_diffTime = null;
 			m_readMask = null;
-			m_cacheEntries.clear();
+			clearSegments();
 		}
 		finally {
-			m_rwLock.writeLock().unlock();
+			m_writeLock.unlock();
+		}
+	}
+
+	private void clearSegments() {
+		for (Segment currSegment : m_segments) {
+			synchronized (currSegment) {
+				currSegment.m_entries.clear();
+				currSegment.m_sizeInBytes = 0;
+			}
 		}
 	}
-	
+
 	/**
 	 * Method to fill the cache with data read from the collection
 	 * 
@@ -161,10 +276,10 @@ public class CollectionDataCache implements Serializable {
 	 * @param entries collection entries read
 	 */
 	void addCacheValues(EnumSet<ReadMask> readMask, NotesTimeDate diffTime, List<NotesViewEntryData> entries) {
-		m_rwLock.writeLock().lock();
+		m_writeLock.lock();
 		try {
 			boolean flush = false;
-			
+
 			if (m_diffTime!=null && !m_diffTime.equals(diffTime)) {
 				flush = true;
 			}
@@ -172,25 +287,27 @@ public class CollectionDataCache implements Serializable {
 				flush = true;
 			}
 			if (flush) {
-				m_cacheEntries.clear();
+				clearSegments();
+				m_flushes.increment();
 				cacheFlushed();
 			}
-			
+
 			m_readMask = readMask;
 			m_diffTime = diffTime;
-			
+
 			for (NotesViewEntryData currEntry : entries) {
 				if (currEntry.hasAnyColumnValues()) {
 					CacheableViewEntryData cacheableData = currEntry.getCacheableData();
-					m_cacheEntries.put(currEntry.getNoteId(), cacheableData);
+					int noteId = currEntry.getNoteId();
+					getSegment(noteId).put(noteId, cacheableData);
 				}
 			}
 		}
 		finally {
-			m_rwLock.writeLock().unlock();
+			m_writeLock.unlock();
 		}
 	}
-	
+
 	/**
 	 * Called when the cache needed to be flushed because of view index changes.
 	 * Method is empty by default, can be overriden, e.g. to write a log entry.
@@ -198,7 +315,7 @@ public class CollectionDataCache implements Serializable {
 	protected void cacheFlushed() {
 		//
 	}
-	
+
 	/**
 	 * For every {@link NotesViewEntryData} in the specified list, this method checks whether
 	 * NIF returned any column data. If not, the entry was skipped by NIF, because it already exists
@@ -207,59 +324,121 @@ public class CollectionDataCache implements Serializable {
 	 * @param entries entries to scan
 	 */
 	void populateEntryStubsWithData(List<NotesViewEntryData> entries) {
-		boolean hasAnyMissingData = false;
-		for (NotesViewEntryData currEntry : entries) {
-			if (!currEntry.hasAnyColumnValues()) {
-				hasAnyMissingData = true;
-				break;
-			}
-		}
-		
 		Long usageStats = m_cacheUseCounter.get();
 		long usageStatsPrim = usageStats==null ? -1 : usageStats.longValue();
-		
-		if (hasAnyMissingData) {
-			m_rwLock.readLock().lock();
-			try {
-				for (NotesViewEntryData currEntry : entries) {
-					if (!currEntry.hasAnyColumnValues()) {
-						CacheableViewEntryData cacheData = m_cacheEntries.get(currEntry.getNoteId());
-						if (cacheData!=null) {
-							//updating data of stub entry from cache
-							currEntry.updateFromCache(cacheData);
-							
-							if (usageStatsPrim!=-1) {
-								usageStatsPrim++;
-							}
-						}
-					}
+
+		int hits = 0;
+		int misses = 0;
+
+		for (NotesViewEntryData currEntry : entries) {
+			if (!currEntry.hasAnyColumnValues()) {
+				int noteId = currEntry.getNoteId();
+				CacheableViewEntryData cacheData = getSegment(noteId).get(noteId);
+				if (cacheData!=null) {
+					//updating data of stub entry from cache
+					currEntry.updateFromCache(cacheData);
+					hits++;
 				}
-				
-				if (usageStatsPrim!=-1) {
-					m_cacheUseCounter.set(usageStatsPrim);
+				else {
+					misses++;
 				}
 			}
-			finally {
-				m_rwLock.readLock().unlock();
-			}
+		}
+
+		if (hits>0) {
+			m_hits.add(hits);
+		}
+		if (misses>0) {
+			m_misses.add(misses);
+		}
+
+		if (usageStatsPrim!=-1 && hits>0) {
+			m_cacheUseCounter.set(usageStatsPrim + hits);
 		}
 	}
-	
+
 	/**
 	 * Copies the current state of the cache
 	 * 
 	 * @return state
 	 */
 	CacheState getCacheState() {
-		m_rwLock.readLock().lock();
+		//hold the write lock so that diff time, read mask and note ids belong to the same cache content
+		m_writeLock.lock();
 		try {
-			return new CacheState(m_readMask, m_diffTime, new HashMap<Integer, NotesViewEntryData.CacheableViewEntryData>(m_cacheEntries));
+			NoteIdBitmap noteIds = new NoteIdBitmap();
+			for (Segment currSegment : m_segments) {
+				synchronized (currSegment) {
+					for (Integer currNoteId : currSegment.m_entries.keySet()) {
+						noteIds.add(currNoteId.intValue());
+					}
+				}
+			}
+			return new CacheState(m_readMask, m_diffTime, noteIds);
 		}
 		finally {
-			m_rwLock.readLock().unlock();
+			m_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Part of the cache with its own lock and LRU order
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private class Segment implements Serializable {
+		private static final long serialVersionUID = -3010869839436418040L;
+
+		private final int m_maxSegmentSize;
+		private final long m_maxSegmentSizeInBytes;
+		private final LinkedHashMap<Integer,CachedEntry> m_entries;
+		private long m_sizeInBytes;
+
+		private Segment(int maxSegmentSize, long maxSegmentSizeInBytes) {
+			m_maxSegmentSize = maxSegmentSize;
+			m_maxSegmentSizeInBytes = maxSegmentSizeInBytes;
+			m_entries = new LinkedHashMap<Integer,CachedEntry>(16, 0.75f, true);
+		}
+
+		public synchronized CacheableViewEntryData get(int noteId) {
+			CachedEntry entry = m_entries.get(noteId);
+			return entry==null ? null : entry.m_data;
+		}
+
+		public synchronized void put(int noteId, CacheableViewEntryData data) {
+			CachedEntry newEntry = new CachedEntry(data);
+			CachedEntry oldEntry = m_entries.put(noteId, newEntry);
+			if (oldEntry!=null) {
+				m_sizeInBytes -= oldEntry.m_size;
+			}
+			m_sizeInBytes += newEntry.m_size;
+
+			//evict least recently used entries, but keep the one we just added
+			Iterator<Entry<Integer,CachedEntry>> entriesIt = m_entries.entrySet().iterator();
+			while (m_entries.size()>1 && (m_entries.size() > m_maxSegmentSize || m_sizeInBytes > m_maxSegmentSizeInBytes)) {
+				Entry<Integer,CachedEntry> eldest = entriesIt.next();
+				m_sizeInBytes -= eldest.getValue().m_size;
+				entriesIt.remove();
+				m_evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Cache entry with its estimated size
+	 */
+	private static class CachedEntry implements Serializable {
+		private static final long serialVersionUID = 4426226312436185331L;
+
+		private final CacheableViewEntryData m_data;
+		private final int m_size;
+
+		private CachedEntry(CacheableViewEntryData data) {
+			m_data = data;
+			m_size = data.getEstimatedSize();
 		}
 	}
-	
+
 	/**
 	 * Data object with cache state values
 	 * 
@@ -267,27 +446,32 @@ public class CollectionDataCache implements Serializable {
 	 */
 	static class CacheState {
 		private NotesTimeDate m_diffTime;
-		private Map<Integer,CacheableViewEntryData> m_cacheEntries;
+		private NoteIdBitmap m_noteIds;
 		private EnumSet<ReadMask> m_readMask;
-		
-		private CacheState(EnumSet<ReadMask> readMask, NotesTimeDate diffTime, Map<Integer,CacheableViewEntryData> cacheEntries) {
+
+		private CacheState(EnumSet<ReadMask> readMask, NotesTimeDate diffTime, NoteIdBitmap noteIds) {
 			m_readMask = readMask;
 			m_diffTime = diffTime;
-			m_cacheEntries = cacheEntries;
+			m_noteIds = noteIds;
 		}
-		
+
 		public EnumSet<ReadMask> getReadMask() {
 			return m_readMask;
 		}
-		
+
 		public NotesTimeDate getDiffTime() {
 			return m_diffTime;
 		}
-		
-		public Map<Integer,CacheableViewEntryData> getCacheEntries() {
-			return m_cacheEntries;
+
+		/**
+		 * Returns the note ids of all cached entries
+		 * 
+		 * @return note ids
+		 */
+		public NoteIdBitmap getNoteIds() {
+			return m_noteIds;
 		}
 	}
-	
+
 
 }
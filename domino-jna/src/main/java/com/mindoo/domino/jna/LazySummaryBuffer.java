@@ -0,0 +1,515 @@
+package com.mindoo.domino.jna;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.mindoo.domino.jna.NotesSearch.ISummaryBufferAccess;
+import com.mindoo.domino.jna.NotesSearch.LazySummarySearchCallback;
+import com.mindoo.domino.jna.internal.ItemDecoder;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Lazy view on the summary buffer of a note found by NSFSearch that reads item values
+ * directly from the native ITEM_TABLE (or ITEM_VALUE_TABLE when column formulas are used)
+ * instead of decoding all items into Java objects.<br>
+ * <br>
+ * The item names of interest are declared upfront in the {@link LazySummarySearchCallback}
+ * and get a slot index. On the first access to a note, the item headers are scanned once
+ * and the positions of the slot items are stored, comparing item names as LMBCS bytes.
+ * Numbers and timedates can then be read without allocating objects.<br>
+ * <br>
+ * The same instance is reused for all notes of a search. It is only valid while the
+ * callback method is running, because NSFSearch reuses the native buffer;
+ * accessing it afterwards throws an {@link IllegalStateException}.
+ *
+ * @author Karsten Lehmann
+ */
+public class LazySummaryBuffer implements ISummaryBufferAccess {
+	private static final int SIZE_RANGE = 4;
+
+	private final String[] m_slotNames;
+	private final byte[][] m_slotNamesLMBCS;
+	/** column item names if the buffer contains an ITEM_VALUE_TABLE, null for ITEM_TABLE */
+	private final String[] m_columnItemNames;
+	/** for ITEM_VALUE_TABLE: column index of each slot */
+	private final int[] m_slotColumnIndexes;
+
+	private final int[] m_slotValueOffsets;
+	private final int[] m_slotValueLengths;
+
+	private Pointer m_ptr;
+	private ByteBuffer m_buf;
+	private boolean m_valid;
+	private boolean m_slotsResolved;
+	private byte[] m_textBuf;
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param slotNames item names to precompute slots for
+	 * @param columnItemNames programmatic column names if the search uses {@link com.mindoo.domino.jna.constants.Search#NOITEMNAMES} (buffer is an ITEM_VALUE_TABLE) or null
+	 */
+	LazySummaryBuffer(String[] slotNames, String[] columnItemNames) {
+		m_slotNames = slotNames.clone();
+		m_slotNamesLMBCS = new byte[slotNames.length][];
+		for (int i=0; i<slotNames.length; i++) {
+			Memory nameMem = NotesStringUtils.toLMBCS(slotNames[i], false);
+			m_slotNamesLMBCS[i] = nameMem==null ? new byte[0] : nameMem.getByteArray(0, (int) nameMem.size());
+		}
+
+		m_columnItemNames = columnItemNames;
+		if (columnItemNames!=null) {
+			m_slotColumnIndexes = new int[slotNames.length];
+			for (int i=0; i<slotNames.length; i++) {
+				m_slotColumnIndexes[i] = -1;
+				for (int j=0; j<columnItemNames.length; j++) {
+					if (columnItemNames[j].equalsIgnoreCase(slotNames[i])) {
+						m_slotColumnIndexes[i] = j;
+						break;
+					}
+				}
+			}
+		}
+		else {
+			m_slotColumnIndexes = null;
+		}
+
+		m_slotValueOffsets = new int[slotNames.length];
+		m_slotValueLengths = new int[slotNames.length];
+		m_textBuf = new byte[256];
+	}
+
+	/**
+	 * Points this view to the summary buffer of the next note
+	 *
+	 * @param summaryBufferPtr summary buffer or null
+	 */
+	void reset(Pointer summaryBufferPtr) {
+		if (summaryBufferPtr==null || Pointer.nativeValue(summaryBufferPtr)==0) {
+			m_ptr = null;
+			m_buf = null;
+		}
+		else {
+			int totalLength = summaryBufferPtr.getShort(0) & 0xffff;
+			m_ptr = summaryBufferPtr;
+			m_buf = summaryBufferPtr.getByteBuffer(0, totalLength).order(ByteOrder.nativeOrder());
+		}
+		m_valid = true;
+		m_slotsResolved = false;
+	}
+
+	/**
+	 * Marks this view as invalid after the callback returned
+	 */
+	void invalidate() {
+		m_valid = false;
+		m_ptr = null;
+		m_buf = null;
+	}
+
+	private void checkValid() {
+		if (!m_valid) {
+			throw new IllegalStateException("Summary buffer can only be accessed during the search callback");
+		}
+	}
+
+	/**
+	 * Returns the slot index of an item name declared in the {@link LazySummarySearchCallback}.
+	 * Call this method once before the search and keep the index.
+	 *
+	 * @param itemName item name, case insensitive
+	 * @return slot index or -1 if the item has not been declared
+	 */
+	public int getSlot(String itemName) {
+		for (int i=0; i<m_slotNames.length; i++) {
+			if (m_slotNames[i].equalsIgnoreCase(itemName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Scans the item headers and stores the value position for each slot
+	 */
+	private void resolveSlots() {
+		if (m_slotsResolved) {
+			return;
+		}
+		for (int i=0; i<m_slotValueOffsets.length; i++) {
+			m_slotValueOffsets[i] = -1;
+			m_slotValueLengths[i] = 0;
+		}
+		m_slotsResolved = true;
+
+		if (m_buf==null) {
+			return;
+		}
+
+		int itemsCount = m_buf.getShort(2) & 0xffff;
+
+		if (m_columnItemNames!=null) {
+			//ITEM_VALUE_TABLE: header, WORD value length per item, values
+			int valuePos = 4 + 2*itemsCount;
+			int[] valueOffsets = new int[Math.min(itemsCount, m_columnItemNames.length)];
+			int[] valueLengths = new int[valueOffsets.length];
+			for (int j=0; j<itemsCount; j++) {
+				int valueLength = m_buf.getShort(4 + 2*j) & 0xffff;
+				if (j<valueOffsets.length) {
+					valueOffsets[j] = valuePos;
+					valueLengths[j] = valueLength;
+				}
+				valuePos += valueLength;
+			}
+			for (int i=0; i<m_slotColumnIndexes.length; i++) {
+				int colIdx = m_slotColumnIndexes[i];
+				if (colIdx!=-1 && colIdx<valueOffsets.length && valueLengths[colIdx]>=2) {
+					m_slotValueOffsets[i] = valueOffsets[colIdx];
+					m_slotValueLengths[i] = valueLengths[colIdx];
+				}
+			}
+		}
+		else {
+			//ITEM_TABLE: header, ITEM (WORD name length, WORD value length) per item, then name/value pairs
+			int dataPos = 4 + 4*itemsCount;
+			for (int j=0; j<itemsCount; j++) {
+				int nameLength = m_buf.getShort(4 + 4*j) & 0xffff;
+				int valueLength = m_buf.getShort(4 + 4*j + 2) & 0xffff;
+
+				for (int i=0; i<m_slotNamesLMBCS.length; i++) {
+					if (m_slotValueOffsets[i]==-1 && valueLength>=2 && nameEquals(dataPos, nameLength, m_slotNamesLMBCS[i])) {
+						m_slotValueOffsets[i] = dataPos + nameLength;
+						m_slotValueLengths[i] = valueLength;
+					}
+				}
+				dataPos += nameLength + valueLength;
+			}
+		}
+	}
+
+	/**
+	 * Compares an item name in the buffer with LMBCS bytes, ignoring the case of ASCII characters
+	 *
+	 * @param namePos position of the name in the buffer
+	 * @param nameLength length of the name in the buffer
+	 * @param name name to compare with
+	 * @return true if equal
+	 */
+	private boolean nameEquals(int namePos, int nameLength, byte[] name) {
+		if (nameLength!=name.length) {
+			return false;
+		}
+		for (int i=0; i<nameLength; i++) {
+			int b1 = m_buf.get(namePos + i);
+			int b2 = name[i];
+			if (b1!=b2) {
+				if (b1>='a' && b1<='z') {
+					b1 -= 32;
+				}
+				if (b2>='a' && b2<='z') {
+					b2 -= 32;
+				}
+				if (b1!=b2) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the item of a slot exists in the summary buffer of the current note
+	 *
+	 * @param slot slot index
+	 * @return true if item exists
+	 */
+	public boolean hasItem(int slot) {
+		checkValid();
+		resolveSlots();
+		return m_slotValueOffsets[slot]!=-1;
+	}
+
+	/**
+	 * Returns the data type of the item of a slot, e.g. {@link NotesItem#TYPE_TEXT}
+	 *
+	 * @param slot slot index
+	 * @return data type or 0 if the item does not exist
+	 */
+	public int getItemType(int slot) {
+		checkValid();
+		resolveSlots();
+		int offset = m_slotValueOffsets[slot];
+		return offset==-1 ? 0 : m_buf.getShort(offset) & 0xffff;
+	}
+
+	/**
+	 * Reads a number value of a slot. For number lists, the first value is returned.
+	 *
+	 * @param slot slot index
+	 * @param defaultValue default value if the item does not exist or is not a number
+	 * @return number
+	 */
+	public double getDouble(int slot, double defaultValue) {
+		int type = getItemType(slot);
+		int dataOffset = m_slotValueOffsets[slot] + 2;
+		if (type==NotesItem.TYPE_NUMBER) {
+			return m_buf.getDouble(dataOffset);
+		}
+		else if (type==NotesItem.TYPE_NUMBER_RANGE) {
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listEntries>0) {
+				return m_buf.getDouble(dataOffset + SIZE_RANGE);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads the innards of a timedate value of a slot. For timedate lists, the first value is returned.
+	 *
+	 * @param slot slot index
+	 * @param retInnards array with at least two elements to receive the innards
+	 * @return true if the item contains a timedate value
+	 */
+	public boolean getTimeDateInnards(int slot, int[] retInnards) {
+		int type = getItemType(slot);
+		int innardsOffset = m_slotValueOffsets[slot] + 2;
+		if (type==NotesItem.TYPE_TIME_RANGE) {
+			int listEntries = m_buf.getShort(innardsOffset) & 0xffff;
+			if (listEntries==0) {
+				return false;
+			}
+			innardsOffset += SIZE_RANGE;
+		}
+		else if (type!=NotesItem.TYPE_TIME) {
+			return false;
+		}
+		retInnards[0] = m_buf.getInt(innardsOffset);
+		retInnards[1] = m_buf.getInt(innardsOffset + 4);
+		return true;
+	}
+
+	/**
+	 * Reads a text value of a slot. For text lists, the first value is returned.
+	 *
+	 * @param slot slot index
+	 * @param defaultValue default value if the item does not exist or is not a text
+	 * @return text
+	 */
+	public String getString(int slot, String defaultValue) {
+		int type = getItemType(slot);
+		int dataOffset = m_slotValueOffsets[slot] + 2;
+		int dataLength = m_slotValueLengths[slot] - 2;
+		if (type==NotesItem.TYPE_TEXT) {
+			return readLMBCS(dataOffset, dataLength);
+		}
+		else if (type==NotesItem.TYPE_TEXT_LIST) {
+			if (dataLength==0) {
+				return defaultValue;
+			}
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listEntries>0) {
+				int textLength = m_buf.getShort(dataOffset + 2) & 0xffff;
+				return readLMBCS(dataOffset + 2 + 2*listEntries, textLength);
+			}
+		}
+		return defaultValue;
+	}
+
+	private String readLMBCS(int offset, int length) {
+		if (length==0) {
+			return "";
+		}
+		if (m_textBuf.length < length) {
+			m_textBuf = new byte[length];
+		}
+		m_buf.position(offset);
+		m_buf.get(m_textBuf, 0, length);
+		return NotesStringUtils.fromLMBCS(m_textBuf, 0, length);
+	}
+
+	/**
+	 * Decodes the value of a slot into the same object types as {@link IItemTableData#get(String)}
+	 *
+	 * @param slot slot index
+	 * @return value or null if the item does not exist or has an unsupported data type
+	 */
+	public Object getItemValue(int slot) {
+		int type = getItemType(slot);
+		if (type==0) {
+			return null;
+		}
+		return decodeValue(type, m_slotValueOffsets[slot] + 2, m_slotValueLengths[slot] - 2);
+	}
+
+	private Object decodeValue(int type, int dataOffset, int dataLength) {
+		Pointer dataPtr = m_ptr.share(dataOffset);
+
+		if (type==NotesItem.TYPE_TEXT) {
+			return ItemDecoder.decodeTextValue(dataPtr, dataLength, false);
+		}
+		else if (type==NotesItem.TYPE_TEXT_LIST) {
+			return dataLength==0 ? Collections.emptyList() : ItemDecoder.decodeTextListValue(dataPtr, false);
+		}
+		else if (type==NotesItem.TYPE_NUMBER) {
+			return ItemDecoder.decodeNumber(dataPtr, dataLength);
+		}
+		else if (type==NotesItem.TYPE_TIME) {
+			return ItemDecoder.decodeTimeDateAsNotesTimeDate(dataPtr, dataLength);
+		}
+		else if (type==NotesItem.TYPE_NUMBER_RANGE) {
+			return ItemDecoder.decodeNumberList(dataPtr, dataLength);
+		}
+		else if (type==NotesItem.TYPE_TIME_RANGE) {
+			return ItemDecoder.decodeTimeDateListAsNotesTimeDate(dataPtr);
+		}
+		return null;
+	}
+
+	/**
+	 * Finds an item by name that has not been declared as slot
+	 *
+	 * @param itemName item name
+	 * @param retOffsetAndLength array to receive value offset and length
+	 * @return true if found
+	 */
+	private boolean findItem(String itemName, int[] retOffsetAndLength) {
+		int slot = getSlot(itemName);
+		if (slot!=-1) {
+			resolveSlots();
+			if (m_slotValueOffsets[slot]==-1) {
+				return false;
+			}
+			retOffsetAndLength[0] = m_slotValueOffsets[slot];
+			retOffsetAndLength[1] = m_slotValueLengths[slot];
+			return true;
+		}
+
+		if (m_buf==null) {
+			return false;
+		}
+		int itemsCount = m_buf.getShort(2) & 0xffff;
+
+		if (m_columnItemNames!=null) {
+			int valuePos = 4 + 2*itemsCount;
+			for (int j=0; j<itemsCount; j++) {
+				int valueLength = m_buf.getShort(4 + 2*j) & 0xffff;
+				if (j<m_columnItemNames.length && m_columnItemNames[j].equalsIgnoreCase(itemName)) {
+					retOffsetAndLength[0] = valuePos;
+					retOffsetAndLength[1] = valueLength;
+					return valueLength>=2;
+				}
+				valuePos += valueLength;
+			}
+		}
+		else {
+			Memory nameMem = NotesStringUtils.toLMBCS(itemName, false);
+			byte[] nameLMBCS = nameMem==null ? new byte[0] : nameMem.getByteArray(0, (int) nameMem.size());
+
+			int dataPos = 4 + 4*itemsCount;
+			for (int j=0; j<itemsCount; j++) {
+				int nameLength = m_buf.getShort(4 + 4*j) & 0xffff;
+				int valueLength = m_buf.getShort(4 + 4*j + 2) & 0xffff;
+				if (valueLength>=2 && nameEquals(dataPos, nameLength, nameLMBCS)) {
+					retOffsetAndLength[0] = dataPos + nameLength;
+					retOffsetAndLength[1] = valueLength;
+					return true;
+				}
+				dataPos += nameLength + valueLength;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<String> getItemNames() {
+		checkValid();
+		List<String> names = new ArrayList<String>();
+		if (m_buf!=null) {
+			int itemsCount = m_buf.getShort(2) & 0xffff;
+			if (m_columnItemNames!=null) {
+				for (int j=0; j<itemsCount && j<m_columnItemNames.length; j++) {
+					names.add(m_columnItemNames[j]);
+				}
+			}
+			else {
+				int dataPos = 4 + 4*itemsCount;
+				for (int j=0; j<itemsCount; j++) {
+					int nameLength = m_buf.getShort(4 + 4*j) & 0xffff;
+					int valueLength = m_buf.getShort(4 + 4*j + 2) & 0xffff;
+					names.add(readLMBCS(dataPos, nameLength));
+					dataPos += nameLength + valueLength;
+				}
+			}
+		}
+		return names.iterator();
+	}
+
+	@Override
+	public Object getItemValue(String itemName) {
+		checkValid();
+		int[] offsetAndLength = new int[2];
+		if (!findItem(itemName, offsetAndLength)) {
+			return null;
+		}
+		int type = m_buf.getShort(offsetAndLength[0]) & 0xffff;
+		return decodeValue(type, offsetAndLength[0] + 2, offsetAndLength[1] - 2);
+	}
+
+	@Override
+	public int getItemType(String itemName) {
+		checkValid();
+		int[] offsetAndLength = new int[2];
+		if (!findItem(itemName, offsetAndLength)) {
+			return 0;
+		}
+		return m_buf.getShort(offsetAndLength[0]) & 0xffff;
+	}
+
+	@Override
+	public boolean hasItem(String itemName) {
+		checkValid();
+		return findItem(itemName, new int[2]);
+	}
+
+	/**
+	 * Decodes all items of the buffer. The returned object is only valid
+	 * during the search callback as well.
+	 *
+	 * @return item table data or null if the note has no summary buffer
+	 */
+	@Override
+	public IItemTableData decodeWholeBuffer() {
+		checkValid();
+		if (m_ptr==null) {
+			return null;
+		}
+		if (m_columnItemNames!=null) {
+			return NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(m_columnItemNames, m_ptr, false, false, true);
+		}
+		else {
+			return NotesLookupResultBufferDecoder.decodeItemTable(m_ptr, false, false, true);
+		}
+	}
+
+	/**
+	 * The summary buffer is owned by NSFSearch, so this method just prevents
+	 * further access to it
+	 */
+	@Override
+	public void free() {
+		invalidate();
+	}
+
+	@Override
+	public boolean isFreed() {
+		return !m_valid;
+	}
+}
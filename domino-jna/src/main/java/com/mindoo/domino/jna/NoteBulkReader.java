@@ -0,0 +1,190 @@
+package com.mindoo.domino.jna;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+import com.mindoo.domino.jna.NotesDatabase.INoteOpenCallback;
+import com.mindoo.domino.jna.constants.GetNotes;
+import com.mindoo.domino.jna.constants.OpenNote;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
+
+/**
+ * Utility class that takes a stream of note ids and opens the notes in batches
+ * via NSFDbGetNotes ({@link NotesDatabase#getNotes(int[], EnumSet[], int[], EnumSet, NotesDatabase, NotesDatabase.IGetNotesCallback, INoteOpenCallback, NotesDatabase.IObjectAllocCallback, NotesDatabase.IObjectWriteCallback, NotesTimeDate, NotesDatabase.IFolderAddCallback)}).<br>
+ * <br>
+ * Compared to calling {@link NotesDatabase#openNoteById(int, EnumSet)} for each note,
+ * this reduces the number of server roundtrips to one per batch, which is much
+ * faster when working with remote databases.<br>
+ * <br>
+ * The opened notes are passed to a {@link INoteConsumer} one by one and are
+ * released automatically when the consumer returns, so at most one batch
+ * of notes is in transit at a time.
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteBulkReader {
+	private NotesDatabase m_db;
+	private int m_batchSize;
+	private PrimitiveIterator.OfInt m_noteIdIt;
+	private EnumSet<OpenNote> m_openFlags;
+	private EnumSet<GetNotes> m_controlFlags;
+	private int m_sinceSeqNum;
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param db database
+	 * @param batchSize number of note ids to collect before calling NSFDbGetNotes, e.g. 100
+	 * @param noteIdIt iterator of note ids to open
+	 * @param openFlags open flags for the notes or null for default flags
+	 */
+	public NoteBulkReader(NotesDatabase db, int batchSize, final Iterator<Integer> noteIdIt, EnumSet<OpenNote> openFlags) {
+		this(db, batchSize, new PrimitiveIterator.OfInt() {
+
+			@Override
+			public boolean hasNext() {
+				return noteIdIt.hasNext();
+			}
+
+			@Override
+			public int nextInt() {
+				return noteIdIt.next().intValue();
+			}
+		}, openFlags, EnumSet.of(GetNotes.CONTINUE_ON_ERROR), 0);
+	}
+
+	/**
+	 * Creates a new instance. The content of the ID table is read into a {@link NoteIdBitmap}
+	 * with a single enumeration, so the ID table can be modified or recycled afterwards.
+	 *
+	 * @param db database
+	 * @param batchSize number of note ids to collect before calling NSFDbGetNotes, e.g. 100
+	 * @param idTable ID table with note ids to open
+	 * @param openFlags open flags for the notes or null for default flags
+	 */
+	public NoteBulkReader(NotesDatabase db, int batchSize, NotesIDTable idTable, EnumSet<OpenNote> openFlags) {
+		this(db, batchSize, idTable.toBitmap().iterator(), openFlags, EnumSet.of(GetNotes.CONTINUE_ON_ERROR), 0);
+	}
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param db database
+	 * @param batchSize number of note ids to collect before calling NSFDbGetNotes, e.g. 100
+	 * @param noteIdIt iterator of note ids to open
+	 * @param openFlags open flags for the notes or null for default flags
+	 * @param controlFlags control flags for NSFDbGetNotes, e.g. {@link GetNotes#CONTINUE_ON_ERROR} to report errors for single notes to {@link INoteConsumer#noteOpenFailed(int, NotesError)} instead of failing the whole batch
+	 * @param sinceSeqNum items with a sequence number lower or equal this value are not transferred (have the type {@link NotesItem#TYPE_UNAVAILABLE}), use 0 to read all items
+	 */
+	public NoteBulkReader(NotesDatabase db, int batchSize, PrimitiveIterator.OfInt noteIdIt, EnumSet<OpenNote> openFlags,
+			EnumSet<GetNotes> controlFlags, int sinceSeqNum) {
+		if (batchSize<1) {
+			throw new IllegalArgumentException("Batch size must be greater than 0: "+batchSize);
+		}
+		m_db = db;
+		m_batchSize = batchSize;
+		m_noteIdIt = noteIdIt;
+		m_openFlags = openFlags==null ? EnumSet.noneOf(OpenNote.class) : openFlags;
+		m_controlFlags = controlFlags==null ? EnumSet.noneOf(GetNotes.class) : controlFlags;
+		m_sinceSeqNum = sinceSeqNum;
+	}
+
+	/**
+	 * Callback interface to process the opened notes
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static interface INoteConsumer {
+		public static enum Action {Continue, Stop};
+
+		/**
+		 * Method is called for each opened note. The note is only valid while this method
+		 * is running and gets released automatically afterwards, so it must not be stored
+		 * and used later.
+		 *
+		 * @param note note
+		 * @return action, either {@link Action#Continue} to go on reading or {@link Action#Stop} to stop reading
+		 */
+		public Action noteOpened(NotesNote note);
+
+		/**
+		 * Method is called when a note could not be opened, e.g. because it has been deleted
+		 * or the current user has no access to it. Only called if {@link GetNotes#CONTINUE_ON_ERROR}
+		 * is set. The default implementation throws the error.
+		 *
+		 * @param noteId note id
+		 * @param error error
+		 * @return action, either {@link Action#Continue} to go on reading or {@link Action#Stop} to stop reading
+		 */
+		public default Action noteOpenFailed(int noteId, NotesError error) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Reads the notes and passes them to the consumer
+	 *
+	 * @param consumer consumer
+	 * @return number of notes passed to {@link INoteConsumer#noteOpened(NotesNote)}
+	 */
+	@SuppressWarnings("unchecked")
+	public int read(final INoteConsumer consumer) {
+		final boolean[] stopped = new boolean[1];
+		final int[] notesOpened = new int[1];
+
+		INoteOpenCallback noteOpenCallback = new INoteOpenCallback() {
+
+			@Override
+			public void noteOpened(NotesNote note, int noteId, short status) {
+				if (stopped[0]) {
+					//NSFDbGetNotes has no way to stop in the middle of a batch
+					//without reporting an error, so we skip the remaining notes
+					return;
+				}
+
+				INoteConsumer.Action action;
+				NotesError error = NotesErrorUtils.toNotesError(status);
+				if (error!=null) {
+					action = consumer.noteOpenFailed(noteId, error);
+				}
+				else {
+					notesOpened[0]++;
+					action = consumer.noteOpened(note);
+				}
+				if (action==INoteConsumer.Action.Stop) {
+					stopped[0] = true;
+				}
+			}
+		};
+
+		int[] batchNoteIds = new int[m_batchSize];
+		EnumSet<OpenNote>[] batchOpenFlags = new EnumSet[m_batchSize];
+		Arrays.fill(batchOpenFlags, m_openFlags);
+		int[] batchSinceSeqNum = new int[m_batchSize];
+		Arrays.fill(batchSinceSeqNum, m_sinceSeqNum);
+
+		while (!stopped[0] && m_noteIdIt.hasNext()) {
+			int batchCount = 0;
+			while (batchCount < m_batchSize && m_noteIdIt.hasNext()) {
+				batchNoteIds[batchCount++] = m_noteIdIt.nextInt();
+			}
+
+			if (batchCount < m_batchSize) {
+				//last batch, trim arrays
+				batchNoteIds = Arrays.copyOf(batchNoteIds, batchCount);
+				batchOpenFlags = Arrays.copyOf(batchOpenFlags, batchCount);
+				batchSinceSeqNum = Arrays.copyOf(batchSinceSeqNum, batchCount);
+			}
+
+			m_db.getNotes(batchNoteIds, batchOpenFlags, batchSinceSeqNum, m_controlFlags, null,
+					null, noteOpenCallback, null, null, null, null);
+		}
+
+		return notesOpened[0];
+	}
+
+}
@@ -98,7 +98,7 @@ public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteDat
 		private NotesSearch.ISearchMatch m_searchMatch;
 		private TreeMap<String,Object> m_summaryData;
 		
-		private NoteData(NotesSearch.ISearchMatch searchMatch, TreeMap<String,Object> summaryData) {
+		NoteData(NotesSearch.ISearchMatch searchMatch, TreeMap<String,Object> summaryData) {
 			m_searchMatch = searchMatch;
 			m_summaryData = summaryData;
 		}
@@ -1,6 +1,5 @@
 package com.mindoo.domino.jna;
 
-import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Calendar;
@@ -10,13 +9,13 @@ import com.mindoo.domino.jna.constants.Compression;
 import com.mindoo.domino.jna.errors.INotesErrorConstants;
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.internal.CallbackPool;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
 import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
-import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.structs.NotesBlockIdStruct;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.sun.jna.Pointer;
@@ -247,64 +246,36 @@ public class NotesAttachment {
 		final int extractFlags = 0;
 		final int hDecryptionCipher = 0;
 		
-		final NotesCallbacks.NoteExtractCallback extractCallback;
 		final Throwable[] extractError = new Throwable[1];
 		
-		if (PlatformUtils.isWin32()) {
-			extractCallback = new Win32NotesCallbacks.NoteExtractCallbackWin32() {
+		final NotesCallbacks.NoteExtractCallback extractCallback = CallbackPool.NOTEEXTRACT.acquire(new NotesCallbacks.NoteExtractCallback() {
+
+			@Override
+			public short invoke(Pointer data, int length, Pointer param) {
+				if (length==0)
+					return 0;
 				
-				@Override
-				public short invoke(Pointer data, int length, Pointer param) {
-					if (length==0)
+				try {
+					byte[] dataArr = data.getByteArray(0, length);
+					Action action = callback.read(dataArr);
+					if (action==Action.Continue) {
 						return 0;
-					
-					try {
-						byte[] dataArr = data.getByteArray(0, length);
-						Action action = callback.read(dataArr);
-						if (action==Action.Continue) {
-							return 0;
-						}
-						else {
-							return INotesErrorConstants.ERR_NSF_INTERRUPT;
-						}
 					}
-					catch (Throwable t) {
-						extractError[0] = t;
+					else {
 						return INotesErrorConstants.ERR_NSF_INTERRUPT;
 					}
 				}
-			};
-		}
-		else {
-			extractCallback = new NotesCallbacks.NoteExtractCallback() {
-
-				@Override
-				public short invoke(Pointer data, int length, Pointer param) {
-					if (length==0)
-						return 0;
-					
-					try {
-						byte[] dataArr = data.getByteArray(0, length);
-						Action action = callback.read(dataArr);
-						if (action==Action.Continue) {
-							return 0;
-						}
-						else {
-							return INotesErrorConstants.ERR_NSF_INTERRUPT;
-						}
-					}
-					catch (Throwable t) {
-						extractError[0] = t;
-						return INotesErrorConstants.ERR_NSF_INTERRUPT;
-					}
+				catch (Throwable t) {
+					extractError[0] = t;
+					return INotesErrorConstants.ERR_NSF_INTERRUPT;
 				}
-			};
-		}
+			}
+		});
 		
 		short result;
 		try {
 			//AccessController call required to prevent SecurityException when running in XPages
-			result = AccessController.doPrivileged(new PrivilegedExceptionAction<Short>() {
+			result = CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Short>() {
 
 				@Override
 				public Short run() throws Exception {
@@ -326,6 +297,9 @@ public class NotesAttachment {
 			else
 				throw new NotesError(0, "Error extracting attachment", e);
 		}
+		finally {
+			CallbackPool.NOTEEXTRACT.release(extractCallback);
+		}
 		
 		if (extractError[0] != null) {
 			throw new NotesError(0, "Extraction interrupted", extractError[0]);
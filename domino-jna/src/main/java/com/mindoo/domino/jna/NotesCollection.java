@@ -1,5 +1,6 @@
 package com.mindoo.domino.jna;
 
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
@@ -23,7 +24,6 @@ import java.util.TreeSet;
 import com.mindoo.domino.jna.CollectionDataCache.CacheState;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
 import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
-import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
 import com.mindoo.domino.jna.constants.FTSearch;
 import com.mindoo.domino.jna.constants.Find;
 import com.mindoo.domino.jna.constants.Navigate;
@@ -44,13 +44,14 @@ import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
-import com.mindoo.domino.jna.internal.NotesSearchKeyEncoder;
 import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.structs.NIFFindByKeyContextStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionDataStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionPositionStruct;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesThreadPool;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringTokenizerExt;
 import com.mindoo.domino.jna.utils.StringUtil;
@@ -252,6 +253,62 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return idx==null ? -1 : idx.intValue();
 	}
 	
+	/**
+	 * Resolves a column name or title to a {@link ColumnHandle} for fast index based
+	 * access to the column values of {@link NotesViewEntryData} read from this collection,
+	 * e.g. via {@link NotesViewEntryData#getDouble(ColumnHandle, double)}.
+	 * 
+	 * @param columnNameOrTitle programmatic column name or title, case insensitive
+	 * @return handle
+	 * @throws IllegalArgumentException if the column does not exist or has a static value that is not returned as column value
+	 */
+	public ColumnHandle getColumnHandle(String columnNameOrTitle) {
+		int colValuesIndex = getColumnValuesIndex(columnNameOrTitle);
+		if (colValuesIndex==-1 || colValuesIndex==65535) {
+			throw new IllegalArgumentException("Column "+columnNameOrTitle+" not found or has a static value in collection "+getName());
+		}
+		return new ColumnHandle(colValuesIndex, getColumnName(colValuesIndex));
+	}
+	
+	/**
+	 * Column of a collection resolved via {@link NotesCollection#getColumnHandle(String)}.
+	 * Only use it for view entries of the collection it has been resolved from.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class ColumnHandle {
+		private final int m_columnValuesIndex;
+		private final String m_name;
+		
+		private ColumnHandle(int columnValuesIndex, String name) {
+			m_columnValuesIndex = columnValuesIndex;
+			m_name = name;
+		}
+		
+		/**
+		 * Returns the index of the column in the column values read with {@link ReadMask#SUMMARYVALUES}
+		 * 
+		 * @return index
+		 */
+		public int getColumnValuesIndex() {
+			return m_columnValuesIndex;
+		}
+		
+		/**
+		 * Returns the programmatic column name
+		 * 
+		 * @return name
+		 */
+		public String getName() {
+			return m_name;
+		}
+		
+		@Override
+		public String toString() {
+			return "ColumnHandle [index="+m_columnValuesIndex+", name="+m_name+"]";
+		}
+	}
+	
 	/**
 	 * Returns whether the view automatically handles view index updates while reading from the view.<br>
 	 * <br>
@@ -963,8 +1020,20 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return note ids
 	 */
 	public LinkedHashSet<Integer> getAllIdsByKey(EnumSet<Find> findFlags, Object... keys) {
+		return getAllIdsByKey(findFlags, SearchKey.fromKeys(keys));
+	}
+	
+	/**
+	 * Convenience function that returns a sorted set of note ids of documents
+	 * matching the specified precompiled search key in the collection
+	 * 
+	 * @param findFlags find flags, see {@link Find}
+	 * @param searchKey search key
+	 * @return note ids
+	 */
+	public LinkedHashSet<Integer> getAllIdsByKey(EnumSet<Find> findFlags, SearchKey searchKey) {
 		LinkedHashSet<Integer> noteIds = getAllEntriesByKey(findFlags, EnumSet.of(ReadMask.NOTEID), 
-				new NoteIdsAsOrderedSetCallback(Integer.MAX_VALUE), keys);
+				new NoteIdsAsOrderedSetCallback(Integer.MAX_VALUE), searchKey);
 		return noteIds;
 	}
 	
@@ -974,10 +1043,10 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * 
 	 * @param findFlags find flags
 	 * @param returnMask return flags
-	 * @param keys lookup keys
+	 * @param searchKey lookup keys
 	 * @return true if method can be used
 	 */
-	private boolean canUseOptimizedLookupForKeyLookup(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, Object... keys) {
+	private boolean canUseOptimizedLookupForKeyLookup(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, SearchKey searchKey) {
 		if (findFlags.contains(Find.GREATER_THAN) || findFlags.contains(Find.LESS_THAN)) {
 			//TODO check this with IBM dev; we had crashes like "[0A0F:0002-21A00] PANIC: LookupHandle: null handle" using NIFFindByKeyExtended2
 			return false;
@@ -1714,6 +1783,71 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}, skipCount, returnNav, preloadEntryCount, returnMask, callback);
 	}
 	
+	/**
+	 * Reads all entries of the collection/view with multiple threads and passes them to the
+	 * callback in collation order.<br>
+	 * <br>
+	 * Uses a temporary {@link NotesThreadPool} that is closed after the lookup. To avoid initializing
+	 * new threads for the C API on each lookup, use
+	 * {@link #getAllEntriesParallel(NotesThreadPool, int, int, EnumSet, int, EnumSet, ViewLookupCallback)}
+	 * with a long living pool.
+	 * 
+	 * @param threadCount number of worker threads
+	 * @param partitionCount number of partitions, should be a multiple of <code>threadCount</code> to balance the load
+	 * @param returnNav navigator, {@link Navigate#NEXT}, {@link Navigate#NEXT_NONCATEGORY} or {@link Navigate#NEXT_CATEGORY}
+	 * @param preloadEntryCount amount of entries that is read from the view with each NIFReadEntries call
+	 * @param returnMask values to extract; {@link ReadMask#NOTEID} and {@link ReadMask#INDEXPOSITION} are always added
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	public <T> T getAllEntriesParallel(int threadCount, int partitionCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
+		checkHandle();
+		
+		try (NotesThreadPool pool = new NotesThreadPool(threadCount, "NotesCollectionParallelReader")) {
+			return getAllEntriesParallel(pool, threadCount, partitionCount, returnNav, preloadEntryCount, returnMask, callback);
+		}
+	}
+	
+	/**
+	 * Reads all entries of the collection/view with tasks of a {@link NotesThreadPool} and passes them to the
+	 * callback in collation order.<br>
+	 * <br>
+	 * The collection gets split into <code>partitionCount</code> ranges of top level entries
+	 * (documents in flat views, top level categories in categorized views). Each worker task
+	 * reopens the database and the collection in its own {@link NotesGC} context and
+	 * reads its partitions concurrently with NIFReadEntries. The pool threads are initialized for
+	 * the C API once and can be reused for many lookups. The callback is always invoked in the
+	 * calling thread. If the view index changes while reading, the lookup gets restarted
+	 * (see {@link ViewLookupCallback#retryingReadBecauseViewIndexChanged(int, long)}).<br>
+	 * <br>
+	 * Data caches and single column reads are not supported by this method. Collections opened with
+	 * external data (e.g. via {@link NotesDatabase#openCollectionByNameWithExternalData(NotesDatabase, String)})
+	 * cannot be read in parallel, because worker tasks reopen the collection in its parent database.
+	 * Do not call this method from a task of the same pool, because it waits for other tasks of the pool.
+	 * 
+	 * @param pool pool to run the worker tasks
+	 * @param threadCount max number of partitions read concurrently, limited by the number of pool threads
+	 * @param partitionCount number of partitions, should be a multiple of <code>threadCount</code> to balance the load
+	 * @param returnNav navigator, {@link Navigate#NEXT}, {@link Navigate#NEXT_NONCATEGORY} or {@link Navigate#NEXT_CATEGORY}
+	 * @param preloadEntryCount amount of entries that is read from the view with each NIFReadEntries call
+	 * @param returnMask values to extract; {@link ReadMask#NOTEID} and {@link ReadMask#INDEXPOSITION} are always added
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	public <T> T getAllEntriesParallel(NotesThreadPool pool, int threadCount, int partitionCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
+		checkHandle();
+		
+		NotesCollectionParallelReader reader = new NotesCollectionParallelReader(this, pool, threadCount, partitionCount,
+				returnNav, preloadEntryCount, returnMask);
+		return reader.read(callback);
+	}
+	
 	/**
 	 * Callback to dynamically locate the start position of a collection scan, e.g.
 	 * the position of a category entry. We use a callback to be able to react on
@@ -1835,14 +1969,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 				CacheState cacheState = dataCache.getCacheState();
 				
 				//only use cache content if read masks are compatible
-				Map<Integer,CacheableViewEntryData> cacheEntries = cacheState.getCacheEntries();
-				if (cacheEntries!=null && !cacheEntries.isEmpty()) {
+				NoteIdBitmap cachedNoteIds = cacheState.getNoteIds();
+				if (cachedNoteIds!=null && !cachedNoteIds.isEmpty()) {
 					EnumSet<ReadMask> cacheReadMask = cacheState.getReadMask();
 					if (useReturnMask.equals(cacheReadMask)) {
 						diffTime = cacheState.getDiffTime();
 
-						diffIDTable = new NotesIDTable();
-						diffIDTable.addNotes(cacheEntries.keySet());
+						diffIDTable = new NotesIDTable(cachedNoteIds);
 					}
 				}
 			}
@@ -2014,12 +2147,12 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @param findFlags find flags, see {@link Find}
 	 * @param returnMask values to be returned
 	 * @param callback callback that is called for each entry read from the collection, e.g. use {@link EntriesAsListCallback} to read all requested view row data, {@link NoteIdsAsOrderedSetCallback} to collection just the note ids or build your own to build the return objects you need
-	 * @param keys lookup keys
+	 * @param searchKey lookup keys
 	 * @return lookup result
 	 * 
 	 * @param <T> type of lookup result object
 	 */
-	private <T> T getAllEntriesByKeyLocally(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, final ViewLookupCallback<T> callback, Object... keys) {
+	private <T> T getAllEntriesByKeyLocally(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, final ViewLookupCallback<T> callback, SearchKey searchKey) {
 		final NIFFindByKeyContextStruct ctx = NIFFindByKeyContextStruct.newInstance();
 
 		final boolean convertStringsLazily = true;
@@ -2139,17 +2272,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 			};
 		}
 
-		final Memory keyBuffer;
-		try {
-			if (PlatformUtils.is64Bit()) {
-				keyBuffer = NotesSearchKeyEncoder.b64_encodeKeys(keys);
-			}
-			else {
-				keyBuffer = NotesSearchKeyEncoder.b32_encodeKeys(keys);
-			}
-		} catch (Throwable e) {
-			throw new NotesError(0, "Could not encode search keys", e);
-		}
+		final Memory keyBuffer = searchKey.getKeyBuffer();
 		
 		final NotesCollectionPositionStruct retIndexPos = NotesCollectionPositionStruct.newInstance(); //null; // NotesCollectionPositionStruct.newInstance();
 		final IntByReference retNumMatches = new IntByReference();
@@ -2231,13 +2354,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * 
 	 * @param findFlags find flags, see {@link Find}
 	 * @param returnMask values to be returned
-	 * @param keys lookup keys
+	 * @param searchKey lookup keys
 	 * @return true if supported
 	 */
-	private boolean canUseOptimizedLocalKeyLookup(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, Object... keys) {
+	private boolean canUseOptimizedLocalKeyLookup(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, SearchKey searchKey) {
 		if (Boolean.TRUE.equals(NotesGC.getCustomValue("collection_optimizedlookup"))) { // disabled by default
 			if (!getParent().isRemote()) { // only working on local dbs
-				return canUseOptimizedLookupForKeyLookup(findFlags, returnMask, keys); // only working properly for pure note id lookups
+				return canUseOptimizedLookupForKeyLookup(findFlags, returnMask, searchKey); // only working properly for pure note id lookups
 			}
 		}
 		return false;
@@ -2257,12 +2380,33 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @param <T> type of lookup result object
 	 */
 	public <T> T getAllEntriesByKey(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback, Object... keys) {
+		return getAllEntriesByKey(findFlags, returnMask, callback, SearchKey.fromKeys(keys));
+	}
+	
+	/**
+	 * Returns all view entries matching the specified precompiled search key in the collection.
+	 * It internally takes care of view index changes while reading view data and restarts
+	 * reading if such a change has been detected.<br>
+	 * <br>
+	 * The native key buffer of the {@link SearchKey} is reused for all lookups, so for
+	 * batch lookups, change the key values between the calls instead of creating a new
+	 * {@link SearchKey} for each lookup.
+	 * 
+	 * @param findFlags find flags, see {@link Find}
+	 * @param returnMask values to be returned
+	 * @param callback callback that is called for each entry read from the collection, e.g. use {@link EntriesAsListCallback} to read all requested view row data, {@link NoteIdsAsOrderedSetCallback} to collection just the note ids or build your own to build the return objects you need
+	 * @param searchKey search key
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	public <T> T getAllEntriesByKey(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback, SearchKey searchKey) {
 		checkHandle();
 		
 		//for local databases, we can use an optimized lookup that locks the view during the lookup against index updates so that
 		//we don't have to rerun the lookup loop
-		if (canUseOptimizedLocalKeyLookup(findFlags, returnMask, callback, keys)) {
-			T result = getAllEntriesByKeyLocally(findFlags, returnMask, callback, keys);
+		if (canUseOptimizedLocalKeyLookup(findFlags, returnMask, searchKey)) {
+			T result = getAllEntriesByKeyLocally(findFlags, returnMask, callback, searchKey);
 			return result;
 		}
 		
@@ -2299,13 +2443,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 			
 			int entriesToSkipOnFirstLoopRun = 0;
 
-			if (canUseOptimizedLookupForKeyLookup(findFlags, returnMask, keys)) {
+			if (canUseOptimizedLookupForKeyLookup(findFlags, returnMask, searchKey)) {
 				//do the first lookup and read operation atomically; uses a large buffer for local calls
 				EnumSet<Find> findFlagsWithExtraBits = findFlags.clone();
 				findFlagsWithExtraBits.add(Find.AND_READ_MATCHES);
 				findFlagsWithExtraBits.add(Find.RETURN_DWORD);
 				
-				data = findByKeyExtended2(findFlagsWithExtraBits, returnMask, keys);
+				data = findByKeyExtended2(findFlagsWithExtraBits, returnMask, searchKey);
 				
 				int numEntriesFound = data.getReturnCount();
 				if (numEntriesFound!=-1) {
@@ -2349,7 +2493,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 					//and no buffer data
 					//
 					//fallback to classic lookup until this is fixed/commented by IBM dev:
-					FindResult findResult = findByKey(findFlags, keys);
+					FindResult findResult = findByKey(findFlags, searchKey);
 					remainingEntries = findResult.getEntriesFound();
 					if (remainingEntries==0) {
 						return result;
@@ -2359,7 +2503,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 			}
 			else {
 				//first find the start position to read data
-				FindResult findResult = findByKey(findFlags, keys);
+				FindResult findResult = findByKey(findFlags, searchKey);
 				remainingEntries = findResult.getEntriesFound();
 				if (remainingEntries==0) {
 					return result;
@@ -2440,6 +2584,225 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	}
 	
+	/**
+	 * Range of view entries matching one lookup key of {@link #getAllEntriesByKeys(EnumSet, EnumSet, Collection)}
+	 */
+	private static class KeyMatchRange implements Comparable<KeyMatchRange> {
+		private int m_keyIndex;
+		private String m_position;
+		private int m_start;
+		private int m_end;
+		
+		public KeyMatchRange(int keyIndex, String position, int start, int numMatches) {
+			m_keyIndex = keyIndex;
+			m_position = position;
+			m_start = start;
+			m_end = start + numMatches;
+		}
+		
+		@Override
+		public int compareTo(KeyMatchRange o) {
+			if (m_start!=o.m_start) {
+				return m_start < o.m_start ? -1 : 1;
+			}
+			return m_end==o.m_end ? 0 : (m_end < o.m_end ? -1 : 1);
+		}
+	}
+	
+	/**
+	 * Batch lookup that returns all view entries matching each of the specified search keys.<br>
+	 * <br>
+	 * Compared to calling {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * for each key, the keys are first located with NIFFindByKey (without reading any view data,
+	 * reusing a single {@link SearchKey} buffer) and sorted by their index position, which
+	 * is the collation order of the view. Then the index is walked once: the match ranges
+	 * of keys that are adjacent or overlap in a flat view are read together with
+	 * shared NIFReadEntries calls.<br>
+	 * <br>
+	 * Matches of keys in categorized views (positions below the top level) are read one key at a time.
+	 * If the view index changes between locating the keys and reading the entries, the view is
+	 * refreshed and the lookup restarts.
+	 * 
+	 * @param findFlags find flags, see {@link Find}; for inequality searches (see {@link #canFindExactNumberOfMatches(EnumSet)}), each key is looked up separately via {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * @param returnMask values to be returned
+	 * @param keys lookup keys, each array contains the keys of one lookup
+	 * @return list of lookup results with the same size and order as <code>keys</code>, the entries of each result are in view order
+	 */
+	public List<List<NotesViewEntryData>> getAllEntriesByKeys(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask,
+			Collection<Object[]> keys) {
+		checkHandle();
+		
+		List<Object[]> keysList = new ArrayList<Object[]>(keys);
+		int numKeys = keysList.size();
+		
+		if (!canFindExactNumberOfMatches(findFlags)) {
+			//without the number of matches, we cannot tell which entries belong to which key
+			List<List<NotesViewEntryData>> result = new ArrayList<List<NotesViewEntryData>>(numKeys);
+			for (Object[] currKeys : keysList) {
+				result.add(getAllEntriesByKey(findFlags, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE), currKeys));
+			}
+			return result;
+		}
+		
+		//we need the positions to assign the read entries to the keys
+		EnumSet<ReadMask> returnMaskWithPos = returnMask.clone();
+		returnMaskWithPos.add(ReadMask.INDEXPOSITION);
+		
+		int runs = 0;
+		
+		while (true) {
+			runs++;
+			
+			List<List<NotesViewEntryData>> result = new ArrayList<List<NotesViewEntryData>>(numKeys);
+			for (int i=0; i<numKeys; i++) {
+				result.add(new ArrayList<NotesViewEntryData>());
+			}
+			
+			//positions found by NIFFindByKey are only valid as long as the index does not change
+			int initialIndexModified = getIndexModifiedSequenceNo();
+			
+			//first locate all keys; matches in flat views are ranges of top level positions
+			List<KeyMatchRange> topLevelRanges = new ArrayList<KeyMatchRange>();
+			List<KeyMatchRange> otherRanges = new ArrayList<KeyMatchRange>();
+			
+			SearchKey searchKey = null;
+			for (int i=0; i<numKeys; i++) {
+				Object[] currKeys = keysList.get(i);
+				if (searchKey==null || searchKey.getKeyCount()!=currKeys.length) {
+					searchKey = new SearchKey(currKeys.length);
+				}
+				searchKey.setKeys(currKeys);
+				
+				FindResult findResult = findByKey(findFlags, searchKey);
+				int numMatches = findResult.getEntriesFound();
+				if (numMatches==0) {
+					continue;
+				}
+				String posStr = findResult.getPosition();
+				if (posStr.indexOf('.')==-1) {
+					topLevelRanges.add(new KeyMatchRange(i, posStr, Integer.parseInt(posStr), numMatches));
+				}
+				else {
+					otherRanges.add(new KeyMatchRange(i, posStr, 0, numMatches));
+				}
+			}
+			
+			Collections.sort(topLevelRanges);
+			
+			boolean viewModified = false;
+			
+			int groupStartIdx = 0;
+			while (groupStartIdx < topLevelRanges.size()) {
+				//coalesce adjacent and overlapping ranges
+				int groupEnd = topLevelRanges.get(groupStartIdx).m_end;
+				int groupEndIdx = groupStartIdx + 1;
+				while (groupEndIdx < topLevelRanges.size() && topLevelRanges.get(groupEndIdx).m_start <= groupEnd) {
+					groupEnd = Math.max(groupEnd, topLevelRanges.get(groupEndIdx).m_end);
+					groupEndIdx++;
+				}
+				
+				if (!readKeyMatchRanges(topLevelRanges.subList(groupStartIdx, groupEndIdx), groupEnd, returnMaskWithPos, result)) {
+					viewModified = true;
+					break;
+				}
+				groupStartIdx = groupEndIdx;
+			}
+			
+			if (!viewModified) {
+				for (KeyMatchRange currRange : otherRanges) {
+					if (!readKeyMatchRanges(Collections.singletonList(currRange), 0, returnMaskWithPos, result)) {
+						viewModified = true;
+						break;
+					}
+				}
+			}
+			
+			if (!viewModified && initialIndexModified != getIndexModifiedSequenceNo()) {
+				//view index was changed between the key lookups and the reads, so
+				//entries may have been assigned to the wrong keys
+				viewModified = true;
+			}
+			
+			if (viewModified) {
+				if (runs >= 10) {
+					throw new NotesError(0, "View index changed too often while reading the lookup results");
+				}
+				//refresh view and redo the whole lookup
+				update();
+				continue;
+			}
+			
+			return result;
+		}
+	}
+	
+	/**
+	 * Reads the view entries for a group of coalesced key match ranges of
+	 * {@link #getAllEntriesByKeys(EnumSet, EnumSet, Collection)} and adds them to the results
+	 * of their keys
+	 * 
+	 * @param ranges sorted ranges, either top level ranges or a single range below the top level
+	 * @param groupEnd top level position after the last match of the group, ignored for a range below the top level
+	 * @param returnMask values to be returned, must include {@link ReadMask#INDEXPOSITION}
+	 * @param result lookup results per key
+	 * @return false if the view index has been modified and the lookup needs to be restarted
+	 */
+	private boolean readKeyMatchRanges(List<KeyMatchRange> ranges, int groupEnd, EnumSet<ReadMask> returnMask,
+			List<List<NotesViewEntryData>> result) {
+		
+		KeyMatchRange firstRange = ranges.get(0);
+		boolean isTopLevel = firstRange.m_start > 0;
+		
+		NotesCollectionPosition lookupPos = new NotesCollectionPosition(firstRange.m_position);
+		int remainingEntries = isTopLevel ? groupEnd - firstRange.m_start : firstRange.m_end;
+		boolean isFirstLookup = true;
+		
+		while (remainingEntries>0) {
+			NotesViewLookupResultData data = readEntriesExt(lookupPos, EnumSet.of(Navigate.NEXT_NONCATEGORY), isFirstLookup ? 0 : 1,
+					EnumSet.of(Navigate.NEXT_NONCATEGORY), remainingEntries, returnMask, null, null, null);
+			
+			if (isFirstLookup || isAutoUpdate()) {
+				//for the first lookup, make sure we start at the right position
+				if (data.hasAnyNonDataConflicts()) {
+					return false;
+				}
+			}
+			isFirstLookup = false;
+			
+			List<NotesViewEntryData> entries = data.getEntries();
+			if (entries.isEmpty()) {
+				//looks like we don't have any more data in the view
+				break;
+			}
+			
+			if (!isTopLevel) {
+				result.get(firstRange.m_keyIndex).addAll(entries);
+				remainingEntries -= entries.size();
+				continue;
+			}
+			
+			for (NotesViewEntryData currEntry : entries) {
+				int[] pos = currEntry.getPosition();
+				if (pos==null || pos.length!=1) {
+					//skip response entries, NIFFindByKey does not find them
+					continue;
+				}
+				
+				int currTopLevelPos = pos[0];
+				if (currTopLevelPos >= groupEnd) {
+					return true;
+				}
+				for (KeyMatchRange currRange : ranges) {
+					if (currTopLevelPos >= currRange.m_start && currTopLevelPos < currRange.m_end) {
+						result.get(currRange.m_keyIndex).add(currEntry);
+					}
+				}
+				remainingEntries = groupEnd - currTopLevelPos - 1;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * This method is in essense a combo NIFFindKey/NIFReadEntries API. It leverages
 	 * the C API method NIFFindByKeyExtended2 internally which was introduced in Domino R9<br>
@@ -2499,10 +2862,23 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return lookup result
 	 */
 	public NotesViewLookupResultData findByKeyExtended2(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, Object... keys) {
+		return findByKeyExtended2(findFlags, returnMask, SearchKey.fromKeys(keys));
+	}
+	
+	/**
+	 * Variant of {@link #findByKeyExtended2(EnumSet, EnumSet, Object...)} that uses a precompiled
+	 * {@link SearchKey}. Its native key buffer is reused for all lookups, so for batch lookups,
+	 * change the key values between the calls instead of creating a new {@link SearchKey} each time.
+	 * 
+	 * @param findFlags find flags ({@link Find})
+	 * @param returnMask mask specifying what information is to be returned on each entry ({link ReadMask})
+	 * @param searchKey search key
+	 * @return lookup result
+	 */
+	public NotesViewLookupResultData findByKeyExtended2(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, SearchKey searchKey) {
 		checkHandle();
 		
-		if (keys==null || keys.length==0)
-			throw new IllegalArgumentException("No search keys specified");
+		Memory keyBuffer = searchKey.getKeyBuffer();
 		
 		IntByReference retNumMatches = new IntByReference();
 		NotesCollectionPositionStruct retIndexPos = NotesCollectionPositionStruct.newInstance();
@@ -2513,13 +2889,6 @@ public class NotesCollection implements IRecyclableNotesObject {
 		ShortByReference retSignalFlags = new ShortByReference();
 		
 		if (PlatformUtils.is64Bit()) {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b64_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
-			
 			LongByReference retBuffer = new LongByReference();
 			IntByReference retSequence = new IntByReference();
 			
@@ -2549,13 +2918,6 @@ public class NotesCollection implements IRecyclableNotesObject {
 			}
 		}
 		else {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b32_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
-			
 			IntByReference retBuffer = new IntByReference();
 			IntByReference retSequence = new IntByReference();
 			
@@ -2661,31 +3023,31 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return result
 	 */
 	public FindResult findByKey(EnumSet<Find> findFlags, Object... keys) {
+		return findByKey(findFlags, SearchKey.fromKeys(keys));
+	}
+	
+	/**
+	 * Variant of {@link #findByKey(EnumSet, Object...)} that uses a precompiled {@link SearchKey}.
+	 * Its native key buffer is reused for all lookups, so for batch lookups, change the key
+	 * values between the calls instead of creating a new {@link SearchKey} each time.
+	 * 
+	 * @param findFlags {@link Find}
+	 * @param searchKey search key
+	 * @return result
+	 */
+	public FindResult findByKey(EnumSet<Find> findFlags, SearchKey searchKey) {
 		checkHandle();
 		
-		if (keys==null || keys.length==0)
-			throw new IllegalArgumentException("No search keys specified");
+		Memory keyBuffer = searchKey.getKeyBuffer();
 		
 		IntByReference retNumMatches = new IntByReference();
 		NotesCollectionPositionStruct retIndexPos = NotesCollectionPositionStruct.newInstance();
 		short findFlagsBitMask = Find.toBitMask(findFlags);
 		short result;
 		if (PlatformUtils.is64Bit()) {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b64_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
 			result = NotesNativeAPI64.get().NIFFindByKey(m_hCollection64, keyBuffer, findFlagsBitMask, retIndexPos, retNumMatches);
 		}
 		else {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b32_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
 			result = NotesNativeAPI32.get().NIFFindByKey(m_hCollection32, keyBuffer, findFlagsBitMask, retIndexPos, retNumMatches);
 		}
 		if ((result & NotesConstants.ERR_MASK)==1028) {
@@ -2984,6 +3346,101 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	}
 
+	/**
+	 * Reads collection entries (using NIFReadEntries method) and returns a cursor to traverse them.<br>
+	 * <br>
+	 * In contrast to {@link #readEntries(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet)},
+	 * the returned buffer is copied to the Java heap as a whole and entry data and column values
+	 * get decoded on demand when they are accessed via the cursor, which avoids creating
+	 * lots of objects when large views are scanned.
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @return cursor
+	 */
+	public NotesViewEntryCursor readEntriesAsCursor(NotesCollectionPosition startPos, EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator, int returnCount, EnumSet<ReadMask> returnMask) {
+		checkHandle();
+
+		IntByReference retNumEntriesSkipped = new IntByReference();
+		IntByReference retNumEntriesReturned = new IntByReference();
+		ShortByReference retSignalFlags = new ShortByReference();
+		ShortByReference retBufferLength = new ShortByReference();
+
+		short skipNavBitMask = Navigate.toBitMask(skipNavigator);
+		short returnNavBitMask = Navigate.toBitMask(returnNavigator);
+		int readMaskBitMask = ReadMask.toBitMask(returnMask);
+		
+		NotesCollectionPositionStruct startPosStruct = startPos==null ? null : startPos.getAdapter(NotesCollectionPositionStruct.class);
+		
+		short result;
+		if (PlatformUtils.is64Bit()) {
+			LongByReference retBuffer = new LongByReference();
+			result = NotesNativeAPI64.get().NIFReadEntries(m_hCollection64, // hCollection
+					startPosStruct, // IndexPos
+					skipNavBitMask, // SkipNavigator
+					skipCount, // SkipCount
+					returnNavBitMask, // ReturnNavigator
+					returnCount, // ReturnCount
+					readMaskBitMask, // Return mask
+					retBuffer, // rethBuffer
+					retBufferLength, // retBufferLength
+					retNumEntriesSkipped, // retNumEntriesSkipped
+					retNumEntriesReturned, // retNumEntriesReturned
+					retSignalFlags // retSignalFlags
+					);
+			NotesErrorUtils.checkResult(result);
+			
+			int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+			
+			int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
+			if (iBufLength==0) {
+				return new NotesViewEntryCursor(this, new byte[0], ByteBuffer.allocate(0), 0, returnMask, null,
+						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), retSignalFlags.getValue(),
+						indexModifiedSequenceNo, null);
+			}
+			else {
+				return NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBufferAsCursor(this, retBuffer.getValue(),
+						iBufLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask,
+						retSignalFlags.getValue(), indexModifiedSequenceNo, null);
+			}
+		}
+		else {
+			IntByReference retBuffer = new IntByReference();
+			result = NotesNativeAPI32.get().NIFReadEntries(m_hCollection32, // hCollection
+					startPosStruct, // IndexPos
+					skipNavBitMask, // SkipNavigator
+					skipCount, // SkipCount
+					returnNavBitMask, // ReturnNavigator
+					returnCount, // ReturnCount
+					readMaskBitMask, // Return mask
+					retBuffer, // rethBuffer
+					retBufferLength, // retBufferLength
+					retNumEntriesSkipped, // retNumEntriesSkipped
+					retNumEntriesReturned, // retNumEntriesReturned
+					retSignalFlags // retSignalFlags
+					);
+			NotesErrorUtils.checkResult(result);
+			
+			int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+
+			int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
+			if (iBufLength==0) {
+				return new NotesViewEntryCursor(this, new byte[0], ByteBuffer.allocate(0), 0, returnMask, null,
+						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), retSignalFlags.getValue(),
+						indexModifiedSequenceNo, null);
+			}
+			else {
+				return NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBufferAsCursor(this, retBuffer.getValue(),
+						iBufLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask,
+						retSignalFlags.getValue(), indexModifiedSequenceNo, null);
+			}
+		}
+	}
+
 	/**
 	 * Reads collection entries with extended funcionality (using undocumented NIFReadEntriesExt method).<br>
 	 * <br>
@@ -3105,6 +3562,112 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	}
 
+	/**
+	 * Reads collection entries with extended funcionality (using undocumented NIFReadEntriesExt method)
+	 * and returns a cursor to traverse them. Entry data and column values get decoded on demand
+	 * when they are accessed via the cursor.<br>
+	 * <br>
+	 * See {@link #readEntriesExt(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * for a description of the parameters.
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @param diffTime If non-null, this is a "differential view read"
+	 * @param diffIDTable If DiffTime is non-null and DiffIDTable is not null it provides a
+	 * 				list of notes which the caller has current information on
+	 * @param columnNumber If not null, number of single column to return value for (0-based)
+	 * @return cursor
+	 */
+	public NotesViewEntryCursor readEntriesExtAsCursor(NotesCollectionPosition startPos,
+			EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator,
+			int returnCount, EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
+			NotesIDTable diffIDTable,
+			Integer columnNumber) {
+		
+		checkHandle();
+
+		IntByReference retNumEntriesSkipped = new IntByReference();
+		IntByReference retNumEntriesReturned = new IntByReference();
+		ShortByReference retSignalFlags = new ShortByReference();
+		ShortByReference retBufferLength = new ShortByReference();
+
+		short skipNavBitMask = Navigate.toBitMask(skipNavigator);
+		short returnNavBitMask = Navigate.toBitMask(returnNavigator);
+		int readMaskBitMask = ReadMask.toBitMask(returnMask);
+		NotesCollectionPositionStruct startPosStruct = startPos==null ? null : startPos.getAdapter(NotesCollectionPositionStruct.class);
+		
+		int flags = 0;
+		
+		NotesTimeDateStruct retDiffTimeStruct = NotesTimeDateStruct.newInstance();
+		NotesTimeDateStruct retModifiedTimeStruct = NotesTimeDateStruct.newInstance();
+		IntByReference retSequence = new IntByReference();
+
+		NotesTimeDateStruct diffTimeStruct = diffTime==null ? null : NotesTimeDateStruct.newInstance(diffTime.getInnards());
+		
+		short result;
+		if (PlatformUtils.is64Bit()) {
+			LongByReference retBuffer = new LongByReference();
+			result = NotesNativeAPI64.get().NIFReadEntriesExt(m_hCollection64, startPosStruct,
+					skipNavBitMask,
+					skipCount, returnNavBitMask, returnCount, readMaskBitMask,
+					diffTimeStruct, diffIDTable==null ? 0 : diffIDTable.getHandle64(), columnNumber==null ? NotesConstants.MAXDWORD : columnNumber, flags, retBuffer, retBufferLength,
+					retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags,
+					retDiffTimeStruct, retModifiedTimeStruct, retSequence);
+			
+			if ((result & NotesConstants.ERR_MASK)!=1028) {
+				NotesErrorUtils.checkResult(result);
+			}
+			
+			int indexModifiedSequenceNo = retModifiedTimeStruct.Innards[0];
+			
+			NotesTimeDate retDiffTimeWrap = new NotesTimeDate(retDiffTimeStruct);
+
+			int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
+			if (iBufLength==0 || ((result & NotesConstants.ERR_MASK)==1028)) {
+				return new NotesViewEntryCursor(this, new byte[0], ByteBuffer.allocate(0), 0, returnMask, null,
+						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), retSignalFlags.getValue(),
+						indexModifiedSequenceNo, retDiffTimeWrap);
+			}
+			else {
+				return NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBufferAsCursor(this, retBuffer.getValue(),
+						iBufLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask,
+						retSignalFlags.getValue(), indexModifiedSequenceNo, retDiffTimeWrap);
+			}
+		}
+		else {
+			IntByReference retBuffer = new IntByReference();
+			result = NotesNativeAPI32.get().NIFReadEntriesExt(m_hCollection32, startPosStruct,
+					skipNavBitMask,
+					skipCount, returnNavBitMask, returnCount, readMaskBitMask,
+					diffTimeStruct, diffIDTable==null ? 0 : diffIDTable.getHandle32(), columnNumber==null ? NotesConstants.MAXDWORD : columnNumber, flags, retBuffer, retBufferLength,
+					retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags,
+					retDiffTimeStruct, retModifiedTimeStruct, retSequence);
+
+			if ((result & NotesConstants.ERR_MASK)!=1028) {
+				NotesErrorUtils.checkResult(result);
+			}
+			int indexModifiedSequenceNo = retModifiedTimeStruct.Innards[0];
+
+			NotesTimeDate retDiffTimeWrap = new NotesTimeDate(retDiffTimeStruct);
+			
+			int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
+			if (iBufLength==0 || ((result & NotesConstants.ERR_MASK)==1028)) {
+				return new NotesViewEntryCursor(this, new byte[0], ByteBuffer.allocate(0), 0, returnMask, null,
+						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), retSignalFlags.getValue(),
+						indexModifiedSequenceNo, retDiffTimeWrap);
+			}
+			else {
+				return NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBufferAsCursor(this, retBuffer.getValue(),
+						iBufLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask,
+						retSignalFlags.getValue(), indexModifiedSequenceNo, retDiffTimeWrap);
+			}
+		}
+	}
+
 	/**
 	 * Updates the view to reflect the current database content (using NIFUpdateCollection method)
 	 */
@@ -0,0 +1,380 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback;
+import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesThreadPool;
+
+/**
+ * Reads the entries of a {@link NotesCollection} with multiple threads.<br>
+ * <br>
+ * The collection is split into partitions of consecutive top level entries (documents in flat
+ * views, top level categories in categorized views), so that every partition covers a
+ * contiguous range of the collation. The partitions are read by worker tasks running on a
+ * {@link NotesThreadPool}, so that the threads are initialized for the C API only once for
+ * all lookups using the same pool. Each worker task reopens the database and the collection in
+ * its own {@link NotesGC} context, because the collection of the caller belongs to the
+ * caller's context, and reads its partitions with NIFReadEntries.
+ * Partition results are passed to the {@link ViewLookupCallback} in the calling thread
+ * in collation order as soon as they are available.<br>
+ * <br>
+ * If the view index changes while reading, the whole lookup is restarted, just like
+ * {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)} does.
+ *
+ * @author Karsten Lehmann
+ */
+class NotesCollectionParallelReader {
+	private NotesCollection m_collection;
+	private NotesThreadPool m_pool;
+	private int m_threadCount;
+	private int m_partitionCount;
+	private EnumSet<Navigate> m_returnNav;
+	private int m_preloadEntryCount;
+	private EnumSet<ReadMask> m_returnMask;
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param collection collection to read
+	 * @param pool pool to run the worker tasks
+	 * @param threadCount max number of partitions read concurrently
+	 * @param partitionCount number of partitions to split the collection into
+	 * @param returnNav navigator, {@link Navigate#NEXT}, {@link Navigate#NEXT_NONCATEGORY} or {@link Navigate#NEXT_CATEGORY}
+	 * @param preloadEntryCount number of entries to read with each NIFReadEntries call
+	 * @param returnMask values to extract
+	 */
+	NotesCollectionParallelReader(NotesCollection collection, NotesThreadPool pool, int threadCount, int partitionCount,
+			EnumSet<Navigate> returnNav, int preloadEntryCount, EnumSet<ReadMask> returnMask) {
+		if (pool==null) {
+			throw new IllegalArgumentException("Thread pool cannot be null");
+		}
+		if (threadCount<1) {
+			throw new IllegalArgumentException("Thread count must be at least 1: "+threadCount);
+		}
+		if (partitionCount<1) {
+			throw new IllegalArgumentException("Partition count must be at least 1: "+partitionCount);
+		}
+		if (!EnumSet.of(Navigate.NEXT).equals(returnNav) && !EnumSet.of(Navigate.NEXT_NONCATEGORY).equals(returnNav) &&
+				!EnumSet.of(Navigate.NEXT_CATEGORY).equals(returnNav)) {
+			throw new IllegalArgumentException("Unsupported navigator for parallel reads: "+returnNav+". Supported are NEXT, NEXT_NONCATEGORY and NEXT_CATEGORY");
+		}
+
+		m_collection = collection;
+		m_pool = pool;
+		m_threadCount = threadCount;
+		m_partitionCount = partitionCount;
+		m_returnNav = returnNav;
+		m_preloadEntryCount = preloadEntryCount;
+
+		//we need the position to detect partition ends and the note id to check the first entry
+		m_returnMask = returnMask.clone();
+		m_returnMask.add(ReadMask.INDEXPOSITION);
+		m_returnMask.add(ReadMask.NOTEID);
+	}
+
+	/**
+	 * Reads the collection entries
+	 *
+	 * @param callback callback that is called for each entry in collation order
+	 * @return lookup result
+	 *
+	 * @param <T> type of lookup result object
+	 */
+	<T> T read(ViewLookupCallback<T> callback) {
+		long t0 = System.currentTimeMillis();
+		int runs = -1;
+
+		while (true) {
+			runs++;
+
+			if (m_collection.isAutoUpdate()) {
+				m_collection.update();
+			}
+			int initialIndexModified = m_collection.getIndexModifiedSequenceNo();
+			int topLevelEntries = m_collection.getTopLevelEntries();
+
+			T result = callback.startingLookup();
+
+			if (topLevelEntries==0 || m_preloadEntryCount==0) {
+				return callback.lookupDone(result);
+			}
+
+			int[][] partitions = computePartitions(topLevelEntries, m_partitionCount);
+
+			@SuppressWarnings("unchecked")
+			CompletableFuture<PartitionResult>[] partitionResults = new CompletableFuture[partitions.length];
+			for (int i=0; i<partitionResults.length; i++) {
+				partitionResults[i] = new CompletableFuture<PartitionResult>();
+			}
+
+			AtomicBoolean cancelled = new AtomicBoolean();
+			CompletableFuture<?>[] workers = startWorkers(partitions, partitionResults, cancelled);
+
+			boolean indexModified = false;
+			try {
+				for (int i=0; i<partitions.length; i++) {
+					PartitionResult currPartitionResult;
+					try {
+						currPartitionResult = partitionResults[i].get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new NotesError(0, "Interrupted while reading the collection", e);
+					} catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof RuntimeException) {
+							throw (RuntimeException) cause;
+						}
+						throw new NotesError(0, "Error reading collection partition", cause);
+					}
+
+					if (currPartitionResult.getIndexModifiedSequenceNo()!=initialIndexModified) {
+						indexModified = true;
+						break;
+					}
+
+					for (NotesViewEntryData currEntry : currPartitionResult.getEntries()) {
+						Action action = callback.entryRead(result, currEntry);
+						if (action==Action.Stop) {
+							return callback.lookupDone(result);
+						}
+					}
+				}
+
+				if (!indexModified && m_collection.getIndexModifiedSequenceNo()!=initialIndexModified) {
+					indexModified = true;
+				}
+			}
+			finally {
+				cancelled.set(true);
+				awaitWorkers(workers);
+			}
+
+			if (indexModified) {
+				//view index was changed while reading; restart scan
+				Action retryAction = callback.retryingReadBecauseViewIndexChanged(runs, System.currentTimeMillis() - t0);
+				if (retryAction==Action.Stop) {
+					return null;
+				}
+				continue;
+			}
+
+			return callback.lookupDone(result);
+		}
+	}
+
+	/**
+	 * Splits the top level entries into ranges of similar size
+	 *
+	 * @param topLevelEntries number of top level entries
+	 * @param partitionCount max number of partitions
+	 * @return array of [first top level position, last top level position], 1-based
+	 */
+	static int[][] computePartitions(int topLevelEntries, int partitionCount) {
+		int numPartitions = Math.min(topLevelEntries, partitionCount);
+		int[][] partitions = new int[numPartitions][];
+
+		int start = 1;
+		for (int i=0; i<numPartitions; i++) {
+			int size = topLevelEntries / numPartitions + (i < (topLevelEntries % numPartitions) ? 1 : 0);
+			partitions[i] = new int[] {start, start + size - 1};
+			start += size;
+		}
+		return partitions;
+	}
+
+	/**
+	 * Submits the worker tasks to the thread pool
+	 *
+	 * @param partitions partitions to read
+	 * @param partitionResults futures to complete with the partition results
+	 * @param cancelled flag to stop reading
+	 * @return futures of the worker tasks
+	 */
+	private CompletableFuture<?>[] startWorkers(final int[][] partitions, final CompletableFuture<PartitionResult>[] partitionResults,
+			final AtomicBoolean cancelled) {
+
+		final NotesDatabase parentDb = m_collection.getParent();
+		final int viewNoteId = m_collection.getNoteId();
+		final AtomicInteger nextPartition = new AtomicInteger();
+
+		int numWorkers = Math.min(m_threadCount, partitions.length);
+		CompletableFuture<?>[] workers = new CompletableFuture[numWorkers];
+
+		for (int i=0; i<numWorkers; i++) {
+			//each task runs in its own NotesGC context that disposes the reopened database and collection
+			CompletableFuture<Object> worker;
+			try {
+				worker = m_pool.submit(new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						NotesCollection col;
+						try {
+							NotesDatabase db = parentDb.reopenDatabase();
+							col = db.openCollection(viewNoteId, null);
+						}
+						catch (Throwable t) {
+							//report the error for all pending partitions
+							for (CompletableFuture<PartitionResult> currResult : partitionResults) {
+								currResult.completeExceptionally(t);
+							}
+							return null;
+						}
+
+						int partitionIdx;
+						while (!cancelled.get() && (partitionIdx = nextPartition.getAndIncrement()) < partitions.length) {
+							try {
+								PartitionResult partitionResult = readPartition(col, partitions[partitionIdx], cancelled);
+								partitionResults[partitionIdx].complete(partitionResult);
+							}
+							catch (Throwable t) {
+								//the caller rethrows the error when it reaches this partition
+								partitionResults[partitionIdx].completeExceptionally(t);
+							}
+						}
+						return null;
+					}
+				});
+			}
+			catch (RuntimeException e) {
+				//e.g. the pool has been closed
+				cancelled.set(true);
+				awaitWorkers(Arrays.copyOf(workers, i));
+				throw e;
+			}
+			workers[i] = worker.whenComplete((result, t) -> {
+				if (t!=null) {
+					//e.g. the GC context of the task could not be created
+					for (CompletableFuture<PartitionResult> currResult : partitionResults) {
+						currResult.completeExceptionally(t);
+					}
+				}
+			});
+		}
+
+		return workers;
+	}
+
+	/**
+	 * Waits until all worker tasks are done, so that no worker uses the database after the lookup
+	 *
+	 * @param workers futures of the worker tasks
+	 */
+	private void awaitWorkers(CompletableFuture<?>[] workers) {
+		for (CompletableFuture<?> currWorker : workers) {
+			try {
+				currWorker.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				//errors are reported via the partition results
+			}
+		}
+	}
+
+	/**
+	 * Reads all entries of a partition
+	 *
+	 * @param col collection opened by the worker thread
+	 * @param partition range of top level positions
+	 * @param cancelled flag to stop reading
+	 * @return partition result
+	 */
+	private PartitionResult readPartition(NotesCollection col, int[] partition, AtomicBoolean cancelled) {
+		int indexModifiedAtStart = col.getIndexModifiedSequenceNo();
+
+		List<NotesViewEntryData> entries = new ArrayList<NotesViewEntryData>();
+
+		NotesCollectionPosition pos = new NotesCollectionPosition(Integer.toString(partition[0]));
+		boolean firstLoopRun = true;
+		boolean partitionEndReached = false;
+
+		while (!partitionEndReached && !cancelled.get()) {
+			//skipCount 0 returns the first top level entry of the partition, even if it does not match the navigator
+			NotesViewLookupResultData data = col.readEntries(pos, m_returnNav, firstLoopRun ? 0 : 1, m_returnNav,
+					m_preloadEntryCount, m_returnMask);
+
+			if (col.getIndexModifiedSequenceNo()!=indexModifiedAtStart) {
+				break;
+			}
+			if (data.getReturnCount()==0) {
+				break;
+			}
+
+			List<NotesViewEntryData> currEntries = data.getEntries();
+			for (int i=0; i<currEntries.size(); i++) {
+				NotesViewEntryData currEntry = currEntries.get(i);
+
+				int[] entryPos = currEntry.getPosition();
+				if (entryPos==null || entryPos.length==0 || entryPos[0] > partition[1]) {
+					partitionEndReached = true;
+					break;
+				}
+
+				if (firstLoopRun && i==0 && !matchesNavigator(currEntry)) {
+					continue;
+				}
+
+				//entries are passed to the callback in the caller's thread; the worker's collection is disposed afterwards
+				currEntry.setParent(m_collection);
+				entries.add(currEntry);
+			}
+
+			firstLoopRun = false;
+		}
+
+		int indexModifiedAtEnd = col.getIndexModifiedSequenceNo();
+
+		return new PartitionResult(entries, indexModifiedAtStart==indexModifiedAtEnd ? indexModifiedAtEnd : -1);
+	}
+
+	private boolean matchesNavigator(NotesViewEntryData entry) {
+		if (m_returnNav.contains(Navigate.NEXT_NONCATEGORY)) {
+			return !entry.isCategory();
+		}
+		else if (m_returnNav.contains(Navigate.NEXT_CATEGORY)) {
+			return entry.isCategory();
+		}
+		return true;
+	}
+
+	/**
+	 * Entries read for a single partition
+	 */
+	private static class PartitionResult {
+		private List<NotesViewEntryData> m_entries;
+		private int m_indexModifiedSequenceNo;
+
+		public PartitionResult(List<NotesViewEntryData> entries, int indexModifiedSequenceNo) {
+			m_entries = entries;
+			m_indexModifiedSequenceNo = indexModifiedSequenceNo;
+		}
+
+		public List<NotesViewEntryData> getEntries() {
+			return m_entries;
+		}
+
+		/**
+		 * Returns the index modified sequence number while reading the partition
+		 *
+		 * @return number or -1 if the index changed while reading
+		 */
+		public int getIndexModifiedSequenceNo() {
+			return m_indexModifiedSequenceNo;
+		}
+	}
+}
@@ -49,6 +49,7 @@ import com.mindoo.domino.jna.constants.OpenNote;
 import com.mindoo.domino.jna.constants.ReplicateOption;
 import com.mindoo.domino.jna.constants.Search;
 import com.mindoo.domino.jna.constants.UpdateNote;
+import com.mindoo.domino.jna.directory.DirectoryIndex;
 import com.mindoo.domino.jna.directory.DirectoryScanner;
 import com.mindoo.domino.jna.directory.DirectoryScanner.DatabaseData;
 import com.mindoo.domino.jna.directory.DirectoryScanner.SearchResultData;
@@ -529,6 +530,7 @@ public class NotesDatabase implements IRecyclableNotesObject {
 				
 				List<String> names = NotesNamingUtils.getUserNamesList(legacyDB.getServer(), m_asUserCanonical);
 				m_namesList = NotesNamingUtils.writeNewNamesList(names);
+				m_namesStringList = names;
 
 				//setting authenticated flag for the user is required when running on the server
 				NotesNamingUtils.setPrivileges(m_namesList, EnumSet.of(Privileges.Authenticated));
@@ -678,6 +680,7 @@ public class NotesDatabase implements IRecyclableNotesObject {
 	 * @param directory top directory for search
 	 * @param templateName template name
 	 * @return list of filepaths
+	 * @see DirectoryIndex#findAllDatabasesByTemplateName(String) for repeated lookups without scanning the directory each time
 	 */
 	public static List<String> findAllDatabasesByTemplateName(String serverName, String directory,
 			String templateName) {
@@ -1277,6 +1280,24 @@ public class NotesDatabase implements IRecyclableNotesObject {
 		return m_asUserCanonical;
 	}
 
+	/**
+	 * Returns the names of the names list that is used to access the database
+	 * 
+	 * @return names, e.g. user name, groups and roles
+	 */
+	List<String> getNamesStringList() {
+		return m_namesStringList;
+	}
+
+	/**
+	 * Returns the privileges of the names list that is used to access the database
+	 * 
+	 * @return privileges
+	 */
+	EnumSet<Privileges> getNamesListPrivileges() {
+		return m_namesListPrivileges;
+	}
+
 	/**
 	 * Check if this object is recycled
 	 * 
@@ -1,7 +1,26 @@
 package com.mindoo.domino.jna;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.NoteSummaryIterator.NoteData;
+import com.mindoo.domino.jna.NotesCollection.Direction;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
 import com.mindoo.domino.jna.constants.DBQuery;
 import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
 
 /**
  * Contains the computation result for a DQL query
@@ -9,6 +28,8 @@ import com.mindoo.domino.jna.constants.Navigate;
  * @author Karsten Lehmann
  */
 public class NotesDbQueryResult {
+	private static final int DEFAULT_CHUNKSIZE = 1000;
+	
 	private NotesDatabase parentDb;
 	private String query;
 	private NotesIDTable idTable;
@@ -78,6 +99,313 @@ public class NotesDbQueryResult {
 		return this.durationInMillis;
 	}
 	
+	/**
+	 * Callback to receive the summary data of matching documents
+	 */
+	public static interface ISummaryDataCallback {
+		
+		public static enum Action {Continue, Stop};
+		
+		/**
+		 * Called for each matching document
+		 * 
+		 * @param data note id, UNID and projected summary data of the document
+		 * @return action to continue or stop reading
+		 */
+		public Action summaryDataRead(NoteData data);
+		
+	}
+	
+	/**
+	 * Reads summary data of the matching documents in chunks. For each chunk of note ids,
+	 * NSFSearchExtended3 computes the requested values from the note summary buffers, so
+	 * no note needs to be opened. Only one chunk is held in the Java heap at a time.<br>
+	 * <br>
+	 * Documents are returned in note id order. Documents deleted after the query has been
+	 * run are skipped.
+	 * 
+	 * @param columnFormulas map with key/value pairs to be computed from the note summary items, e.g. ["_created", "@Created"] to run a formula or ["form", ""] for static fields; null to read all summary items
+	 * @param chunkSize number of note ids to pass to NSFSearchExtended3 at once, e.g. 1000
+	 * @param callback callback to receive the data
+	 */
+	public void readSummaryData(Map<String,String> columnFormulas, int chunkSize, ISummaryDataCallback callback) {
+		readSummaryData(columnFormulas, 0, Integer.MAX_VALUE, chunkSize, callback);
+	}
+	
+	/**
+	 * Reads summary data for a page of matching documents in note id order. The skipped note ids
+	 * are not read from the database, so this method is cheap for the first pages of large results.
+	 * 
+	 * @param columnFormulas map with key/value pairs to be computed from the note summary items, e.g. ["_created", "@Created"] to run a formula or ["form", ""] for static fields; null to read all summary items
+	 * @param offset number of note ids to skip
+	 * @param count max number of documents to return
+	 * @return summary data
+	 */
+	public List<NoteData> getSummaryData(Map<String,String> columnFormulas, int offset, final int count) {
+		final List<NoteData> result = new ArrayList<NoteData>();
+		if (count<=0) {
+			return result;
+		}
+		
+		readSummaryData(columnFormulas, offset, count, Math.min(count, DEFAULT_CHUNKSIZE), new ISummaryDataCallback() {
+			
+			@Override
+			public Action summaryDataRead(NoteData data) {
+				result.add(data);
+				return result.size() < count ? Action.Continue : Action.Stop;
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Reads summary data of all matching documents and returns a sorted page. The values
+	 * are sorted with a bounded heap of <code>offset+count</code> entries, so only that
+	 * number of documents is kept in the Java heap, no matter how many documents match.<br>
+	 * <br>
+	 * The sort items must be part of the <code>columnFormulas</code> or summary items of the documents if
+	 * <code>columnFormulas</code> is null. For multi-value items,
+	 * the first value is used. Empty values are sorted to the end. Texts are compared case-insensitive.
+	 * 
+	 * @param columnFormulas map with key/value pairs to be computed from the note summary items, e.g. ["_created", "@Created"] to run a formula or ["form", ""] for static fields; null to read all summary items
+	 * @param sortItems items to sort by with their sort direction, in order of priority
+	 * @param offset number of sorted documents to skip
+	 * @param count max number of documents to return
+	 * @return sorted summary data
+	 */
+	public List<NoteData> getSortedSummaryData(Map<String,String> columnFormulas,
+			LinkedHashMap<String,Direction> sortItems, int offset, int count) {
+		
+		if (count<=0) {
+			return new ArrayList<NoteData>();
+		}
+		
+		final String[] sortItemNames = sortItems.keySet().toArray(new String[sortItems.size()]);
+		final boolean[] descending = new boolean[sortItemNames.length];
+		for (int i=0; i<sortItemNames.length; i++) {
+			descending[i] = sortItems.get(sortItemNames[i]) == Direction.Descending;
+		}
+		
+		final Comparator<SortEntry> comparator = new Comparator<SortEntry>() {
+			
+			@Override
+			public int compare(SortEntry o1, SortEntry o2) {
+				for (int i=0; i<sortItemNames.length; i++) {
+					int result = compareSortKeys(o1.m_sortKeys[i], o2.m_sortKeys[i], descending[i]);
+					if (result!=0) {
+						return result;
+					}
+				}
+				//keep note id order for equal values
+				return Integer.compareUnsigned(o1.m_data.getSearchMatch().getNoteId(),
+						o2.m_data.getSearchMatch().getNoteId());
+			}
+		};
+		
+		final int maxEntries = (int) Math.min(Integer.MAX_VALUE, (long) offset + count);
+		//the head of the queue is the last entry in sort order, which gets replaced first
+		final PriorityQueue<SortEntry> topEntries = new PriorityQueue<SortEntry>(Math.min(maxEntries, 1024) + 1,
+				Collections.reverseOrder(comparator));
+		
+		readSummaryData(columnFormulas, DEFAULT_CHUNKSIZE, new ISummaryDataCallback() {
+			
+			@Override
+			public Action summaryDataRead(NoteData data) {
+				Object[] sortKeys = new Object[sortItemNames.length];
+				for (int i=0; i<sortItemNames.length; i++) {
+					sortKeys[i] = toSortKey(data.get(sortItemNames[i]));
+				}
+				SortEntry entry = new SortEntry(data, sortKeys);
+				
+				if (topEntries.size() < maxEntries) {
+					topEntries.add(entry);
+				}
+				else if (comparator.compare(entry, topEntries.peek()) < 0) {
+					topEntries.poll();
+					topEntries.add(entry);
+				}
+				return Action.Continue;
+			}
+		});
+		
+		List<SortEntry> sortedEntries = new ArrayList<SortEntry>(topEntries);
+		Collections.sort(sortedEntries, comparator);
+		
+		List<NoteData> result = new ArrayList<NoteData>();
+		for (int i=offset; i<sortedEntries.size(); i++) {
+			result.add(sortedEntries.get(i).m_data);
+		}
+		return result;
+	}
+	
+	/**
+	 * Summary data with precomputed sort keys
+	 */
+	private static class SortEntry {
+		private NoteData m_data;
+		private Object[] m_sortKeys;
+		
+		public SortEntry(NoteData data, Object[] sortKeys) {
+			m_data = data;
+			m_sortKeys = sortKeys;
+		}
+	}
+	
+	/**
+	 * Converts a summary value to a {@link Double}, {@link Date} or {@link String} that can be compared
+	 * without further conversions
+	 * 
+	 * @param value value
+	 * @return sort key or null for empty values
+	 */
+	private static Object toSortKey(Object value) {
+		if (value instanceof List) {
+			List<?> values = (List<?>) value;
+			value = values.isEmpty() ? null : values.get(0);
+		}
+		
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		else if (value instanceof NotesTimeDate) {
+			return new Date(((NotesTimeDate) value).toDateInMillis());
+		}
+		else if (value instanceof Calendar) {
+			return ((Calendar) value).getTime();
+		}
+		else if (value instanceof Date) {
+			return value;
+		}
+		else if (value instanceof String) {
+			return ((String) value).length()==0 ? null : value;
+		}
+		else if (value!=null) {
+			return value.toString();
+		}
+		return null;
+	}
+	
+	private static int getSortKeyTypeRank(Object sortKey) {
+		if (sortKey instanceof Double) {
+			return 0;
+		}
+		else if (sortKey instanceof Date) {
+			return 1;
+		}
+		else {
+			return 2;
+		}
+	}
+	
+	private static int compareSortKeys(Object key1, Object key2, boolean descending) {
+		//empty values last, independent from the sort direction
+		if (key1==null) {
+			return key2==null ? 0 : 1;
+		}
+		else if (key2==null) {
+			return -1;
+		}
+		
+		int result;
+		int rank1 = getSortKeyTypeRank(key1);
+		int rank2 = getSortKeyTypeRank(key2);
+		if (rank1!=rank2) {
+			result = Integer.compare(rank1, rank2);
+		}
+		else if (key1 instanceof Double) {
+			result = ((Double) key1).compareTo((Double) key2);
+		}
+		else if (key1 instanceof Date) {
+			result = ((Date) key1).compareTo((Date) key2);
+		}
+		else {
+			result = String.CASE_INSENSITIVE_ORDER.compare((String) key1, (String) key2);
+		}
+		return descending ? -result : result;
+	}
+	
+	/**
+	 * Reads summary data for note ids of the result in chunks
+	 * 
+	 * @param columnFormulas column formulas or null for all summary items
+	 * @param offset number of note ids to skip
+	 * @param count max number of note ids to read
+	 * @param chunkSize number of note ids per NSFSearchExtended3 call
+	 * @param callback callback
+	 */
+	private void readSummaryData(final Map<String,String> columnFormulas, int offset, int count, int chunkSize,
+			final ISummaryDataCallback callback) {
+		
+		if (this.idTable==null || this.idTable.isEmpty()) {
+			return;
+		}
+		if (chunkSize<1) {
+			throw new IllegalArgumentException("Chunk size must be at least 1: "+chunkSize);
+		}
+		
+		//read the ids once so that we don't need a C call per note id to build the chunks
+		PrimitiveIterator.OfInt idsIt = this.idTable.toBitmap().iterator();
+		for (int i=0; i<offset && idsIt.hasNext(); i++) {
+			idsIt.nextInt();
+		}
+		
+		int remaining = count;
+		
+		while (idsIt.hasNext() && remaining>0) {
+			NoteIdBitmap chunkIds = new NoteIdBitmap();
+			while (idsIt.hasNext() && chunkIds.getCount()<chunkSize && chunkIds.getCount()<remaining) {
+				chunkIds.add(idsIt.nextInt());
+			}
+			remaining -= chunkIds.getCount();
+			
+			//NSFSearchExtended3 reports the notes in database order, so we restore note id order
+			final TreeMap<Integer,NoteData> chunkData = new TreeMap<Integer,NoteData>(new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Integer.compareUnsigned(o1, o2);
+				}
+			});
+			
+			NotesIDTable chunkTable = new NotesIDTable(chunkIds);
+			try {
+				NotesSearch.search(this.parentDb, chunkTable, "@true", columnFormulas, "-",
+						EnumSet.of(Search.SUMMARY, Search.SESSION_USERNAME), EnumSet.of(NoteClass.DATA), null,
+						new NotesSearch.SearchCallback() {
+					
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+							IItemTableData summaryBufferData) {
+						
+						TreeMap<String,Object> summaryData = new TreeMap<String,Object>(String.CASE_INSENSITIVE_ORDER);
+						if (summaryBufferData!=null) {
+							summaryBufferData.setPreferNotesTimeDates(true);
+							if (columnFormulas==null) {
+								summaryData.putAll(summaryBufferData.asMap());
+							}
+							else {
+								for (String currItemName : columnFormulas.keySet()) {
+									summaryData.put(currItemName, summaryBufferData.get(currItemName));
+								}
+							}
+						}
+						chunkData.put(searchMatch.getNoteId(), new NoteData(searchMatch, summaryData));
+						return Action.Continue;
+					}
+				});
+			}
+			finally {
+				chunkTable.recycle();
+			}
+			
+			for (NoteData currData : chunkData.values()) {
+				if (callback.summaryDataRead(currData) == ISummaryDataCallback.Action.Stop) {
+					return;
+				}
+			}
+		}
+	}
+	
 	@Override
 	public String toString() {
 		if (this.idTable!=null && this.idTable.isRecycled()) {
@@ -0,0 +1,272 @@
+package com.mindoo.domino.jna;
+
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+import com.mindoo.domino.jna.constants.DBQuery;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.dql.DQL;
+import com.mindoo.domino.jna.dql.DQL.DQLTerm;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
+import com.mindoo.domino.jna.utils.NotesNamingUtils.Privileges;
+
+/**
+ * Cache for DQL query results that avoids running the full query again when the same
+ * query is executed repeatedly against a slowly changing database.<br>
+ * <br>
+ * Results are cached by database, names list of the database user, query flags and query string,
+ * so that users with different read access do not share results. When a query is run again,
+ * the data and design modification times of the database are compared with the ones of the cached
+ * result:
+ * <ul>
+ * <li>no modifications: the cached note ids are returned</li>
+ * <li>design modified: the query is run again, because view and folder content may have changed</li>
+ * <li>data modified: the note ids modified since the last run are read via
+ * {@link NotesDatabase#getModifiedNoteTable(EnumSet, NotesTimeDate, NotesTimeDate)}, removed from the
+ * cached result and the query is run again restricted to
+ * <code>@ModifiedInThisFile</code> &gt;= last run to add the modified notes that still match</li>
+ * </ul>
+ * The note ids are stored as {@link NoteIdBitmap} in Java heap memory, so that cached results
+ * are not bound to a {@link NotesGC} context. Each call returns a new {@link NotesIDTable}
+ * that the caller may modify and recycle.<br>
+ * <br>
+ * Cached results do not contain an explain text. The class is thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesDbQueryResultCache {
+	private final int m_maxEntries;
+	private final Map<String,CacheEntry> m_entries;
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param maxEntries max number of cached query results, least recently used results get removed first
+	 */
+	public NotesDbQueryResultCache(final int maxEntries) {
+		if (maxEntries<1) {
+			throw new IllegalArgumentException("Max entries must be at least 1: "+maxEntries);
+		}
+		m_maxEntries = maxEntries;
+		m_entries = new LinkedHashMap<String,CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,CacheEntry> eldest) {
+				return size() > m_maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Cached note ids of a query with the database modification times they reflect
+	 */
+	private static class CacheEntry {
+		private NoteIdBitmap m_noteIds;
+		/** data modification time of the database when the result was last refreshed */
+		private NotesTimeDate m_dataModified;
+		/** design modification time of the database when the result was computed */
+		private NotesTimeDate m_nonDataModified;
+		/** start time for the next {@link NotesDatabase#getModifiedNoteTable(EnumSet, NotesTimeDate, NotesTimeDate)} call */
+		private NotesTimeDate m_since;
+	}
+
+	/**
+	 * Runs a DQL query or returns the cached result
+	 *
+	 * @param db database
+	 * @param query Domino query (DQL) generated via {@link DQL} factory class
+	 * @return query result
+	 * @since V10
+	 */
+	public NotesDbQueryResult query(NotesDatabase db, DQLTerm query) {
+		return query(db, query.toString(), null);
+	}
+
+	/**
+	 * Runs a DQL query or returns the cached result
+	 *
+	 * @param db database
+	 * @param query Domino query (DQL) generated via {@link DQL} factory class
+	 * @param flags controlling execution, see {@link DBQuery}
+	 * @return query result
+	 * @since V10
+	 */
+	public NotesDbQueryResult query(NotesDatabase db, DQLTerm query, EnumSet<DBQuery> flags) {
+		return query(db, query.toString(), flags);
+	}
+
+	/**
+	 * Runs a DQL query or returns the cached result
+	 *
+	 * @param db database
+	 * @param query Domino query (DQL) as a single string (max 64K in length)
+	 * @param flags controlling execution, see {@link DBQuery}
+	 * @return query result
+	 * @since V10
+	 */
+	public NotesDbQueryResult query(NotesDatabase db, String query, EnumSet<DBQuery> flags) {
+		String normalizedQuery = query.trim();
+		String key = createKey(getDbKey(db), db.getNamesStringList(), db.getNamesListPrivileges(),
+				flags==null ? 0 : DBQuery.toBitMask(flags), normalizedQuery);
+
+		CacheEntry entry;
+		synchronized (m_entries) {
+			entry = m_entries.get(key);
+			if (entry==null) {
+				entry = new CacheEntry();
+				m_entries.put(key, entry);
+			}
+		}
+
+		long t0=System.currentTimeMillis();
+
+		synchronized (entry) {
+			NotesTimeDate[] modifiedTimes = db.getLastModifiedTimes();
+			NotesTimeDate dataModified = modifiedTimes[0];
+			NotesTimeDate nonDataModified = modifiedTimes[1];
+
+			if (entry.m_noteIds==null || !nonDataModified.equals(entry.m_nonDataModified)) {
+				//not cached yet or design changed; notes modified while the query is running
+				//get re-evaluated in the next incremental refresh
+				NotesDbQueryResult result = db.query(normalizedQuery, flags);
+				NotesIDTable idTable = result.getIDTable();
+				entry.m_noteIds = idTable==null ? new NoteIdBitmap() : idTable.toBitmap();
+				entry.m_dataModified = dataModified;
+				entry.m_nonDataModified = nonDataModified;
+				entry.m_since = dataModified;
+				return result;
+			}
+
+			if (!dataModified.equals(entry.m_dataModified)) {
+				refresh(db, normalizedQuery, flags, entry);
+				entry.m_dataModified = dataModified;
+			}
+
+			NotesIDTable idTable = new NotesIDTable(entry.m_noteIds);
+			return new NotesDbQueryResult(db, normalizedQuery, idTable, "", System.currentTimeMillis()-t0);
+		}
+	}
+
+	/**
+	 * Patches the cached note ids with the notes modified since the last refresh
+	 *
+	 * @param db database
+	 * @param query DQL query
+	 * @param flags query flags
+	 * @param entry cache entry
+	 */
+	private void refresh(NotesDatabase db, String query, EnumSet<DBQuery> flags, CacheEntry entry) {
+		NotesTimeDate since = entry.m_since;
+		NotesTimeDate until = new NotesTimeDate();
+
+		NotesIDTable changedTable = db.getModifiedNoteTable(EnumSet.of(NoteClass.DATA), since, until);
+		NoteIdBitmap changedIds;
+		try {
+			changedIds = changedTable.toBitmap();
+		}
+		finally {
+			changedTable.recycle();
+		}
+
+		if (!changedIds.isEmpty()) {
+			//deleted notes are returned with the RRV_DELETED flag
+			NoteIdBitmap idsToRemove = new NoteIdBitmap();
+			PrimitiveIterator.OfInt idsIt = changedIds.iterator();
+			while (idsIt.hasNext()) {
+				idsToRemove.add(idsIt.nextInt() & ~((int) NotesConstants.RRV_DELETED));
+			}
+			entry.m_noteIds.andNot(idsToRemove);
+
+			//run the query only for modified notes; DQL compares with second precision,
+			//so we start one second earlier and may re-evaluate a few unmodified notes
+			Date sinceDate = new Date(since.toDate().getTime() - 1000);
+			String modifiedQuery = "(" + query + ") and " + DQL.modifiedInThisFile().isGreaterThanOrEqual(sinceDate);
+			NotesDbQueryResult modifiedResult = db.query(modifiedQuery, flags);
+			NotesIDTable modifiedMatches = modifiedResult.getIDTable();
+			if (modifiedMatches!=null) {
+				try {
+					entry.m_noteIds.or(modifiedMatches.toBitmap());
+				}
+				finally {
+					modifiedMatches.recycle();
+				}
+			}
+		}
+
+		entry.m_since = until;
+	}
+
+	private String getDbKey(NotesDatabase db) {
+		return (db.getServer() + "!!" + db.getRelativeFilePath()).toLowerCase();
+	}
+
+	/**
+	 * Builds the cache key of a query result. The key starts with the database key, so that
+	 * {@link #invalidate(NotesDatabase)} can remove the results of all users
+	 *
+	 * @param dbKey database key
+	 * @param names names list used to open the database
+	 * @param privileges privileges of the names list
+	 * @param flagsBitmask query flags
+	 * @param normalizedQuery query string
+	 * @return key
+	 */
+	static String createKey(String dbKey, List<String> names, EnumSet<Privileges> privileges,
+			int flagsBitmask, String normalizedQuery) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(dbKey).append('|');
+		if (names!=null) {
+			for (String currName : names) {
+				//names are case insensitive, the length prefix keeps names containing the separator unique
+				sb.append(currName.length()).append(':').append(currName.toLowerCase());
+			}
+		}
+		sb.append('|').append(privileges);
+		sb.append('|').append(flagsBitmask).append('|').append(normalizedQuery);
+		return sb.toString();
+	}
+
+	/**
+	 * Removes all cached query results of a database
+	 *
+	 * @param db database
+	 */
+	public void invalidate(NotesDatabase db) {
+		String prefix = getDbKey(db) + "|";
+		synchronized (m_entries) {
+			Iterator<String> keysIt = m_entries.keySet().iterator();
+			while (keysIt.hasNext()) {
+				if (keysIt.next().startsWith(prefix)) {
+					keysIt.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached query results
+	 */
+	public void clear() {
+		synchronized (m_entries) {
+			m_entries.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of cached query results
+	 *
+	 * @return count
+	 */
+	public int size() {
+		synchronized (m_entries) {
+			return m_entries.size();
+		}
+	}
+}
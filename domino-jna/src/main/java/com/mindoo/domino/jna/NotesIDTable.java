@@ -13,6 +13,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -26,6 +27,7 @@ import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.IRecyclableNotesObject;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.CallbackPool;
 import com.mindoo.domino.jna.internal.Handle;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
@@ -34,8 +36,8 @@ import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
-import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.sun.jna.Pointer;
@@ -118,6 +120,18 @@ public class NotesIDTable implements IRecyclableNotesObject, Iterable<Integer> {
 		addNotes(idsAsList, true);
 	}
 	
+	/**
+	 * Creates a new ID table and adds the content of a {@link NoteIdBitmap}.<br>
+	 * <br>
+	 * Consecutive IDs are inserted as ranges with a single C call per range.
+	 * 
+	 * @param bitmap IDs to add
+	 */
+	public NotesIDTable(NoteIdBitmap bitmap) {
+		this();
+		addNotes(bitmap, true);
+	}
+	
 	/**
 	 * Wraps an existing ID table, 32 bit mode
 	 * 
@@ -311,6 +325,73 @@ public class NotesIDTable implements IRecyclableNotesObject, Iterable<Integer> {
 		addNotes(noteIds, addToEnd);
 	}
 
+	/**
+	 * Adds the content of a {@link NoteIdBitmap} to this id table
+	 * 
+	 * @param bitmap ids to add
+	 */
+	public void addNotes(NoteIdBitmap bitmap) {
+		boolean addToEnd = false;
+		if (getCount()==0) {
+			addToEnd = true;
+		}
+		
+		addNotes(bitmap, addToEnd);
+	}
+	
+	/**
+	 * Method to add the content of a {@link NoteIdBitmap}. The bitmap returns its
+	 * IDs sorted (unsigned like the ID table), so we can directly collect
+	 * ranges of consecutive IDs and insert them with one C call per range.
+	 * 
+	 * @param bitmap ids to add
+	 * @param addToEnd set to true if we can <b>guarantee</b> that the ids we add are higher that the highest IDs in the table
+	 */
+	private void addNotes(NoteIdBitmap bitmap, boolean addToEnd) {
+		checkHandle();
+		
+		PrimitiveIterator.OfInt idsIt = bitmap.iterator();
+		if (!idsIt.hasNext()) {
+			return;
+		}
+		
+		int rangeStart = idsIt.nextInt();
+		int rangeEnd = rangeStart;
+		
+		while (true) {
+			boolean hasNext = idsIt.hasNext();
+			int currNoteId = hasNext ? idsIt.nextInt() : 0;
+			
+			if (hasNext && currNoteId == (rangeEnd + 4)) {
+				rangeEnd = currNoteId;
+				continue;
+			}
+			
+			//flush current range
+			if (rangeStart==rangeEnd) {
+				addNote(rangeStart);
+			}
+			else {
+				short result;
+				
+				if (PlatformUtils.is64Bit()) {
+					result = NotesNativeAPI64.get().IDInsertRange(m_idTableHandle64, rangeStart, rangeEnd, addToEnd);
+				}
+				else {
+					result = NotesNativeAPI32.get().IDInsertRange(m_idTableHandle32, rangeStart, rangeEnd, addToEnd);
+				}
+				
+				NotesErrorUtils.checkResult(result);
+			}
+			
+			if (!hasNext) {
+				break;
+			}
+			rangeStart = currNoteId;
+			rangeEnd = currNoteId;
+		}
+	}
+	
 	/**
 	 * Method to add a list of note ids. Method is private to prevent
 	 * wrong usage by setting <i>addToEnd</i> to true when it's not ok.
@@ -789,14 +870,45 @@ public class NotesIDTable implements IRecyclableNotesObject, Iterable<Integer> {
 	 * @return int array
 	 */
 	public int[] toArray() {
-		List<Integer> idsAsList = toList();
-		int[] idsArr = new int[idsAsList.size()];
+		final int[] idsArr = new int[getCount()];
+		final int[] pos = new int[1];
+		
+		enumerate(new IEnumerateCallback() {
+
+			@Override
+			public Action noteVisited(int noteId) {
+				if (pos[0] < idsArr.length) {
+					idsArr[pos[0]++] = noteId;
+					return Action.Continue;
+				}
+				return Action.Stop;
+			}
+		});
 		
-		for (int i=0; i<idsAsList.size(); i++) {
-			idsArr[i] = idsAsList.get(i).intValue();
-		}
 		return idsArr;
 	}
+	
+	/**
+	 * Copies the content of this id table into a {@link NoteIdBitmap} with a single
+	 * enumeration of the table. The bitmap can then be used for set operations in
+	 * Java code without a C call per note id.
+	 * 
+	 * @return bitmap
+	 */
+	public NoteIdBitmap toBitmap() {
+		final NoteIdBitmap bitmap = new NoteIdBitmap();
+		
+		enumerate(new IEnumerateCallback() {
+
+			@Override
+			public Action noteVisited(int noteId) {
+				bitmap.add(noteId);
+				return Action.Continue;
+			}
+		});
+		
+		return bitmap;
+	}
 
 	/**
 	 * Callback interface for ID table scanning
@@ -824,39 +936,23 @@ public class NotesIDTable implements IRecyclableNotesObject, Iterable<Integer> {
 	public void enumerate(final IEnumerateCallback callback) {
 		checkHandle();
 		
-		final NotesCallbacks.IdEnumerateProc proc;
-		if (PlatformUtils.isWin32()) {
-			proc = new Win32NotesCallbacks.IdEnumerateProcWin32() {
+		//use a pooled callback to avoid creating a new native callback stub for each call
+		final NotesCallbacks.IdEnumerateProc proc = CallbackPool.IDENUMERATE.acquire(new NotesCallbacks.IdEnumerateProc() {
 
-				@Override
-				public short invoke(Pointer parameter, int noteId) {
-					Action result = callback.noteVisited(noteId);
-					if (result==Action.Stop) {
-						return INotesErrorConstants.ERR_CANCEL;
-					}
-					return 0;
+			@Override
+			public short invoke(Pointer parameter, int noteId) {
+				Action result = callback.noteVisited(noteId);
+				if (result==Action.Stop) {
+					return INotesErrorConstants.ERR_CANCEL;
 				}
-				
-			};
-		}
-		else {
-			proc = new NotesCallbacks.IdEnumerateProc() {
+				return 0;
+			}
 
-				@Override
-				public short invoke(Pointer parameter, int noteId) {
-					Action result = callback.noteVisited(noteId);
-					if (result==Action.Stop) {
-						return INotesErrorConstants.ERR_CANCEL;
-					}
-					return 0;
-				}
-				
-			};
-		}
+		});
 		
 		try {
 			//AccessController call required to prevent SecurityException when running in XPages
-			AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
+			CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Object>() {
 
 				@Override
 				public Object run() throws Exception {
@@ -881,6 +977,9 @@ public class NotesIDTable implements IRecyclableNotesObject, Iterable<Integer> {
 			else
 				throw new NotesError(0, "Error enumerating ID table", e);
 		}
+		finally {
+			CallbackPool.IDENUMERATE.release(proc);
+		}
 	}
 	
 	/**
@@ -0,0 +1,545 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.LazySummarySearchCallback;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback.Action;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.directory.DirectoryScanner;
+import com.mindoo.domino.jna.directory.DirectoryScanner.DatabaseData;
+import com.mindoo.domino.jna.directory.DirectoryScanner.SearchResultData;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
+
+/**
+ * Runs the same database search with {@link NotesSearch} over many databases, e.g.
+ * all mail files found via {@link DirectoryScanner}, using a pool of worker threads.<br>
+ * <br>
+ * Each database is opened and searched by a worker thread in its own {@link NotesGC}
+ * context, so database handles and search resources are released as soon as the
+ * database has been processed. The searches run in parallel, but the calls to the
+ * {@link SearchCallback} are serialized, so the callback receives a single stream of results
+ * and does not need to be thread-safe. The {@link NotesDatabase} passed to the callback
+ * is only valid during the callback invocation.<br>
+ * <br>
+ * Returning {@link Action#Stop} from the callback stops the searches of all databases.
+ * Errors opening or searching a database do not stop the other searches, they are
+ * reported in the {@link DatabaseSearchResult} of that database. The same applies if
+ * a worker thread cannot be initialized for the C API and no other worker is left to
+ * search the database. Exceptions thrown
+ * by the callback stop all searches and are rethrown by {@link #search(SearchCallback)}.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesMultiDatabaseSearch {
+	private String m_formula;
+	private int m_threadCount;
+	private List<String[]> m_databases;
+	private Map<String,String> m_columnFormulas;
+	private String m_viewTitle;
+	private EnumSet<Search> m_searchFlags;
+	private EnumSet<NoteClass> m_noteClasses;
+	private NotesTimeDate m_since;
+	private String m_asUserCanonical;
+
+	/**
+	 * Creates a new instance using one worker thread per CPU core
+	 *
+	 * @param formula selection formula, e.g. SELECT Form="Memo"
+	 */
+	public NotesMultiDatabaseSearch(String formula) {
+		this(formula, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param formula selection formula, e.g. SELECT Form="Memo"
+	 * @param threadCount max number of databases to search in parallel
+	 */
+	public NotesMultiDatabaseSearch(String formula, int threadCount) {
+		if (threadCount<1) {
+			throw new IllegalArgumentException("Thread count must be at least 1: "+threadCount);
+		}
+		m_formula = formula;
+		m_threadCount = threadCount;
+		m_databases = new ArrayList<String[]>();
+		m_viewTitle = "-";
+		m_searchFlags = EnumSet.of(Search.SUMMARY);
+		m_noteClasses = EnumSet.of(NoteClass.DOCUMENT);
+	}
+
+	/**
+	 * Adds a database to search
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch addDatabase(String server, String filePath) {
+		m_databases.add(new String[] {server==null ? "" : server, filePath});
+		return this;
+	}
+
+	/**
+	 * Adds all databases of a {@link DirectoryScanner} result. Folders are ignored.
+	 *
+	 * @param server server that has been scanned
+	 * @param scanResult scan result
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch addDatabases(String server, Collection<? extends SearchResultData> scanResult) {
+		for (SearchResultData currData : scanResult) {
+			if (currData instanceof DatabaseData) {
+				addDatabase(server, ((DatabaseData) currData).getFilePath());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets column formulas to compute values for the summary buffer, see
+	 * {@link NotesSearch#search(NotesDatabase, NotesIDTable, String, Map, String, EnumSet, EnumSet, NotesTimeDate, SearchCallback)}
+	 *
+	 * @param columnFormulas map of programmatic column names (max 31 characters) and column formulas or null
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch setColumnFormulas(Map<String,String> columnFormulas) {
+		m_columnFormulas = columnFormulas==null ? null : new LinkedHashMap<String,String>(columnFormulas);
+		return this;
+	}
+
+	/**
+	 * Sets the view title returned by @ViewTitle, default is "-"
+	 *
+	 * @param viewTitle view title
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch setViewTitle(String viewTitle) {
+		m_viewTitle = viewTitle;
+		return this;
+	}
+
+	/**
+	 * Sets the search flags, default is {@link Search#SUMMARY}
+	 *
+	 * @param searchFlags flags
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch setSearchFlags(EnumSet<Search> searchFlags) {
+		m_searchFlags = searchFlags.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the note classes to search, default is {@link NoteClass#DOCUMENT}
+	 *
+	 * @param noteClasses note classes
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch setNoteClasses(EnumSet<NoteClass> noteClasses) {
+		m_noteClasses = noteClasses.clone();
+		return this;
+	}
+
+	/**
+	 * Sets a start date to only search notes modified after this date
+	 *
+	 * @param since date or null to search all notes
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch setSince(NotesTimeDate since) {
+		m_since = since;
+		return this;
+	}
+
+	/**
+	 * Sets the user context to open the databases
+	 *
+	 * @param asUserCanonical user context or null/empty string to open as ID owner
+	 * @return this instance
+	 */
+	public NotesMultiDatabaseSearch setUserName(String asUserCanonical) {
+		m_asUserCanonical = asUserCanonical;
+		return this;
+	}
+
+	/**
+	 * Searches all added databases
+	 *
+	 * @param callback callback to receive the search results of all databases, invocations are serialized
+	 * @return one result per added database in the order they have been added
+	 */
+	public List<DatabaseSearchResult> search(final SearchCallback callback) {
+		final List<DatabaseSearchResult> results = new ArrayList<DatabaseSearchResult>(m_databases.size());
+		for (String[] currDb : m_databases) {
+			results.add(new DatabaseSearchResult(currDb[0], currDb[1]));
+		}
+		if (results.isEmpty()) {
+			return results;
+		}
+
+		final Object callbackLock = new Object();
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicReference<Throwable> callbackError = new AtomicReference<Throwable>();
+		final AtomicReference<Throwable> initError = new AtomicReference<Throwable>();
+		final AtomicInteger nextDb = new AtomicInteger();
+		final AtomicInteger threadNo = new AtomicInteger();
+
+		int numThreads = Math.min(m_threadCount, results.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "NotesMultiDatabaseSearch-"+threadNo.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		for (int i=0; i<numThreads; i++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						NotesInitUtils.notesInitThread();
+					}
+					catch (Throwable t) {
+						//leave the databases to the other workers, see below
+						initError.compareAndSet(null, t);
+						return;
+					}
+					try {
+						int dbIdx;
+						while (!stopped.get() && (dbIdx = nextDb.getAndIncrement()) < results.size()) {
+							DatabaseSearchResult currResult = results.get(dbIdx);
+							SearchCallback workerCallback = createWorkerCallback(callback, callbackLock, stopped,
+									callbackError, currResult);
+							searchDatabase(currResult, workerCallback);
+						}
+					}
+					finally {
+						NotesInitUtils.notesTermThread();
+					}
+				}
+			});
+		}
+
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			stopped.set(true);
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while searching databases", e);
+		}
+
+		//databases that no worker could search because of thread initialization errors
+		Throwable initT = initError.get();
+		if (initT!=null && !stopped.get()) {
+			for (DatabaseSearchResult currResult : results) {
+				if (!currResult.m_searched) {
+					currResult.m_error = initT;
+					currResult.m_searched = true;
+				}
+			}
+		}
+
+		Throwable t = callbackError.get();
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		else if (t instanceof Error) {
+			throw (Error) t;
+		}
+		else if (t!=null) {
+			throw new NotesError(0, "Error in search callback", t);
+		}
+		return results;
+	}
+
+	/**
+	 * Opens and searches a single database in its own {@link NotesGC} context
+	 *
+	 * @param result result object to fill
+	 * @param workerCallback callback for this database
+	 */
+	private void searchDatabase(final DatabaseSearchResult result, final SearchCallback workerCallback) {
+		long t0=System.currentTimeMillis();
+		try {
+			NotesGC.runWithAutoGC(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					NotesDatabase db = new NotesDatabase(result.getServer(), result.getFilePath(), m_asUserCanonical);
+					NotesTimeDate endTimeDate;
+					if (m_columnFormulas!=null) {
+						endTimeDate = NotesSearch.search(db, null, m_formula, m_columnFormulas, m_viewTitle, m_searchFlags,
+								m_noteClasses, m_since, workerCallback);
+					}
+					else {
+						endTimeDate = NotesSearch.search(db, null, m_formula, m_viewTitle, m_searchFlags,
+								m_noteClasses, m_since, workerCallback);
+					}
+					result.m_endTimeDate = endTimeDate;
+					return null;
+				}
+			});
+		}
+		catch (Throwable t) {
+			result.m_error = t;
+		}
+		finally {
+			result.m_durationMillis = System.currentTimeMillis() - t0;
+			result.m_searched = true;
+		}
+	}
+
+	/**
+	 * Creates a callback for a single database that passes the search results to the caller's
+	 * callback with serialized invocations
+	 *
+	 * @param callback caller's callback
+	 * @param callbackLock lock to serialize invocations
+	 * @param stopped flag to stop all searches
+	 * @param callbackError receives the first exception thrown by the caller's callback
+	 * @param result result object to count matches
+	 * @return callback
+	 */
+	private SearchCallback createWorkerCallback(final SearchCallback callback, final Object callbackLock,
+			final AtomicBoolean stopped, final AtomicReference<Throwable> callbackError, final DatabaseSearchResult result) {
+
+		if (callback instanceof LazySummarySearchCallback) {
+			final LazySummarySearchCallback lazyCallback = (LazySummarySearchCallback) callback;
+
+			return new LazySummarySearchCallback() {
+
+				@Override
+				LazySummaryBuffer createSummaryBuffer(String[] columnItemNames) {
+					return lazyCallback.createSummaryBuffer(columnItemNames);
+				}
+
+				@Override
+				public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+					synchronized (callbackLock) {
+						if (stopped.get()) {
+							return Action.Stop;
+						}
+						result.m_matchCount++;
+						try {
+							return checkAction(lazyCallback.noteFound(parentDb, searchMatch, summary), stopped);
+						}
+						catch (RuntimeException | Error e) {
+							return handleCallbackError(e, stopped, callbackError);
+						}
+					}
+				}
+
+				@Override
+				public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+					synchronized (callbackLock) {
+						if (stopped.get()) {
+							return Action.Stop;
+						}
+						try {
+							return checkAction(lazyCallback.deletionStubFound(parentDb, searchMatch, summary), stopped);
+						}
+						catch (RuntimeException | Error e) {
+							return handleCallbackError(e, stopped, callbackError);
+						}
+					}
+				}
+
+				@Override
+				public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+					synchronized (callbackLock) {
+						if (stopped.get()) {
+							return Action.Stop;
+						}
+						try {
+							return checkAction(lazyCallback.noteFoundNotMatchingFormula(parentDb, searchMatch, summary), stopped);
+						}
+						catch (RuntimeException | Error e) {
+							return handleCallbackError(e, stopped, callbackError);
+						}
+					}
+				}
+			};
+		}
+
+		return new SearchCallback() {
+
+			@Override
+			public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+				synchronized (callbackLock) {
+					if (stopped.get()) {
+						return Action.Stop;
+					}
+					result.m_matchCount++;
+					try {
+						return checkAction(callback.noteFound(parentDb, searchMatch, summaryBufferData), stopped);
+					}
+					catch (RuntimeException | Error e) {
+						return handleCallbackError(e, stopped, callbackError);
+					}
+				}
+			}
+
+			@Override
+			public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+				synchronized (callbackLock) {
+					if (stopped.get()) {
+						return Action.Stop;
+					}
+					try {
+						return checkAction(callback.deletionStubFound(parentDb, searchMatch, summaryBufferData), stopped);
+					}
+					catch (RuntimeException | Error e) {
+						return handleCallbackError(e, stopped, callbackError);
+					}
+				}
+			}
+
+			@Override
+			public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+				synchronized (callbackLock) {
+					if (stopped.get()) {
+						return Action.Stop;
+					}
+					try {
+						return checkAction(callback.noteFoundNotMatchingFormula(parentDb, searchMatch, summaryBufferData), stopped);
+					}
+					catch (RuntimeException | Error e) {
+						return handleCallbackError(e, stopped, callbackError);
+					}
+				}
+			}
+		};
+	}
+
+	private static Action checkAction(Action action, AtomicBoolean stopped) {
+		if (action==Action.Stop) {
+			stopped.set(true);
+		}
+		return action;
+	}
+
+	private static Action handleCallbackError(Throwable t, AtomicBoolean stopped, AtomicReference<Throwable> callbackError) {
+		callbackError.compareAndSet(null, t);
+		stopped.set(true);
+		return Action.Stop;
+	}
+
+	/**
+	 * Search result and timing of a single database
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static class DatabaseSearchResult {
+		private String m_server;
+		private String m_filePath;
+		private boolean m_searched;
+		private int m_matchCount;
+		private long m_durationMillis;
+		private NotesTimeDate m_endTimeDate;
+		private Throwable m_error;
+
+		private DatabaseSearchResult(String server, String filePath) {
+			m_server = server;
+			m_filePath = filePath;
+		}
+
+		/**
+		 * Returns the database server
+		 *
+		 * @return server
+		 */
+		public String getServer() {
+			return m_server;
+		}
+
+		/**
+		 * Returns the database filepath
+		 *
+		 * @return filepath
+		 */
+		public String getFilePath() {
+			return m_filePath;
+		}
+
+		/**
+		 * Returns whether the database has been searched. Returns false if the
+		 * search has been stopped before this database was processed.
+		 *
+		 * @return true if searched
+		 */
+		public boolean isSearched() {
+			return m_searched;
+		}
+
+		/**
+		 * Returns the number of matches passed to the callback
+		 *
+		 * @return count
+		 */
+		public int getMatchCount() {
+			return m_matchCount;
+		}
+
+		/**
+		 * Returns the time in milliseconds to open and search the database, including
+		 * the time spent in the callback and waiting for callback invocations of other databases
+		 *
+		 * @return duration
+		 */
+		public long getDurationMillis() {
+			return m_durationMillis;
+		}
+
+		/**
+		 * Returns the end date of the search that can be used as <code>since</code> value
+		 * for the next incremental search
+		 *
+		 * @return date or null if the search failed
+		 */
+		public NotesTimeDate getEndTimeDate() {
+			return m_endTimeDate;
+		}
+
+		/**
+		 * Returns the error opening or searching the database or initializing the
+		 * worker thread for the search
+		 *
+		 * @return error or null if successful
+		 */
+		public Throwable getError() {
+			return m_error;
+		}
+
+		@Override
+		public String toString() {
+			return "DatabaseSearchResult [server="+m_server+", filepath="+m_filePath+", searched="+m_searched+
+					", matches="+m_matchCount+", duration="+m_durationMillis+"ms"+
+					(m_error==null ? "" : ", error="+m_error)+"]";
+		}
+	}
+}
@@ -54,6 +54,7 @@ import com.mindoo.domino.jna.internal.CollationDecoder;
 import com.mindoo.domino.jna.internal.CompoundTextWriter;
 import com.mindoo.domino.jna.internal.DisposableMemory;
 import com.mindoo.domino.jna.internal.ItemDecoder;
+import com.mindoo.domino.jna.internal.LMBCSEncoder;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
@@ -91,6 +92,7 @@ import com.mindoo.domino.jna.utils.LegacyAPIUtils;
 import com.mindoo.domino.jna.utils.Loop;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils.LineBreakConversion;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.Ref;
 import com.mindoo.domino.jna.utils.StringUtil;
@@ -187,6 +189,10 @@ public class NotesNote implements IRecyclableNotesObject {
 					m_parentDb = (NotesDatabase) NotesGC.__b32_checkValidObjectHandle(NotesDatabase.class, (int) dbHandle);
 				}
 			} catch (NotesError e) {
+				m_parentDb = null;
+			}
+			if (m_parentDb==null) {
+				//handle not found or not tracked in GC release mode
 				m_parentDb = LegacyAPIUtils.toNotesDatabase(legacyDb);
 			}
 			return;
@@ -3678,15 +3684,23 @@ public class NotesNote implements IRecyclableNotesObject {
 		}
 		
 		if (value instanceof String) {
-			Memory strValueMem;
-			if (keepLineBreaks) {
-				strValueMem = NotesStringUtils.toLMBCS((String)value, false, false);
-			}
-			else {
-				strValueMem = NotesStringUtils.toLMBCS((String)value, false);
+			String strValue = (String) value;
+			LineBreakConversion lineBreakConversion = keepLineBreaks ? LineBreakConversion.LINEFEED : LineBreakConversion.NULL;
+			
+			//strings with ASCII / Latin-1 characters get encoded directly into the item value buffer
+			int strValueLength = NotesStringUtils.isUseJavaLMBCSEncoder() ? LMBCSEncoder.getEncodedLength(strValue, lineBreakConversion) : -1;
+			Memory strValueMem = null;
+			if (strValueLength==-1) {
+				if (keepLineBreaks) {
+					strValueMem = NotesStringUtils.toLMBCS(strValue, false, false);
+				}
+				else {
+					strValueMem = NotesStringUtils.toLMBCS(strValue, false);
+				}
+				strValueLength = strValueMem==null ? 0 : (int) strValueMem.size();
 			}
 
-			int valueSize = (int) (2 + (strValueMem==null ? 0 : strValueMem.size()));
+			int valueSize = 2 + strValueLength;
 			
 			if (PlatformUtils.is64Bit()) {
 				LongByReference rethItem = new LongByReference();
@@ -3699,7 +3713,10 @@ public class NotesNote implements IRecyclableNotesObject {
 					valuePtr.setShort(0, (short) NotesItem.TYPE_TEXT);
 					valuePtr = valuePtr.share(2);
 					if (strValueMem!=null) {
-						valuePtr.write(0, strValueMem.getByteArray(0, (int) strValueMem.size()), 0, (int) strValueMem.size());
+						valuePtr.write(0, strValueMem.getByteArray(0, strValueLength), 0, strValueLength);
+					}
+					else if (strValueLength>0) {
+						LMBCSEncoder.encode(strValue, lineBreakConversion, valuePtr.getByteBuffer(0, strValueLength));
 					}
 					NotesItem item = appendItemValue(itemName, flags, NotesItem.TYPE_TEXT, (int) rethItem.getValue(), valueSize);
 					return item;
@@ -3719,7 +3736,10 @@ public class NotesNote implements IRecyclableNotesObject {
 					valuePtr.setShort(0, (short) NotesItem.TYPE_TEXT);
 					valuePtr = valuePtr.share(2);
 					if (strValueMem!=null) {
-						valuePtr.write(0, strValueMem.getByteArray(0, (int) strValueMem.size()), 0, (int) strValueMem.size());
+						valuePtr.write(0, strValueMem.getByteArray(0, strValueLength), 0, strValueLength);
+					}
+					else if (strValueLength>0) {
+						LMBCSEncoder.encode(strValue, lineBreakConversion, valuePtr.getByteBuffer(0, strValueLength));
 					}
 					NotesItem item = appendItemValue(itemName, flags, NotesItem.TYPE_TEXT, rethItem.getValue(), valueSize);
 					return item;
@@ -1,6 +1,5 @@
 package com.mindoo.domino.jna;
 
-import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Date;
@@ -19,6 +18,7 @@ import com.mindoo.domino.jna.errors.FormulaCompilationError;
 import com.mindoo.domino.jna.errors.INotesErrorConstants;
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.internal.CallbackPool;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
@@ -392,6 +392,11 @@ public class NotesSearch {
 		
 		final String[] columnItemNames = columnFormulasFixedOrder==null ? new String[0] : columnFormulasFixedOrder.keySet().toArray(new String[0]);
 		
+		//summary buffer view reused for all notes if the callback reads items lazily;
+		//same buffer layout decision as for the decoded IItemTableData below
+		final LazySummaryBuffer lazySummary = callback instanceof LazySummarySearchCallback ?
+				((LazySummarySearchCallback) callback).createSummaryBuffer(useSearchFlags.contains(Search.NOITEMNAMES) ? columnItemNames : null) : null;
+		
 		DbMode mode = db.getMode();
 
 		if (PlatformUtils.is64Bit()) {
@@ -405,6 +410,18 @@ public class NotesSearch {
 
 					ISearchMatch searchMatch = SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
 					
+					if (lazySummary!=null) {
+						try {
+							Action action = dispatchToLazyCallback(db, formula, useSearchFlags, searchMatch, summaryBufferPtr,
+									lazySummary, (LazySummarySearchCallback) callback);
+							return action==Action.Stop ? INotesErrorConstants.ERR_CANCEL : 0;
+						}
+						catch (Throwable t) {
+							invocationEx[0] = t;
+							return INotesErrorConstants.ERR_CANCEL;
+						}
+					}
+					
 					IItemTableData itemTableData=null;
 					try {
 						boolean isMatch = formula==null || searchMatch.matchesFormula();
@@ -544,16 +561,18 @@ public class NotesSearch {
 				}
 				
 				short result;
+				//use a pooled callback to avoid creating a new native callback stub for each search
+				final NotesCallbacks.NsfSearchProc pooledApiCallback = CallbackPool.NSFSEARCH.acquire(apiCallback);
 				try {
 					//AccessController call required to prevent SecurityException when running in XPages
-					result = AccessController.doPrivileged(new PrivilegedExceptionAction<Short>() {
+					result = CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Short>() {
 
 						@Override
 						public Short run() throws Exception {
 							return NotesNativeAPI64.get().NSFSearchExtended3(db.getHandle64(), hFormulaFinal,
 									hFilterFinal, filterFlagsFinal,
 									viewTitleBuf, searchFlagsBitMaskFinal, searchFlags1Final, searchFlags2Final, searchFlags3Final, searchFlags4Final,
-									(short) (noteClassMaskFinal & 0xffff), sinceStruct, apiCallback, null, retUntil,
+									(short) (noteClassMaskFinal & 0xffff), sinceStruct, pooledApiCallback, null, retUntil,
 									hNamesList);
 
 						}
@@ -564,6 +583,9 @@ public class NotesSearch {
 					else
 						throw new NotesError(0, "Error searching database", e);
 				}
+				finally {
+					CallbackPool.NSFSEARCH.release(pooledApiCallback);
+				}
 
 
 				if (invocationEx[0]!=null) {
@@ -606,6 +628,18 @@ public class NotesSearch {
 							Pointer summaryBufferPtr) {
 
 						ISearchMatch searchMatch = SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
+						
+						if (lazySummary!=null) {
+							try {
+								Action action = dispatchToLazyCallback(db, formula, useSearchFlags, searchMatch, summaryBufferPtr,
+										lazySummary, (LazySummarySearchCallback) callback);
+								return action==Action.Stop ? INotesErrorConstants.ERR_CANCEL : 0;
+							}
+							catch (Throwable t) {
+								invocationEx[0] = t;
+								return INotesErrorConstants.ERR_CANCEL;
+							}
+						}
 
 						IItemTableData itemTableData=null;
 						try {
@@ -672,6 +706,18 @@ public class NotesSearch {
 
 						ISearchMatch searchMatch = SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
 						
+						if (lazySummary!=null) {
+							try {
+								Action action = dispatchToLazyCallback(db, formula, useSearchFlags, searchMatch, summaryBufferPtr,
+										lazySummary, (LazySummarySearchCallback) callback);
+								return action==Action.Stop ? INotesErrorConstants.ERR_CANCEL : 0;
+							}
+							catch (Throwable t) {
+								invocationEx[0] = t;
+								return INotesErrorConstants.ERR_CANCEL;
+							}
+						}
+						
 						IItemTableData itemTableData=null;
 						try {
 							boolean isMatch = formula==null || searchMatch.matchesFormula();
@@ -807,15 +853,17 @@ public class NotesSearch {
 				}
 
 				short result;
+				//use a pooled callback to avoid creating a new native callback stub for each search
+				final NotesCallbacks.NsfSearchProc pooledApiCallback = CallbackPool.NSFSEARCH.acquire(apiCallback);
 				try {
 					//AccessController call required to prevent SecurityException when running in XPages
-					result = AccessController.doPrivileged(new PrivilegedExceptionAction<Short>() {
+					result = CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Short>() {
 
 						@Override
 						public Short run() throws Exception {
 							return NotesNativeAPI32.get().NSFSearchExtended3(db.getHandle32(), hFormulaFinal, hFilterFinal, filterFlagsFinal,
 									viewTitleBuf, (int) (searchFlagsBitMaskFinal & 0xffff), searchFlags1Final, searchFlags2Final, searchFlags3Final, searchFlags4Final,
-									(short) (noteClassMaskFinal & 0xffff), sinceStruct, apiCallback, null, retUntil, 
+									(short) (noteClassMaskFinal & 0xffff), sinceStruct, pooledApiCallback, null, retUntil, 
 									hNamesList);
 						}
 					});
@@ -825,6 +873,9 @@ public class NotesSearch {
 					else
 						throw new NotesError(0, "Error searching database", e);
 				}
+				finally {
+					CallbackPool.NSFSEARCH.release(pooledApiCallback);
+				}
 
 				if (invocationEx[0]!=null) {
 					//special case for JUnit testcases
@@ -921,6 +972,136 @@ public class NotesSearch {
 		
 	}
 	
+	/**
+	 * Passes a search match to a {@link LazySummarySearchCallback}
+	 * 
+	 * @param db database
+	 * @param formula selection formula or null
+	 * @param useSearchFlags search flags
+	 * @param searchMatch search match
+	 * @param summaryBufferPtr summary buffer
+	 * @param summary lazy summary buffer view to reuse
+	 * @param callback callback
+	 * @return action
+	 */
+	private static Action dispatchToLazyCallback(NotesDatabase db, String formula, EnumSet<Search> useSearchFlags,
+			ISearchMatch searchMatch, Pointer summaryBufferPtr, LazySummaryBuffer summary, LazySummarySearchCallback callback) {
+		
+		boolean isMatch = formula==null || searchMatch.matchesFormula();
+		summary.reset(isMatch && useSearchFlags.contains(Search.SUMMARY) ? summaryBufferPtr : null);
+		try {
+			if (searchMatch.getNoteClass().contains(NoteClass.NOTIFYDELETION)) {
+				return callback.deletionStubFound(db, searchMatch, summary);
+			}
+			else if (!isMatch) {
+				return callback.noteFoundNotMatchingFormula(db, searchMatch, summary);
+			}
+			else {
+				return callback.noteFound(db, searchMatch, summary);
+			}
+		}
+		finally {
+			summary.invalidate();
+		}
+	}
+	
+	/**
+	 * Search callback that receives a {@link LazySummaryBuffer} instead of an {@link IItemTableData}.
+	 * The summary buffer is not decoded into Java objects, item values are read directly from
+	 * native memory when they are accessed. Declare the items to read in the constructor
+	 * and access them via their slot index, e.g. for a scan that only reads a few items
+	 * of each note:<br>
+	 * <pre>
+	 * final int formSlot = 0;
+	 * final int updatedBySlot = 1;
+	 * NotesSearch.search(db, null, "@true", "-", EnumSet.of(Search.SUMMARY), EnumSet.of(NoteClass.DATA), null,
+	 *   new LazySummarySearchCallback("Form", "$UpdatedBy") {
+	 *     public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+	 *       String form = summary.getString(formSlot, "");
+	 *       ...
+	 *       return Action.Continue;
+	 *     }
+	 * });
+	 * </pre>
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static abstract class LazySummarySearchCallback extends SearchCallback {
+		private String[] m_itemNames;
+		
+		/**
+		 * Creates a new instance
+		 * 
+		 * @param itemNames names of the items to read, their index in this array is the slot index for {@link LazySummaryBuffer}
+		 */
+		public LazySummarySearchCallback(String... itemNames) {
+			m_itemNames = itemNames.clone();
+		}
+		
+		/**
+		 * Returns the slot index of an item
+		 * 
+		 * @param itemName item name, case insensitive
+		 * @return slot index or -1 if the item has not been declared
+		 */
+		public int getSlot(String itemName) {
+			for (int i=0; i<m_itemNames.length; i++) {
+				if (m_itemNames[i].equalsIgnoreCase(itemName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		
+		LazySummaryBuffer createSummaryBuffer(String[] columnItemNames) {
+			return new LazySummaryBuffer(m_itemNames, columnItemNames);
+		}
+		
+		/**
+		 * Implement this method to receive search results
+		 * 
+		 * @param parentDb parent database
+		 * @param searchMatch data about search match
+		 * @param summary gives access to the note's summary buffer if {@link Search#SUMMARY} was specified, only valid during this call
+		 * @return either {@link Action#Continue} to go on searching or {@link Action#Stop} to stop
+		 */
+		public abstract Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary);
+		
+		/**
+		 * Implement this method to read deletion stubs. Method
+		 * is only called when a <code>since</code> date is specified.
+		 * 
+		 * @param parentDb parent database
+		 * @param searchMatch data about search match
+		 * @param summary summary buffer, only valid during this call
+		 * @return either {@link Action#Continue} to go on searching or {@link Action#Stop} to stop
+		 */
+		public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+			return Action.Continue;
+		}
+		
+		/**
+		 * Implement this method to receive notes that do not match the selection formula. Method
+		 * is only called when a <code>since</code> date is specified.
+		 * 
+		 * @param parentDb parent database
+		 * @param searchMatch data about search match
+		 * @param summary summary buffer, only valid during this call
+		 * @return either {@link Action#Continue} to go on searching or {@link Action#Stop} to stop
+		 */
+		public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+			return Action.Continue;
+		}
+		
+		/**
+		 * Not used for this callback type, the search calls {@link #noteFound(NotesDatabase, ISearchMatch, LazySummaryBuffer)}
+		 */
+		@Override
+		public final Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+			throw new UnsupportedOperationException("Search results are reported with a LazySummaryBuffer");
+		}
+	}
+	
 	/**
 	 * Interface to access the summary buffer, either item by item or to decode the whole buffer
 	 * 
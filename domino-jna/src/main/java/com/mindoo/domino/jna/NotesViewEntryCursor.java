@@ -0,0 +1,1012 @@
+package com.mindoo.domino.jna;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+
+/**
+ * Cursor style alternative to {@link NotesViewLookupResultData} that keeps the raw buffer
+ * returned by NIFReadEntries in a single heap {@link ByteBuffer} and decodes entry data
+ * only when it gets accessed.<br>
+ * <br>
+ * The cursor itself is the flyweight for the current entry: move it with {@link #next()}
+ * or {@link #moveTo(int)} and read the entry data with the getter methods. Primitive
+ * accessors like {@link #getDouble(int, double)}, {@link #getInt(int, int)} or
+ * {@link #getTimeDateInnards(int, int[])} read values directly from the buffer without
+ * creating intermediate objects, so scanning large views produces very little garbage.<br>
+ * <br>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesViewEntryCursor {
+	private static final int SIZE_TIMEDATE = 8;
+	private static final int SIZE_RANGE = 4;
+
+	private NotesCollection m_parentCollection;
+	private byte[] m_data;
+	private ByteBuffer m_buf;
+	private EnumSet<ReadMask> m_returnMask;
+	private NotesCollectionStats m_stats;
+	private int m_numEntriesSkipped;
+	private int m_numEntriesReturned;
+	private short m_signalFlags;
+	private int m_indexModifiedSequenceNo;
+	private NotesTimeDate m_retDiffTime;
+
+	//offsets of the fixed size fields relative to the entry start, -1 if not in buffer
+	private int m_offNoteId = -1;
+	private int m_offUNID = -1;
+	private int m_offNoteClass = -1;
+	private int m_offSiblings = -1;
+	private int m_offChildren = -1;
+	private int m_offDescendants = -1;
+	private int m_offAnyUnread = -1;
+	private int m_offIndentLevels = -1;
+	private int m_offScore = -1;
+	private int m_offUnread = -1;
+	private int m_offPosition = -1;
+	private int m_fixedFieldsSize;
+
+	private int[] m_entryOffsets;
+	private int m_index = -1;
+
+	//column data of the current entry, computed on first column access
+	private boolean m_columnsDecoded;
+	private int m_columnCount;
+	private int[] m_colValueOffsets = new int[0];
+	private int[] m_colValueLengths = new int[0];
+	private int[] m_colNameOffsets = new int[0];
+	private int[] m_colNameLengths = new int[0];
+
+	/**
+	 * Creates a new instance. Use {@link NotesCollection#readEntriesAsCursor(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet)}
+	 * or {@link NotesLookupResultBufferDecoder#b64_decodeCollectionLookupResultBufferAsCursor(NotesCollection, long, int, int, int, EnumSet, short, int, NotesTimeDate)}
+	 * to produce a cursor.
+	 *
+	 * @param parentCollection parent collection
+	 * @param data copy of the lookup buffer
+	 * @param buf buffer wrapping <code>data</code> in native byte order
+	 * @param entriesStartPos position of the first entry in the buffer (after the collection stats)
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param stats collection statistics or null
+	 * @param numEntriesSkipped number of skipped entries
+	 * @param numEntriesReturned number of returned entries
+	 * @param signalFlags signal flags indicating view index changes and other stuff
+	 * @param indexModifiedSequenceNo index modified sequence number
+	 * @param retDiffTime only set in {@link NotesCollection#readEntriesExtAsCursor(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 */
+	public NotesViewEntryCursor(NotesCollection parentCollection, byte[] data, ByteBuffer buf, int entriesStartPos,
+			EnumSet<ReadMask> returnMask, NotesCollectionStats stats, int numEntriesSkipped, int numEntriesReturned,
+			short signalFlags, int indexModifiedSequenceNo, NotesTimeDate retDiffTime) {
+		m_parentCollection = parentCollection;
+		m_data = data;
+		m_buf = buf;
+		m_returnMask = returnMask;
+		m_stats = stats;
+		m_numEntriesSkipped = numEntriesSkipped;
+		m_numEntriesReturned = numEntriesReturned;
+		m_signalFlags = signalFlags;
+		m_indexModifiedSequenceNo = indexModifiedSequenceNo;
+		m_retDiffTime = retDiffTime;
+
+		computeFixedOffsets();
+		computeEntryOffsets(entriesStartPos);
+	}
+
+	/**
+	 * Computes the offsets of the fixed size fields. They are written to the buffer
+	 * in a fixed order, so the offsets are the same for all entries.
+	 */
+	private void computeFixedOffsets() {
+		int pos = 0;
+		if (m_returnMask.contains(ReadMask.NOTEID)) {
+			m_offNoteId = pos;
+			pos += 4;
+		}
+		if (m_returnMask.contains(ReadMask.NOTEUNID)) {
+			m_offUNID = pos;
+			pos += 16;
+		}
+		if (m_returnMask.contains(ReadMask.NOTECLASS)) {
+			m_offNoteClass = pos;
+			pos += 2;
+		}
+		if (m_returnMask.contains(ReadMask.INDEXSIBLINGS)) {
+			m_offSiblings = pos;
+			pos += 4;
+		}
+		if (m_returnMask.contains(ReadMask.INDEXCHILDREN)) {
+			m_offChildren = pos;
+			pos += 4;
+		}
+		if (m_returnMask.contains(ReadMask.INDEXDESCENDANTS)) {
+			m_offDescendants = pos;
+			pos += 4;
+		}
+		if (m_returnMask.contains(ReadMask.INDEXANYUNREAD)) {
+			m_offAnyUnread = pos;
+			pos += 2;
+		}
+		if (m_returnMask.contains(ReadMask.INDENTLEVELS)) {
+			m_offIndentLevels = pos;
+			pos += 2;
+		}
+		if (m_returnMask.contains(ReadMask.SCORE)) {
+			m_offScore = pos;
+			pos += 2;
+		}
+		if (m_returnMask.contains(ReadMask.INDEXUNREAD)) {
+			m_offUnread = pos;
+			pos += 2;
+		}
+		m_fixedFieldsSize = pos;
+
+		if (m_returnMask.contains(ReadMask.INDEXPOSITION)) {
+			m_offPosition = pos;
+		}
+	}
+
+	/**
+	 * Walks the buffer once to find the start of each entry. Only the length fields
+	 * of the variable size data are read.
+	 *
+	 * @param entriesStartPos position of the first entry
+	 */
+	private void computeEntryOffsets(int entriesStartPos) {
+		//NIFReadEntries returns no buffer at all if only the counts have been requested
+		int numEntries = m_data.length==0 ? 0 : m_numEntriesReturned;
+		m_entryOffsets = new int[numEntries];
+
+		boolean hasSummaryValues = m_returnMask.contains(ReadMask.SUMMARYVALUES);
+		boolean hasSummary = m_returnMask.contains(ReadMask.SUMMARY);
+
+		int pos = entriesStartPos;
+		for (int i=0; i<numEntries; i++) {
+			m_entryOffsets[i] = pos;
+			pos += m_fixedFieldsSize;
+
+			if (m_offPosition!=-1) {
+				int level = m_buf.getShort(pos) & 0xffff;
+				pos += 4 * (level + 2);
+			}
+			if (hasSummaryValues) {
+				//ITEM_VALUE_TABLE starts with the total length including the header
+				pos += m_buf.getShort(pos) & 0xffff;
+			}
+			if (hasSummary) {
+				//ITEM_TABLE starts with the total length including the header
+				pos += m_buf.getShort(pos) & 0xffff;
+			}
+		}
+	}
+
+	/**
+	 * Returns the parent collection
+	 *
+	 * @return collection
+	 */
+	public NotesCollection getParent() {
+		return m_parentCollection;
+	}
+
+	/**
+	 * Returns the read mask used to fill the buffer
+	 *
+	 * @return read mask
+	 */
+	public EnumSet<ReadMask> getReturnMask() {
+		return m_returnMask;
+	}
+
+	/**
+	 * Returns view statistics, if they have been requested via the
+	 * read mask {@link ReadMask#COLLECTIONSTATS}
+	 *
+	 * @return statistics or null
+	 */
+	public NotesCollectionStats getStats() {
+		return m_stats;
+	}
+
+	/**
+	 * Returns the number of view entries skipped
+	 *
+	 * @return skip count
+	 */
+	public int getSkipCount() {
+		return m_numEntriesSkipped;
+	}
+
+	/**
+	 * Returns the number of view entries read
+	 *
+	 * @return return count
+	 */
+	public int getReturnCount() {
+		return m_numEntriesReturned;
+	}
+
+	/**
+	 * Returns the index modified sequence number, which is increased on every index change.<br>
+	 *
+	 * @return number
+	 */
+	public int getIndexModifiedSequenceNo() {
+		return m_indexModifiedSequenceNo;
+	}
+
+	/**
+	 * For differential view reading via {@link NotesCollection#readEntriesExtAsCursor(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)},
+	 * this method returns the returned diff time that can be passed in subsequent read calls to
+	 * get incremental view updates
+	 *
+	 * @return diff time or null
+	 */
+	public NotesTimeDate getReturnedDiffTime() {
+		return m_retDiffTime;
+	}
+
+	/**
+	 * End of collection has not been reached because the return buffer is too full.
+	 * The NIFReadEntries call should be repeated to continue reading the desired entries.
+	 *
+	 * @return true if more to do
+	 */
+	public boolean hasMoreToDo() {
+		return (m_signalFlags & NotesConstants.SIGNAL_MORE_TO_DO) == NotesConstants.SIGNAL_MORE_TO_DO;
+	}
+
+	/**
+	 * Collection is not up to date.
+	 *
+	 * @return true if database was modified
+	 */
+	public boolean isDatabaseModified() {
+		return (m_signalFlags & NotesConstants.SIGNAL_DATABASE_MODIFIED) == NotesConstants.SIGNAL_DATABASE_MODIFIED;
+	}
+
+	/**
+	 * The collection index has been modified by another user since the last NIFReadEntries.
+	 * Upon receipt, you may wish to re-synchronize your index position and re-read the modified index.
+	 * This signal is returned only ONCE per detection.
+	 *
+	 * @return true if modified
+	 */
+	public boolean isViewIndexModified() {
+		return (m_signalFlags & NotesConstants.SIGNAL_INDEX_MODIFIED) == NotesConstants.SIGNAL_INDEX_MODIFIED;
+	}
+
+	/**
+	 * Use this method to tell whether the collection contains a time-relative formula (e.g., @ Now) and
+	 * will EVER be up-to-date since time-relative views, by definition, are NEVER up-to-date.
+	 *
+	 * @return true if time relative
+	 */
+	public boolean isViewTimeRelative() {
+		return (m_signalFlags & NotesConstants.SIGNAL_VIEW_TIME_RELATIVE) == NotesConstants.SIGNAL_VIEW_TIME_RELATIVE;
+	}
+
+	/**
+	 * Returns the number of entries in the buffer
+	 *
+	 * @return entry count
+	 */
+	public int getEntryCount() {
+		return m_entryOffsets.length;
+	}
+
+	/**
+	 * Returns the index of the current entry
+	 *
+	 * @return index, -1 if the cursor is before the first entry
+	 */
+	public int getIndex() {
+		return m_index;
+	}
+
+	/**
+	 * Moves the cursor to the next entry
+	 *
+	 * @return true if there is a next entry, false if the end of the buffer has been reached
+	 */
+	public boolean next() {
+		if ((m_index+1) >= m_entryOffsets.length) {
+			m_index = m_entryOffsets.length;
+			m_columnsDecoded = false;
+			return false;
+		}
+		m_index++;
+		m_columnsDecoded = false;
+		return true;
+	}
+
+	/**
+	 * Moves the cursor to the specified entry
+	 *
+	 * @param index entry index
+	 */
+	public void moveTo(int index) {
+		if (index<0 || index>=m_entryOffsets.length) {
+			throw new IndexOutOfBoundsException("Index "+index+" is out of range (0-"+(m_entryOffsets.length-1)+")");
+		}
+		m_index = index;
+		m_columnsDecoded = false;
+	}
+
+	/**
+	 * Moves the cursor before the first entry, so that the next call to
+	 * {@link #next()} returns the first entry again
+	 */
+	public void reset() {
+		m_index = -1;
+		m_columnsDecoded = false;
+	}
+
+	private int getEntryOffset() {
+		if (m_index<0 || m_index>=m_entryOffsets.length) {
+			throw new NoSuchElementException("Cursor is not positioned on an entry");
+		}
+		return m_entryOffsets[m_index];
+	}
+
+	/**
+	 * Returns the note id of the current entry. Only returns a value if {@link ReadMask#NOTEID} is used for the lookup
+	 *
+	 * @return note id or 0
+	 */
+	public int getNoteId() {
+		int entryOffset = getEntryOffset();
+		return m_offNoteId==-1 ? 0 : m_buf.getInt(entryOffset + m_offNoteId);
+	}
+
+	/**
+	 * Returns the UNID of the current entry. Only returns a value if {@link ReadMask#NOTEUNID}
+	 * is used for the lookup
+	 *
+	 * @return UNID or null
+	 */
+	public String getUNID() {
+		int entryOffset = getEntryOffset();
+		if (m_offUNID==-1) {
+			return null;
+		}
+		long file = m_buf.getLong(entryOffset + m_offUNID);
+		long note = m_buf.getLong(entryOffset + m_offUNID + 8);
+		return NotesStringUtils.toUNID(file, note);
+	}
+
+	/**
+	 * Returns the note class of the current entry. Only returns a value if {@link ReadMask#NOTECLASS}
+	 * is used for the lookup
+	 *
+	 * @return class
+	 */
+	public int getNoteClass() {
+		int entryOffset = getEntryOffset();
+		return m_offNoteClass==-1 ? 0 : (m_buf.getShort(entryOffset + m_offNoteClass) & 0xffff);
+	}
+
+	/**
+	 * Returns the number of siblings of the current entry. Only returns a value if {@link ReadMask#INDEXSIBLINGS}
+	 * is used for the lookup
+	 *
+	 * @return count
+	 */
+	public int getSiblingCount() {
+		int entryOffset = getEntryOffset();
+		return m_offSiblings==-1 ? 0 : m_buf.getInt(entryOffset + m_offSiblings);
+	}
+
+	/**
+	 * Returns the number of direct children of the current entry. Only returns a value if {@link ReadMask#INDEXCHILDREN}
+	 * is used for the lookup
+	 *
+	 * @return count
+	 */
+	public int getChildCount() {
+		int entryOffset = getEntryOffset();
+		return m_offChildren==-1 ? 0 : m_buf.getInt(entryOffset + m_offChildren);
+	}
+
+	/**
+	 * Returns the number of descendants of the current entry. Only returns a value if {@link ReadMask#INDEXDESCENDANTS}
+	 * is used for the lookup
+	 *
+	 * @return count
+	 */
+	public int getDescendantCount() {
+		int entryOffset = getEntryOffset();
+		return m_offDescendants==-1 ? 0 : m_buf.getInt(entryOffset + m_offDescendants);
+	}
+
+	/**
+	 * Returns whether the current entry or one of its descendants is unread. Only returns a value if {@link ReadMask#INDEXANYUNREAD}
+	 * is used for the lookup
+	 *
+	 * @return true if any unread
+	 */
+	public boolean isAnyUnread() {
+		int entryOffset = getEntryOffset();
+		return m_offAnyUnread!=-1 && m_buf.getShort(entryOffset + m_offAnyUnread) == 1;
+	}
+
+	/**
+	 * Returns the indent levels of the current entry (response level). Only returns a value if {@link ReadMask#INDENTLEVELS}
+	 * is used for the lookup
+	 *
+	 * @return levels
+	 */
+	public int getIndentLevels() {
+		int entryOffset = getEntryOffset();
+		return m_offIndentLevels==-1 ? 0 : (m_buf.getShort(entryOffset + m_offIndentLevels) & 0xffff);
+	}
+
+	/**
+	 * Returns the fulltext search score of the current entry. Only returns a value if {@link ReadMask#SCORE}
+	 * is used for the lookup
+	 *
+	 * @return score
+	 */
+	public int getFTScore() {
+		int entryOffset = getEntryOffset();
+		return m_offScore==-1 ? 0 : (m_buf.getShort(entryOffset + m_offScore) & 0xffff);
+	}
+
+	/**
+	 * Returns whether the current entry is unread. Only returns a value if {@link ReadMask#INDEXUNREAD}
+	 * is used for the lookup
+	 *
+	 * @return true if unread
+	 */
+	public boolean isUnread() {
+		int entryOffset = getEntryOffset();
+		return m_offUnread!=-1 && m_buf.getShort(entryOffset + m_offUnread) == 1;
+	}
+
+	/**
+	 * Method to check whether the current entry is a document. Only returns a value if {@link ReadMask#NOTEID}
+	 * is used for the lookup
+	 *
+	 * @return true if document
+	 */
+	public boolean isDocument() {
+		return !isCategory() && !isTotal();
+	}
+
+	/**
+	 * Method to check whether the current entry is a category. Only returns a value if {@link ReadMask#NOTEID}
+	 * is used for the lookup
+	 *
+	 * @return true if category
+	 */
+	public boolean isCategory() {
+		if (m_offNoteId==-1) {
+			return false;
+		}
+		return (getNoteId() & NotesConstants.NOTEID_CATEGORY) == NotesConstants.NOTEID_CATEGORY;
+	}
+
+	/**
+	 * Method to check whether the current entry is a total value. Only returns a value if {@link ReadMask#NOTEID}
+	 * is used for the lookup
+	 *
+	 * @return true if total
+	 */
+	public boolean isTotal() {
+		if (m_offNoteId==-1) {
+			return false;
+		}
+		return (getNoteId() & NotesConstants.NOTEID_CATEGORY_TOTAL) == NotesConstants.NOTEID_CATEGORY_TOTAL;
+	}
+
+	/**
+	 * Returns the level of the current entry in the view (0 for first level). Only returns a value if
+	 * {@link ReadMask#INDEXPOSITION} is used for the lookup
+	 *
+	 * @return level or -1
+	 */
+	public int getLevel() {
+		int entryOffset = getEntryOffset();
+		return m_offPosition==-1 ? -1 : (m_buf.getShort(entryOffset + m_offPosition) & 0xffff);
+	}
+
+	/**
+	 * Returns the position of the current entry in the view. Only returns a value if
+	 * {@link ReadMask#INDEXPOSITION} is used for the lookup
+	 *
+	 * @return position or null
+	 */
+	public int[] getPosition() {
+		int level = getLevel();
+		if (level==-1) {
+			return null;
+		}
+		int tumblerOffset = getEntryOffset() + m_offPosition + 2 /* level */ + 2 /* MinLevel+MaxLevel */;
+		int[] pos = new int[level+1];
+		for (int i=0; i<pos.length; i++) {
+			pos[i] = m_buf.getInt(tumblerOffset + 4*i);
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the position of the current entry in the view as a string (e.g. 1.2.3). Only returns
+	 * a non-empty value if {@link ReadMask#INDEXPOSITION} is used for the lookup.
+	 *
+	 * @return position string or empty string
+	 */
+	public String getPositionStr() {
+		int level = getLevel();
+		if (level==-1) {
+			return "";
+		}
+		int tumblerOffset = getEntryOffset() + m_offPosition + 2 /* level */ + 2 /* MinLevel+MaxLevel */;
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<=level; i++) {
+			if (i>0)
+				sb.append(".");
+			sb.append(m_buf.getInt(tumblerOffset + 4*i));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Computes the offsets of the column values of the current entry. Column values are read
+	 * from the {@link ReadMask#SUMMARYVALUES} data if available, otherwise from {@link ReadMask#SUMMARY}.
+	 */
+	private void decodeColumnOffsets() {
+		if (m_columnsDecoded) {
+			return;
+		}
+
+		int entryOffset = getEntryOffset();
+		m_columnCount = 0;
+
+		boolean hasSummaryValues = m_returnMask.contains(ReadMask.SUMMARYVALUES);
+		boolean hasSummary = m_returnMask.contains(ReadMask.SUMMARY);
+
+		if (hasSummaryValues || hasSummary) {
+			int pos = entryOffset + m_fixedFieldsSize;
+			if (m_offPosition!=-1) {
+				int level = m_buf.getShort(pos) & 0xffff;
+				pos += 4 * (level + 2);
+			}
+
+			if (hasSummaryValues) {
+				//ITEM_VALUE_TABLE: WORD total length, WORD item count, WORD value lengths (including data type), values
+				int itemsCount = m_buf.getShort(pos + 2) & 0xffff;
+				ensureColumnCapacity(itemsCount);
+
+				int lengthsPos = pos + 4;
+				int valuePos = lengthsPos + 2*itemsCount;
+				for (int j=0; j<itemsCount; j++) {
+					int valueLength = m_buf.getShort(lengthsPos + 2*j) & 0xffff;
+					m_colNameOffsets[j] = -1;
+					m_colNameLengths[j] = 0;
+					m_colValueOffsets[j] = valuePos;
+					m_colValueLengths[j] = valueLength;
+					valuePos += valueLength;
+				}
+				m_columnCount = itemsCount;
+			}
+			else {
+				//ITEM_TABLE: WORD total length, WORD item count, ITEM structures (WORD name length,
+				//WORD value length including data type), name and value of each item
+				int itemsCount = m_buf.getShort(pos + 2) & 0xffff;
+				ensureColumnCapacity(itemsCount);
+
+				int itemsPos = pos + 4;
+				int dataPos = itemsPos + 4*itemsCount;
+				for (int j=0; j<itemsCount; j++) {
+					int nameLength = m_buf.getShort(itemsPos + 4*j) & 0xffff;
+					int valueLength = m_buf.getShort(itemsPos + 4*j + 2) & 0xffff;
+					m_colNameOffsets[j] = dataPos;
+					m_colNameLengths[j] = nameLength;
+					dataPos += nameLength;
+					m_colValueOffsets[j] = dataPos;
+					m_colValueLengths[j] = valueLength;
+					dataPos += valueLength;
+				}
+				m_columnCount = itemsCount;
+			}
+		}
+
+		m_columnsDecoded = true;
+	}
+
+	private void ensureColumnCapacity(int itemsCount) {
+		if (m_colValueOffsets.length < itemsCount) {
+			m_colValueOffsets = new int[itemsCount];
+			m_colValueLengths = new int[itemsCount];
+			m_colNameOffsets = new int[itemsCount];
+			m_colNameLengths = new int[itemsCount];
+		}
+	}
+
+	/**
+	 * Returns the number of column values of the current entry
+	 *
+	 * @return count
+	 */
+	public int getColumnCount() {
+		decodeColumnOffsets();
+		return m_columnCount;
+	}
+
+	/**
+	 * Returns the item name of a column value. Only returns a value if {@link ReadMask#SUMMARY}
+	 * is used for the lookup without {@link ReadMask#SUMMARYVALUES}
+	 *
+	 * @param columnIndex column index
+	 * @return item name or null
+	 */
+	public String getItemName(int columnIndex) {
+		decodeColumnOffsets();
+		if (columnIndex<0 || columnIndex>=m_columnCount || m_colNameOffsets[columnIndex]==-1) {
+			return null;
+		}
+		return NotesStringUtils.fromLMBCS(m_data, m_colNameOffsets[columnIndex], m_colNameLengths[columnIndex]);
+	}
+
+	/**
+	 * Returns the index of the column value with the specified item name. Only works if
+	 * {@link ReadMask#SUMMARY} is used for the lookup without {@link ReadMask#SUMMARYVALUES}
+	 *
+	 * @param itemName item name, case insensitive
+	 * @return column index or -1 if not found
+	 */
+	public int getColumnIndex(String itemName) {
+		decodeColumnOffsets();
+		for (int i=0; i<m_columnCount; i++) {
+			if (itemName.equalsIgnoreCase(getItemName(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the data type of a column value, e.g. {@link NotesItem#TYPE_TEXT}
+	 *
+	 * @param columnIndex column index
+	 * @return data type or 0 if the column value is empty or does not exist
+	 */
+	public int getColumnDataType(int columnIndex) {
+		decodeColumnOffsets();
+		if (columnIndex<0 || columnIndex>=m_columnCount || m_colValueLengths[columnIndex]<2) {
+			return 0;
+		}
+		return m_buf.getShort(m_colValueOffsets[columnIndex]) & 0xffff;
+	}
+
+	/**
+	 * Checks if a column value is empty, e.g. for lower level categories or missing fields
+	 *
+	 * @param columnIndex column index
+	 * @return true if empty
+	 */
+	public boolean isColumnEmpty(int columnIndex) {
+		return getColumnDataType(columnIndex)==0;
+	}
+
+	/**
+	 * Returns the offset of the column value data after the data type WORD
+	 *
+	 * @param columnIndex column index
+	 * @return offset
+	 */
+	private int getColumnDataOffset(int columnIndex) {
+		return m_colValueOffsets[columnIndex] + 2;
+	}
+
+	/**
+	 * Returns the length of the column value data without the data type WORD
+	 *
+	 * @param columnIndex column index
+	 * @return length
+	 */
+	private int getColumnDataLength(int columnIndex) {
+		return m_colValueLengths[columnIndex] - 2;
+	}
+
+	/**
+	 * Reads a number column value. For number lists, the first value is returned.
+	 *
+	 * @param columnIndex column index
+	 * @param defaultValue default value if column value is empty or not a number
+	 * @return number
+	 */
+	public double getDouble(int columnIndex, double defaultValue) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_NUMBER) {
+			return m_buf.getDouble(getColumnDataOffset(columnIndex));
+		}
+		else if (type == NotesItem.TYPE_NUMBER_RANGE) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listEntries>0) {
+				return m_buf.getDouble(dataOffset + SIZE_RANGE);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a number column value as int. For number lists, the first value is returned.
+	 *
+	 * @param columnIndex column index
+	 * @param defaultValue default value if column value is empty or not a number
+	 * @return number
+	 */
+	public int getInt(int columnIndex, int defaultValue) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_NUMBER || type == NotesItem.TYPE_NUMBER_RANGE) {
+			return (int) getDouble(columnIndex, defaultValue);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a number column value as long. For number lists, the first value is returned.
+	 *
+	 * @param columnIndex column index
+	 * @param defaultValue default value if column value is empty or not a number
+	 * @return number
+	 */
+	public long getLong(int columnIndex, long defaultValue) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_NUMBER || type == NotesItem.TYPE_NUMBER_RANGE) {
+			return (long) getDouble(columnIndex, defaultValue);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads the innards of a timedate column value into an array. For timedate lists, the
+	 * first value is returned.
+	 *
+	 * @param columnIndex column index
+	 * @param retInnards array with at least two elements to receive the innards
+	 * @return true if the column contains a timedate value
+	 */
+	public boolean getTimeDateInnards(int columnIndex, int[] retInnards) {
+		int type = getColumnDataType(columnIndex);
+		int innardsOffset;
+		if (type == NotesItem.TYPE_TIME) {
+			innardsOffset = getColumnDataOffset(columnIndex);
+		}
+		else if (type == NotesItem.TYPE_TIME_RANGE) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listEntries==0) {
+				return false;
+			}
+			innardsOffset = dataOffset + SIZE_RANGE;
+		}
+		else {
+			return false;
+		}
+		retInnards[0] = m_buf.getInt(innardsOffset);
+		retInnards[1] = m_buf.getInt(innardsOffset + 4);
+		return true;
+	}
+
+	/**
+	 * Reads a timedate column value. For timedate lists, the first value is returned.
+	 *
+	 * @param columnIndex column index
+	 * @return timedate or null
+	 */
+	public NotesTimeDate getTimeDate(int columnIndex) {
+		int[] innards = new int[2];
+		if (getTimeDateInnards(columnIndex, innards)) {
+			return new NotesTimeDate(innards);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a text column value. For text lists, the first value is returned.
+	 *
+	 * @param columnIndex column index
+	 * @param defaultValue default value if column value is empty or not a text
+	 * @return text
+	 */
+	public String getString(int columnIndex, String defaultValue) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_TEXT) {
+			return NotesStringUtils.fromLMBCS(m_data, getColumnDataOffset(columnIndex), getColumnDataLength(columnIndex));
+		}
+		else if (type == NotesItem.TYPE_TEXT_LIST) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			if (getColumnDataLength(columnIndex)==0) {
+				return defaultValue;
+			}
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listEntries>0) {
+				int textLength = m_buf.getShort(dataOffset + 2) & 0xffff;
+				int textOffset = dataOffset + 2 + 2*listEntries;
+				return NotesStringUtils.fromLMBCS(m_data, textOffset, textLength);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a text or text list column value as list
+	 *
+	 * @param columnIndex column index
+	 * @param defaultValue default value if column value is empty or not a text
+	 * @return text list
+	 */
+	public List<String> getStringList(int columnIndex, List<String> defaultValue) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_TEXT) {
+			return Collections.singletonList(getString(columnIndex, ""));
+		}
+		else if (type == NotesItem.TYPE_TEXT_LIST) {
+			if (getColumnDataLength(columnIndex)==0) {
+				return Collections.emptyList();
+			}
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			List<String> values = new ArrayList<String>(listEntries);
+			int textOffset = dataOffset + 2 + 2*listEntries;
+			for (int i=0; i<listEntries; i++) {
+				int textLength = m_buf.getShort(dataOffset + 2 + 2*i) & 0xffff;
+				values.add(NotesStringUtils.fromLMBCS(m_data, textOffset, textLength));
+				textOffset += textLength;
+			}
+			return values;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the number of list values of a column value. Single values return 1,
+	 * empty column values return 0. For number and timedate ranges, only the list
+	 * part is counted, not the range entries.
+	 *
+	 * @param columnIndex column index
+	 * @return number of list values
+	 */
+	public int getListSize(int columnIndex) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_TEXT || type == NotesItem.TYPE_NUMBER || type == NotesItem.TYPE_TIME) {
+			return 1;
+		}
+		else if (type == NotesItem.TYPE_TEXT_LIST) {
+			if (getColumnDataLength(columnIndex)==0) {
+				return 0;
+			}
+			return m_buf.getShort(getColumnDataOffset(columnIndex)) & 0xffff;
+		}
+		else if (type == NotesItem.TYPE_NUMBER_RANGE || type == NotesItem.TYPE_TIME_RANGE) {
+			return m_buf.getShort(getColumnDataOffset(columnIndex)) & 0xffff;
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads a single value of a number or number list column value without allocating
+	 * a list
+	 *
+	 * @param columnIndex column index
+	 * @param listIndex index in the list, see {@link #getListSize(int)}
+	 * @param defaultValue default value if column value is not a number or the list index is out of range
+	 * @return number
+	 */
+	public double getDoubleAt(int columnIndex, int listIndex, double defaultValue) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_NUMBER) {
+			return listIndex==0 ? m_buf.getDouble(getColumnDataOffset(columnIndex)) : defaultValue;
+		}
+		else if (type == NotesItem.TYPE_NUMBER_RANGE) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listIndex>=0 && listIndex<listEntries) {
+				return m_buf.getDouble(dataOffset + SIZE_RANGE + 8*listIndex);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads the innards of a single value of a timedate or timedate list column value
+	 * without allocating a list
+	 *
+	 * @param columnIndex column index
+	 * @param listIndex index in the list, see {@link #getListSize(int)}
+	 * @param retInnards array with at least two elements to receive the innards
+	 * @return true if the column contains a timedate value at that list index
+	 */
+	public boolean getTimeDateInnardsAt(int columnIndex, int listIndex, int[] retInnards) {
+		int type = getColumnDataType(columnIndex);
+		int innardsOffset;
+		if (type == NotesItem.TYPE_TIME && listIndex==0) {
+			innardsOffset = getColumnDataOffset(columnIndex);
+		}
+		else if (type == NotesItem.TYPE_TIME_RANGE) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			if (listIndex<0 || listIndex>=listEntries) {
+				return false;
+			}
+			innardsOffset = dataOffset + SIZE_RANGE + SIZE_TIMEDATE*listIndex;
+		}
+		else {
+			return false;
+		}
+		retInnards[0] = m_buf.getInt(innardsOffset);
+		retInnards[1] = m_buf.getInt(innardsOffset + 4);
+		return true;
+	}
+
+	/**
+	 * Decodes a column value into the same object types that {@link NotesViewEntryData#get(String)}
+	 * returns: {@link String}, {@link Double}, {@link NotesTimeDate} or a {@link List} of these
+	 * types (number ranges contain double[] and timedate ranges contain {@link NotesDateRange} objects)
+	 *
+	 * @param columnIndex column index
+	 * @return value or null if empty or of unsupported data type
+	 */
+	public Object getColumnValue(int columnIndex) {
+		int type = getColumnDataType(columnIndex);
+		if (type == NotesItem.TYPE_TEXT) {
+			return getString(columnIndex, null);
+		}
+		else if (type == NotesItem.TYPE_TEXT_LIST) {
+			return new ArrayList<Object>(getStringList(columnIndex, Collections.<String>emptyList()));
+		}
+		else if (type == NotesItem.TYPE_NUMBER) {
+			return getDouble(columnIndex, 0);
+		}
+		else if (type == NotesItem.TYPE_TIME) {
+			return getTimeDate(columnIndex);
+		}
+		else if (type == NotesItem.TYPE_NUMBER_RANGE) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			int rangeEntries = m_buf.getShort(dataOffset + 2) & 0xffff;
+			List<Object> values = new ArrayList<Object>(listEntries + rangeEntries);
+			int pos = dataOffset + SIZE_RANGE;
+			for (int i=0; i<listEntries; i++) {
+				values.add(m_buf.getDouble(pos));
+				pos += 8;
+			}
+			for (int i=0; i<rangeEntries; i++) {
+				values.add(new double[] {m_buf.getDouble(pos), m_buf.getDouble(pos + 8)});
+				pos += 16;
+			}
+			return values;
+		}
+		else if (type == NotesItem.TYPE_TIME_RANGE) {
+			int dataOffset = getColumnDataOffset(columnIndex);
+			int listEntries = m_buf.getShort(dataOffset) & 0xffff;
+			int rangeEntries = m_buf.getShort(dataOffset + 2) & 0xffff;
+			List<Object> values = new ArrayList<Object>(listEntries + rangeEntries);
+			int pos = dataOffset + SIZE_RANGE;
+			for (int i=0; i<listEntries; i++) {
+				values.add(new NotesTimeDate(new int[] {m_buf.getInt(pos), m_buf.getInt(pos + 4)}));
+				pos += SIZE_TIMEDATE;
+			}
+			for (int i=0; i<rangeEntries; i++) {
+				NotesTimeDate lower = new NotesTimeDate(new int[] {m_buf.getInt(pos), m_buf.getInt(pos + 4)});
+				NotesTimeDate upper = new NotesTimeDate(new int[] {m_buf.getInt(pos + SIZE_TIMEDATE), m_buf.getInt(pos + SIZE_TIMEDATE + 4)});
+				values.add(new NotesDateRange(lower, upper));
+				pos += 2*SIZE_TIMEDATE;
+			}
+			return values;
+		}
+		return null;
+	}
+}
@@ -9,12 +9,15 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import com.mindoo.domino.jna.NotesCollection.ColumnHandle;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.utils.EmptyIterator;
 import com.mindoo.domino.jna.utils.LMBCSString;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.NotesNamingUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 
@@ -40,6 +43,8 @@ public class NotesViewEntryData implements INoteSummary {
 	private Integer m_ftScore;
 	private Boolean m_isUnread;
 	private Object[] m_columnValues;
+	private int[] m_columnDataTypes;
+	private long[] m_primitiveColumnValues;
 	private int[] m_columnValueSizes;
 	private Map<String, Object> m_summaryData;
 	private SoftReference<Map<String, Object>> m_convertedDataRef;
@@ -72,10 +77,93 @@ public class NotesViewEntryData implements INoteSummary {
 		private Integer m_ftScore;
 		private Boolean m_isUnread;
 		private Object[] m_columnValues;
+		private int[] m_columnDataTypes;
+		private long[] m_primitiveColumnValues;
 		private int[] m_columnValueSizes;
 		private Map<String, Object> m_summaryData;
 		private SoftReference<Map<String, Object>> m_convertedDataRef;
 		private String m_singleColumnLookupName;
+		
+		/**
+		 * Returns an estimation of the Java heap memory used by the decoded entry data,
+		 * used by {@link CollectionDataCache} to limit the cache size in bytes
+		 * 
+		 * @return size in bytes
+		 */
+		int getEstimatedSize() {
+			//object header and fields
+			int size = 96;
+			if (m_pos!=null) {
+				size += 16 + 4*m_pos.length;
+			}
+			size += estimateSize(m_posStr);
+			size += estimateSize(m_unid);
+			if (m_unidAsLongs!=null) {
+				size += 16 + 8*m_unidAsLongs.length;
+			}
+			size += estimateSize(m_columnValues);
+			if (m_primitiveColumnValues!=null) {
+				size += 32 + 12*m_primitiveColumnValues.length;
+			}
+			if (m_columnValueSizes!=null) {
+				size += 16 + 4*m_columnValueSizes.length;
+			}
+			if (m_summaryData!=null) {
+				for (Entry<String,Object> currEntry : m_summaryData.entrySet()) {
+					//map entry
+					size += 40 + estimateSize(currEntry.getKey()) + estimateSize(currEntry.getValue());
+				}
+			}
+			return size;
+		}
+	}
+	
+	/**
+	 * Estimates the heap size of a decoded column value
+	 * 
+	 * @param value value
+	 * @return size in bytes
+	 */
+	private static int estimateSize(Object value) {
+		if (value==null) {
+			return 0;
+		}
+		else if (value instanceof String) {
+			return 40 + 2*((String) value).length();
+		}
+		else if (value instanceof LMBCSString) {
+			byte[] data = ((LMBCSString) value).getData();
+			return 32 + (data==null ? 0 : data.length);
+		}
+		else if (value instanceof Number || value instanceof Boolean) {
+			return 16;
+		}
+		else if (value instanceof List) {
+			int size = 24;
+			for (Object currVal : (List<?>) value) {
+				size += 8 + estimateSize(currVal);
+			}
+			return size;
+		}
+		else if (value instanceof Object[]) {
+			Object[] arr = (Object[]) value;
+			int size = 16 + 8*arr.length;
+			for (Object currVal : arr) {
+				size += estimateSize(currVal);
+			}
+			return size;
+		}
+		else if (value instanceof double[]) {
+			return 16 + 8*((double[]) value).length;
+		}
+		else if (value instanceof Calendar) {
+			//GregorianCalendar with its field arrays
+			return 400;
+		}
+		else {
+			//NotesTimeDate, Date, NotesDateRange etc.
+			return 48;
+		}
 	}
 	
 	/**
@@ -99,6 +187,8 @@ public class NotesViewEntryData implements INoteSummary {
 		data.m_ftScore = m_ftScore;
 		data.m_isUnread = m_isUnread;
 		data.m_columnValues = m_columnValues;
+		data.m_columnDataTypes = m_columnDataTypes;
+		data.m_primitiveColumnValues = m_primitiveColumnValues;
 		data.m_columnValueSizes = m_columnValueSizes;
 		data.m_summaryData = m_summaryData;
 		data.m_convertedDataRef = m_convertedDataRef;
@@ -129,6 +219,8 @@ public class NotesViewEntryData implements INoteSummary {
 		m_ftScore = data.m_ftScore;
 		m_isUnread = data.m_isUnread;
 		m_columnValues = data.m_columnValues;
+		m_columnDataTypes = data.m_columnDataTypes;
+		m_primitiveColumnValues = data.m_primitiveColumnValues;
 		m_columnValueSizes = data.m_columnValueSizes;
 		m_summaryData = data.m_summaryData;
 		m_convertedDataRef = data.m_convertedDataRef;
@@ -144,6 +236,16 @@ public class NotesViewEntryData implements INoteSummary {
 		return m_parentCollection;
 	}
 	
+	/**
+	 * Sets the parent collection, e.g. when the entry has been read by another thread
+	 * with its own collection handle
+	 * 
+	 * @param parentCollection parent collection
+	 */
+	public void setParent(NotesCollection parentCollection) {
+		m_parentCollection = parentCollection;
+	}
+	
 	/**
 	 * Method to check whether an entry is a conflict document. Can only returns a true value
 	 * if {@link ReadMask#SUMMARYVALUES} or {@link ReadMask#SUMMARY} is used for the lookup.
@@ -158,12 +260,12 @@ public class NotesViewEntryData implements INoteSummary {
 				return false;
 			}
 			else if (m_parentCollection.isHierarchical()) {
-				return m_columnValues.length>=2 && m_columnValues[m_columnValues.length-2] != null;
+				return m_columnValues.length>=2 && hasColumnValue(m_columnValues.length-2);
 			}
 			else {
 				//special case for views which have "show response hierarchy" = false:
 				//here the response column value is missing
-				return m_columnValues.length>=1 && m_columnValues[m_columnValues.length-1] != null;
+				return m_columnValues.length>=1 && hasColumnValue(m_columnValues.length-1);
 			}
 		}
 		else if (m_summaryData!=null) {
@@ -183,7 +285,7 @@ public class NotesViewEntryData implements INoteSummary {
 		//VIEW_TABLE_FLAG_FLATINDEX	  -  Do not index hierarchically If FALSE, the '$REF' item must be LAST in the list of summary items for this view.
 		if (m_columnValues!=null) {
 			if (m_parentCollection.isHierarchical()) {
-				return m_columnValues.length>=1 && m_columnValues[m_columnValues.length-1] != null;
+				return m_columnValues.length>=1 && hasColumnValue(m_columnValues.length-1);
 			}
 			else {
 				//fallback to isConflict as this is the only info we have
@@ -505,10 +607,76 @@ public class NotesViewEntryData implements INoteSummary {
 		m_columnValues = itemValues;
 	}
 	
+	/**
+	 * Sets column values of type {@link NotesItem#TYPE_NUMBER} and {@link NotesItem#TYPE_TIME}
+	 * in primitive form. They are used for all columns that have a null value in the array passed
+	 * to {@link #setColumnValues(Object[])} and are read without boxing via
+	 * {@link #getDouble(ColumnHandle, double)}, {@link #getLong(ColumnHandle, long)} and
+	 * {@link #getTimeDateInnards(ColumnHandle, int[])}.
+	 * 
+	 * @param dataTypes data types of all columns
+	 * @param values raw long bits of the double value for numbers, innards for date/time values (innard 1 in the upper 32 bits)
+	 */
+	public void setPrimitiveColumnValues(int[] dataTypes, long[] values) {
+		m_columnDataTypes = dataTypes;
+		m_primitiveColumnValues = values;
+	}
+	
 	public Object[] getColumnValues() {
+		if (m_columnValues!=null && m_primitiveColumnValues!=null) {
+			for (int i=0; i<m_columnValues.length; i++) {
+				getColumnValue(i);
+			}
+		}
 		return m_columnValues;
 	}
 	
+	/**
+	 * Checks if a column has a value stored in primitive form
+	 * 
+	 * @param colIdx column values index
+	 * @return true if primitive value
+	 */
+	private boolean hasPrimitiveColumnValue(int colIdx) {
+		if (m_primitiveColumnValues==null || colIdx>=m_primitiveColumnValues.length || m_columnValues[colIdx]!=null) {
+			return false;
+		}
+		int type = m_columnDataTypes[colIdx];
+		return type==NotesItem.TYPE_NUMBER || type==NotesItem.TYPE_TIME;
+	}
+	
+	/**
+	 * Checks if a column has a non-null value
+	 * 
+	 * @param colIdx column values index
+	 * @return true if value
+	 */
+	private boolean hasColumnValue(int colIdx) {
+		return m_columnValues[colIdx]!=null || hasPrimitiveColumnValue(colIdx);
+	}
+	
+	/**
+	 * Returns a column value by index. Values stored in primitive form are boxed
+	 * on first access.
+	 * 
+	 * @param colIdx column values index
+	 * @return value or null
+	 */
+	private Object getColumnValue(int colIdx) {
+		Object val = m_columnValues[colIdx];
+		if (val==null && hasPrimitiveColumnValue(colIdx)) {
+			long primitiveVal = m_primitiveColumnValues[colIdx];
+			if (m_columnDataTypes[colIdx]==NotesItem.TYPE_NUMBER) {
+				val = Double.longBitsToDouble(primitiveVal);
+			}
+			else {
+				val = new NotesTimeDate(new int[] {(int) primitiveVal, (int) (primitiveVal >>> 32)});
+			}
+			m_columnValues[colIdx] = val;
+		}
+		return val;
+	}
+	
 	/**
 	 * Returns an iterator of all available columns for which we can read column values
 	 * (e.g. does not return static column names).<br>
@@ -616,7 +784,7 @@ public class NotesViewEntryData implements INoteSummary {
 				return false;
 			}
 			else {
-				return m_columnValues[colIdx] != null;
+				return hasColumnValue(colIdx);
 			}
 		}
 		else {
@@ -711,7 +879,7 @@ public class NotesViewEntryData implements INoteSummary {
 			int colIdx = m_parentCollection.getColumnValuesIndex(columnNameOrTitle);
 			if (colIdx!=-1 && colIdx!=65535) {
 				if (colIdx < m_columnValues.length) {
-					val = m_columnValues[colIdx];
+					val = getColumnValue(colIdx);
 				}
 				else {
 					val = null;
@@ -719,6 +887,161 @@ public class NotesViewEntryData implements INoteSummary {
 			}
 		}
 		
+		return convertColumnValue(val, convertNotesTimeDateToCalendar);
+	}
+	
+	/**
+	 * Returns a column value for a column resolved via {@link NotesCollection#getColumnHandle(String)}.
+	 * Does the same as {@link #get(String)}, but does not need to look up the column by name
+	 * if the collection data has been read with {@link ReadMask#SUMMARYVALUES}.
+	 * 
+	 * @param column column handle
+	 * @return column value or null
+	 */
+	public Object get(ColumnHandle column) {
+		Object val = null;
+		
+		if (m_summaryData!=null) {
+			val = m_summaryData.get(column.getName());
+		}
+		else if (m_columnValues!=null) {
+			int colIdx = column.getColumnValuesIndex();
+			if (colIdx < m_columnValues.length) {
+				val = getColumnValue(colIdx);
+			}
+		}
+		
+		return convertColumnValue(val, !isPreferNotesTimeDates());
+	}
+	
+	/**
+	 * Returns a number column value without boxing if the collection data has been read
+	 * with {@link ReadMask#SUMMARYVALUES}. For number lists, the first value is returned.
+	 * 
+	 * @param column column handle, see {@link NotesCollection#getColumnHandle(String)}
+	 * @param defaultValue default value if the column value is not a number
+	 * @return value
+	 */
+	public double getDouble(ColumnHandle column, double defaultValue) {
+		if (m_columnValues!=null && m_summaryData==null) {
+			int colIdx = column.getColumnValuesIndex();
+			if (colIdx >= m_columnValues.length) {
+				return defaultValue;
+			}
+			if (hasPrimitiveColumnValue(colIdx) && m_columnDataTypes[colIdx]==NotesItem.TYPE_NUMBER) {
+				return Double.longBitsToDouble(m_primitiveColumnValues[colIdx]);
+			}
+		}
+		
+		Object val = get(column);
+		if (val instanceof Number) {
+			return ((Number) val).doubleValue();
+		}
+		else if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			if (!valAsList.isEmpty()) {
+				Object firstVal = valAsList.get(0);
+				if (firstVal instanceof Number) {
+					return ((Number) firstVal).doubleValue();
+				}
+			}
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * Returns a number column value as long without boxing if the collection data has been read
+	 * with {@link ReadMask#SUMMARYVALUES}. For number lists, the first value is returned.
+	 * 
+	 * @param column column handle, see {@link NotesCollection#getColumnHandle(String)}
+	 * @param defaultValue default value if the column value is not a number
+	 * @return value
+	 */
+	public long getLong(ColumnHandle column, long defaultValue) {
+		if (m_columnValues!=null && m_summaryData==null) {
+			int colIdx = column.getColumnValuesIndex();
+			if (colIdx >= m_columnValues.length) {
+				return defaultValue;
+			}
+			if (hasPrimitiveColumnValue(colIdx) && m_columnDataTypes[colIdx]==NotesItem.TYPE_NUMBER) {
+				return (long) Double.longBitsToDouble(m_primitiveColumnValues[colIdx]);
+			}
+		}
+		
+		Object val = get(column);
+		if (val instanceof Number) {
+			return ((Number) val).longValue();
+		}
+		else if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			if (!valAsList.isEmpty()) {
+				Object firstVal = valAsList.get(0);
+				if (firstVal instanceof Number) {
+					return ((Number) firstVal).longValue();
+				}
+			}
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * Reads the innards of a date/time column value without creating {@link NotesTimeDate}
+	 * or {@link Calendar} objects if the collection data has been read with {@link ReadMask#SUMMARYVALUES}.
+	 * For date/time lists, the first value is returned.
+	 * 
+	 * @param column column handle, see {@link NotesCollection#getColumnHandle(String)}
+	 * @param retInnards array with at least two elements to receive the innards
+	 * @return true if the column value is a date/time, false otherwise
+	 */
+	public boolean getTimeDateInnards(ColumnHandle column, int[] retInnards) {
+		Object val = null;
+		
+		if (m_summaryData!=null) {
+			val = m_summaryData.get(column.getName());
+		}
+		else if (m_columnValues!=null) {
+			int colIdx = column.getColumnValuesIndex();
+			if (colIdx >= m_columnValues.length) {
+				return false;
+			}
+			if (hasPrimitiveColumnValue(colIdx) && m_columnDataTypes[colIdx]==NotesItem.TYPE_TIME) {
+				long primitiveVal = m_primitiveColumnValues[colIdx];
+				retInnards[0] = (int) primitiveVal;
+				retInnards[1] = (int) (primitiveVal >>> 32);
+				return true;
+			}
+			val = m_columnValues[colIdx];
+		}
+		
+		if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			val = valAsList.isEmpty() ? null : valAsList.get(0);
+		}
+		
+		int[] innards = null;
+		if (val instanceof NotesTimeDate) {
+			innards = ((NotesTimeDate) val).getInnards();
+		}
+		else if (val instanceof Calendar) {
+			innards = NotesDateTimeUtils.calendarToInnards((Calendar) val);
+		}
+		
+		if (innards==null) {
+			return false;
+		}
+		retInnards[0] = innards[0];
+		retInnards[1] = innards[1];
+		return true;
+	}
+	
+	/**
+	 * Converts LMBCS strings and date/time values of a column value
+	 * 
+	 * @param val column value
+	 * @param convertNotesTimeDateToCalendar true to convert {@link NotesTimeDate} values to {@link Calendar}
+	 * @return converted value
+	 */
+	private Object convertColumnValue(Object val, boolean convertNotesTimeDateToCalendar) {
 		if (val instanceof List) {
 			List<Object> valAsList = (List<Object>) val;
 			for (int i=0; i<valAsList.size(); i++) {
@@ -774,7 +1097,7 @@ public class NotesViewEntryData implements INoteSummary {
 		}
 		if (m_columnValues!=null) {
 			for (int i=0; i<m_columnValues.length; i++) {
-				if (m_columnValues[i]!=null) {
+				if (hasColumnValue(i)) {
 					return true;
 				}
 			}
@@ -1272,7 +1595,7 @@ public class NotesViewEntryData implements INoteSummary {
 			for (int i=0; i<m_columnValues.length; i++) {
 				if (i>0)
 					sb.append(",");
-				sb.append(colValueToString(m_columnValues[i]));
+				sb.append(colValueToString(getColumnValue(i)));
 			}
 			sb.append("]");
 		}
@@ -0,0 +1,534 @@
+package com.mindoo.domino.jna;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils.LineBreakConversion;
+import com.sun.jna.Memory;
+
+/**
+ * Precompiled search key for view lookups via {@link NotesCollection#findByKey(EnumSet, SearchKey)},
+ * {@link NotesCollection#findByKeyExtended2(EnumSet, EnumSet, SearchKey)} and
+ * {@link NotesCollection#getAllEntriesByKey(EnumSet, EnumSet, NotesCollection.ViewLookupCallback, SearchKey)}.<br>
+ * <br>
+ * The key values are set with typed setters and stored in primitive arrays. They are encoded
+ * directly into a native key buffer that is owned by this object and reused for all lookups,
+ * so doing many lookups with the same {@link SearchKey} and changing its values between the
+ * calls does not produce garbage for string (ASCII / Latin-1), number and date keys:<br>
+ * <br>
+ * <code>
+ * SearchKey key = new SearchKey(1);<br>
+ * for (String currCustomerNo : customerNumbers) {<br>
+ * &nbsp;&nbsp;key.setString(0, currCustomerNo);<br>
+ * &nbsp;&nbsp;FindResult result = collection.findByKey(EnumSet.of(Find.EQUAL), key);<br>
+ * &nbsp;&nbsp;...<br>
+ * }
+ * </code><br>
+ * <br>
+ * The key buffer is only re-encoded if a value has changed since the last lookup.<br>
+ * <br>
+ * A {@link SearchKey} is confined to the thread that used it for its first lookup, because
+ * the native buffer is shared between the lookups. Use one instance per thread, e.g. stored
+ * in a {@link ThreadLocal}.
+ *
+ * @author Karsten Lehmann
+ */
+public class SearchKey {
+	private static final byte TYPE_UNSET = 0;
+	private static final byte TYPE_TEXT = 1;
+	private static final byte TYPE_NUMBER = 2;
+	private static final byte TYPE_TIME = 3;
+	private static final byte TYPE_TIME_RANGE = 4;
+	private static final byte TYPE_NUMBER_RANGE = 5;
+
+	private final int m_keyCount;
+	private final byte[] m_types;
+	private final String[] m_strings;
+	private final int[] m_stringLengths;
+	private final double[] m_numbers;
+	private final int[] m_innards;
+	private Calendar m_calendar;
+
+	private Memory m_buffer;
+	private ByteBuffer m_byteBuffer;
+	private boolean m_encoded;
+	private Thread m_ownerThread;
+
+	/**
+	 * Creates a new search key. All key values need to be set before
+	 * the key can be used for a lookup.
+	 *
+	 * @param keyCount number of keys, one per sorted view column to search
+	 */
+	public SearchKey(int keyCount) {
+		if (keyCount<1) {
+			throw new IllegalArgumentException("Key count must be greater than 0: "+keyCount);
+		}
+		m_keyCount = keyCount;
+		m_types = new byte[keyCount];
+		m_strings = new String[keyCount];
+		m_stringLengths = new int[keyCount];
+		m_numbers = new double[keyCount*2];
+		m_innards = new int[keyCount*4];
+	}
+
+	/**
+	 * Creates a new search key and sets its values via {@link #setKey(int, Object)}
+	 *
+	 * @param keys lookup keys
+	 * @return search key
+	 */
+	public static SearchKey fromKeys(Object... keys) {
+		if (keys==null || keys.length==0)
+			throw new IllegalArgumentException("No search keys specified");
+
+		SearchKey searchKey = new SearchKey(keys.length);
+		searchKey.setKeys(keys);
+		return searchKey;
+	}
+
+	/**
+	 * Returns the number of keys
+	 *
+	 * @return count
+	 */
+	public int getKeyCount() {
+		return m_keyCount;
+	}
+
+	private void checkIndex(int index) {
+		if (index<0 || index>=m_keyCount) {
+			throw new IndexOutOfBoundsException("Invalid key index "+index+", key count is "+m_keyCount);
+		}
+	}
+
+	/**
+	 * Sets a string key
+	 *
+	 * @param index key index
+	 * @param value value, not null
+	 * @return this search key
+	 */
+	public SearchKey setString(int index, String value) {
+		checkIndex(index);
+		if (value==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		if (m_types[index]!=TYPE_TEXT || !value.equals(m_strings[index])) {
+			m_types[index] = TYPE_TEXT;
+			m_strings[index] = value;
+			m_stringLengths[index] = NotesStringUtils.getLMBCSLength(value, LineBreakConversion.NULL);
+			m_encoded = false;
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a number key
+	 *
+	 * @param index key index
+	 * @param value value
+	 * @return this search key
+	 */
+	public SearchKey setNumber(int index, double value) {
+		checkIndex(index);
+		m_types[index] = TYPE_NUMBER;
+		m_numbers[index*2] = value;
+		m_encoded = false;
+		return this;
+	}
+
+	/**
+	 * Sets a number range key. Please note that the C API documentation says
+	 * that number range keys are not supported by NIFFindByKey.
+	 *
+	 * @param index key index
+	 * @param lower lower bound
+	 * @param upper upper bound
+	 * @return this search key
+	 */
+	public SearchKey setNumberRange(int index, double lower, double upper) {
+		checkIndex(index);
+		m_types[index] = TYPE_NUMBER_RANGE;
+		m_numbers[index*2] = lower;
+		m_numbers[index*2+1] = upper;
+		m_encoded = false;
+		return this;
+	}
+
+	/**
+	 * Sets a date/time key from its innards
+	 *
+	 * @param index key index
+	 * @param innard0 first innard
+	 * @param innard1 second innard
+	 * @return this search key
+	 */
+	public SearchKey setDateTime(int index, int innard0, int innard1) {
+		checkIndex(index);
+		m_types[index] = TYPE_TIME;
+		m_innards[index*4] = innard0;
+		m_innards[index*4+1] = innard1;
+		m_encoded = false;
+		return this;
+	}
+
+	/**
+	 * Sets a date/time key
+	 *
+	 * @param index key index
+	 * @param value value, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateTime(int index, NotesTimeDate value) {
+		if (value==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		int[] innards = value.getInnards();
+		return setDateTime(index, innards[0], innards[1]);
+	}
+
+	/**
+	 * Sets a date/time key. Only date or time part are used if the other
+	 * fields of the {@link Calendar} are not set.
+	 *
+	 * @param index key index
+	 * @param value value, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateTime(int index, Calendar value) {
+		if (value==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		int[] innards = NotesDateTimeUtils.calendarToInnards(value);
+		return setDateTime(index, innards[0], innards[1]);
+	}
+
+	/**
+	 * Sets a date/time key
+	 *
+	 * @param index key index
+	 * @param value value, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateTime(int index, Date value) {
+		if (value==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		int[] innards = NotesDateTimeUtils.calendarToInnards(toCalendar(value));
+		return setDateTime(index, innards[0], innards[1]);
+	}
+
+	/**
+	 * Sets a date range key from the innards of start and end
+	 *
+	 * @param index key index
+	 * @param startInnard0 first innard of start
+	 * @param startInnard1 second innard of start
+	 * @param endInnard0 first innard of end
+	 * @param endInnard1 second innard of end
+	 * @return this search key
+	 */
+	public SearchKey setDateRange(int index, int startInnard0, int startInnard1, int endInnard0, int endInnard1) {
+		checkIndex(index);
+		m_types[index] = TYPE_TIME_RANGE;
+		m_innards[index*4] = startInnard0;
+		m_innards[index*4+1] = startInnard1;
+		m_innards[index*4+2] = endInnard0;
+		m_innards[index*4+3] = endInnard1;
+		m_encoded = false;
+		return this;
+	}
+
+	/**
+	 * Sets a date range key
+	 *
+	 * @param index key index
+	 * @param start start, not null
+	 * @param end end, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateRange(int index, NotesTimeDate start, NotesTimeDate end) {
+		if (start==null || end==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		int[] startInnards = start.getInnards();
+		int[] endInnards = end.getInnards();
+		return setDateRange(index, startInnards[0], startInnards[1], endInnards[0], endInnards[1]);
+	}
+
+	/**
+	 * Sets a date range key
+	 *
+	 * @param index key index
+	 * @param range range, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateRange(int index, NotesDateRange range) {
+		if (range==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		return setDateRange(index, range.getStartDateTime(), range.getEndDateTime());
+	}
+
+	/**
+	 * Sets a date range key
+	 *
+	 * @param index key index
+	 * @param start start, not null
+	 * @param end end, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateRange(int index, Calendar start, Calendar end) {
+		if (start==null || end==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		int[] startInnards = NotesDateTimeUtils.calendarToInnards(start);
+		int[] endInnards = NotesDateTimeUtils.calendarToInnards(end);
+		return setDateRange(index, startInnards[0], startInnards[1], endInnards[0], endInnards[1]);
+	}
+
+	/**
+	 * Sets a date range key
+	 *
+	 * @param index key index
+	 * @param start start, not null
+	 * @param end end, not null
+	 * @return this search key
+	 */
+	public SearchKey setDateRange(int index, Date start, Date end) {
+		if (start==null || end==null)
+			throw new NullPointerException("Key "+index+" cannot be null");
+
+		int[] startInnards = NotesDateTimeUtils.calendarToInnards(toCalendar(start));
+		int[] endInnards = NotesDateTimeUtils.calendarToInnards(toCalendar(end));
+		return setDateRange(index, startInnards[0], startInnards[1], endInnards[0], endInnards[1]);
+	}
+
+	/**
+	 * Converts a {@link Date} with a {@link Calendar} that is reused for all conversions
+	 *
+	 * @param dt date
+	 * @return calendar
+	 */
+	private Calendar toCalendar(Date dt) {
+		if (m_calendar==null) {
+			m_calendar = Calendar.getInstance();
+		}
+		m_calendar.setTime(dt);
+		return m_calendar;
+	}
+
+	/**
+	 * Sets a key value of unknown type
+	 *
+	 * @param index key index
+	 * @param key key, can be {@link String}, {@link Double}, {@link Float}, {@link Integer}, {@link Long}, {@link NotesTimeDate}, {@link Calendar}, {@link Date}, {@link NotesDateRange}, {@link Calendar}[] or {@link Date}[] (with two elements lower/upper) and double[] / {@link Double}[] (with two elements lower/upper)
+	 * @return this search key
+	 */
+	public SearchKey setKey(int index, Object key) {
+		if (key==null) {
+			throw new NullPointerException("Key "+index+" cannot be null");
+		}
+
+		if (key instanceof String) {
+			setString(index, (String) key);
+		}
+		else if (key instanceof Double || key instanceof Float || key instanceof Integer || key instanceof Long) {
+			setNumber(index, ((Number) key).doubleValue());
+		}
+		else if (key instanceof Date) {
+			setDateTime(index, (Date) key);
+		}
+		else if (key instanceof Calendar) {
+			setDateTime(index, (Calendar) key);
+		}
+		else if (key instanceof NotesTimeDate) {
+			setDateTime(index, (NotesTimeDate) key);
+		}
+		else if (key instanceof NotesDateRange) {
+			setDateRange(index, (NotesDateRange) key);
+		}
+		else if (key instanceof Date[]) {
+			Date[] dateArr = (Date[]) key;
+			if (dateArr.length!=2)
+				throw new IllegalArgumentException("Date search key array must have exactly 2 elements. We found "+dateArr.length);
+			setDateRange(index, dateArr[0], dateArr[1]);
+		}
+		else if (key instanceof Calendar[]) {
+			Calendar[] calArr = (Calendar[]) key;
+			if (calArr.length!=2)
+				throw new IllegalArgumentException("Calendar search key array must have exactly 2 elements. We found "+calArr.length);
+			setDateRange(index, calArr[0], calArr[1]);
+		}
+		else if (key instanceof double[]) {
+			double[] doubleArr = (double[]) key;
+			if (doubleArr.length!=2)
+				throw new IllegalArgumentException("Double search key array must have exactly 2 elements. We found "+doubleArr.length);
+			setNumberRange(index, doubleArr[0], doubleArr[1]);
+		}
+		else if (key instanceof Double[]) {
+			Double[] doubleArr = (Double[]) key;
+			if (doubleArr.length!=2)
+				throw new IllegalArgumentException("Double search key array must have exactly 2 elements. We found "+doubleArr.length);
+			setNumberRange(index, doubleArr[0]==null ? 0 : doubleArr[0].doubleValue(),
+					doubleArr[1]==null ? 0 : doubleArr[1].doubleValue());
+		}
+		else {
+			throw new IllegalArgumentException("Unknown key type: "+key+", class="+key.getClass().getName());
+		}
+		return this;
+	}
+
+	/**
+	 * Sets all key values via {@link #setKey(int, Object)}, e.g. to reuse
+	 * this search key for the next lookup of a batch
+	 *
+	 * @param keys keys, number must match {@link #getKeyCount()}
+	 * @return this search key
+	 */
+	public SearchKey setKeys(Object... keys) {
+		if (keys.length!=m_keyCount) {
+			throw new IllegalArgumentException("Number of keys "+keys.length+" does not match the key count "+m_keyCount);
+		}
+		for (int i=0; i<keys.length; i++) {
+			if (keys[i]==null) {
+				throw new NullPointerException("Keys cannot be null. keys="+Arrays.asList(keys));
+			}
+		}
+		for (int i=0; i<keys.length; i++) {
+			setKey(i, keys[i]);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the size of the value of a key in the key buffer (including the data type WORD)
+	 *
+	 * @param index key index
+	 * @return size
+	 */
+	private int getValueLength(int index) {
+		switch (m_types[index]) {
+		case TYPE_TEXT:
+			return 2 + m_stringLengths[index];
+		case TYPE_NUMBER:
+			return 2 + 8;
+		case TYPE_TIME:
+			return 2 + NotesConstants.timeDateSize;
+		case TYPE_TIME_RANGE:
+			return 2 + NotesConstants.rangeSize + NotesConstants.timeDatePairSize;
+		case TYPE_NUMBER_RANGE:
+			return 2 + NotesConstants.rangeSize + NotesConstants.numberPairSize;
+		default:
+			throw new IllegalStateException("Key "+index+" has not been set");
+		}
+	}
+
+	/**
+	 * Returns the native key buffer in the format expected by NIFFindByKey (an ITEM_TABLE with
+	 * empty item names and the key values). The buffer is reused for all lookups and
+	 * gets overwritten when key values are changed.
+	 *
+	 * @return key buffer
+	 */
+	public Memory getKeyBuffer() {
+		Thread currThread = Thread.currentThread();
+		if (m_ownerThread==null) {
+			m_ownerThread = currThread;
+		}
+		else if (m_ownerThread!=currThread) {
+			throw new IllegalStateException("Search key is confined to thread "+m_ownerThread.getName()+" and cannot be used in thread "+currThread.getName());
+		}
+
+		if (m_encoded) {
+			return m_buffer;
+		}
+
+		int valuesLength = 0;
+		for (int i=0; i<m_keyCount; i++) {
+			valuesLength += getValueLength(i);
+		}
+		int itemsLength = 4 + m_keyCount * NotesConstants.tableItemSize;
+		int totalLength = itemsLength + valuesLength;
+		if (totalLength > 0xffff) {
+			throw new IllegalArgumentException("Search keys exceed the maximum size of 65535 bytes: "+totalLength);
+		}
+
+		if (m_buffer==null || m_buffer.size() < totalLength) {
+			//grow in steps to not reallocate the buffer for every slightly longer string key
+			int newSize = m_buffer==null ? totalLength : Math.max(totalLength, (int) Math.min(0xffff, m_buffer.size()*2));
+			m_buffer = new Memory(newSize);
+			m_byteBuffer = m_buffer.getByteBuffer(0, newSize).order(ByteOrder.nativeOrder());
+		}
+
+		ByteBuffer buf = m_byteBuffer;
+		//ITEM_TABLE header
+		buf.putShort(0, (short) (totalLength & 0xffff));
+		buf.putShort(2, (short) (m_keyCount & 0xffff));
+
+		int itemOffset = 4;
+		int valueOffset = itemsLength;
+
+		for (int i=0; i<m_keyCount; i++) {
+			int valueLength = getValueLength(i);
+
+			//ITEM with NameLength=0 and ValueLength
+			buf.putShort(itemOffset, (short) 0);
+			buf.putShort(itemOffset + 2, (short) (valueLength & 0xffff));
+			itemOffset += NotesConstants.tableItemSize;
+
+			switch (m_types[i]) {
+			case TYPE_TEXT:
+				buf.putShort(valueOffset, (short) NotesItem.TYPE_TEXT);
+				buf.position(valueOffset + 2);
+				NotesStringUtils.toLMBCS(m_strings[i], LineBreakConversion.NULL, buf);
+				break;
+			case TYPE_NUMBER:
+				buf.putShort(valueOffset, (short) NotesItem.TYPE_NUMBER);
+				buf.putDouble(valueOffset + 2, m_numbers[i*2]);
+				break;
+			case TYPE_TIME:
+				buf.putShort(valueOffset, (short) NotesItem.TYPE_TIME);
+				buf.putInt(valueOffset + 2, m_innards[i*4]);
+				buf.putInt(valueOffset + 6, m_innards[i*4+1]);
+				break;
+			case TYPE_TIME_RANGE: {
+				buf.putShort(valueOffset, (short) NotesItem.TYPE_TIME_RANGE);
+				//RANGE with ListEntries=0 and RangeEntries=1
+				buf.putShort(valueOffset + 2, (short) 0);
+				buf.putShort(valueOffset + 4, (short) 1);
+				int pairOffset = valueOffset + 2 + NotesConstants.rangeSize;
+				buf.putInt(pairOffset, m_innards[i*4]);
+				buf.putInt(pairOffset + 4, m_innards[i*4+1]);
+				buf.putInt(pairOffset + 8, m_innards[i*4+2]);
+				buf.putInt(pairOffset + 12, m_innards[i*4+3]);
+				break;
+			}
+			case TYPE_NUMBER_RANGE: {
+				buf.putShort(valueOffset, (short) NotesItem.TYPE_NUMBER_RANGE);
+				buf.putShort(valueOffset + 2, (short) 0);
+				buf.putShort(valueOffset + 4, (short) 1);
+				int pairOffset = valueOffset + 2 + NotesConstants.rangeSize;
+				buf.putDouble(pairOffset, m_numbers[i*2]);
+				buf.putDouble(pairOffset + 8, m_numbers[i*2+1]);
+				break;
+			}
+			default:
+				break;
+			}
+			valueOffset += valueLength;
+		}
+
+		m_encoded = true;
+		return m_buffer;
+	}
+
+}
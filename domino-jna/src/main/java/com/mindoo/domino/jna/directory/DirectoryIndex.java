@@ -0,0 +1,632 @@
+package com.mindoo.domino.jna.directory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.DatabaseOption;
+import com.mindoo.domino.jna.constants.FileType;
+import com.mindoo.domino.jna.directory.DirectoryScanner.DatabaseData;
+import com.mindoo.domino.jna.directory.DirectoryScanner.SearchResultData;
+import com.mindoo.domino.jna.errors.NotesError;
+
+/**
+ * Persistent catalog of the databases in a local or remote Domino data directory.<br>
+ * <br>
+ * The first {@link #update()} call scans the whole directory with {@link DirectoryScanner}.
+ * Subsequent calls only scan directory entries modified since the last scan and replace
+ * index entries whose modified or design modified date has changed. The index is stored
+ * in a local file after each update and loaded from there when a new instance is created,
+ * so that the full scan is only needed once.<br>
+ * <br>
+ * Incremental scans do not report deleted databases. Use {@link #rebuild()} to run a full
+ * scan that also removes databases that no longer exist.<br>
+ * <br>
+ * In addition to the lookup by path, the index provides fast lookups by replica id,
+ * template name, inherit template name and path prefix, e.g. as a replacement for
+ * {@link NotesDatabase#findAllDatabasesByTemplateName(String, String, String)} which scans
+ * the directory on every call. The class is thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public class DirectoryIndex {
+	private static final int FILE_MAGIC = 0x444a4458; // "DJDX"
+	private static final int FILE_VERSION = 1;
+
+	private String m_serverName;
+	private String m_directory;
+	private File m_indexFile;
+	private boolean m_loaded;
+	private NotesTimeDate m_lastScanEnd;
+
+	/** entries by normalized path, sorted for prefix lookups */
+	private TreeMap<String,IndexedDatabase> m_byPath;
+	private Map<String,List<IndexedDatabase>> m_byReplicaId;
+	private Map<String,List<IndexedDatabase>> m_byTemplateName;
+	private Map<String,List<IndexedDatabase>> m_byInheritTemplateName;
+
+	/**
+	 * Creates a new index for all databases in a directory and its subdirectories
+	 *
+	 * @param serverName server name, either abbreviated, canonical or common name
+	 * @param directory directory to scan or "" for top level
+	 * @param indexFile local file to store the index, created on first {@link #update()}
+	 */
+	public DirectoryIndex(String serverName, String directory, File indexFile) {
+		m_serverName = serverName==null ? "" : serverName;
+		m_directory = directory==null ? "" : directory;
+		m_indexFile = indexFile;
+		m_byPath = new TreeMap<String,IndexedDatabase>();
+		m_byReplicaId = new HashMap<String,List<IndexedDatabase>>();
+		m_byTemplateName = new HashMap<String,List<IndexedDatabase>>();
+		m_byInheritTemplateName = new HashMap<String,List<IndexedDatabase>>();
+	}
+
+	/**
+	 * Scans the directory for databases modified since the last update, updates the index
+	 * and writes it to the index file
+	 *
+	 * @return number of added or changed databases
+	 */
+	public synchronized int update() {
+		ensureLoaded();
+		int changes = scan(m_lastScanEnd, null);
+		save();
+		return changes;
+	}
+
+	/**
+	 * Runs a full scan of the directory, updates the index, removes databases that no
+	 * longer exist and writes the index to the index file
+	 *
+	 * @return number of added, changed or removed databases
+	 */
+	public synchronized int rebuild() {
+		ensureLoaded();
+		Set<String> foundPaths = new HashSet<String>();
+		int changes = scan(null, foundPaths);
+
+		Iterator<Map.Entry<String,IndexedDatabase>> entriesIt = m_byPath.entrySet().iterator();
+		while (entriesIt.hasNext()) {
+			Map.Entry<String,IndexedDatabase> currEntry = entriesIt.next();
+			if (!foundPaths.contains(currEntry.getKey())) {
+				entriesIt.remove();
+				removeFromLookups(currEntry.getValue());
+				changes++;
+			}
+		}
+		save();
+		return changes;
+	}
+
+	/**
+	 * Scans the directory and adds new and changed databases to the index
+	 *
+	 * @param since start date for incremental scan or null for full scan
+	 * @param foundPaths optional set to collect the normalized paths of all scanned databases
+	 * @return number of added or changed databases
+	 */
+	private int scan(NotesTimeDate since, final Set<String> foundPaths) {
+		final int[] changes = new int[1];
+
+		DirectoryScanner scanner = new DirectoryScanner(m_serverName, m_directory, EnumSet.of(FileType.DBANY, FileType.RECURSE)) {
+			@Override
+			protected Action entryRead(SearchResultData data) {
+				if (data instanceof DatabaseData) {
+					DatabaseData dbData = (DatabaseData) data;
+					String pathKey = normalizePath(dbData.getFilePath());
+					if (foundPaths!=null) {
+						foundPaths.add(pathKey);
+					}
+
+					IndexedDatabase oldEntry = m_byPath.get(pathKey);
+					if (oldEntry==null || !isSame(oldEntry.getModified(), dbData.getModifiedAsTimeDate()) ||
+							!isSame(oldEntry.getDesignModified(), dbData.getDesignModifiedDateASTimeDate())) {
+						IndexedDatabase newEntry = new IndexedDatabase(dbData);
+						if (oldEntry!=null) {
+							removeFromLookups(oldEntry);
+						}
+						m_byPath.put(pathKey, newEntry);
+						addToLookups(newEntry);
+						changes[0]++;
+					}
+				}
+				return Action.Continue;
+			}
+		};
+		m_lastScanEnd = scanner.scanSince(null, since);
+		return changes[0];
+	}
+
+	private static boolean isSame(NotesTimeDate td1, NotesTimeDate td2) {
+		return td1==null ? td2==null : td1.equals(td2);
+	}
+
+	private static String normalizePath(String path) {
+		return path==null ? "" : path.replace('\\', '/').toLowerCase(Locale.ENGLISH);
+	}
+
+	private static String normalizeReplicaId(String replicaId) {
+		return replicaId.replace(":", "").toUpperCase(Locale.ENGLISH);
+	}
+
+	private void addToLookups(IndexedDatabase entry) {
+		if (entry.getReplicaID().length()>0) {
+			addToLookup(m_byReplicaId, normalizeReplicaId(entry.getReplicaID()), entry);
+		}
+		if (entry.getTemplateName().length()>0) {
+			addToLookup(m_byTemplateName, entry.getTemplateName().toLowerCase(Locale.ENGLISH), entry);
+		}
+		if (entry.getInheritTemplateName().length()>0) {
+			addToLookup(m_byInheritTemplateName, entry.getInheritTemplateName().toLowerCase(Locale.ENGLISH), entry);
+		}
+	}
+
+	private void removeFromLookups(IndexedDatabase entry) {
+		removeFromLookup(m_byReplicaId, normalizeReplicaId(entry.getReplicaID()), entry);
+		removeFromLookup(m_byTemplateName, entry.getTemplateName().toLowerCase(Locale.ENGLISH), entry);
+		removeFromLookup(m_byInheritTemplateName, entry.getInheritTemplateName().toLowerCase(Locale.ENGLISH), entry);
+	}
+
+	private static void addToLookup(Map<String,List<IndexedDatabase>> lookup, String key, IndexedDatabase entry) {
+		List<IndexedDatabase> entries = lookup.get(key);
+		if (entries==null) {
+			entries = new ArrayList<IndexedDatabase>(1);
+			lookup.put(key, entries);
+		}
+		entries.add(entry);
+	}
+
+	private static void removeFromLookup(Map<String,List<IndexedDatabase>> lookup, String key, IndexedDatabase entry) {
+		List<IndexedDatabase> entries = lookup.get(key);
+		if (entries!=null) {
+			entries.remove(entry);
+			if (entries.isEmpty()) {
+				lookup.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Returns the end date of the last scan
+	 *
+	 * @return date or null if the directory has not been scanned yet
+	 */
+	public synchronized NotesTimeDate getLastScanEnd() {
+		ensureLoaded();
+		return m_lastScanEnd;
+	}
+
+	/**
+	 * Returns the number of indexed databases
+	 *
+	 * @return count
+	 */
+	public synchronized int size() {
+		ensureLoaded();
+		return m_byPath.size();
+	}
+
+	/**
+	 * Returns all indexed databases sorted by path
+	 *
+	 * @return databases
+	 */
+	public synchronized List<IndexedDatabase> getAllDatabases() {
+		ensureLoaded();
+		return new ArrayList<IndexedDatabase>(m_byPath.values());
+	}
+
+	/**
+	 * Looks up a database by its path
+	 *
+	 * @param filePath relative path in the data directory, case insensitive
+	 * @return database or null if not found
+	 */
+	public synchronized IndexedDatabase getDatabaseByPath(String filePath) {
+		ensureLoaded();
+		return m_byPath.get(normalizePath(filePath));
+	}
+
+	/**
+	 * Returns all databases with a path that starts with the specified prefix, e.g.
+	 * "mail/" for all databases in the mail directory
+	 *
+	 * @param pathPrefix path prefix, case insensitive
+	 * @return databases sorted by path
+	 */
+	public synchronized List<IndexedDatabase> getDatabasesByPathPrefix(String pathPrefix) {
+		ensureLoaded();
+		String prefix = normalizePath(pathPrefix);
+		return new ArrayList<IndexedDatabase>(m_byPath.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+	}
+
+	/**
+	 * Returns all databases with the specified replica id
+	 *
+	 * @param replicaId replica id, either 16 characters or 8:8 format
+	 * @return databases
+	 */
+	public synchronized List<IndexedDatabase> getDatabasesByReplicaID(String replicaId) {
+		ensureLoaded();
+		return copyOf(m_byReplicaId.get(normalizeReplicaId(replicaId)));
+	}
+
+	/**
+	 * Returns the first database that is a template with the specified template name
+	 *
+	 * @param templateName template name, case insensitive
+	 * @return database or null if not found
+	 */
+	public synchronized IndexedDatabase findDatabaseByTemplateName(String templateName) {
+		ensureLoaded();
+		List<IndexedDatabase> entries = m_byTemplateName.get(templateName.toLowerCase(Locale.ENGLISH));
+		return entries==null ? null : entries.get(0);
+	}
+
+	/**
+	 * Returns all databases that are templates with the specified template name
+	 *
+	 * @param templateName template name, case insensitive
+	 * @return databases
+	 */
+	public synchronized List<IndexedDatabase> findAllDatabasesByTemplateName(String templateName) {
+		ensureLoaded();
+		return copyOf(m_byTemplateName.get(templateName.toLowerCase(Locale.ENGLISH)));
+	}
+
+	/**
+	 * Returns all databases that inherit their design from the specified template
+	 *
+	 * @param templateName template name, case insensitive
+	 * @return databases
+	 */
+	public synchronized List<IndexedDatabase> findAllDatabasesByInheritTemplateName(String templateName) {
+		ensureLoaded();
+		return copyOf(m_byInheritTemplateName.get(templateName.toLowerCase(Locale.ENGLISH)));
+	}
+
+	private static List<IndexedDatabase> copyOf(List<IndexedDatabase> entries) {
+		if (entries==null) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<IndexedDatabase>(entries);
+	}
+
+	/**
+	 * Loads the index file on first access. Missing, outdated or unreadable files are
+	 * ignored, the next {@link #update()} then runs a full scan.
+	 */
+	private void ensureLoaded() {
+		if (m_loaded) {
+			return;
+		}
+		m_loaded = true;
+
+		if (!m_indexFile.exists()) {
+			return;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_indexFile)));
+			if (in.readInt()!=FILE_MAGIC || in.readInt()!=FILE_VERSION) {
+				return;
+			}
+			if (!m_serverName.equalsIgnoreCase(in.readUTF()) || !m_directory.equalsIgnoreCase(in.readUTF())) {
+				return;
+			}
+			NotesTimeDate lastScanEnd = readTimeDate(in);
+
+			TreeMap<String,IndexedDatabase> byPath = new TreeMap<String,IndexedDatabase>();
+			int count = in.readInt();
+			for (int i=0; i<count; i++) {
+				IndexedDatabase currEntry = new IndexedDatabase(in);
+				byPath.put(normalizePath(currEntry.getFilePath()), currEntry);
+			}
+
+			m_lastScanEnd = lastScanEnd;
+			m_byPath = byPath;
+			for (IndexedDatabase currEntry : byPath.values()) {
+				addToLookups(currEntry);
+			}
+		}
+		catch (IOException e) {
+			//corrupt file; rebuild the index on next update
+			m_lastScanEnd = null;
+			m_byPath.clear();
+		}
+		finally {
+			if (in!=null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the index to a temp file and replaces the index file
+	 */
+	private void save() {
+		File tmpFile = new File(m_indexFile.getAbsolutePath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(FILE_MAGIC);
+				out.writeInt(FILE_VERSION);
+				out.writeUTF(m_serverName);
+				out.writeUTF(m_directory);
+				writeTimeDate(out, m_lastScanEnd);
+				out.writeInt(m_byPath.size());
+				for (IndexedDatabase currEntry : m_byPath.values()) {
+					currEntry.write(out);
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			try {
+				Files.move(tmpFile.toPath(), m_indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile.toPath(), m_indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e) {
+			tmpFile.delete();
+			throw new NotesError(0, "Error writing directory index file "+m_indexFile.getAbsolutePath(), e);
+		}
+	}
+
+	private static void writeTimeDate(DataOutputStream out, NotesTimeDate td) throws IOException {
+		out.writeBoolean(td!=null);
+		if (td!=null) {
+			int[] innards = td.getInnards();
+			out.writeInt(innards[0]);
+			out.writeInt(innards[1]);
+		}
+	}
+
+	private static NotesTimeDate readTimeDate(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		return new NotesTimeDate(new int[] {in.readInt(), in.readInt()});
+	}
+
+	private static String nullToEmpty(String str) {
+		return str==null ? "" : str;
+	}
+
+	/**
+	 * Database entry of the {@link DirectoryIndex}
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static class IndexedDatabase {
+		private String m_filePath;
+		private String m_fileName;
+		private String m_title;
+		private String m_category;
+		private String m_templateName;
+		private String m_inheritTemplateName;
+		private String m_replicaId;
+		private NotesTimeDate m_created;
+		private NotesTimeDate m_modified;
+		private NotesTimeDate m_designModified;
+		private NotesTimeDate m_lastFixup;
+		private NotesTimeDate m_lastCompact;
+		private Set<DatabaseOption> m_options;
+
+		private IndexedDatabase(DatabaseData dbData) {
+			m_filePath = nullToEmpty(dbData.getFilePath());
+			m_fileName = nullToEmpty(dbData.getFileName());
+			m_title = nullToEmpty(dbData.getTitle());
+			m_category = nullToEmpty(dbData.getCategory());
+			m_templateName = nullToEmpty(dbData.getTemplateName());
+			m_inheritTemplateName = nullToEmpty(dbData.getInheritTemplateName());
+			m_replicaId = dbData.getReplicaID();
+			m_created = dbData.getCreatedAsTimeDate();
+			m_modified = dbData.getModifiedAsTimeDate();
+			m_designModified = dbData.getDesignModifiedDateASTimeDate();
+			m_lastFixup = dbData.getLastFixupAsTimeDate();
+			m_lastCompact = dbData.getLastCompactAsTimeDate();
+			m_options = Collections.unmodifiableSet(EnumSet.copyOf(dbData.getOptions()));
+		}
+
+		private IndexedDatabase(DataInputStream in) throws IOException {
+			m_filePath = in.readUTF();
+			m_fileName = in.readUTF();
+			m_title = in.readUTF();
+			m_category = in.readUTF();
+			m_templateName = in.readUTF();
+			m_inheritTemplateName = in.readUTF();
+			m_replicaId = in.readUTF();
+			m_created = readTimeDate(in);
+			m_modified = readTimeDate(in);
+			m_designModified = readTimeDate(in);
+			m_lastFixup = readTimeDate(in);
+			m_lastCompact = readTimeDate(in);
+
+			EnumSet<DatabaseOption> options = EnumSet.noneOf(DatabaseOption.class);
+			int optionCount = in.readInt();
+			for (int i=0; i<optionCount; i++) {
+				String optionName = in.readUTF();
+				try {
+					options.add(DatabaseOption.valueOf(optionName));
+				}
+				catch (IllegalArgumentException e) {
+					//option removed from enum
+				}
+			}
+			m_options = Collections.unmodifiableSet(options);
+		}
+
+		private void write(DataOutputStream out) throws IOException {
+			out.writeUTF(m_filePath);
+			out.writeUTF(m_fileName);
+			out.writeUTF(m_title);
+			out.writeUTF(m_category);
+			out.writeUTF(m_templateName);
+			out.writeUTF(m_inheritTemplateName);
+			out.writeUTF(m_replicaId);
+			writeTimeDate(out, m_created);
+			writeTimeDate(out, m_modified);
+			writeTimeDate(out, m_designModified);
+			writeTimeDate(out, m_lastFixup);
+			writeTimeDate(out, m_lastCompact);
+			out.writeInt(m_options.size());
+			for (DatabaseOption currOption : m_options) {
+				out.writeUTF(currOption.name());
+			}
+		}
+
+		/**
+		 * Returns the complete relative path of the database in the data directory
+		 *
+		 * @return path
+		 */
+		public String getFilePath() {
+			return m_filePath;
+		}
+
+		/**
+		 * Returns the filename of the database
+		 *
+		 * @return filename
+		 */
+		public String getFileName() {
+			return m_fileName;
+		}
+
+		/**
+		 * Returns the database title
+		 *
+		 * @return title
+		 */
+		public String getTitle() {
+			return m_title;
+		}
+
+		/**
+		 * Returns the database category
+		 *
+		 * @return category or empty string
+		 */
+		public String getCategory() {
+			return m_category;
+		}
+
+		/**
+		 * Returns the template name
+		 *
+		 * @return template name if this database is a template, empty string otherwise
+		 */
+		public String getTemplateName() {
+			return m_templateName;
+		}
+
+		/**
+		 * Returns the name of the template that this database inherits its design from
+		 *
+		 * @return inherit template name or empty string
+		 */
+		public String getInheritTemplateName() {
+			return m_inheritTemplateName;
+		}
+
+		/**
+		 * Returns the hex encoded replica id of the database (16 character hex string)
+		 *
+		 * @return replica id or empty string if unknown
+		 */
+		public String getReplicaID() {
+			return m_replicaId;
+		}
+
+		/**
+		 * Returns the database creation date
+		 *
+		 * @return creation date
+		 */
+		public NotesTimeDate getCreated() {
+			return m_created;
+		}
+
+		/**
+		 * Returns the database modification date
+		 *
+		 * @return modification date
+		 */
+		public NotesTimeDate getModified() {
+			return m_modified;
+		}
+
+		/**
+		 * Returns the date of the last design change
+		 *
+		 * @return design modified date
+		 */
+		public NotesTimeDate getDesignModified() {
+			return m_designModified;
+		}
+
+		/**
+		 * Returns the date of the last fixup
+		 *
+		 * @return last fixup
+		 */
+		public NotesTimeDate getLastFixup() {
+			return m_lastFixup;
+		}
+
+		/**
+		 * Returns the date of the last compact
+		 *
+		 * @return last compact
+		 */
+		public NotesTimeDate getLastCompact() {
+			return m_lastCompact;
+		}
+
+		/**
+		 * Returns the {@link DatabaseOption} values for the database
+		 *
+		 * @return options
+		 */
+		public Set<DatabaseOption> getOptions() {
+			return m_options;
+		}
+
+		@Override
+		public String toString() {
+			return "IndexedDatabase [filepath="+m_filePath+", title="+m_title+", replicaid="+m_replicaId+
+					", template="+m_templateName+", inherittemplate="+m_inheritTemplateName+"]";
+		}
+	}
+}
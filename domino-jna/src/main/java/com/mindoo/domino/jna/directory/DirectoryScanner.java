@@ -15,6 +15,7 @@ import com.mindoo.domino.jna.constants.DatabaseOption;
 import com.mindoo.domino.jna.constants.FileType;
 import com.mindoo.domino.jna.constants.Search;
 import com.mindoo.domino.jna.internal.DisposableMemory;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.mindoo.domino.jna.utils.StringTokenizerExt;
 
 import lotus.domino.DbDirectory;
@@ -63,11 +64,28 @@ public class DirectoryScanner {
 	 * @return search result; override {@link #isAccepted(SearchResultData)} to apply your own filtering or {@link #entryRead(SearchResultData)} to read results while scanning
 	 */
 	public List<SearchResultData> scan(String formula) {
-		final List<SearchResultData> lookupResult = new ArrayList<DirectoryScanner.SearchResultData>();
-		
+		List<SearchResultData> lookupResult = new ArrayList<DirectoryScanner.SearchResultData>();
+		scan(formula, null, lookupResult);
+		return lookupResult;
+	}
+	
+	/**
+	 * Starts an incremental directory scan that only reports entries modified after the
+	 * specified date. During the scan, we call {@link #entryRead(SearchResultData)} with
+	 * every entry we found. Deleted entries are not reported.
+	 * 
+	 * @param formula optional search formula to filter the returned entries, see {@link SearchResultData#getRawData()} for available fields
+	 * @param since date of the earliest modified entry to report or null for a full scan
+	 * @return end date of the scan, use it as <code>since</code> value for the next incremental scan
+	 */
+	public NotesTimeDate scanSince(String formula, NotesTimeDate since) {
+		return scan(formula, since, null);
+	}
+	
+	private NotesTimeDate scan(String formula, NotesTimeDate since, final List<SearchResultData> lookupResult) {
 		NotesDatabase dir = new NotesDatabase(m_serverName, m_directory, "");
 		try {
-			dir.searchFiles(formula, null, EnumSet.of(Search.FILETYPE, Search.SUMMARY), m_fileTypes, null, new NotesDatabase.SearchCallback() {
+			return dir.searchFiles(formula, null, EnumSet.of(Search.FILETYPE, Search.SUMMARY), m_fileTypes, since, new NotesDatabase.SearchCallback() {
 
 				@Override
 				public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
@@ -95,7 +113,7 @@ public class DirectoryScanner {
 							folderData.setFolderName(folderName);
 							folderData.setFolderPath(folderPath);
 
-							if (isAccepted(folderData)) {
+							if (lookupResult!=null && isAccepted(folderData)) {
 								lookupResult.add(folderData);
 							}
 							
@@ -199,7 +217,7 @@ public class DirectoryScanner {
 							dbData.setTemplateName(dbTemplateName);
 							dbData.setInheritTemplateName(dbInheritTemplateName);
 							
-							if (isAccepted(dbData)) {
+							if (lookupResult!=null && isAccepted(dbData)) {
 								lookupResult.add(dbData);
 							}
 
@@ -219,7 +237,6 @@ public class DirectoryScanner {
 		finally {
 			dir.recycle();
 		}
-		return lookupResult;
 	}
 
 	/**
@@ -579,6 +596,19 @@ public class DirectoryScanner {
 			this.m_ineritTemplateName = inheritTemplateName;
 		}
 		
+		/**
+		 * Returns the hex encoded replica id of the database (16 character hex string)
+		 * 
+		 * @return replica id or empty string if not part of the directory data
+		 */
+		public String getReplicaID() {
+			Object replicaIdObj = getRawData().get("$ReplicaID");
+			if (replicaIdObj instanceof NotesTimeDate) {
+				return NotesStringUtils.innardsToReplicaId(((NotesTimeDate) replicaIdObj).getInnards());
+			}
+			return "";
+		}
+		
 		/**
 		 * Returns the {@link DatabaseOption} values for the database
 		 * 
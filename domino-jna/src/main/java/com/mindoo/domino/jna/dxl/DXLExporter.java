@@ -16,12 +16,12 @@ import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.IAllocatedMemory;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.CallbackPool;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
 import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
-import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.WriterOutputStream;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.sun.jna.Memory;
@@ -124,6 +124,32 @@ public class DXLExporter extends AbstractDXLTransfer implements IAllocatedMemory
 		return logged == 1;
 	}
 	
+	/**
+	 * Returns a pooled DXL write callback that writes the data to the stream.
+	 * Must be released via {@link CallbackPool#release(com.sun.jna.Callback)} after the export.
+	 * 
+	 * @param out target stream
+	 * @param ex array to store the first write exception
+	 * @return callback
+	 */
+	private NotesCallbacks.XML_WRITE_FUNCTION acquireWriteCallback(final OutputStream out, final Exception[] ex) {
+		return CallbackPool.XML_WRITE.acquire(new NotesCallbacks.XML_WRITE_FUNCTION() {
+
+			@Override
+			public void invoke(Pointer bBuffer, int length, Pointer pAction) {
+				if (ex[0] == null && length>0) {
+					try {
+						byte[] data = bBuffer.getByteArray(0, length);
+						out.write(data);
+					}
+					catch (Exception t) {
+						ex[0] = t;
+					}
+				}
+			}
+		});
+	}
+	
 	/**
 	 * Export a single Note into XML format.
 	 * 
@@ -150,63 +176,32 @@ public class DXLExporter extends AbstractDXLTransfer implements IAllocatedMemory
 			throw new NotesError(0, "Note is recycled");
 		}
 		
-		final NotesCallbacks.XML_WRITE_FUNCTION callback;
-		
 		final Exception[] ex = new Exception[1];
+		final NotesCallbacks.XML_WRITE_FUNCTION callback = acquireWriteCallback(out, ex);
 		
-		if (PlatformUtils.isWin32()) {
-			callback = new Win32NotesCallbacks.XML_WRITE_FUNCTIONWin32() {
+		short result;
+		try {
+			if (PlatformUtils.is64Bit()) {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
 
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+					@Override
+					public Short run() {
+						return NotesNativeAPI64.get().DXLExportNote(m_hExporter, callback, note.getHandle64(), (Pointer) null);
 					}
-				}
-			};
-		}
-		else {
-			callback = new NotesCallbacks.XML_WRITE_FUNCTION() {
-
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+				});
+			}
+			else {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
+
+					@Override
+					public Short run() {
+						return NotesNativeAPI32.get().DXLExportNote(m_hExporter, callback, note.getHandle32(), (Pointer) null);
 					}
-				}
-			};
-		}
-		
-		short result;
-		if (PlatformUtils.is64Bit()) {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI64.get().DXLExportNote(m_hExporter, callback, note.getHandle64(), (Pointer) null);
-				}
-			});
+				});
+			}
 		}
-		else {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI32.get().DXLExportNote(m_hExporter, callback, note.getHandle32(), (Pointer) null);
-				}
-			});
+		finally {
+			CallbackPool.XML_WRITE.release(callback);
 		}
 		
 		if (ex[0] instanceof IOException) {
@@ -287,63 +282,32 @@ public class DXLExporter extends AbstractDXLTransfer implements IAllocatedMemory
 			throw new NotesError(0, "IDTable is recycled");
 		}
 		
-		final NotesCallbacks.XML_WRITE_FUNCTION callback;
-		
 		final Exception[] ex = new Exception[1];
+		final NotesCallbacks.XML_WRITE_FUNCTION callback = acquireWriteCallback(out, ex);
 		
-		if (PlatformUtils.isWin32()) {
-			callback = new Win32NotesCallbacks.XML_WRITE_FUNCTIONWin32() {
+		short result;
+		try {
+			if (PlatformUtils.is64Bit()) {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
 
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+					@Override
+					public Short run() {
+						return NotesNativeAPI64.get().DXLExportIDTable(m_hExporter, callback, db.getHandle64(), idTable.getHandle64(), (Pointer) null);
 					}
-				}
-			};
-		}
-		else {
-			callback = new NotesCallbacks.XML_WRITE_FUNCTION() {
-
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+				});
+			}
+			else {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
+
+					@Override
+					public Short run() {
+						return NotesNativeAPI32.get().DXLExportIDTable(m_hExporter, callback, db.getHandle32(), idTable.getHandle32(), (Pointer) null);
 					}
-				}
-			};
-		}
-		
-		short result;
-		if (PlatformUtils.is64Bit()) {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI64.get().DXLExportIDTable(m_hExporter, callback, db.getHandle64(), idTable.getHandle64(), (Pointer) null);
-				}
-			});
+				});
+			}
 		}
-		else {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI32.get().DXLExportIDTable(m_hExporter, callback, db.getHandle32(), idTable.getHandle32(), (Pointer) null);
-				}
-			});
+		finally {
+			CallbackPool.XML_WRITE.release(callback);
 		}
 		
 		if (ex[0] instanceof IOException) {
@@ -370,63 +334,32 @@ public class DXLExporter extends AbstractDXLTransfer implements IAllocatedMemory
 			throw new NotesError(0, "Database is recycled");
 		}
 		
-		final NotesCallbacks.XML_WRITE_FUNCTION callback;
-		
 		final Exception[] ex = new Exception[1];
+		final NotesCallbacks.XML_WRITE_FUNCTION callback = acquireWriteCallback(out, ex);
 		
-		if (PlatformUtils.isWin32()) {
-			callback = new Win32NotesCallbacks.XML_WRITE_FUNCTIONWin32() {
+		short result;
+		try {
+			if (PlatformUtils.is64Bit()) {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
 
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+					@Override
+					public Short run() {
+						return NotesNativeAPI64.get().DXLExportDatabase(m_hExporter, callback, db.getHandle64(), (Pointer) null);
 					}
-				}
-			};
-		}
-		else {
-			callback = new NotesCallbacks.XML_WRITE_FUNCTION() {
-
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+				});
+			}
+			else {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
+
+					@Override
+					public Short run() {
+						return NotesNativeAPI32.get().DXLExportDatabase(m_hExporter, callback, db.getHandle32(), (Pointer) null);
 					}
-				}
-			};
-		}
-		
-		short result;
-		if (PlatformUtils.is64Bit()) {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI64.get().DXLExportDatabase(m_hExporter, callback, db.getHandle64(), (Pointer) null);
-				}
-			});
+				});
+			}
 		}
-		else {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI32.get().DXLExportDatabase(m_hExporter, callback, db.getHandle32(), (Pointer) null);
-				}
-			});
+		finally {
+			CallbackPool.XML_WRITE.release(callback);
 		}
 		
 		if (ex[0] instanceof IOException) {
@@ -453,63 +386,32 @@ public class DXLExporter extends AbstractDXLTransfer implements IAllocatedMemory
 			throw new NotesError(0, "Database is recycled");
 		}
 		
-		final NotesCallbacks.XML_WRITE_FUNCTION callback;
-		
 		final Exception[] ex = new Exception[1];
+		final NotesCallbacks.XML_WRITE_FUNCTION callback = acquireWriteCallback(out, ex);
 		
-		if (PlatformUtils.isWin32()) {
-			callback = new Win32NotesCallbacks.XML_WRITE_FUNCTIONWin32() {
+		short result;
+		try {
+			if (PlatformUtils.is64Bit()) {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
 
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+					@Override
+					public Short run() {
+						return NotesNativeAPI64.get().DXLExportACL(m_hExporter, callback, db.getHandle64(), (Pointer) null);
 					}
-				}
-			};
-		}
-		else {
-			callback = new NotesCallbacks.XML_WRITE_FUNCTION() {
-
-				@Override
-				public void invoke(Pointer bBuffer, int length, Pointer pAction) {
-					if (ex[0] == null && length>0) {
-						try {
-							byte[] data = bBuffer.getByteArray(0, length);
-							out.write(data);
-						}
-						catch (Exception t) {
-							ex[0] = t;
-						}
+				});
+			}
+			else {
+				result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
+
+					@Override
+					public Short run() {
+						return NotesNativeAPI32.get().DXLExportACL(m_hExporter, callback, db.getHandle32(), (Pointer) null);
 					}
-				}
-			};
+				});
+			}
 		}
-		
-		short result;
-		if (PlatformUtils.is64Bit()) {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI64.get().DXLExportACL(m_hExporter, callback, db.getHandle64(), (Pointer) null);
-				}
-			});
-		}
-		else {
-			result = AccessController.doPrivileged(new PrivilegedAction<Short>() {
-
-				@Override
-				public Short run() {
-					return NotesNativeAPI32.get().DXLExportACL(m_hExporter, callback, db.getHandle32(), (Pointer) null);
-				}
-			});
+		finally {
+			CallbackPool.XML_WRITE.release(callback);
 		}
 		
 		if (ex[0] instanceof IOException) {
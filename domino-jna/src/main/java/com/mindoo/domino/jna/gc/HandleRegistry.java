@@ -0,0 +1,270 @@
+package com.mindoo.domino.jna.gc;
+
+import java.util.Arrays;
+
+/**
+ * Map of C handles to the objects that own them, used by {@link NotesGC} to track
+ * open object and memory handles of a thread.<br>
+ * <br>
+ * Compared to a {@link java.util.LinkedHashMap} with {@link NotesGC.HashKey64} keys, this
+ * implementation does not allocate key objects or map entries per handle: keys are
+ * stored as primitive long values plus their type, entries are stored in arrays in
+ * insertion order and an open addressing index (linear probing) maps the keys to the array
+ * positions. Removing the most recently added entry (the common case when objects are
+ * recycled in a loop) shrinks the arrays again, so they do not fill up with removed entries.<br>
+ * <br>
+ * Use {@link #lastPosition()} to traverse the entries in reverse insertion order for disposal.
+ *
+ * @author Karsten Lehmann
+ *
+ * @param <T> value type
+ */
+class HandleRegistry<T> {
+	private static final int INITIAL_CAPACITY = 16;
+
+	//entries in insertion order; removed entries have a null value
+	private long[] m_handles;
+	private Class<?>[] m_types;
+	private Object[] m_values;
+	/** number of used entry positions, including removed entries */
+	private int m_end;
+	/** number of entries */
+	private int m_size;
+
+	/** open addressing index with entry position + 1, 0 for empty slots */
+	private int[] m_index;
+	private int m_indexMask;
+
+	public HandleRegistry() {
+		m_handles = new long[INITIAL_CAPACITY];
+		m_types = new Class<?>[INITIAL_CAPACITY];
+		m_values = new Object[INITIAL_CAPACITY];
+		m_index = new int[INITIAL_CAPACITY * 2];
+		m_indexMask = m_index.length - 1;
+	}
+
+	/**
+	 * Computes the hash of a key, the home slot in the index is the hash masked with the index size
+	 *
+	 * @param type type
+	 * @param handle handle
+	 * @return hash
+	 */
+	static int hash(Class<?> type, long handle) {
+		long h = handle * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 32);
+		return (int) h ^ (type==null ? 0 : type.hashCode());
+	}
+
+	/**
+	 * Returns the index slot of the specified key
+	 *
+	 * @param type type
+	 * @param handle handle
+	 * @return slot or -1 if not found
+	 */
+	private int findSlot(Class<?> type, long handle) {
+		int slot = hash(type, handle) & m_indexMask;
+		while (true) {
+			int posPlusOne = m_index[slot];
+			if (posPlusOne==0) {
+				return -1;
+			}
+			int pos = posPlusOne - 1;
+			if (m_handles[pos]==handle && m_types[pos]==type) {
+				return slot;
+			}
+			slot = (slot + 1) & m_indexMask;
+		}
+	}
+
+	/**
+	 * Adds an entry. If the key already exists, the value is replaced and the entry keeps
+	 * its position
+	 *
+	 * @param type type of handle, may be null
+	 * @param handle handle
+	 * @param value value, not null
+	 * @return previous value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public T put(Class<?> type, long handle, T value) {
+		if (value==null) {
+			throw new IllegalArgumentException("Value cannot be null");
+		}
+		int slot = findSlot(type, handle);
+		if (slot!=-1) {
+			int pos = m_index[slot] - 1;
+			T oldValue = (T) m_values[pos];
+			m_values[pos] = value;
+			return oldValue;
+		}
+
+		if (m_end == m_values.length) {
+			if (m_size <= m_end / 2) {
+				compact();
+			}
+			else {
+				int newCapacity = m_values.length * 2;
+				m_handles = Arrays.copyOf(m_handles, newCapacity);
+				m_types = Arrays.copyOf(m_types, newCapacity);
+				m_values = Arrays.copyOf(m_values, newCapacity);
+				rebuildIndex(newCapacity * 2);
+			}
+		}
+
+		int pos = m_end++;
+		m_handles[pos] = handle;
+		m_types[pos] = type;
+		m_values[pos] = value;
+		m_size++;
+
+		slot = hash(type, handle) & m_indexMask;
+		while (m_index[slot]!=0) {
+			slot = (slot + 1) & m_indexMask;
+		}
+		m_index[slot] = pos + 1;
+		return null;
+	}
+
+	/**
+	 * Returns the value for a key
+	 *
+	 * @param type type of handle, may be null
+	 * @param handle handle
+	 * @return value or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(Class<?> type, long handle) {
+		int slot = findSlot(type, handle);
+		return slot==-1 ? null : (T) m_values[m_index[slot] - 1];
+	}
+
+	/**
+	 * Removes an entry
+	 *
+	 * @param type type of handle, may be null
+	 * @param handle handle
+	 * @return removed value or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove(Class<?> type, long handle) {
+		int slot = findSlot(type, handle);
+		if (slot==-1) {
+			return null;
+		}
+		int pos = m_index[slot] - 1;
+		T oldValue = (T) m_values[pos];
+		m_values[pos] = null;
+		m_types[pos] = null;
+		m_size--;
+		deleteSlot(slot);
+
+		//drop removed entries at the end
+		while (m_end>0 && m_values[m_end-1]==null) {
+			m_end--;
+		}
+		return oldValue;
+	}
+
+	/**
+	 * Removes an index slot and moves following entries of the probe sequence
+	 * back to keep them reachable
+	 *
+	 * @param slot slot
+	 */
+	private void deleteSlot(int slot) {
+		int gap = slot;
+		int curr = (slot + 1) & m_indexMask;
+		while (m_index[curr]!=0) {
+			int pos = m_index[curr] - 1;
+			int home = hash(m_types[pos], m_handles[pos]) & m_indexMask;
+			//move entry into the gap if its home slot is not between the gap and its current slot
+			if (((curr - home) & m_indexMask) >= ((curr - gap) & m_indexMask)) {
+				m_index[gap] = m_index[curr];
+				gap = curr;
+			}
+			curr = (curr + 1) & m_indexMask;
+		}
+		m_index[gap] = 0;
+	}
+
+	/**
+	 * Moves all entries to the start of the arrays
+	 */
+	private void compact() {
+		int target = 0;
+		for (int i=0; i<m_end; i++) {
+			if (m_values[i]!=null) {
+				if (target!=i) {
+					m_handles[target] = m_handles[i];
+					m_types[target] = m_types[i];
+					m_values[target] = m_values[i];
+				}
+				target++;
+			}
+		}
+		Arrays.fill(m_types, target, m_end, null);
+		Arrays.fill(m_values, target, m_end, null);
+		m_end = target;
+		rebuildIndex(m_index.length);
+	}
+
+	private void rebuildIndex(int indexCapacity) {
+		m_index = new int[indexCapacity];
+		m_indexMask = indexCapacity - 1;
+		for (int pos=0; pos<m_end; pos++) {
+			if (m_values[pos]!=null) {
+				int slot = hash(m_types[pos], m_handles[pos]) & m_indexMask;
+				while (m_index[slot]!=0) {
+					slot = (slot + 1) & m_indexMask;
+				}
+				m_index[slot] = pos + 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of the most recently added entry
+	 *
+	 * @return position or -1 if empty
+	 */
+	public int lastPosition() {
+		return m_end - 1;
+	}
+
+	public long getHandleAt(int pos) {
+		return m_handles[pos];
+	}
+
+	public Class<?> getTypeAt(int pos) {
+		return m_types[pos];
+	}
+
+	/**
+	 * Returns the value at an entry position
+	 *
+	 * @param pos position
+	 * @return value or null if the entry has been removed
+	 */
+	@SuppressWarnings("unchecked")
+	public T getValueAt(int pos) {
+		return (T) m_values[pos];
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	public boolean isEmpty() {
+		return m_size==0;
+	}
+
+	public void clear() {
+		Arrays.fill(m_types, 0, m_end, null);
+		Arrays.fill(m_values, 0, m_end, null);
+		Arrays.fill(m_index, 0);
+		m_end = 0;
+		m_size = 0;
+	}
+}
@@ -3,13 +3,14 @@ package com.mindoo.domino.jna.gc;
 import java.io.PrintWriter;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 
 import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.internal.CrashBreadcrumbRing;
 import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 
@@ -36,6 +37,14 @@ import com.mindoo.domino.jna.utils.PlatformUtils;
  */
 public class NotesGC {
 	private static ThreadLocal<DominoGCContext> threadContext = new ThreadLocal<>();
+	
+	private static final boolean DEFAULT_RELEASE_MODE = "true".equalsIgnoreCase(System.getProperty("dominojna.gc.releasemode"));
+	/** number of objects always kept as leak samples in release mode */
+	private static final int RELEASE_MODE_INITIAL_SAMPLES = 16;
+	/** interval of objects kept as leak samples in release mode after the initial samples */
+	private static final int RELEASE_MODE_SAMPLE_INTERVAL = 64;
+	/** max time to wait for attached threads when closing a shared context */
+	private static final long SHARED_CONTEXT_CLOSE_TIMEOUT_MILLIS = 60000;
 
 	/**
 	 * Returns the GC context for the current thread
@@ -80,10 +89,11 @@ public class NotesGC {
 	}
 	
 	/**
-	 * Method to write a stacktrace to disk right before each native method invocation. Consumes
-	 * much performance and is therefore disabled by default and just here to track down
-	 * handle panics.<br>
-	 * Stacktraces are written as files domino-jna-stack-&lt;threadid&gt;.txt in the temp directory.<br>
+	 * Method to record each native method invocation with a stack hash in a memory-mapped
+	 * ring file to track down handle panics. Disabled by default, since computing the stack hash
+	 * costs some performance.<br>
+	 * The ring file domino-jna-breadcrumbs-&lt;pid&gt;.ring is written to the temp directory or the directory
+	 * specified in the system property "dominojna.dumpdir", see {@link CrashBreadcrumbRing}.<br>
 	 * <br>
 	 * Logging is enabled for the active thread's {@link DominoGCContext}.
 	 * 
@@ -97,10 +107,11 @@ public class NotesGC {
 	}
 	
 	/**
-	 * Checks whether stacktraces for each native method invocation should be written to disk. Consumes
-	 * much performance and is therefore disabled by default and just here to track down
-	 * handle panics.<br>
-	 * Stacktraces are written as files domino-jna-stack-&lt;threadid&gt;.txt in the temp directory.<br>
+	 * Checks whether each native method invocation should be recorded in a memory-mapped
+	 * ring file to track down handle panics. Disabled by default, since computing the stack hash
+	 * costs some performance.<br>
+	 * The ring file domino-jna-breadcrumbs-&lt;pid&gt;.ring is written to the temp directory or the directory
+	 * specified in the system property "dominojna.dumpdir", see {@link CrashBreadcrumbRing}.<br>
 	 * <br>
 	 * Logging is enabled for the active thread's {@link DominoGCContext}.
 	 * 
@@ -116,6 +127,46 @@ public class NotesGC {
 		}
 	}
 	
+	/**
+	 * Enables or disables the release mode for the active thread's {@link DominoGCContext}.<br>
+	 * <br>
+	 * In release mode, only the number of open object and memory handles is tracked
+	 * plus a sample of the allocated objects. This reduces the bookkeeping overhead for
+	 * code that creates and recycles many objects (e.g. opening thousands of notes in a view loop),
+	 * but objects that have not been recycled are only disposed automatically when they are part of
+	 * the sample. The number of leaked handles and the samples are reported
+	 * on {@link System#err} when the context is closed.<br>
+	 * The handle validity checks are skipped in release mode for objects that are not part of the sample.<br>
+	 * <br>
+	 * The mode can only be changed while no handles are open. The default value for new
+	 * contexts is read from the system property "dominojna.gc.releasemode".
+	 * 
+	 * @param enabled true to enable release mode
+	 * @throws IllegalStateException if handles are already open
+	 */
+	public static void setReleaseModeEnabled(boolean enabled) {
+		DominoGCContext ctx = threadContext.get();
+		if (ctx!=null) {
+			ctx.setReleaseMode(enabled);
+		}
+	}
+	
+	/**
+	 * Checks whether the active thread's {@link DominoGCContext} is in release mode,
+	 * see {@link #setReleaseModeEnabled(boolean)}
+	 * 
+	 * @return true if release mode
+	 */
+	public static boolean isReleaseModeEnabled() {
+		DominoGCContext ctx = threadContext.get();
+		if (ctx==null) {
+			return false;
+		}
+		else {
+			return ctx.isReleaseMode();
+		}
+	}
+	
 	/**
 	 * Method to get the current count of open Domino object handles
 	 * 
@@ -123,13 +174,7 @@ public class NotesGC {
 	 */
 	public static int getNumberOfOpenObjectHandles() {
 		DominoGCContext ctx = getThreadContext();
-
-		if (PlatformUtils.is64Bit()) {
-			return ctx.getOpenHandlesDominoObjects64().size();
-		}
-		else {
-			return ctx.getOpenHandlesDominoObjects32().size();
-		}
+		return ctx.getOpenObjectCount();
 	}
 
 	/**
@@ -139,13 +184,7 @@ public class NotesGC {
 	 */
 	public static int getNumberOfOpenMemoryHandles() {
 		DominoGCContext ctx = getThreadContext();
-
-		if (PlatformUtils.is64Bit()) {
-			return ctx.getOpenHandlesMemory64().size();
-		}
-		else {
-			return ctx.getOpenHandlesMemory32().size();
-		}
+		return ctx.getOpenMemoryCount();
 	}
 
 	public static class HashKey64 {
@@ -252,24 +291,8 @@ public class NotesGC {
 		if (obj.isRecycled())
 			throw new NotesError(0, "Object is already recycled");
 		
-		if (PlatformUtils.is64Bit()) {
-			HashKey64 key = new HashKey64(clazz, obj.getHandle64());
-			
-			LinkedHashMap<HashKey64, IRecyclableNotesObject> openHandles = ctx.getOpenHandlesDominoObjects64();
-			IRecyclableNotesObject oldObj = openHandles.put(key, obj);
-			if (oldObj!=null && oldObj!=obj) {
-				throw new IllegalStateException("Duplicate handle detected. Object to store: "+obj+", object found in open handle list: "+oldObj);
-			}
-		}
-		else {
-			HashKey32 key = new HashKey32(clazz, obj.getHandle32());
-			
-			LinkedHashMap<HashKey32, IRecyclableNotesObject> openHandles = ctx.getOpenHandlesDominoObjects32();
-			IRecyclableNotesObject oldObj = openHandles.put(key, obj);
-			if (oldObj!=null && oldObj!=obj) {
-				throw new IllegalStateException("Duplicate handle detected. Object to store: "+obj+", object found in open handle list: "+oldObj);
-			}
-		}
+		long handle = PlatformUtils.is64Bit() ? obj.getHandle64() : obj.getHandle32();
+		ctx.objectCreated(clazz, handle, obj);
 		
 		if (ctx.isWriteDebugMessages()) {
 			System.out.println("AutoGC - Added object: "+obj);
@@ -287,20 +310,8 @@ public class NotesGC {
 		if (mem.isFreed())
 			throw new NotesError(0, "Memory is already freed");
 		
-		if (PlatformUtils.is64Bit()) {
-			LinkedHashMap<Long, IAllocatedMemory> openHandles = ctx.getOpenHandlesMemory64();
-			IAllocatedMemory oldObj = openHandles.put(mem.getHandle64(), mem);
-			if (oldObj!=null && oldObj!=mem) {
-				throw new IllegalStateException("Duplicate handle detected. Memory to store: "+mem+", object found in open handle list: "+oldObj);
-			}
-		}
-		else {
-			LinkedHashMap<Integer, IAllocatedMemory> openHandles = ctx.getOpenHandlesMemory32();
-			IAllocatedMemory oldObj = openHandles.put(mem.getHandle32(), mem);
-			if (oldObj!=null && oldObj!=mem) {
-				throw new IllegalStateException("Duplicate handle detected. Memory to store: "+mem+", object found in open handle list: "+oldObj);
-			}
-		}
+		long handle = PlatformUtils.is64Bit() ? mem.getHandle64() : mem.getHandle32();
+		ctx.memoryAllocated(handle, mem);
 		
 		if (ctx.isWriteDebugMessages()) {
 			System.out.println("AutoGC - Added memory: "+mem);
@@ -312,17 +323,14 @@ public class NotesGC {
 	 * 
 	 * @param objClazz class of Notes object
 	 * @param handle handle
-	 * @return Notes object
+	 * @return Notes object or null in release mode if the object is not part of the sample
 	 * @throws NotesError if handle does not exist
 	 */
 	public static IRecyclableNotesObject __b64_checkValidObjectHandle(Class<? extends IRecyclableNotesObject> objClazz, long handle) {
 		DominoGCContext ctx = getThreadContext();
 		
-		HashKey64 key = new HashKey64(objClazz, handle);
-		LinkedHashMap<HashKey64, IRecyclableNotesObject> openHandles = ctx.getOpenHandlesDominoObjects64();
-
-		IRecyclableNotesObject obj = openHandles.get(key);
-		if (obj==null) {
+		IRecyclableNotesObject obj = ctx.lookupObject(objClazz, handle);
+		if (obj==null && !ctx.isReleaseMode()) {
 			throw new NotesError(0, "The provided C handle "+handle+" of object with class "+objClazz.getName()+" does not seem to exist (anymore).");
 		}
 		else {
@@ -340,10 +348,8 @@ public class NotesGC {
 	public static void __b64_checkValidMemHandle(Class<? extends IAllocatedMemory> memClazz, long handle) {
 		DominoGCContext ctx = getThreadContext();
 		
-		LinkedHashMap<Long, IAllocatedMemory> openHandles = ctx.getOpenHandlesMemory64();
-
-		IAllocatedMemory obj = openHandles.get(handle);
-		if (obj==null) {
+		IAllocatedMemory obj = ctx.lookupMemory(handle);
+		if (obj==null && !ctx.isReleaseMode()) {
 			throw new NotesError(0, "The provided C handle "+handle+" of memory with class "+memClazz.getName()+" does not seem to exist (anymore).");
 		}
 	}
@@ -353,18 +359,14 @@ public class NotesGC {
 	 * 
 	 * @param objClazz class of Notes object
 	 * @param handle handle
-	 * @return Notes object
+	 * @return Notes object or null in release mode if the object is not part of the sample
 	 * @throws NotesError if handle does not exist
 	 */
 	public static IRecyclableNotesObject __b32_checkValidObjectHandle(Class<? extends IRecyclableNotesObject> objClazz, int handle) {
 		DominoGCContext ctx = getThreadContext();
 		
-		LinkedHashMap<HashKey32,IRecyclableNotesObject> openHandles = ctx.getOpenHandlesDominoObjects32();
-		
-		HashKey32 key = new HashKey32(objClazz, handle);
-
-		IRecyclableNotesObject obj = openHandles.get(key);
-		if (obj==null) {
+		IRecyclableNotesObject obj = ctx.lookupObject(objClazz, handle);
+		if (obj==null && !ctx.isReleaseMode()) {
 			throw new NotesError(0, "The provided C handle "+handle+" of object with class "+objClazz.getName()+" does not seem to exist (anymore).");
 		}
 		else
@@ -381,10 +383,8 @@ public class NotesGC {
 	public static void __b32_checkValidMemHandle(Class<? extends IAllocatedMemory> objClazz, int handle) {
 		DominoGCContext ctx = getThreadContext();
 
-		LinkedHashMap<Integer, IAllocatedMemory> openHandles = ctx.getOpenHandlesMemory32();
-		
-		IAllocatedMemory obj = openHandles.get(handle);
-		if (obj==null) {
+		IAllocatedMemory obj = ctx.lookupMemory(handle);
+		if (obj==null && !ctx.isReleaseMode()) {
 			throw new NotesError(0, "The provided C handle "+handle+" of memory with class "+objClazz.getName()+" does not seem to exist (anymore).");
 		}
 	}
@@ -401,20 +401,13 @@ public class NotesGC {
 		if (obj.isRecycled())
 			throw new NotesError(0, "Object is already recycled");
 
+		long handle = PlatformUtils.is64Bit() ? obj.getHandle64() : obj.getHandle32();
+		
 		if (ctx.isWriteDebugMessages()) {
-			System.out.println("AutoGC - Removing object: "+obj.getClass()+" with handle="+(PlatformUtils.is64Bit() ? obj.getHandle64() : obj.getHandle32()));
+			System.out.println("AutoGC - Removing object: "+obj.getClass()+" with handle="+handle);
 		}
 		
-		if (PlatformUtils.is64Bit()) {
-			HashKey64 key = new HashKey64(clazz, obj.getHandle64());
-			LinkedHashMap<HashKey64, IRecyclableNotesObject> openHandles = ctx.getOpenHandlesDominoObjects64();
-			openHandles.remove(key);
-		}
-		else {
-			HashKey32 key = new HashKey32(clazz, obj.getHandle32());
-			LinkedHashMap<HashKey32, IRecyclableNotesObject> openHandles = ctx.getOpenHandlesDominoObjects32();
-			openHandles.remove(key);
-		}
+		ctx.objectRecycled(clazz, handle);
 	}
 
 	/**
@@ -428,18 +421,13 @@ public class NotesGC {
 		if (mem.isFreed())
 			throw new NotesError(0, "Memory has already been freed");
 
+		long handle = PlatformUtils.is64Bit() ? mem.getHandle64() : mem.getHandle32();
+		
 		if (ctx.isWriteDebugMessages()) {
-			System.out.println("AutoGC - Removing memory: "+mem.getClass()+" with handle="+(PlatformUtils.is64Bit() ? mem.getHandle64() : mem.getHandle32()));
+			System.out.println("AutoGC - Removing memory: "+mem.getClass()+" with handle="+handle);
 		}
 		
-		if (PlatformUtils.is64Bit()) {
-			LinkedHashMap<Long, IAllocatedMemory> openHandles = ctx.getOpenHandlesMemory64();
-			openHandles.remove(mem.getHandle64());
-		}
-		else {
-			LinkedHashMap<Integer, IAllocatedMemory> openHandles = ctx.getOpenHandlesMemory32();
-			openHandles.remove(mem.getHandle32());
-		}
+		ctx.memoryFreed(handle);
 	}
 
 	/**
@@ -587,9 +575,84 @@ public class NotesGC {
 		}
 	}
 
+	/**
+	 * Creates a {@link DominoGCContext} that can be shared with other threads and makes it
+	 * the active context of the current thread.<br>
+	 * <br>
+	 * Objects created while the shared context is active (e.g. a {@link com.mindoo.domino.jna.NotesDatabase})
+	 * can be used by other threads that join the context via {@link #attachThread(DominoGCContext)},
+	 * e.g. worker threads of a {@link com.mindoo.domino.jna.utils.NotesThreadPool} or
+	 * {@link java.util.concurrent.CompletableFuture} stages. Objects created in other contexts,
+	 * e.g. the thread context that was active before, cannot be used by attached threads.
+	 * Handle tracking of shared contexts is thread-safe, but the objects
+	 * themselves are not, so two threads should not use the same object at the same time.<br>
+	 * <br>
+	 * Closing the shared context disposes all its handles and reactivates the previous context of the
+	 * current thread. If threads are still attached after waiting for them for 60 seconds, the handles
+	 * are disposed when the last thread detaches. Closing needs to be done by the thread that created
+	 * the context after all other threads have closed their attached contexts, e.g.<br>
+	 * <br>
+	 * <code>
+	 * try (DominoGCContext sharedCtx = NotesGC.initSharedContext()) {<br>
+	 * &nbsp;&nbsp;&nbsp;NotesDatabase db = new NotesDatabase("", "names.nsf", "");<br>
+	 * &nbsp;&nbsp;&nbsp;pool.submit(sharedCtx, () -&gt; db.getTitle()).get();<br>
+	 * }<br>
+	 * </code>
+	 * 
+	 * @return shared context
+	 */
+	public static DominoGCContext initSharedContext() {
+		NotesNativeAPI.initialize();
+		DominoGCContext ctx = new DominoGCContext(null);
+		ctx.m_shared = true;
+		ctx.m_previousThreadCtx = threadContext.get();
+		threadContext.set(ctx);
+		return ctx;
+	}
+
+	/**
+	 * Attaches the current thread to a context created via {@link #initSharedContext()}.
+	 * Objects created by the current thread are registered in the shared context and
+	 * objects of the shared context can be used by the current thread.<br>
+	 * <br>
+	 * The returned context must be closed when the thread is done, which reactivates the
+	 * previous context of the current thread. Closing it does not dispose any handles, unless the
+	 * shared context has already been closed and this is the last attached thread.
+	 * 
+	 * @param sharedCtx shared context
+	 * @return context for the current thread
+	 * @throws IllegalStateException if the shared context is already closed
+	 */
+	public static DominoGCContext attachThread(DominoGCContext sharedCtx) {
+		if (sharedCtx==null || !sharedCtx.isShared()) {
+			throw new IllegalArgumentException("Context is not shared, use NotesGC.initSharedContext() to create one");
+		}
+		sharedCtx.threadAttached();
+		DominoGCContext ctx = new DominoGCContext(sharedCtx);
+		ctx.m_attached = true;
+		ctx.m_previousThreadCtx = threadContext.get();
+		threadContext.set(ctx);
+		return ctx;
+	}
+
+	/**
+	 * Returns the shared context the current thread is using, either because it
+	 * created it via {@link #initSharedContext()} or attached via {@link #attachThread(DominoGCContext)}
+	 * 
+	 * @return shared context or null if the active context is not shared
+	 */
+	public static DominoGCContext getSharedContext() {
+		DominoGCContext ctx = threadContext.get();
+		while (ctx!=null && !ctx.isTopContext()) {
+			ctx = ctx.getParentContext();
+		}
+		return ctx!=null && ctx.isShared() ? ctx : null;
+	}
+
 	/**
 	 * Domino handle collection context to collect all allocated C object
-	 * and memory handles for the current thread.
+	 * and memory handles for the current thread or, for shared contexts, for
+	 * multiple threads (see {@link NotesGC#initSharedContext()}).
 	 * 
 	 * @author Karsten Lehmann
 	 */
@@ -598,13 +661,22 @@ public class NotesGC {
 		private Thread m_parentThread;
 		private Map<String,Object> m_activeAutoGCCustomValues;
 		
-		//maps with open handles; using LinkedHashMap to keep insertion order for the keys and disposed in reverse order
-		private LinkedHashMap<HashKey32,IRecyclableNotesObject> m_b32OpenHandlesDominoObjects;
-		private LinkedHashMap<Integer, IAllocatedMemory> m_b32OpenHandlesMemory;
-		private LinkedHashMap<HashKey64, IRecyclableNotesObject> m_b64OpenHandlesDominoObjects;
-		private LinkedHashMap<Long, IAllocatedMemory> m_b64OpenHandlesMemory;
+		//open handles in insertion order, disposed in reverse order
+		private HandleRegistry<IRecyclableNotesObject> m_openHandlesDominoObjects;
+		private HandleRegistry<IAllocatedMemory> m_openHandlesMemory;
+		//handle counts in release mode, where the registries above only contain samples
+		private boolean m_releaseMode = DEFAULT_RELEASE_MODE;
+		private int m_releaseModeObjectCount;
+		private int m_releaseModeMemoryCount;
+		private int m_releaseModeRegistrations;
 		private boolean m_writeDebugMessages;
 		private boolean m_logCrashingThreadStackTrace;
+		//cross-thread usage, see NotesGC.initSharedContext() and NotesGC.attachThread(DominoGCContext)
+		private boolean m_shared;
+		private boolean m_attached;
+		private DominoGCContext m_previousThreadCtx;
+		private int m_attachedThreads;
+		private volatile boolean m_closed;
 		
 		private DominoGCContext(DominoGCContext parentCtx) {
 			m_parentCtx = parentCtx;
@@ -631,7 +703,39 @@ public class NotesGC {
 			return m_parentCtx==null;
 		}
 		
+		/**
+		 * Returns true if this context can be used by multiple threads, see {@link NotesGC#initSharedContext()}
+		 * 
+		 * @return true if shared
+		 */
+		public boolean isShared() {
+			return m_shared;
+		}
+		
+		private void threadAttached() {
+			synchronized (this) {
+				if (m_closed) {
+					throw new IllegalStateException("Shared context is already closed");
+				}
+				m_attachedThreads++;
+			}
+		}
+		
+		private void threadDetached() {
+			synchronized (this) {
+				m_attachedThreads--;
+				if (m_attachedThreads==0 && m_closed) {
+					//the creator thread has closed the context while this thread was still attached
+					disposeHandles();
+				}
+				notifyAll();
+			}
+		}
+		
 		private void checkValidThread() {
+			if (m_shared) {
+				return;
+			}
 			if (!m_parentThread.equals(Thread.currentThread())) {
 				throw new IllegalStateException("This context cannot be used across threads");
 			}
@@ -672,207 +776,404 @@ public class NotesGC {
 			if (m_parentCtx!=null) {
 				return m_parentCtx.getCustomValues();
 			}
+			if (m_shared) {
+				synchronized (this) {
+					if (m_activeAutoGCCustomValues==null) {
+						m_activeAutoGCCustomValues = Collections.synchronizedMap(new HashMap<String,Object>());
+					}
+					return m_activeAutoGCCustomValues;
+				}
+			}
 			if (m_activeAutoGCCustomValues==null) {
 				m_activeAutoGCCustomValues = new HashMap<>();
 			}
 			return m_activeAutoGCCustomValues;
 		}
 		
-		private LinkedHashMap<HashKey32,IRecyclableNotesObject> getOpenHandlesDominoObjects32() {
+		private HandleRegistry<IRecyclableNotesObject> getOpenHandlesDominoObjects() {
 			checkValidThread();
 			if (m_parentCtx!=null) {
-				return m_parentCtx.getOpenHandlesDominoObjects32();
+				return m_parentCtx.getOpenHandlesDominoObjects();
 			}
-			if (m_b32OpenHandlesDominoObjects==null) {
-				m_b32OpenHandlesDominoObjects = new LinkedHashMap<>();
+			if (m_openHandlesDominoObjects==null) {
+				m_openHandlesDominoObjects = new HandleRegistry<>();
 			}
-			return m_b32OpenHandlesDominoObjects;
+			return m_openHandlesDominoObjects;
 		}
 		
-		private LinkedHashMap<Integer, IAllocatedMemory> getOpenHandlesMemory32() {
+		private HandleRegistry<IAllocatedMemory> getOpenHandlesMemory() {
 			checkValidThread();
 			if (m_parentCtx!=null) {
-				return m_parentCtx.getOpenHandlesMemory32();
+				return m_parentCtx.getOpenHandlesMemory();
 			}
-			if (m_b32OpenHandlesMemory==null) {
-				m_b32OpenHandlesMemory = new LinkedHashMap<>();
+			if (m_openHandlesMemory==null) {
+				m_openHandlesMemory = new HandleRegistry<>();
 			}
-			return m_b32OpenHandlesMemory;
+			return m_openHandlesMemory;
 		}
 		
-		private LinkedHashMap<HashKey64, IRecyclableNotesObject> getOpenHandlesDominoObjects64() {
-			checkValidThread();
+		/**
+		 * Returns whether only handle counts and samples are tracked, see {@link NotesGC#setReleaseModeEnabled(boolean)}
+		 * 
+		 * @return true if release mode
+		 */
+		public boolean isReleaseMode() {
+			if (m_parentCtx!=null) {
+				return m_parentCtx.isReleaseMode();
+			}
+			return m_releaseMode;
+		}
+		
+		/**
+		 * Enables or disables the release mode, see {@link NotesGC#setReleaseModeEnabled(boolean)}
+		 * 
+		 * @param b true to enable release mode
+		 * @throws IllegalStateException if handles are already open
+		 */
+		public void setReleaseMode(boolean b) {
 			if (m_parentCtx!=null) {
-				return m_parentCtx.getOpenHandlesDominoObjects64();
+				m_parentCtx.setReleaseMode(b);
+				return;
 			}
-			if (m_b64OpenHandlesDominoObjects==null) {
-				m_b64OpenHandlesDominoObjects = new LinkedHashMap<>();
+			if (b==m_releaseMode) {
+				return;
 			}
-			return m_b64OpenHandlesDominoObjects;
+			if (getOpenObjectCount()>0 || getOpenMemoryCount()>0) {
+				throw new IllegalStateException("Release mode can only be changed while no handles are open");
+			}
+			m_releaseMode = b;
 		}
 		
-		private LinkedHashMap<Long, IAllocatedMemory> getOpenHandlesMemory64() {
-			checkValidThread();
+		private int getOpenObjectCount() {
 			if (m_parentCtx!=null) {
-				return m_parentCtx.getOpenHandlesMemory64();
+				return m_parentCtx.getOpenObjectCount();
 			}
-			if (m_b64OpenHandlesMemory==null) {
-				m_b64OpenHandlesMemory = new LinkedHashMap<>();
+			if (m_releaseMode) {
+				return m_releaseModeObjectCount;
+			}
+			return m_openHandlesDominoObjects==null ? 0 : m_openHandlesDominoObjects.size();
+		}
+		
+		private int getOpenMemoryCount() {
+			if (m_parentCtx!=null) {
+				return m_parentCtx.getOpenMemoryCount();
+			}
+			if (m_releaseMode) {
+				return m_releaseModeMemoryCount;
+			}
+			return m_openHandlesMemory==null ? 0 : m_openHandlesMemory.size();
+		}
+		
+		private IRecyclableNotesObject lookupObject(Class<?> clazz, long handle) {
+			if (m_parentCtx!=null) {
+				return m_parentCtx.lookupObject(clazz, handle);
+			}
+			if (m_shared) {
+				synchronized (this) {
+					return getOpenHandlesDominoObjects().get(clazz, handle);
+				}
+			}
+			return getOpenHandlesDominoObjects().get(clazz, handle);
+		}
+		
+		private IAllocatedMemory lookupMemory(long handle) {
+			if (m_parentCtx!=null) {
+				return m_parentCtx.lookupMemory(handle);
+			}
+			if (m_shared) {
+				synchronized (this) {
+					return getOpenHandlesMemory().get(null, handle);
+				}
+			}
+			return getOpenHandlesMemory().get(null, handle);
+		}
+		
+		/**
+		 * Decides whether the next object registered in release mode should be kept as leak sample
+		 * 
+		 * @return true to keep object
+		 */
+		private boolean isNextReleaseModeSample() {
+			int registration = m_releaseModeRegistrations++;
+			return registration < RELEASE_MODE_INITIAL_SAMPLES || (registration % RELEASE_MODE_SAMPLE_INTERVAL)==0;
+		}
+		
+		private void objectCreated(Class<?> clazz, long handle, IRecyclableNotesObject obj) {
+			if (m_parentCtx!=null) {
+				m_parentCtx.objectCreated(clazz, handle, obj);
+				return;
+			}
+			if (m_shared) {
+				synchronized (this) {
+					registerObject(clazz, handle, obj);
+				}
+			}
+			else {
+				registerObject(clazz, handle, obj);
+			}
+		}
+		
+		private void registerObject(Class<?> clazz, long handle, IRecyclableNotesObject obj) {
+			if (m_releaseMode) {
+				m_releaseModeObjectCount++;
+				if (!isNextReleaseModeSample()) {
+					return;
+				}
+			}
+			IRecyclableNotesObject oldObj = getOpenHandlesDominoObjects().put(clazz, handle, obj);
+			if (oldObj!=null && oldObj!=obj) {
+				throw new IllegalStateException("Duplicate handle detected. Object to store: "+obj+", object found in open handle list: "+oldObj);
+			}
+		}
+		
+		private void memoryAllocated(long handle, IAllocatedMemory mem) {
+			if (m_parentCtx!=null) {
+				m_parentCtx.memoryAllocated(handle, mem);
+				return;
+			}
+			if (m_shared) {
+				synchronized (this) {
+					registerMemory(handle, mem);
+				}
+			}
+			else {
+				registerMemory(handle, mem);
+			}
+		}
+		
+		private void registerMemory(long handle, IAllocatedMemory mem) {
+			if (m_releaseMode) {
+				m_releaseModeMemoryCount++;
+				if (!isNextReleaseModeSample()) {
+					return;
+				}
+			}
+			IAllocatedMemory oldObj = getOpenHandlesMemory().put(null, handle, mem);
+			if (oldObj!=null && oldObj!=mem) {
+				throw new IllegalStateException("Duplicate handle detected. Memory to store: "+mem+", object found in open handle list: "+oldObj);
+			}
+		}
+		
+		private void objectRecycled(Class<?> clazz, long handle) {
+			if (m_parentCtx!=null) {
+				m_parentCtx.objectRecycled(clazz, handle);
+				return;
+			}
+			if (m_shared) {
+				synchronized (this) {
+					unregisterObject(clazz, handle);
+				}
+			}
+			else {
+				unregisterObject(clazz, handle);
+			}
+		}
+		
+		private void unregisterObject(Class<?> clazz, long handle) {
+			if (m_releaseMode && m_releaseModeObjectCount>0) {
+				m_releaseModeObjectCount--;
+			}
+			if (m_openHandlesDominoObjects!=null) {
+				m_openHandlesDominoObjects.remove(clazz, handle);
+			}
+		}
+		
+		private void memoryFreed(long handle) {
+			if (m_parentCtx!=null) {
+				m_parentCtx.memoryFreed(handle);
+				return;
+			}
+			if (m_shared) {
+				synchronized (this) {
+					unregisterMemory(handle);
+				}
+			}
+			else {
+				unregisterMemory(handle);
+			}
+		}
+		
+		private void unregisterMemory(long handle) {
+			if (m_releaseMode && m_releaseModeMemoryCount>0) {
+				m_releaseModeMemoryCount--;
+			}
+			if (m_openHandlesMemory!=null) {
+				m_openHandlesMemory.remove(null, handle);
 			}
-			return m_b64OpenHandlesMemory;
 		}
 		
 		@Override
-		public void close() throws Exception {
+		public void close() {
+			if (m_attached) {
+				//thread attached to a shared context is done
+				checkValidThread();
+				if (!m_closed) {
+					m_closed = true;
+					try {
+						//detach while this context is still active, the last thread disposes the handles of a closed shared context
+						m_parentCtx.threadDetached();
+					}
+					finally {
+						restorePreviousThreadContext();
+					}
+				}
+				return;
+			}
+			
+			if (m_shared) {
+				if (!m_parentThread.equals(Thread.currentThread())) {
+					throw new IllegalStateException("A shared context needs to be closed by the thread that created it");
+				}
+				try {
+					synchronized (this) {
+						if (m_closed) {
+							return;
+						}
+						//give attached threads some time to finish, e.g. when a CompletableFuture
+						//has been completed by a worker thread that has not closed its context yet
+						long waitUntil = System.currentTimeMillis() + SHARED_CONTEXT_CLOSE_TIMEOUT_MILLIS;
+						long remainingMillis;
+						try {
+							while (m_attachedThreads>0 && (remainingMillis = waitUntil - System.currentTimeMillis()) > 0) {
+								wait(remainingMillis);
+							}
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						//no more threads can attach
+						m_closed = true;
+						if (m_attachedThreads>0) {
+							System.err.println("AutoGC - Shared context closed while "+m_attachedThreads+
+									" threads are attached, handles get disposed when the last thread detaches");
+						}
+						else {
+							disposeHandles();
+						}
+					}
+				}
+				finally {
+					restorePreviousThreadContext();
+				}
+				return;
+			}
+			
 			checkValidThread();
 			
 			if (!isTopContext()) {
 				//don't free up resources in nested calls on NotesGC.initThread()
 				return;
 			}
-
-			if (PlatformUtils.is64Bit()) {
-				{
-					//recycle created Domino objects
-					if (m_b64OpenHandlesDominoObjects!=null && !m_b64OpenHandlesDominoObjects.isEmpty()) {
-						Entry[] mapEntries = m_b64OpenHandlesDominoObjects.entrySet().toArray(new Entry[m_b64OpenHandlesDominoObjects.size()]);
-						if (mapEntries.length>0) {
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Auto-recycling "+mapEntries.length+" Domino objects:");
-							}
-							
-							for (int i=mapEntries.length-1; i>=0; i--) {
-								Entry<HashKey64,IRecyclableNotesObject> currEntry = mapEntries[i];
-								IRecyclableNotesObject obj = currEntry.getValue();
-								try {
-									if (!obj.isRecycled()) {
-										if (m_writeDebugMessages) {
-											System.out.println("AutoGC - Auto-recycling "+obj);
-										}
-										obj.recycle();
-									}
-								}
-								catch (Throwable e) {
-									e.printStackTrace();
-								}
-								m_b64OpenHandlesDominoObjects.remove(currEntry.getKey());
-							}
-							
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Done auto-recycling "+mapEntries.length+" Domino objects");
-							}
-							
-							m_b64OpenHandlesDominoObjects.clear();
-							m_b64OpenHandlesDominoObjects = null;
+			
+			try {
+				disposeHandles();
+			}
+			finally {
+				restorePreviousThreadContext();
+			}
+		}
+		
+		private void restorePreviousThreadContext() {
+			if (m_previousThreadCtx!=null) {
+				threadContext.set(m_previousThreadCtx);
+			}
+			else {
+				threadContext.remove();
+			}
+		}
+		
+		/**
+		 * Recycles all open Domino objects and frees all allocated memory in reverse order
+		 */
+		private void disposeHandles() {
+			if (m_releaseMode && (m_releaseModeObjectCount>0 || m_releaseModeMemoryCount>0)) {
+				System.err.println("AutoGC - Release mode: "+m_releaseModeObjectCount+" Domino objects and "+
+						m_releaseModeMemoryCount+" memory handles have not been recycled/freed");
+				if (m_openHandlesDominoObjects!=null) {
+					for (int i=m_openHandlesDominoObjects.lastPosition(); i>=0; i--) {
+						IRecyclableNotesObject obj = m_openHandlesDominoObjects.getValueAt(i);
+						if (obj!=null) {
+							System.err.println("AutoGC - Leaked object sample: "+obj);
 						}
 					}
 				}
-				{
-					//dispose allocated memory
-					if (m_b64OpenHandlesMemory!=null && !m_b64OpenHandlesMemory.isEmpty()) {
-						Entry[] mapEntries = m_b64OpenHandlesMemory.entrySet().toArray(new Entry[m_b64OpenHandlesMemory.size()]);
-						if (mapEntries.length>0) {
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Freeing "+mapEntries.length+" memory handles");
-							}
-
-							for (int i=mapEntries.length-1; i>=0; i--) {
-								Entry<Long,IAllocatedMemory> currEntry = mapEntries[i];
-								IAllocatedMemory obj = currEntry.getValue();
-								try {
-									if (!obj.isFreed()) {
-										if (m_writeDebugMessages) {
-											System.out.println("AutoGC - Freeing "+obj);
-										}
-										obj.free();
-									}
-								}
-								catch (Throwable e) {
-									e.printStackTrace();
-								}
-								m_b64OpenHandlesMemory.remove(currEntry.getKey());
-							}
-
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Done freeing "+mapEntries.length+" memory handles");
-							}
-
-							m_b64OpenHandlesMemory.clear();
-							m_b64OpenHandlesMemory = null;
+				if (m_openHandlesMemory!=null) {
+					for (int i=m_openHandlesMemory.lastPosition(); i>=0; i--) {
+						IAllocatedMemory mem = m_openHandlesMemory.getValueAt(i);
+						if (mem!=null) {
+							System.err.println("AutoGC - Leaked memory sample: "+mem);
 						}
 					}
 				}
 			}
-			else {
-				{
-					if (m_b32OpenHandlesDominoObjects!=null && !m_b32OpenHandlesDominoObjects.isEmpty()) {
-						//recycle created Domino objects
-						Entry[] mapEntries = m_b32OpenHandlesDominoObjects.entrySet().toArray(new Entry[m_b32OpenHandlesDominoObjects.size()]);
-						if (mapEntries.length>0) {
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Recycling "+mapEntries.length+" Domino objects:");
-							}
-
-							for (int i=mapEntries.length-1; i>=0; i--) {
-								Entry<HashKey32,IRecyclableNotesObject> currEntry = mapEntries[i];
-								IRecyclableNotesObject obj = currEntry.getValue();
-								try {
-									if (!obj.isRecycled()) {
-										if (m_writeDebugMessages) {
-											System.out.println("AutoGC - Recycling "+obj);
-										}
-										obj.recycle();
-									}
-								}
-								catch (Throwable e) {
-									e.printStackTrace();
+			
+			{
+				//recycle created Domino objects
+				if (m_openHandlesDominoObjects!=null && !m_openHandlesDominoObjects.isEmpty()) {
+					int count = m_openHandlesDominoObjects.size();
+					if (m_writeDebugMessages) {
+						System.out.println("AutoGC - Auto-recycling "+count+" Domino objects:");
+					}
+					
+					int pos;
+					while ((pos = m_openHandlesDominoObjects.lastPosition()) >= 0) {
+						Class<?> type = m_openHandlesDominoObjects.getTypeAt(pos);
+						long handle = m_openHandlesDominoObjects.getHandleAt(pos);
+						IRecyclableNotesObject obj = m_openHandlesDominoObjects.getValueAt(pos);
+						try {
+							if (!obj.isRecycled()) {
+								if (m_writeDebugMessages) {
+									System.out.println("AutoGC - Auto-recycling "+obj);
 								}
-								m_b32OpenHandlesDominoObjects.remove(currEntry.getKey());
-							}
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Done recycling "+mapEntries.length+" memory handles");
+								obj.recycle();
 							}
-
-							m_b32OpenHandlesDominoObjects.clear();
-							m_b32OpenHandlesDominoObjects = null;
 						}
+						catch (Throwable e) {
+							e.printStackTrace();
+						}
+						m_openHandlesDominoObjects.remove(type, handle);
+					}
+					
+					if (m_writeDebugMessages) {
+						System.out.println("AutoGC - Done auto-recycling "+count+" Domino objects");
 					}
 				}
-				{
-					if (m_b32OpenHandlesMemory!=null && !m_b32OpenHandlesMemory.isEmpty()) {
-						//dispose allocated memory
-						Entry[] mapEntries = m_b32OpenHandlesMemory.entrySet().toArray(new Entry[m_b32OpenHandlesMemory.size()]);
-						if (mapEntries.length>0) {
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Freeing "+mapEntries.length+" memory handles");
-							}
+				m_openHandlesDominoObjects = null;
+			}
+			{
+				//dispose allocated memory
+				if (m_openHandlesMemory!=null && !m_openHandlesMemory.isEmpty()) {
+					int count = m_openHandlesMemory.size();
+					if (m_writeDebugMessages) {
+						System.out.println("AutoGC - Freeing "+count+" memory handles");
+					}
 
-							for (int i=mapEntries.length-1; i>=0; i--) {
-								Entry<Integer,IAllocatedMemory> currEntry = mapEntries[i];
-								IAllocatedMemory obj = currEntry.getValue();
-								try {
-									if (!obj.isFreed()) {
-										if (m_writeDebugMessages) {
-											System.out.println("AutoGC - Freeing "+obj);
-										}
-										obj.free();
-									}
+					int pos;
+					while ((pos = m_openHandlesMemory.lastPosition()) >= 0) {
+						long handle = m_openHandlesMemory.getHandleAt(pos);
+						IAllocatedMemory obj = m_openHandlesMemory.getValueAt(pos);
+						try {
+							if (!obj.isFreed()) {
+								if (m_writeDebugMessages) {
+									System.out.println("AutoGC - Freeing "+obj);
 								}
-								catch (Throwable e) {
-									e.printStackTrace();
-								}
-								m_b32OpenHandlesMemory.remove(currEntry.getKey());
-							}
-							if (m_writeDebugMessages) {
-								System.out.println("AutoGC - Done freeing "+mapEntries.length+" memory handles");
+								obj.free();
 							}
-
-							m_b32OpenHandlesMemory.clear();
-							m_b32OpenHandlesMemory = null;
 						}
+						catch (Throwable e) {
+							e.printStackTrace();
+						}
+						m_openHandlesMemory.remove(null, handle);
+					}
+
+					if (m_writeDebugMessages) {
+						System.out.println("AutoGC - Done freeing "+count+" memory handles");
 					}
 				}
+				m_openHandlesMemory = null;
 			}
+			m_releaseModeObjectCount = 0;
+			m_releaseModeMemoryCount = 0;
 			
 			if (m_activeAutoGCCustomValues!=null) {
 				cleanupCustomValues(m_activeAutoGCCustomValues);
@@ -2,10 +2,12 @@ package com.mindoo.domino.jna.internal;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import com.mindoo.domino.jna.constants.CDRecordType;
 import com.mindoo.domino.jna.errors.NotesError;
@@ -13,9 +15,19 @@ import com.mindoo.domino.jna.richtext.ICompoundText;
 import com.mindoo.domino.jna.richtext.IRichTextNavigator;
 import com.mindoo.domino.jna.richtext.RichTextBuilder;
 import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 
 /**
- * Implementation of {@link IRichTextNavigator} that works with an on-disk CD record file
+ * Implementation of {@link IRichTextNavigator} that works with an on-disk CD record file.<br>
+ * <br>
+ * The file is memory-mapped in copy-on-write mode, so CD records are returned as views
+ * into the mapped file without copying them to the Java or native heap. Files larger
+ * than 2 GB or files that cannot be mapped are read record by record via the
+ * {@link FileChannel} instead.<br>
+ * The file offsets of visited CD records are stored in a primitive array indexed by the
+ * record index, so that {@link #gotoPrev()}, {@link #gotoLast()} (after the first call) and
+ * {@link #restoreCurrentRecordPosition(RichTextNavPosition)} do not need to rescan the file.
  * 
  * @author Karsten Lehmann
  */
@@ -23,25 +35,89 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 	private FileInputStream m_fileIn;
 	private String m_filePath;
 	private FileChannel m_fileChannel;
+	private MappedByteBuffer m_mappedBuffer;
+	private Pointer m_mappedBufferPtr;
+	private ByteBuffer m_headerBuf;
 	private long m_fileSize;
 	private long m_position;
 	private CDRecordMemory m_currentCDRecord;
-	private Map<Integer,Integer> m_cdRecordSizeAtIndex;
-	private Map<Long,Integer> m_cdRecordIndexAtFilePos;
+	/** file offsets of CD records by record index, valid up to m_knownRecordCount */
+	private long[] m_recordOffsets;
+	private int m_knownRecordCount;
 	private int m_currentCDRecordIndex;
-	private long m_lastElementPosition = -1;
 	private int m_lastElementIndex = -1;
 	
 	public CDFileRichTextNavigator(FileInputStream cdFileStream, String filePath, long fileSize) throws IOException {
+		this(cdFileStream, filePath, fileSize, true);
+	}
+	
+	/**
+	 * Creates a new navigator
+	 * 
+	 * @param cdFileStream stream to read the CD file
+	 * @param filePath path of the CD file
+	 * @param fileSize file size
+	 * @param useMemoryMapping true to memory-map the file if possible, false to always read records via the {@link FileChannel}
+	 * @throws IOException in case of I/O errors
+	 */
+	CDFileRichTextNavigator(FileInputStream cdFileStream, String filePath, long fileSize, boolean useMemoryMapping) throws IOException {
 		m_fileIn = cdFileStream;
 		m_filePath = filePath;
 		m_fileSize = fileSize;
 		m_fileChannel = m_fileIn.getChannel();
-		m_cdRecordSizeAtIndex = new TreeMap<Integer, Integer>();
-		m_cdRecordIndexAtFilePos = new TreeMap<Long, Integer>();
+		m_mappedBuffer = useMemoryMapping ? mapFile(filePath, fileSize) : null;
+		if (m_mappedBuffer!=null) {
+			m_mappedBuffer.order(ByteOrder.nativeOrder());
+			m_mappedBufferPtr = Native.getDirectBufferPointer(m_mappedBuffer);
+		}
+		else {
+			m_headerBuf = ByteBuffer.allocate(6).order(ByteOrder.nativeOrder());
+		}
+		m_recordOffsets = new long[64];
 		gotoFirst();
 	}
 	
+	/**
+	 * Maps the CD file into memory in copy-on-write mode, so that writes to the returned
+	 * record memory do not modify the file and do not crash the JVM
+	 * 
+	 * @param filePath file path
+	 * @param fileSize file size
+	 * @return mapped buffer or null if the file is too large or cannot be opened for writing
+	 */
+	private static MappedByteBuffer mapFile(String filePath, long fileSize) {
+		if (fileSize<=0 || fileSize>Integer.MAX_VALUE) {
+			return null;
+		}
+		RandomAccessFile raf = null;
+		try {
+			//PRIVATE mode needs a writable channel, the mapping stays valid after closing the file
+			raf = new RandomAccessFile(filePath, "rw");
+			return raf.getChannel().map(FileChannel.MapMode.PRIVATE, 0, fileSize);
+		}
+		catch (IOException e) {
+			return null;
+		}
+		finally {
+			if (raf!=null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the CD records are read from the memory-mapped file
+	 * 
+	 * @return true if mapped, false if read via the {@link FileChannel}
+	 */
+	boolean isMemoryMapped() {
+		return m_mappedBuffer!=null;
+	}
+	
 	/**
 	 * Reads the CD record information at the current file position
 	 * 
@@ -61,13 +137,7 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 	 * @throws IOException
 	 */
 	private CDRecordMemory readCurrentCDRecord() throws IOException {
-		m_fileChannel.position(m_position);
-		
-		Memory signatureMem = new Memory(2);
-		ByteBuffer signatureBuf = signatureMem.getByteBuffer(0, signatureMem.size());
-		m_fileChannel.read(signatureBuf);
-		
-		short typeAsShort = signatureMem.getShort(0);
+		short typeAsShort = readShort(m_position);
 		int dwLength;
 
 		/* structures used to define and read the signatures 
@@ -94,20 +164,14 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 
 		switch (highOrderByte) {
 		case NotesConstants.LONGRECORDLENGTH:      /* LSIG */
-			Memory intLengthMem = new Memory(4);
-			ByteBuffer intLengthBuf = intLengthMem.getByteBuffer(0, intLengthMem.size());
-			m_fileChannel.read(intLengthBuf);
-			dwLength = intLengthMem.getInt(0);
+			dwLength = readInt(m_position + 2);
 
 			fixedSize = 6; //sizeof(LSIG);
 
 			break;
 
 		case NotesConstants.WORDRECORDLENGTH:      /* WSIG */
-			Memory shortLengthMem = new Memory(2);
-			ByteBuffer shortLengthBuf = shortLengthMem.getByteBuffer(0, shortLengthMem.size());
-			m_fileChannel.read(shortLengthBuf);
-			dwLength = (int) (shortLengthMem.getShort(0) & 0xffff);
+			dwLength = (int) (readShort(m_position + 2) & 0xffff);
 
 			fixedSize = 4; //sizeof(WSIG);
 
@@ -119,24 +183,86 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 			fixedSize = 2; //sizeof(BSIG);
 		}
 		
-		//file channel position points to the start of data, so reset it to the CD record start
-		m_fileChannel.position(m_position);
 		int cdRecordTotalLength = dwLength;
-		ReadOnlyMemory cdRecordMem = new ReadOnlyMemory(cdRecordTotalLength);
-		int bytesRead = m_fileChannel.read(cdRecordMem.getByteBuffer(0, cdRecordMem.size()));
-		if (bytesRead != cdRecordTotalLength) {
-			throw new IllegalStateException("Bytes read from CD record file for CD record at index "+m_currentCDRecordIndex+" is expected to be "+cdRecordTotalLength+" but we only could read "+bytesRead+" bytes");
+		if (m_position + cdRecordTotalLength > m_fileSize) {
+			throw new IllegalStateException("CD record at index "+m_currentCDRecordIndex+" with length "+cdRecordTotalLength+" exceeds the file size "+m_fileSize);
+		}
+		
+		Memory cdRecordMem;
+		if (m_mappedBuffer!=null) {
+			//view into the mapped file, keeps the mapping reachable
+			cdRecordMem = new MappedRecordMemory(m_mappedBuffer, m_mappedBufferPtr.share(m_position), cdRecordTotalLength);
+		}
+		else {
+			ReadOnlyMemory readMem = new ReadOnlyMemory(cdRecordTotalLength);
+			int bytesRead = m_fileChannel.read(readMem.getByteBuffer(0, readMem.size()), m_position);
+			if (bytesRead != cdRecordTotalLength) {
+				throw new IllegalStateException("Bytes read from CD record file for CD record at index "+m_currentCDRecordIndex+" is expected to be "+cdRecordTotalLength+" but we only could read "+bytesRead+" bytes");
+			}
+			readMem.seal();
+			cdRecordMem = readMem;
 		}
-		cdRecordMem.seal();
 		
 		CDRecordMemory record = new CDRecordMemory(cdRecordMem, typeAsShort, dwLength-fixedSize, dwLength);
-		//remember the length of the CD records
-		m_cdRecordSizeAtIndex.put(m_currentCDRecordIndex, record.getCDRecordLength());
-		m_cdRecordIndexAtFilePos.put(m_position, m_currentCDRecordIndex);
+		//remember the file offset of the CD record
+		rememberRecordOffset(m_currentCDRecordIndex, m_position);
 		
 		return record;
 	}
 	
+	private short readShort(long position) throws IOException {
+		if (m_mappedBuffer!=null) {
+			return m_mappedBuffer.getShort((int) position);
+		}
+		readHeaderBytes(position, 2);
+		return m_headerBuf.getShort(0);
+	}
+
+	private int readInt(long position) throws IOException {
+		if (m_mappedBuffer!=null) {
+			return m_mappedBuffer.getInt((int) position);
+		}
+		readHeaderBytes(position, 4);
+		return m_headerBuf.getInt(0);
+	}
+
+	private void readHeaderBytes(long position, int len) throws IOException {
+		m_headerBuf.clear();
+		m_headerBuf.limit(len);
+		while (m_headerBuf.hasRemaining()) {
+			if (m_fileChannel.read(m_headerBuf, position + m_headerBuf.position()) < 0) {
+				throw new IOException("Unexpected end of file at position "+position);
+			}
+		}
+	}
+
+	private void rememberRecordOffset(int recordIndex, long filePosition) {
+		if (recordIndex < m_knownRecordCount) {
+			return;
+		}
+		//records are always discovered in sequential order starting with index 0
+		if (recordIndex != m_knownRecordCount) {
+			throw new IllegalStateException("Unexpected CD record index "+recordIndex+", expected "+m_knownRecordCount);
+		}
+		if (m_knownRecordCount == m_recordOffsets.length) {
+			m_recordOffsets = Arrays.copyOf(m_recordOffsets, m_recordOffsets.length * 2);
+		}
+		m_recordOffsets[m_knownRecordCount++] = filePosition;
+	}
+
+	/**
+	 * Returns the file position of the record following the current record
+	 * 
+	 * @return position, might be beyond the end of the file
+	 */
+	private long getNextPosition() {
+		long nextPosition = m_position + m_currentCDRecord.getCDRecordLength();
+		if ((nextPosition & 1L)==1) {
+			nextPosition += 1;
+		}
+		return nextPosition;
+	}
+	
 	@Override
 	public boolean isEmpty() {
 		return m_fileSize<=2;
@@ -157,29 +283,18 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 
 	@Override
 	public boolean gotoLast() {
-		if (m_lastElementPosition!=-1 && m_lastElementIndex!=-1) {
+		if (m_lastElementIndex!=-1) {
 			//we already know the exact position, because we have been there before
-			m_position = m_lastElementPosition;
-			m_currentCDRecordIndex = m_lastElementIndex;
-			m_currentCDRecord = readCurrentCDRecordUnchecked();
+			gotoIndex(m_lastElementIndex);
 			return true;
 		}
 		else {
 			if (gotoFirst()) {
-				CDRecordMemory lastReadRecord = null;
-				long lastReadRecordPosition;
-				int lastReadRecordIndex;
-				
-				do {
-					lastReadRecord = readCurrentCDRecordUnchecked();
-					lastReadRecordPosition = m_position;
-					lastReadRecordIndex = m_currentCDRecordIndex;
+				//continue at the last record we know
+				gotoIndex(m_knownRecordCount-1);
+				while (gotoNext()) {
+					//gotoNext records the offsets of all records up to the last one
 				}
-				while (gotoNext());
-				
-				m_position = lastReadRecordPosition;
-				m_currentCDRecord = lastReadRecord;
-				m_currentCDRecordIndex = lastReadRecordIndex;
 				return true;
 			}
 			else {
@@ -188,42 +303,36 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 		}
 	}
 
+	/**
+	 * Moves to a CD record that has already been visited
+	 * 
+	 * @param recordIndex record index
+	 */
+	private void gotoIndex(int recordIndex) {
+		if (recordIndex!=m_currentCDRecordIndex || m_currentCDRecord==null) {
+			m_currentCDRecordIndex = recordIndex;
+			m_position = m_recordOffsets[recordIndex];
+			m_currentCDRecord = readCurrentCDRecordUnchecked();
+		}
+	}
+	
 	@Override
 	public boolean gotoNext() {
-		int cdRecordLength = m_currentCDRecord.getCDRecordLength();
-		long nextPosition = m_position + cdRecordLength;
-		if ((nextPosition & 1L)==1) {
-            nextPosition += 1;
-        }
-		if (nextPosition>=m_fileSize)
+		long nextPosition = getNextPosition();
+		if (nextPosition>=m_fileSize) {
+			m_lastElementIndex = m_currentCDRecordIndex;
 			return false;
-		try {
-			m_fileChannel.position(nextPosition);
-		} catch (IOException e) {
-			throw new NotesError(0, "Error navigating to position "+nextPosition+" of file "+m_filePath+" with size "+m_fileSize, e);
 		}
 		m_position = nextPosition;
+		m_currentCDRecordIndex++;
 		m_currentCDRecord = readCurrentCDRecordUnchecked();
 		return true;
 	}
 
 	@Override
 	public boolean gotoPrev() {
-		if (m_currentCDRecordIndex==-1) {
-			return false;
-		}
-		else if (m_currentCDRecordIndex>0) {
-			m_currentCDRecordIndex--;
-			long prevRecordLength = m_cdRecordSizeAtIndex.get(m_currentCDRecordIndex);
-			long prevPosition = m_position - prevRecordLength;
-			try {
-				m_fileChannel.position(prevPosition);
-			} catch (IOException e) {
-				throw new NotesError(0, "Error navigating to position "+prevPosition+" of file "+m_filePath+" with size "+m_fileSize, e);
-			}
-			
-			m_position = prevPosition;
-			m_currentCDRecord = readCurrentCDRecordUnchecked();
+		if (m_currentCDRecordIndex>0) {
+			gotoIndex(m_currentCDRecordIndex-1);
 			return true;
 		}
 		else {
@@ -287,7 +396,7 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 
 	@Override
 	public RichTextNavPosition getCurrentRecordPosition() {
-		return new RichTextNavPositionImpl(this, m_position);
+		return new RichTextNavPositionImpl(this, m_position, m_currentCDRecordIndex);
 	}
 
 	@Override
@@ -299,17 +408,11 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 		if (posImpl.m_parentNav!=this)
 			throw new IllegalArgumentException("Invalid position, not generated by this navigator");
 
-		if (!gotoFirst()) {
-			throw new IllegalStateException("File does not have any content: "+m_filePath);
-		}
-		long targetFilePos = posImpl.m_filePosition;
-		Integer indexAtFilePos = m_cdRecordIndexAtFilePos.get(targetFilePos);
-		if (indexAtFilePos==null) {
+		if (posImpl.m_recordIndex<0 || posImpl.m_recordIndex>=m_knownRecordCount ||
+				m_recordOffsets[posImpl.m_recordIndex]!=posImpl.m_filePosition) {
 			throw new IllegalArgumentException("Unknown position");
 		}
-		m_position = posImpl.m_filePosition;
-		m_currentCDRecordIndex = indexAtFilePos.intValue();
-		m_currentCDRecord = readCurrentCDRecordUnchecked();
+		gotoIndex(posImpl.m_recordIndex);
 	}
 	
 	@Override
@@ -331,10 +434,12 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 	private class RichTextNavPositionImpl implements RichTextNavPosition {
 		private IRichTextNavigator m_parentNav;
 		private long m_filePosition;
+		private int m_recordIndex;
 		
-		public RichTextNavPositionImpl(IRichTextNavigator parentNav, long filePosition) {
+		public RichTextNavPositionImpl(IRichTextNavigator parentNav, long filePosition, int recordIndex) {
 			m_parentNav = parentNav;
 			m_filePosition = filePosition;
+			m_recordIndex = recordIndex;
 		}
 
 		private CDFileRichTextNavigator getOuterType() {
@@ -379,12 +484,12 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 	 * @author Karsten Lehmann
 	 */
 	private class CDRecordMemory {
-		private ReadOnlyMemory m_cdRecordBuf;
+		private Memory m_cdRecordBuf;
 		private short m_typeAsShort;
 		private int m_dataSize;
 		private int m_cdRecordLength;
 		
-		public CDRecordMemory(ReadOnlyMemory recordBuf, short typeAsShort, int dataSize, int cdRecordLength) {
+		public CDRecordMemory(Memory recordBuf, short typeAsShort, int dataSize, int cdRecordLength) {
 			m_cdRecordBuf = recordBuf;
 			m_typeAsShort = typeAsShort;
 			m_dataSize = dataSize;
@@ -422,5 +527,18 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 			return m_cdRecordLength;
 		}
 	}
-
-}
\ No newline at end of file
+	
+	/**
+	 * CD record memory that points into the memory-mapped file. Holds a reference to the
+	 * mapped buffer, so that the file stays mapped as long as the record is in use.
+	 */
+	private static class MappedRecordMemory extends MemoryFromPointer {
+		@SuppressWarnings("unused")
+		private MappedByteBuffer m_mappedBuffer;
+		
+		public MappedRecordMemory(MappedByteBuffer mappedBuffer, Pointer ptr, long size) {
+			super(ptr, size);
+			m_mappedBuffer = mappedBuffer;
+		}
+	}
+}
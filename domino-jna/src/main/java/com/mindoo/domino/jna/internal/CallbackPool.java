@@ -0,0 +1,225 @@
+package com.mindoo.domino.jna.internal;
+
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayDeque;
+
+import com.mindoo.domino.jna.utils.PlatformUtils;
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+/**
+ * Thread local pool of reusable JNA callback instances.<br>
+ * <br>
+ * JNA creates a native trampoline for every callback object that gets passed to a C
+ * function, so creating a new anonymous callback class instance for each call of frequently
+ * used functions like IDEnumerate produces a lot of native allocations.<br>
+ * The callbacks in this pool stay registered in JNA and just forward to a Java target
+ * that is set in {@link #acquire(Callback)}. Nested calls on the same thread (e.g. enumerating
+ * an ID table from within an NSFSearch callback) get their own pooled instance.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * NotesCallbacks.IdEnumerateProc proc = CallbackPool.IDENUMERATE.acquire(target);
+ * try {
+ *    ... native call with proc ...
+ * }
+ * finally {
+ *    CallbackPool.IDENUMERATE.release(proc);
+ * }
+ * </pre>
+ * The callbacks must not be used by the C API after the native call returns.
+ *
+ * @author Karsten Lehmann
+ *
+ * @param <T> callback type
+ */
+public abstract class CallbackPool<T extends Callback> {
+	/** max number of free callbacks kept per thread and type */
+	static final int MAX_POOLED_PER_THREAD = 4;
+
+	public static final CallbackPool<NotesCallbacks.IdEnumerateProc> IDENUMERATE = new CallbackPool<NotesCallbacks.IdEnumerateProc>() {
+
+		@Override
+		protected Delegate<NotesCallbacks.IdEnumerateProc> createDelegate() {
+			return PlatformUtils.isWin32() ? new IdEnumerateProcWin32Delegate() : new IdEnumerateProcDelegate();
+		}
+	};
+
+	public static final CallbackPool<NotesCallbacks.NsfSearchProc> NSFSEARCH = new CallbackPool<NotesCallbacks.NsfSearchProc>() {
+
+		@Override
+		protected Delegate<NotesCallbacks.NsfSearchProc> createDelegate() {
+			return PlatformUtils.isWin32() ? new NsfSearchProcWin32Delegate() : new NsfSearchProcDelegate();
+		}
+	};
+
+	public static final CallbackPool<NotesCallbacks.MQScanCallback> MQSCAN = new CallbackPool<NotesCallbacks.MQScanCallback>() {
+
+		@Override
+		protected Delegate<NotesCallbacks.MQScanCallback> createDelegate() {
+			return PlatformUtils.isWin32() ? new MQScanCallbackWin32Delegate() : new MQScanCallbackDelegate();
+		}
+	};
+
+	public static final CallbackPool<NotesCallbacks.NoteExtractCallback> NOTEEXTRACT = new CallbackPool<NotesCallbacks.NoteExtractCallback>() {
+
+		@Override
+		protected Delegate<NotesCallbacks.NoteExtractCallback> createDelegate() {
+			return PlatformUtils.isWin32() ? new NoteExtractCallbackWin32Delegate() : new NoteExtractCallbackDelegate();
+		}
+	};
+
+	public static final CallbackPool<NotesCallbacks.XML_WRITE_FUNCTION> XML_WRITE = new CallbackPool<NotesCallbacks.XML_WRITE_FUNCTION>() {
+
+		@Override
+		protected Delegate<NotesCallbacks.XML_WRITE_FUNCTION> createDelegate() {
+			return PlatformUtils.isWin32() ? new XML_WRITE_FUNCTIONWin32Delegate() : new XML_WRITE_FUNCTIONDelegate();
+		}
+	};
+
+	private final ThreadLocal<ArrayDeque<Delegate<T>>> m_freeDelegates = new ThreadLocal<ArrayDeque<Delegate<T>>>() {
+		@Override
+		protected ArrayDeque<Delegate<T>> initialValue() {
+			return new ArrayDeque<Delegate<T>>(MAX_POOLED_PER_THREAD);
+		}
+	};
+
+	private CallbackPool() {
+	}
+
+	/**
+	 * Creates a new callback instance implementing the callback interface for the
+	 * current platform
+	 *
+	 * @return delegate
+	 */
+	protected abstract Delegate<T> createDelegate();
+
+	/**
+	 * Returns a pooled callback that forwards all invocations to the specified target
+	 *
+	 * @param target target, does not need to implement the Win32 callback interfaces
+	 * @return callback to be passed to the C API
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire(T target) {
+		if (target==null) {
+			throw new IllegalArgumentException("Callback target cannot be null");
+		}
+		Delegate<T> delegate = m_freeDelegates.get().pollFirst();
+		if (delegate==null) {
+			delegate = createDelegate();
+		}
+		delegate.m_target = target;
+		return (T) delegate;
+	}
+
+	/**
+	 * Returns a callback to the pool after the native call has returned
+	 *
+	 * @param callback callback returned by {@link #acquire(Callback)}
+	 */
+	@SuppressWarnings("unchecked")
+	public void release(T callback) {
+		if (callback==null) {
+			return;
+		}
+		Delegate<T> delegate = (Delegate<T>) callback;
+		delegate.m_target = null;
+		ArrayDeque<Delegate<T>> freeDelegates = m_freeDelegates.get();
+		if (freeDelegates.size() < MAX_POOLED_PER_THREAD) {
+			freeDelegates.addFirst(delegate);
+		}
+	}
+
+	/**
+	 * Runs the action via {@link AccessController#doPrivileged(PrivilegedExceptionAction)}
+	 * if a security manager is installed (e.g. when running in XPages) and directly otherwise,
+	 * to avoid the overhead for frequently called C functions.
+	 *
+	 * @param action action
+	 * @return action result
+	 * @throws PrivilegedActionException if the action throws a checked exception
+	 * @param <R> result type
+	 */
+	public static <R> R doPrivilegedIfRequired(PrivilegedExceptionAction<R> action) throws PrivilegedActionException {
+		if (System.getSecurityManager()!=null) {
+			return AccessController.doPrivileged(action);
+		}
+		try {
+			return action.run();
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new PrivilegedActionException(e);
+		}
+	}
+
+	/**
+	 * Base class for pooled callbacks
+	 *
+	 * @param <T> callback type
+	 */
+	private static abstract class Delegate<T extends Callback> {
+		protected T m_target;
+	}
+
+	private static class IdEnumerateProcDelegate extends Delegate<NotesCallbacks.IdEnumerateProc> implements NotesCallbacks.IdEnumerateProc {
+
+		@Override
+		public short invoke(Pointer parameter, int noteId) {
+			return m_target.invoke(parameter, noteId);
+		}
+	}
+
+	private static class IdEnumerateProcWin32Delegate extends IdEnumerateProcDelegate implements Win32NotesCallbacks.IdEnumerateProcWin32 {
+	}
+
+	private static class NsfSearchProcDelegate extends Delegate<NotesCallbacks.NsfSearchProc> implements NotesCallbacks.NsfSearchProc {
+
+		@Override
+		public short invoke(Pointer enumRoutineParameter, Pointer searchMatch, Pointer summaryBuffer) {
+			return m_target.invoke(enumRoutineParameter, searchMatch, summaryBuffer);
+		}
+	}
+
+	private static class NsfSearchProcWin32Delegate extends NsfSearchProcDelegate implements Win32NotesCallbacks.NsfSearchProcWin32 {
+	}
+
+	private static class MQScanCallbackDelegate extends Delegate<NotesCallbacks.MQScanCallback> implements NotesCallbacks.MQScanCallback {
+
+		@Override
+		public short invoke(Pointer pBuffer, short length, short priority, Pointer ctx) {
+			return m_target.invoke(pBuffer, length, priority, ctx);
+		}
+	}
+
+	private static class MQScanCallbackWin32Delegate extends MQScanCallbackDelegate implements Win32NotesCallbacks.MQScanCallbackWin32 {
+	}
+
+	private static class NoteExtractCallbackDelegate extends Delegate<NotesCallbacks.NoteExtractCallback> implements NotesCallbacks.NoteExtractCallback {
+
+		@Override
+		public short invoke(Pointer data, int length, Pointer param) {
+			return m_target.invoke(data, length, param);
+		}
+	}
+
+	private static class NoteExtractCallbackWin32Delegate extends NoteExtractCallbackDelegate implements Win32NotesCallbacks.NoteExtractCallbackWin32 {
+	}
+
+	private static class XML_WRITE_FUNCTIONDelegate extends Delegate<NotesCallbacks.XML_WRITE_FUNCTION> implements NotesCallbacks.XML_WRITE_FUNCTION {
+
+		@Override
+		public void invoke(Pointer bBuffer, int length, Pointer pAction) {
+			m_target.invoke(bBuffer, length, pAction);
+		}
+	}
+
+	private static class XML_WRITE_FUNCTIONWin32Delegate extends XML_WRITE_FUNCTIONDelegate implements Win32NotesCallbacks.XML_WRITE_FUNCTIONWin32 {
+	}
+}
@@ -0,0 +1,720 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Memory-mapped ring file that records the last native method calls of each thread
+ * to find the cause of JVM crashes (e.g. handle panics).<br>
+ * <br>
+ * Each thread gets a fixed-size slot in the file with a small ring of breadcrumbs
+ * (method id, stack hash, timestamp, completion flag). Recording a call only writes a few
+ * bytes into the mapped file; there are no file operations on the hot path. Method names
+ * and the stack traces of new stack hashes are appended once to tables in the same file.
+ * Since the file is a shared mapping, the data is written to disk by the OS even if the
+ * JVM crashes.<br>
+ * <br>
+ * Capturing the caller's stack is the expensive part of recording a call, so the stack is
+ * only captured for the first call of each method in a thread and then for every n-th call
+ * of that method, with n specified in the system property "dominojna.breadcrumbs.stacksampling"
+ * (default 16, 1 to capture the stack of every call). For running calls without stack, the
+ * decoder shows the last sampled stack of the same method and thread.<br>
+ * <br>
+ * The ring file domino-jna-breadcrumbs-&lt;pid&gt;.ring is created in the directory specified
+ * by the system property "dominojna.dumpdir" or the temp directory. After a crash, decode it
+ * with:<br>
+ * <code>java -cp domino-jna.jar com.mindoo.domino.jna.internal.CrashBreadcrumbRing &lt;ring file&gt;</code><br>
+ * Calls that are still flagged as running are the ones that have been active when the JVM crashed.
+ * The file is deleted when the JVM exits normally.<br>
+ * <br>
+ * Slots of terminated threads are reused for new threads after their {@link Thread} objects have been
+ * garbage collected. Slots of running threads are never overwritten; if all {@link #SLOT_COUNT} slots
+ * are in use, calls of additional threads are not recorded and the threads are counted in the file header.
+ *
+ * @author Karsten Lehmann
+ */
+public class CrashBreadcrumbRing {
+	private static final int MAGIC = 0x444a4252; // "DJBR"
+	private static final int VERSION = 2;
+
+	static final int SLOT_COUNT = 256;
+	private static final int SLOT_SIZE = 512;
+	private static final int SLOT_HEADER_SIZE = 80;
+	private static final int THREADNAME_MAXBYTES = 62;
+	private static final int ENTRY_SIZE = 16;
+	private static final int ENTRIES_PER_SLOT = (SLOT_SIZE - SLOT_HEADER_SIZE) / ENTRY_SIZE;
+	private static final int COMPLETED_FLAG = 0x80000000;
+	/** max number of frames used for stack hashes and stored stack traces */
+	private static final int MAX_STACK_FRAMES = 24;
+	/** stack hash of calls without captured stack */
+	private static final int STACK_NOT_SAMPLED = 0;
+	private static final int DEFAULT_STACK_SAMPLING = 16;
+	/** number of calls after which a thread without slot tries again to get one */
+	private static final int SLOT_RETRY_INTERVAL = 1024;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int METHODTABLE_SIZE = 64 * 1024;
+	private static final int STACKTABLE_SIZE = 4 * 1024 * 1024;
+
+	private static final int SLOTS_OFFSET = HEADER_SIZE;
+
+	/** header offsets of the used bytes in the method and stack table */
+	private static final int HEADER_METHODTABLE_USED = 40;
+	private static final int HEADER_STACKTABLE_USED = 44;
+	/** header offset of the number of threads that did not get a slot */
+	private static final int HEADER_OVERFLOW_THREADS = 48;
+	private static final int HEADER_STACK_SAMPLING = 52;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static volatile CrashBreadcrumbRing m_instance;
+	private static volatile NotesError m_initError;
+
+	private final File m_file;
+	private final MappedByteBuffer m_buffer;
+	private final int m_slotCount;
+	private final int m_methodTableOffset;
+	private final int m_stackTableOffset;
+	private final int m_stackSampling;
+	private final ThreadLocal<Slot> m_threadSlot = new ThreadLocal<Slot>();
+	private final Map<Method,Integer> m_methodIds = new ConcurrentHashMap<Method,Integer>();
+	private final IntHashSet m_knownStackHashes = new IntHashSet();
+	private int m_methodTableUsed;
+	private int m_stackTableUsed;
+
+	/** owners of the assigned slots by slot index, cleared when the owning thread has been garbage collected */
+	private final SlotOwner[] m_slotOwners;
+	private final ReferenceQueue<Thread> m_collectedOwners = new ReferenceQueue<Thread>();
+	/** stack of free slot indexes */
+	private final int[] m_freeSlots;
+	private int m_freeSlotCount;
+	private int m_overflowThreads;
+
+	/**
+	 * Returns the ring file of this JVM, creates it on first call
+	 *
+	 * @return ring or null if the file could not be created, see {@link #getInitError()}
+	 */
+	public static CrashBreadcrumbRing getInstance() {
+		CrashBreadcrumbRing ring = m_instance;
+		if (ring==null && m_initError==null) {
+			synchronized (CrashBreadcrumbRing.class) {
+				if (m_instance==null && m_initError==null) {
+					m_instance = AccessController.doPrivileged(new PrivilegedAction<CrashBreadcrumbRing>() {
+
+						@Override
+						public CrashBreadcrumbRing run() {
+							String outDirPath = System.getProperty("dominojna.dumpdir");
+							if (StringUtil.isEmpty(outDirPath)) {
+								outDirPath = System.getProperty("java.io.tmpdir");
+							}
+							File outDir = new File(outDirPath);
+							if (!outDir.exists())
+								outDir.mkdirs();
+
+							File ringFile = new File(outDir, "domino-jna-breadcrumbs-"+getProcessId()+".ring");
+							int stackSampling = DEFAULT_STACK_SAMPLING;
+							String stackSamplingStr = System.getProperty("dominojna.breadcrumbs.stacksampling");
+							if (!StringUtil.isEmpty(stackSamplingStr)) {
+								try {
+									stackSampling = Math.max(1, Integer.parseInt(stackSamplingStr.trim()));
+								}
+								catch (NumberFormatException e) {
+									//use default
+								}
+							}
+
+							final CrashBreadcrumbRing newRing;
+							try {
+								newRing = new CrashBreadcrumbRing(ringFile, SLOT_COUNT, stackSampling);
+							} catch (IOException e) {
+								m_initError = new NotesError(0, "Error creating the breadcrumb ring file "+ringFile.getAbsolutePath(), e);
+								return null;
+							}
+
+							//the file is only needed after a crash
+							Thread cleanupThread = new Thread("Domino JNA breadcrumb ring cleanup") {
+								@Override
+								public void run() {
+									newRing.deleteFile();
+								}
+							};
+							Runtime.getRuntime().addShutdownHook(cleanupThread);
+							return newRing;
+						}
+					});
+				}
+				ring = m_instance;
+			}
+		}
+		return ring;
+	}
+
+	/**
+	 * Returns the error that occurred creating the ring file in {@link #getInstance()}
+	 *
+	 * @return error or null
+	 */
+	public static NotesError getInitError() {
+		return m_initError;
+	}
+
+	private static String getProcessId() {
+		//format is pid@hostname on all common JVMs
+		String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+		int iPos = jvmName.indexOf('@');
+		return iPos==-1 ? Long.toString(System.currentTimeMillis()) : jvmName.substring(0, iPos);
+	}
+
+	/**
+	 * Creates a new ring file
+	 *
+	 * @param file file, gets overwritten
+	 * @param slotCount number of thread slots
+	 * @param stackSampling capture the stack for every n-th call of a method in a thread
+	 * @throws IOException in case of I/O errors
+	 */
+	CrashBreadcrumbRing(File file, int slotCount, int stackSampling) throws IOException {
+		m_file = file;
+		m_slotCount = slotCount;
+		m_stackSampling = stackSampling;
+		m_methodTableOffset = SLOTS_OFFSET + slotCount * SLOT_SIZE;
+		m_stackTableOffset = m_methodTableOffset + METHODTABLE_SIZE;
+		int fileSize = m_stackTableOffset + STACKTABLE_SIZE;
+
+		m_slotOwners = new SlotOwner[slotCount];
+		m_freeSlots = new int[slotCount];
+		//hand out the slots in file order
+		for (int i=0; i<slotCount; i++) {
+			m_freeSlots[i] = slotCount - 1 - i;
+		}
+		m_freeSlotCount = slotCount;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.setLength(fileSize);
+			m_buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+		}
+		finally {
+			raf.close();
+		}
+		m_buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		m_buffer.putInt(4, VERSION);
+		m_buffer.putInt(8, slotCount);
+		m_buffer.putInt(12, SLOT_SIZE);
+		m_buffer.putInt(16, m_methodTableOffset);
+		m_buffer.putInt(20, METHODTABLE_SIZE);
+		m_buffer.putInt(24, m_stackTableOffset);
+		m_buffer.putInt(28, STACKTABLE_SIZE);
+		m_buffer.putLong(32, System.currentTimeMillis());
+		m_buffer.putInt(HEADER_METHODTABLE_USED, 0);
+		m_buffer.putInt(HEADER_STACKTABLE_USED, 0);
+		m_buffer.putInt(HEADER_OVERFLOW_THREADS, 0);
+		m_buffer.putInt(HEADER_STACK_SAMPLING, stackSampling);
+		//magic last, so that the decoder ignores partially initialized files
+		m_buffer.putInt(0, MAGIC);
+	}
+
+	/**
+	 * Returns the ring file
+	 *
+	 * @return file
+	 */
+	public File getFile() {
+		return m_file;
+	}
+
+	/**
+	 * Deletes the ring file, called on normal JVM exit. Recording calls afterwards
+	 * still works, but the data is not written to disk anymore. On Windows, the file
+	 * cannot be deleted while it is mapped and is kept.
+	 */
+	void deleteFile() {
+		m_file.delete();
+	}
+
+	/**
+	 * Records the start of a native method call for the current thread
+	 *
+	 * @param method called method
+	 * @return position of the breadcrumb to be passed to {@link #callCompleted(int)}
+	 */
+	public int callStarted(Method method) {
+		Slot slot = m_threadSlot.get();
+		if (slot==null || (slot.m_offset==-1 && --slot.m_retryCountdown<=0)) {
+			slot = assignSlot(slot);
+			m_threadSlot.set(slot);
+		}
+		if (slot.m_offset==-1) {
+			//no free slot, see HEADER_OVERFLOW_THREADS
+			return -1;
+		}
+
+		Integer methodId = m_methodIds.get(method);
+		if (methodId==null) {
+			methodId = registerMethod(method);
+		}
+
+		int stackHash = slot.isStackSampled(methodId.intValue(), m_stackSampling) ? computeStackHash() : STACK_NOT_SAMPLED;
+
+		long seq = slot.m_count++;
+		int entryPos = slot.m_offset + SLOT_HEADER_SIZE + (int) (seq % ENTRIES_PER_SLOT) * ENTRY_SIZE;
+		m_buffer.putInt(entryPos, methodId.intValue());
+		m_buffer.putInt(entryPos + 4, stackHash);
+		m_buffer.putLong(entryPos + 8, System.currentTimeMillis());
+		m_buffer.putLong(slot.m_offset + 8, slot.m_count);
+		return entryPos;
+	}
+
+	/**
+	 * Flags a recorded call as completed
+	 *
+	 * @param entryPos breadcrumb position returned by {@link #callStarted(Method)}
+	 */
+	public void callCompleted(int entryPos) {
+		if (entryPos!=-1) {
+			m_buffer.putInt(entryPos, m_buffer.getInt(entryPos) | COMPLETED_FLAG);
+		}
+	}
+
+	/**
+	 * Assigns a free slot to the current thread. Slots of threads that have been garbage
+	 * collected are reclaimed first.
+	 *
+	 * @param overflowSlot slot returned by a previous call that did not find a free slot or null
+	 * @return slot, with offset -1 if all slots are in use
+	 */
+	private synchronized Slot assignSlot(Slot overflowSlot) {
+		Reference<? extends Thread> collectedOwner;
+		while ((collectedOwner = m_collectedOwners.poll()) != null) {
+			int slotIdx = ((SlotOwner) collectedOwner).m_slotIdx;
+			m_slotOwners[slotIdx] = null;
+			m_freeSlots[m_freeSlotCount++] = slotIdx;
+		}
+
+		if (m_freeSlotCount==0) {
+			if (overflowSlot==null) {
+				//overflow marker, we don't overwrite slots of running threads
+				overflowSlot = new Slot(-1);
+				m_buffer.putInt(HEADER_OVERFLOW_THREADS, ++m_overflowThreads);
+			}
+			overflowSlot.m_retryCountdown = SLOT_RETRY_INTERVAL;
+			return overflowSlot;
+		}
+
+		Thread thread = Thread.currentThread();
+		int slotIdx = m_freeSlots[--m_freeSlotCount];
+		m_slotOwners[slotIdx] = new SlotOwner(thread, m_collectedOwners, slotIdx);
+		Slot slot = new Slot(SLOTS_OFFSET + slotIdx * SLOT_SIZE);
+
+		//clear data of a previous thread
+		for (int i=0; i<SLOT_SIZE; i+=8) {
+			m_buffer.putLong(slot.m_offset + i, 0);
+		}
+		byte[] threadNameBytes = truncate(thread.getName().getBytes(UTF8), THREADNAME_MAXBYTES);
+		m_buffer.putShort(slot.m_offset + 16, (short) threadNameBytes.length);
+		for (int i=0; i<threadNameBytes.length; i++) {
+			m_buffer.put(slot.m_offset + 18 + i, threadNameBytes[i]);
+		}
+		m_buffer.putLong(slot.m_offset, thread.getId());
+		return slot;
+	}
+
+	private synchronized Integer registerMethod(Method method) {
+		Integer methodId = m_methodIds.get(method);
+		if (methodId!=null) {
+			return methodId;
+		}
+		methodId = m_methodIds.size() + 1;
+
+		byte[] nameBytes = truncate(method.getName().getBytes(UTF8), Short.MAX_VALUE);
+		if (m_methodTableUsed + 6 + nameBytes.length <= METHODTABLE_SIZE) {
+			int pos = m_methodTableOffset + m_methodTableUsed;
+			m_buffer.putInt(pos, methodId.intValue());
+			m_buffer.putShort(pos + 4, (short) nameBytes.length);
+			for (int i=0; i<nameBytes.length; i++) {
+				m_buffer.put(pos + 6 + i, nameBytes[i]);
+			}
+			m_methodTableUsed += 6 + nameBytes.length;
+			m_buffer.putInt(HEADER_METHODTABLE_USED, m_methodTableUsed);
+		}
+		m_methodIds.put(method, methodId);
+		return methodId;
+	}
+
+	/**
+	 * Computes a hash of the caller's stack and stores the stack trace
+	 * on first occurrence of the hash
+	 *
+	 * @return hash
+	 */
+	private int computeStackHash() {
+		StackTraceElement[] stack = new Throwable().getStackTrace();
+		//skip frames of this class and the method interceptor
+		int start = 0;
+		while (start<stack.length && isInterceptorFrame(stack[start])) {
+			start++;
+		}
+		int end = Math.min(stack.length, start + MAX_STACK_FRAMES);
+
+		int hash = 1;
+		for (int i=start; i<end; i++) {
+			StackTraceElement frame = stack[i];
+			hash = 31 * hash + frame.getClassName().hashCode();
+			hash = 31 * hash + frame.getMethodName().hashCode();
+			hash = 31 * hash + frame.getLineNumber();
+		}
+		if (hash==STACK_NOT_SAMPLED) {
+			hash = 1;
+		}
+
+		if (!m_knownStackHashes.contains(hash)) {
+			registerStack(hash, stack, start, end);
+		}
+		return hash;
+	}
+
+	private static boolean isInterceptorFrame(StackTraceElement frame) {
+		String className = frame.getClassName();
+		return className.equals(CrashBreadcrumbRing.class.getName()) ||
+				className.startsWith(NotesNativeAPI.class.getName()) ||
+				className.contains("$$EnhancerByCGLIB$$") ||
+				className.startsWith("net.sf.cglib.") ||
+				className.startsWith("sun.reflect.") ||
+				className.startsWith("jdk.internal.reflect.") ||
+				className.startsWith("java.lang.reflect.");
+	}
+
+	private synchronized void registerStack(int hash, StackTraceElement[] stack, int start, int end) {
+		if (m_knownStackHashes.contains(hash)) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i=start; i<end; i++) {
+			sb.append("\tat ").append(stack[i]).append('\n');
+		}
+		if (end<stack.length) {
+			sb.append("\t... ").append(stack.length-end).append(" more\n");
+		}
+		byte[] stackBytes = sb.toString().getBytes(UTF8);
+
+		if (m_stackTableUsed + 8 + stackBytes.length <= STACKTABLE_SIZE) {
+			int pos = m_stackTableOffset + m_stackTableUsed;
+			m_buffer.putInt(pos, hash);
+			m_buffer.putInt(pos + 4, stackBytes.length);
+			for (int i=0; i<stackBytes.length; i++) {
+				m_buffer.put(pos + 8 + i, stackBytes[i]);
+			}
+			m_stackTableUsed += 8 + stackBytes.length;
+			m_buffer.putInt(HEADER_STACKTABLE_USED, m_stackTableUsed);
+		}
+		//when the table is full, only the hash is recorded
+		m_knownStackHashes.add(hash);
+	}
+
+	private static byte[] truncate(byte[] data, int maxLength) {
+		if (data.length<=maxLength) {
+			return data;
+		}
+		byte[] truncated = new byte[maxLength];
+		System.arraycopy(data, 0, truncated, 0, maxLength);
+		return truncated;
+	}
+
+	/**
+	 * Slot of a thread in the ring file
+	 */
+	private static class Slot {
+		/** offset in the file, -1 if no slot was free */
+		private final int m_offset;
+		private long m_count;
+		private int m_retryCountdown;
+		/** calls until the next stack capture by method id */
+		private int[] m_callsUntilStackSample = new int[64];
+
+		public Slot(int offset) {
+			m_offset = offset;
+		}
+
+		/**
+		 * Checks whether the stack should be captured for a call of the specified method
+		 *
+		 * @param methodId method id
+		 * @param stackSampling sampling interval
+		 * @return true to capture the stack
+		 */
+		public boolean isStackSampled(int methodId, int stackSampling) {
+			if (methodId >= m_callsUntilStackSample.length) {
+				m_callsUntilStackSample = Arrays.copyOf(m_callsUntilStackSample,
+						Math.max(methodId + 1, m_callsUntilStackSample.length * 2));
+			}
+			int callsUntilSample = m_callsUntilStackSample[methodId];
+			if (callsUntilSample==0) {
+				m_callsUntilStackSample[methodId] = stackSampling - 1;
+				return true;
+			}
+			m_callsUntilStackSample[methodId] = callsUntilSample - 1;
+			return false;
+		}
+	}
+
+	/**
+	 * Weak reference to the thread owning a slot, gets enqueued when the thread has been garbage collected
+	 */
+	private static class SlotOwner extends WeakReference<Thread> {
+		private final int m_slotIdx;
+
+		public SlotOwner(Thread thread, ReferenceQueue<Thread> queue, int slotIdx) {
+			super(thread, queue);
+			m_slotIdx = slotIdx;
+		}
+	}
+
+	/**
+	 * Open addressing set of stack hashes without boxing. Lookups are lock-free; a lookup
+	 * may miss a hash that is being added concurrently, so additions have to be synchronized
+	 * and check again.
+	 */
+	private static class IntHashSet {
+		private volatile int[] m_table = new int[1024];
+		private int m_size;
+
+		/**
+		 * Checks if the set contains a value
+		 *
+		 * @param value value, not {@link CrashBreadcrumbRing#STACK_NOT_SAMPLED}
+		 * @return true if found
+		 */
+		public boolean contains(int value) {
+			int[] table = m_table;
+			int mask = table.length - 1;
+			int idx = mix(value) & mask;
+			while (true) {
+				int curr = table[idx];
+				if (curr==value) {
+					return true;
+				}
+				else if (curr==STACK_NOT_SAMPLED) {
+					return false;
+				}
+				idx = (idx + 1) & mask;
+			}
+		}
+
+		/**
+		 * Adds a value, must be called with a lock
+		 *
+		 * @param value value, not {@link CrashBreadcrumbRing#STACK_NOT_SAMPLED}
+		 */
+		public void add(int value) {
+			if (contains(value)) {
+				return;
+			}
+			int[] table = m_table;
+			if ((m_size+1) * 2 > table.length) {
+				//publish the new table after it has been filled
+				int[] newTable = new int[table.length * 2];
+				for (int curr : table) {
+					if (curr!=STACK_NOT_SAMPLED) {
+						insert(newTable, curr);
+					}
+				}
+				table = newTable;
+				insert(table, value);
+				m_table = table;
+			}
+			else {
+				insert(table, value);
+			}
+			m_size++;
+		}
+
+		private static void insert(int[] table, int value) {
+			int mask = table.length - 1;
+			int idx = mix(value) & mask;
+			while (table[idx]!=STACK_NOT_SAMPLED) {
+				idx = (idx + 1) & mask;
+			}
+			table[idx] = value;
+		}
+
+		private static int mix(int value) {
+			int h = value * 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
+	}
+
+	/**
+	 * Decodes a ring file to a human readable text
+	 *
+	 * @param ringFile ring file
+	 * @return text
+	 * @throws IOException in case of I/O errors
+	 */
+	public static String decode(File ringFile) throws IOException {
+		ByteBuffer buf;
+		RandomAccessFile raf = new RandomAccessFile(ringFile, "r");
+		try {
+			buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		finally {
+			raf.close();
+		}
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buf.capacity()<HEADER_SIZE || buf.getInt(0)!=MAGIC) {
+			throw new IOException("File is not a breadcrumb ring file: "+ringFile.getAbsolutePath());
+		}
+		if (buf.getInt(4)!=VERSION) {
+			throw new IOException("Unsupported breadcrumb ring file version: "+buf.getInt(4));
+		}
+		int slotCount = buf.getInt(8);
+		int slotSize = buf.getInt(12);
+		int methodTableOffset = buf.getInt(16);
+		int stackTableOffset = buf.getInt(24);
+		long created = buf.getLong(32);
+		int methodTableUsed = buf.getInt(HEADER_METHODTABLE_USED);
+		int stackTableUsed = buf.getInt(HEADER_STACKTABLE_USED);
+		int overflowThreads = buf.getInt(HEADER_OVERFLOW_THREADS);
+		int stackSampling = buf.getInt(HEADER_STACK_SAMPLING);
+		int entriesPerSlot = (slotSize - SLOT_HEADER_SIZE) / ENTRY_SIZE;
+
+		Map<Integer,String> methodNames = new HashMap<Integer,String>();
+		int pos = methodTableOffset;
+		while (pos < methodTableOffset + methodTableUsed) {
+			int id = buf.getInt(pos);
+			int len = buf.getShort(pos + 4) & 0xffff;
+			methodNames.put(id, readString(buf, pos + 6, len));
+			pos += 6 + len;
+		}
+
+		Map<Integer,String> stacks = new HashMap<Integer,String>();
+		pos = stackTableOffset;
+		while (pos < stackTableOffset + stackTableUsed) {
+			int hash = buf.getInt(pos);
+			int len = buf.getInt(pos + 4);
+			stacks.put(hash, readString(buf, pos + 8, len));
+			pos += 8 + len;
+		}
+
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		StringBuilder sb = new StringBuilder();
+		sb.append("Breadcrumb ring file ").append(ringFile.getAbsolutePath())
+		.append(", created ").append(dateFormat.format(new Date(created)))
+		.append(", stack captured every ").append(stackSampling).append(" calls per method and thread\n");
+		if (overflowThreads>0) {
+			sb.append("OVERFLOW: ").append(overflowThreads).append(" threads did not get a free slot, their calls have not been recorded until a slot was reclaimed\n");
+		}
+
+		for (int slotIdx=0; slotIdx<slotCount; slotIdx++) {
+			int slotOffset = SLOTS_OFFSET + slotIdx * slotSize;
+			long threadId = buf.getLong(slotOffset);
+			long count = buf.getLong(slotOffset + 8);
+			if (threadId==0 || count==0) {
+				continue;
+			}
+			int threadNameLen = buf.getShort(slotOffset + 16) & 0xffff;
+			String threadName = readString(buf, slotOffset + 18, Math.min(threadNameLen, THREADNAME_MAXBYTES));
+
+			sb.append("\nThread ").append(threadId).append(" \"").append(threadName).append("\", ")
+			.append(count).append(" native calls\n");
+
+			long firstSeq = Math.max(0, count - entriesPerSlot);
+			for (long seq=firstSeq; seq<count; seq++) {
+				int entryPos = slotOffset + SLOT_HEADER_SIZE + (int) (seq % entriesPerSlot) * ENTRY_SIZE;
+				int methodIdWithFlag = buf.getInt(entryPos);
+				int stackHash = buf.getInt(entryPos + 4);
+				long timestamp = buf.getLong(entryPos + 8);
+				boolean completed = (methodIdWithFlag & COMPLETED_FLAG) != 0;
+				int methodId = methodIdWithFlag & ~COMPLETED_FLAG;
+
+				String methodName = methodNames.get(methodId);
+				sb.append("  ").append(dateFormat.format(new Date(timestamp))).append(' ')
+				.append(methodName==null ? "method#"+methodId : methodName)
+				.append(completed ? "" : "  <-- RUNNING")
+				.append("  [stack ").append(Integer.toHexString(stackHash)).append("]\n");
+
+				if (!completed) {
+					if (stackHash==STACK_NOT_SAMPLED) {
+						stackHash = findLastSampledStackHash(buf, slotOffset, entriesPerSlot, firstSeq, seq, methodId);
+						sb.append(stackHash==STACK_NOT_SAMPLED ? "  (stack not sampled)\n" : "  (last sampled stack of this method)\n");
+					}
+					String stack = stacks.get(stackHash);
+					if (stack!=null) {
+						sb.append(stack);
+					}
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Searches the breadcrumbs of a slot backwards for the last call of a method with captured stack
+	 *
+	 * @param buf buffer
+	 * @param slotOffset slot offset
+	 * @param entriesPerSlot number of breadcrumbs per slot
+	 * @param firstSeq oldest breadcrumb still in the slot
+	 * @param seq breadcrumb to start the search
+	 * @param methodId method id
+	 * @return stack hash or {@link #STACK_NOT_SAMPLED}
+	 */
+	private static int findLastSampledStackHash(ByteBuffer buf, int slotOffset, int entriesPerSlot,
+			long firstSeq, long seq, int methodId) {
+		for (long prevSeq=seq-1; prevSeq>=firstSeq; prevSeq--) {
+			int entryPos = slotOffset + SLOT_HEADER_SIZE + (int) (prevSeq % entriesPerSlot) * ENTRY_SIZE;
+			int stackHash = buf.getInt(entryPos + 4);
+			if ((buf.getInt(entryPos) & ~COMPLETED_FLAG)==methodId && stackHash!=STACK_NOT_SAMPLED) {
+				return stackHash;
+			}
+		}
+		return STACK_NOT_SAMPLED;
+	}
+
+	private static String readString(ByteBuffer buf, int pos, int len) {
+		byte[] data = new byte[len];
+		for (int i=0; i<len; i++) {
+			data[i] = buf.get(pos + i);
+		}
+		return new String(data, UTF8);
+	}
+
+	/**
+	 * Post-mortem tool to print the content of a ring file
+	 *
+	 * @param args path of ring file
+	 * @throws IOException in case of I/O errors
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length!=1) {
+			System.err.println("Usage: java "+CrashBreadcrumbRing.class.getName()+" <ring file>");
+			System.exit(1);
+		}
+		System.out.println(decode(new File(args[0])));
+	}
+}
@@ -7,7 +7,6 @@ import java.util.TimeZone;
 
 import com.mindoo.domino.jna.NotesDateRange;
 import com.mindoo.domino.jna.NotesTimeDate;
-import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.internal.structs.NotesNumberPairStruct;
 import com.mindoo.domino.jna.internal.structs.NotesRangeStruct;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDatePairStruct;
@@ -15,10 +14,7 @@ import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
 import com.mindoo.domino.jna.utils.LMBCSString;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
-import com.sun.jna.Memory;
-import com.sun.jna.Native;
 import com.sun.jna.Pointer;
-import com.sun.jna.ptr.ShortByReference;
 
 public class ItemDecoder {
 
@@ -51,33 +47,29 @@ public class ItemDecoder {
 		
 		List<Object> listValues = new ArrayList<Object>(listCountAsInt);
 		
-		Memory retTextPointer = new Memory(Native.POINTER_SIZE);
-		ShortByReference retTextLength = new ShortByReference();
+		//the LIST header is followed by a WORD array with the text lengths and the packed
+		//texts, so we read them directly instead of calling ListGetText for each entry
+		int textPos = 2 + 2 * listCountAsInt;
 		
-		for (short l=0; l<listCountAsInt; l++) {
-			short result = NotesNativeAPI.get().ListGetText(ptr, false, l, retTextPointer, retTextLength);
-			NotesErrorUtils.checkResult(result);
-			
-			//retTextPointer[0] points to the list entry text
-			Pointer pointerToTextInMem = retTextPointer.getPointer(0);
-			int retTextLengthAsInt = retTextLength.getValue() & 0xffff;
+		for (int l=0; l<listCountAsInt; l++) {
+			int retTextLengthAsInt = ptr.getShort(2 + 2 * l) & 0xffff;
 			
 			if (retTextLengthAsInt==0) {
 				listValues.add("");
 			}
 			else {
 				if (convertStringsLazily) {
-					byte[] stringDataArr = new byte[retTextLengthAsInt];
-					pointerToTextInMem.read(0, stringDataArr, 0, retTextLengthAsInt);
+					byte[] stringDataArr = ptr.getByteArray(textPos, retTextLengthAsInt);
 
 					LMBCSString lmbcsString = new LMBCSString(stringDataArr);
 					listValues.add(lmbcsString);
 				}
 				else {
-					String currListEntry = NotesStringUtils.fromLMBCS(pointerToTextInMem, (short) retTextLengthAsInt);
+					String currListEntry = NotesStringUtils.fromLMBCS(ptr.share(textPos), retTextLengthAsInt);
 					listValues.add(currListEntry);
 				}
 			}
+			textPos += retTextLengthAsInt;
 		}
 		
 		return listValues;
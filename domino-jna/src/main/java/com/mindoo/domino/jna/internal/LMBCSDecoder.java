@@ -0,0 +1,166 @@
+package com.mindoo.domino.jna.internal;
+
+/**
+ * Table driven decoder for the subset of LMBCS (Lotus Multi-Byte Character Set) that can
+ * be converted to UTF-16 without calling OSTranslate in the C API.<br>
+ * <br>
+ * Supported are:<br>
+ * <ul>
+ * <li>plain ASCII characters (0x20-0x7F) and tab, linefeed and carriage return</li>
+ * <li>group 1 characters (Latin-1, code page 850), either with or without the 0x01 group byte, since group 1 is the default optimization group of Notes</li>
+ * <li>control characters encoded with the group byte 0x0F</li>
+ * <li>Unicode characters encoded with the group byte 0x14 followed by a big endian UTF-16 code unit</li>
+ * </ul>
+ * Data of all other LMBCS groups (e.g. Greek, Cyrillic or the double byte asian groups) is
+ * reported as unsupported so that the caller can fall back to OSTranslate.<br>
+ * <br>
+ * The decoder does not handle null bytes; they are used as line delimiters in LMBCS and need
+ * to be processed by the caller.
+ *
+ * @author Karsten Lehmann
+ */
+public class LMBCSDecoder {
+	/** group byte for Latin-1 (code page 850) */
+	public static final int GRP_L1 = 0x01;
+	/** group byte for control characters */
+	public static final int GRP_CTRL = 0x0F;
+	/** group byte for UTF-16 code units */
+	public static final int GRP_UNICODE = 0x14;
+	/** offset added to C0 control characters in the control group */
+	private static final int CTRL_OFFSET = 0x20;
+	/** high byte used by the Unicode group as replacement for 0x00 */
+	private static final int UNICOMPATZERO = 0xF6;
+
+	/**
+	 * Unicode characters for the bytes 0x80-0xFF of group 1 (code page 850). 0xD5 is left out
+	 * (value 0) because Notes releases differ in its mapping (dotless i vs. euro sign), so we
+	 * let OSTranslate decide.
+	 */
+	static final char[] GROUP1_TO_UNICODE = new char[] {
+			'\u00c7', '\u00fc', '\u00e9', '\u00e2', '\u00e4', '\u00e0', '\u00e5', '\u00e7',
+			'\u00ea', '\u00eb', '\u00e8', '\u00ef', '\u00ee', '\u00ec', '\u00c4', '\u00c5',
+			'\u00c9', '\u00e6', '\u00c6', '\u00f4', '\u00f6', '\u00f2', '\u00fb', '\u00f9',
+			'\u00ff', '\u00d6', '\u00dc', '\u00f8', '\u00a3', '\u00d8', '\u00d7', '\u0192',
+			'\u00e1', '\u00ed', '\u00f3', '\u00fa', '\u00f1', '\u00d1', '\u00aa', '\u00ba',
+			'\u00bf', '\u00ae', '\u00ac', '\u00bd', '\u00bc', '\u00a1', '\u00ab', '\u00bb',
+			'\u2591', '\u2592', '\u2593', '\u2502', '\u2524', '\u00c1', '\u00c2', '\u00c0',
+			'\u00a9', '\u2563', '\u2551', '\u2557', '\u255d', '\u00a2', '\u00a5', '\u2510',
+			'\u2514', '\u2534', '\u252c', '\u251c', '\u2500', '\u253c', '\u00e3', '\u00c3',
+			'\u255a', '\u2554', '\u2569', '\u2566', '\u2560', '\u2550', '\u256c', '\u00a4',
+			'\u00f0', '\u00d0', '\u00ca', '\u00cb', '\u00c8', '\u0000', '\u00cd', '\u00ce',
+			'\u00cf', '\u2518', '\u250c', '\u2588', '\u2584', '\u00a6', '\u00cc', '\u2580',
+			'\u00d3', '\u00df', '\u00d4', '\u00d2', '\u00f5', '\u00d5', '\u00b5', '\u00fe',
+			'\u00de', '\u00da', '\u00db', '\u00d9', '\u00fd', '\u00dd', '\u00af', '\u00b4',
+			'\u00ad', '\u00b1', '\u2017', '\u00be', '\u00b6', '\u00a7', '\u00f7', '\u00b8',
+			'\u00b0', '\u00a8', '\u00b7', '\u00b9', '\u00b3', '\u00b2', '\u25a0', '\u00a0'
+	};
+
+	/**
+	 * Checks if the data only consists of characters that are identical in LMBCS and
+	 * ISO-8859-1, which means that no decoding is required at all.
+	 *
+	 * @param data LMBCS data
+	 * @param offset start offset
+	 * @param len number of bytes to check
+	 * @return true if pure ASCII without null bytes
+	 */
+	public static boolean isPureAscii(byte[] data, int offset, int len) {
+		int end = offset + len;
+		for (int i=offset; i<end; i++) {
+			byte b = data[i];
+			if (b < 0x20) {
+				//also true for 0x80-0xFF, since byte is signed
+				if (b!='\t' && b!='\n' && b!='\r') {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes a single line of LMBCS data (not containing null bytes) to UTF-16.
+	 *
+	 * @param data LMBCS data
+	 * @param offset start offset of the line
+	 * @param len length of the line in bytes
+	 * @param out output buffer, must have room for at least <code>len</code> characters starting at <code>outOffset</code>
+	 * @param outOffset offset in output buffer
+	 * @return number of characters written or -1 if the line contains characters we cannot decode and OSTranslate needs to be used instead
+	 */
+	public static int decodeLine(byte[] data, int offset, int len, char[] out, int outOffset) {
+		int end = offset + len;
+		int outPos = outOffset;
+		int i = offset;
+
+		while (i<end) {
+			int b = data[i] & 0xff;
+
+			if (b >= 0x20 && b < 0x80) {
+				out[outPos++] = (char) b;
+				i++;
+			}
+			else if (b >= 0x80) {
+				char c = GROUP1_TO_UNICODE[b - 0x80];
+				if (c==0) {
+					return -1;
+				}
+				out[outPos++] = c;
+				i++;
+			}
+			else if (b=='\t' || b=='\n' || b=='\r') {
+				out[outPos++] = (char) b;
+				i++;
+			}
+			else if (b==GRP_L1) {
+				if ((i+1) >= end) {
+					return -1;
+				}
+				int b1 = data[i+1] & 0xff;
+				if (b1 < 0x80) {
+					return -1;
+				}
+				char c = GROUP1_TO_UNICODE[b1 - 0x80];
+				if (c==0) {
+					return -1;
+				}
+				out[outPos++] = c;
+				i+=2;
+			}
+			else if (b==GRP_CTRL) {
+				if ((i+1) >= end) {
+					return -1;
+				}
+				int b1 = data[i+1] & 0xff;
+				if (b1 >= CTRL_OFFSET && b1 < (CTRL_OFFSET + 0x20)) {
+					out[outPos++] = (char) (b1 - CTRL_OFFSET);
+				}
+				else if (b1 >= 0x80 && b1 < 0xA0) {
+					out[outPos++] = (char) b1;
+				}
+				else {
+					return -1;
+				}
+				i+=2;
+			}
+			else if (b==GRP_UNICODE) {
+				if ((i+2) >= end) {
+					return -1;
+				}
+				int high = data[i+1] & 0xff;
+				int low = data[i+2] & 0xff;
+				if (high == UNICOMPATZERO) {
+					high = 0;
+				}
+				out[outPos++] = (char) ((high << 8) | low);
+				i+=3;
+			}
+			else {
+				//other LMBCS group or null byte
+				return -1;
+			}
+		}
+
+		return outPos - outOffset;
+	}
+}
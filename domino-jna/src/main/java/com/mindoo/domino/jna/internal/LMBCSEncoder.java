@@ -0,0 +1,121 @@
+package com.mindoo.domino.jna.internal;
+
+import java.nio.ByteBuffer;
+
+import com.mindoo.domino.jna.utils.NotesStringUtils.LineBreakConversion;
+
+/**
+ * Encoder for the subset of Java Strings that can be converted to LMBCS (Lotus Multi-Byte Character Set)
+ * without calling OSTranslate in the C API, which are plain ASCII characters and the
+ * Latin-1 characters of LMBCS group 1 (code page 850). Since group 1 is the default optimization
+ * group of Notes, these characters are written without group byte.<br>
+ * <br>
+ * Line breaks are converted according to the {@link LineBreakConversion} while the string
+ * is being encoded, so there is no need to split it into lines first.
+ *
+ * @author Karsten Lehmann
+ */
+public class LMBCSEncoder {
+	/**
+	 * LMBCS group 1 bytes for the characters U+00A0 to U+00FF, 0 for characters that we let OSTranslate
+	 * convert (characters that are not part of code page 850 or that are also available in other LMBCS groups)
+	 */
+	private static final byte[] LATIN1_TO_GROUP1 = new byte[0x60];
+
+	static {
+		char[] excludedChars = new char[] {
+				'\u00a7', '\u00a8', '\u00b0', '\u00b1', '\u00b4', '\u00b6', '\u00d7', '\u00f7'
+		};
+
+		for (int i=0; i<LMBCSDecoder.GROUP1_TO_UNICODE.length; i++) {
+			char c = LMBCSDecoder.GROUP1_TO_UNICODE[i];
+			if (c >= 0xA0 && c <= 0xFF) {
+				boolean isExcluded = false;
+				for (char currExcludedChar : excludedChars) {
+					if (c == currExcludedChar) {
+						isExcluded = true;
+						break;
+					}
+				}
+				if (!isExcluded) {
+					LATIN1_TO_GROUP1[c - 0xA0] = (byte) ((0x80 + i) & 0xff);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the number of bytes required to store the string in LMBCS format
+	 *
+	 * @param str string
+	 * @param lineBreakConversion how to convert linebreaks in the string
+	 * @return number of bytes (without null terminator) or -1 if the string contains characters that need to be converted via OSTranslate
+	 */
+	public static int getEncodedLength(String str, LineBreakConversion lineBreakConversion) {
+		return encode(str, lineBreakConversion, null);
+	}
+
+	/**
+	 * Encodes the string in LMBCS format and writes the result to the target buffer
+	 * starting at its current position.
+	 *
+	 * @param str string
+	 * @param lineBreakConversion how to convert linebreaks in the string
+	 * @param target target buffer or null to just compute the length
+	 * @return number of bytes written or -1 if the string contains characters that need to be converted via OSTranslate; in this case the buffer position is not changed
+	 */
+	public static int encode(String str, LineBreakConversion lineBreakConversion, ByteBuffer target) {
+		int startPos = target==null ? 0 : target.position();
+		int len = str.length();
+		int bytesWritten = 0;
+
+		for (int i=0; i<len; i++) {
+			char c = str.charAt(i);
+			byte b;
+
+			if (c >= 0x20 && c < 0x80) {
+				b = (byte) c;
+			}
+			else if (c >= 0xA0 && c <= 0xFF) {
+				b = LATIN1_TO_GROUP1[c - 0xA0];
+				if (b==0) {
+					if (target!=null) {
+						target.position(startPos);
+					}
+					return -1;
+				}
+			}
+			else if (c == '\n') {
+				if (lineBreakConversion == LineBreakConversion.NULL) {
+					b = 0;
+				}
+				else {
+					b = '\n';
+				}
+			}
+			else if (c == '\r') {
+				if (lineBreakConversion != LineBreakConversion.ORIGINAL && (i+1)<len && str.charAt(i+1)=='\n') {
+					//\r\n is converted to a single line break character
+					continue;
+				}
+				b = '\r';
+			}
+			else if (c == '\t') {
+				b = '\t';
+			}
+			else {
+				if (target!=null) {
+					target.position(startPos);
+				}
+				return -1;
+			}
+
+			if (target!=null) {
+				target.put(b);
+			}
+			bytesWritten++;
+		}
+
+		return bytesWritten;
+	}
+}
@@ -1,5 +1,7 @@
 package com.mindoo.domino.jna.internal;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -19,6 +21,7 @@ import com.mindoo.domino.jna.NotesDateRange;
 import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesItem;
 import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.NotesViewEntryCursor;
 import com.mindoo.domino.jna.NotesViewEntryData;
 import com.mindoo.domino.jna.NotesViewLookupResultData;
 import com.mindoo.domino.jna.constants.ReadMask;
@@ -285,17 +288,40 @@ public class NotesLookupResultBufferDecoder {
 					int startBufferPosOfSummaryValues = bufferPos;
 
 					Pointer itemValueTablePtr = bufferPtr.share(bufferPos);
+					//values are decoded below; numbers and date/time values are not boxed
 					ItemValueTableDataImpl itemTableData = (ItemValueTableDataImpl) decodeItemValueTable(itemValueTablePtr,
-							convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues);
+							convertStringsLazily, convertNotesTimeDateToCalendar, false);
 
 					//move to the end of the buffer
 					bufferPos = startBufferPosOfSummaryValues + itemTableData.getTotalBufferLength();
 
-					Object[] decodedItemValues = new Object[itemTableData.getItemsCount()];
-					for (int c=0; c<itemTableData.getItemsCount(); c++) {
-						decodedItemValues[c] = itemTableData.getItemValue(c);
+					int itemsCount = itemTableData.getItemsCount();
+					int[] itemDataTypes = itemTableData.m_itemDataTypes;
+					Object[] decodedItemValues = new Object[itemsCount];
+					long[] primitiveItemValues = null;
+					
+					for (int c=0; c<itemsCount; c++) {
+						if (itemDataTypes[c] == NotesItem.TYPE_NUMBER) {
+							if (primitiveItemValues==null) {
+								primitiveItemValues = new long[itemsCount];
+							}
+							primitiveItemValues[c] = Double.doubleToRawLongBits(itemTableData.m_itemValueBufferPointers[c].getDouble(0));
+						}
+						else if (itemDataTypes[c] == NotesItem.TYPE_TIME && !convertNotesTimeDateToCalendar) {
+							if (primitiveItemValues==null) {
+								primitiveItemValues = new long[itemsCount];
+							}
+							Pointer timeDatePtr = itemTableData.m_itemValueBufferPointers[c];
+							primitiveItemValues[c] = (timeDatePtr.getInt(0) & 0xffffffffL) | (((long) timeDatePtr.getInt(4)) << 32);
+						}
+						else {
+							decodedItemValues[c] = itemTableData.getItemValue(c);
+						}
 					}
 					newData.setColumnValues(decodedItemValues);
+					if (primitiveItemValues!=null) {
+						newData.setPrimitiveColumnValues(itemDataTypes, primitiveItemValues);
+					}
 					//add some statistical information to the data object to be able to see which columns "pollute" the summary buffer
 					newData.setColumnValueSizesInBytes(itemTableData.getItemValueLengthsInBytes());
 				}
@@ -321,6 +347,93 @@ public class NotesLookupResultBufferDecoder {
 		return new NotesViewLookupResultData(collectionStats, viewEntries, numEntriesSkipped, numEntriesReturned, signalFlags, pos, indexModifiedSequenceNo, retDiffTime);
 	}
 
+	/**
+	 * Copies the buffer into a {@link ByteBuffer} and returns a cursor that decodes the view entries on demand,
+	 * 32 bit mode
+	 * 
+	 * @param parentCollection parent collection
+	 * @param bufferHandle buffer handle
+	 * @param bufferLength buffer length
+	 * @param numEntriesSkipped entries skipped during collection scan
+	 * @param numEntriesReturned entries read during collection scan
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param signalFlags signal flags returned by NIFReadEntries, e.g. whether we have more data to read
+	 * @param indexModifiedSequenceNo index modified sequence no
+	 * @param retDiffTime only set in {@link NotesCollection#readEntriesExtAsCursor(com.mindoo.domino.jna.NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * @return cursor
+	 */
+	public static NotesViewEntryCursor b32_decodeCollectionLookupResultBufferAsCursor(NotesCollection parentCollection, int bufferHandle,
+			int bufferLength, int numEntriesSkipped, int numEntriesReturned, EnumSet<ReadMask> returnMask, short signalFlags,
+			int indexModifiedSequenceNo, NotesTimeDate retDiffTime) {
+		return b64_decodeCollectionLookupResultBufferAsCursor(parentCollection, bufferHandle, bufferLength, numEntriesSkipped,
+				numEntriesReturned, returnMask, signalFlags, indexModifiedSequenceNo, retDiffTime);
+	}
+	
+	/**
+	 * Copies the buffer into a {@link ByteBuffer} and returns a cursor that decodes the view entries on demand,
+	 * 64 bit mode.<br>
+	 * <br>
+	 * The whole buffer is copied with a single read operation and freed afterwards, so in contrast
+	 * to {@link #b64_decodeCollectionLookupResultBuffer(NotesCollection, long, int, int, EnumSet, short, String, int, NotesTimeDate, boolean, boolean, String)}
+	 * no objects are created per entry.
+	 * 
+	 * @param parentCollection parent collection
+	 * @param bufferHandle buffer handle
+	 * @param bufferLength buffer length
+	 * @param numEntriesSkipped entries skipped during collection scan
+	 * @param numEntriesReturned entries read during collection scan
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param signalFlags signal flags returned by NIFReadEntries, e.g. whether we have more data to read
+	 * @param indexModifiedSequenceNo index modified sequence no
+	 * @param retDiffTime only set in {@link NotesCollection#readEntriesExtAsCursor(com.mindoo.domino.jna.NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * @return cursor
+	 */
+	public static NotesViewEntryCursor b64_decodeCollectionLookupResultBufferAsCursor(NotesCollection parentCollection, long bufferHandle,
+			int bufferLength, int numEntriesSkipped, int numEntriesReturned, EnumSet<ReadMask> returnMask, short signalFlags,
+			int indexModifiedSequenceNo, NotesTimeDate retDiffTime) {
+		
+		Pointer bufferPtr;
+		if (PlatformUtils.is64Bit()) {
+			bufferPtr = Mem64.OSLockObject(bufferHandle);
+		}
+		else {
+			bufferPtr = Mem32.OSLockObject((int) bufferHandle);
+		}
+		
+		byte[] data = new byte[bufferLength];
+		NotesCollectionStats collectionStats = null;
+		int entriesStartPos = 0;
+		
+		try {
+			bufferPtr.read(0, data, 0, bufferLength);
+			
+			if (returnMask.contains(ReadMask.COLLECTIONSTATS)) {
+				NotesCollectionStatsStruct tmpStats = NotesCollectionStatsStruct.newInstance(bufferPtr);
+				tmpStats.read();
+				
+				collectionStats = new NotesCollectionStats(tmpStats.TopLevelEntries, tmpStats.LastModifiedTime);
+				
+				entriesStartPos = tmpStats.size();
+			}
+		}
+		finally {
+			if (PlatformUtils.is64Bit()) {
+				Mem64.OSUnlockObject(bufferHandle);
+				short result = Mem64.OSMemFree(bufferHandle);
+				NotesErrorUtils.checkResult(result);
+			}
+			else {
+				Mem32.OSUnlockObject((int)bufferHandle);
+				short result = Mem32.OSMemFree((int)bufferHandle);
+				NotesErrorUtils.checkResult(result);
+			}
+		}
+		
+		ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+		return new NotesViewEntryCursor(parentCollection, data, buf, entriesStartPos, returnMask, collectionStats,
+				numEntriesSkipped, numEntriesReturned, signalFlags, indexModifiedSequenceNo, retDiffTime);
+	}
+	
 	/**
 	 * Produces an ITEM_TABLE by decoding an ITEM_VALUE_TABLE structure, which contains an ordered list of item values,
 	 * and adding an array of column names
@@ -549,6 +662,40 @@ public class NotesLookupResultBufferDecoder {
 		return data;
 	}
 
+	/**
+	 * Copies the item names, data types and values of an item table to the Java heap,
+	 * e.g. to use the data of a summary buffer after the search callback has returned
+	 * and the buffer has been freed.<br>
+	 * Values of data types that are not supported by the decoder are copied as null.
+	 * 
+	 * @param data item table data, must not have been freed yet
+	 * @return copy that does not reference the buffer
+	 */
+	public static IItemTableData copyItemTable(IItemTableData data) {
+		int itemsCount = data.getItemsCount();
+		
+		ItemTableDataImpl copy = new ItemTableDataImpl(false);
+		copy.m_itemNames = data.getItemNames().clone();
+		copy.m_itemsCount = itemsCount;
+		copy.m_itemDataTypes = new int[itemsCount];
+		copy.m_itemValues = new Object[itemsCount];
+		
+		boolean preferNotesTimeDates = data.isPreferNotesTimeDates();
+		//copy the values as they are stored internally, without conversion to Calendar
+		data.setPreferNotesTimeDates(true);
+		try {
+			for (int i=0; i<itemsCount; i++) {
+				copy.m_itemDataTypes[i] = data.getItemDataType(i);
+				copy.m_itemValues[i] = data.getItemValue(i);
+			}
+		}
+		finally {
+			data.setPreferNotesTimeDates(preferNotesTimeDates);
+		}
+		copy.setPreferNotesTimeDates(preferNotesTimeDates);
+		return copy;
+	}
+
 	/**
 	 * Container class for the data parsed from an ITEM_VALUE_TABLE structure
 	 * 
@@ -592,7 +739,8 @@ public class NotesLookupResultBufferDecoder {
 		public Object getItemValue(int index) {
 			int type = getItemDataType(index);
 			
-			if (m_itemValues[index] == null) {
+			//copies created via copyItemTable do not have buffer pointers
+			if (m_itemValues[index] == null && m_itemValueBufferPointers != null) {
 				if (isFreed())
 					throw new NotesError(0, "Buffer already freed");
 				
@@ -708,7 +856,7 @@ public class NotesLookupResultBufferDecoder {
 		private TypedItemAccess m_typedItems;
 		
 		public ItemTableDataImpl(String[] itemNames, ItemValueTableDataImpl valueTable) {
-			super(valueTable.m_convertStringsLazily);
+			this(valueTable.m_convertStringsLazily);
 			
 			m_itemNames = itemNames;
 			
@@ -720,6 +868,10 @@ public class NotesLookupResultBufferDecoder {
 			m_totalBufferLength = valueTable.m_totalBufferLength;
 			m_itemsCount = valueTable.m_itemsCount;
 			m_itemValueLengthsInBytes = valueTable.m_itemValueLengthsInBytes;
+		}
+		
+		public ItemTableDataImpl(boolean convertStringsLazily) {
+			super(convertStringsLazily);
 			
 			m_typedItems = new TypedItemAccess() {
 				
@@ -730,10 +882,6 @@ public class NotesLookupResultBufferDecoder {
 			};
 		}
 		
-		public ItemTableDataImpl(boolean convertStringsLazily) {
-			super(convertStringsLazily);
-		}
-		
 		@Override
 		public boolean has(String itemName) {
 			String itemNameLC = itemName.toLowerCase(Locale.ENGLISH);
@@ -1,14 +1,6 @@
 package com.mindoo.domino.jna.internal;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.Writer;
 import java.lang.reflect.Method;
-import java.nio.channels.FileChannel;
-import java.nio.charset.Charset;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -16,6 +8,7 @@ import java.security.PrivilegedExceptionAction;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.UnsupportedPlatformError;
@@ -31,8 +24,8 @@ import com.mindoo.domino.jna.internal.structs.NotesUniversalNoteIdStruct;
 import com.mindoo.domino.jna.internal.structs.ReplExtensionsStruct;
 import com.mindoo.domino.jna.internal.structs.ReplServStatsStruct;
 import com.mindoo.domino.jna.internal.structs.compoundtext.NotesCompoundStyleStruct;
+import com.mindoo.domino.jna.utils.NativeMethodMetrics;
 import com.mindoo.domino.jna.utils.PlatformUtils;
-import com.mindoo.domino.jna.utils.StringUtil;
 import com.sun.jna.Function;
 import com.sun.jna.Library;
 import com.sun.jna.Memory;
@@ -57,6 +50,8 @@ import net.sf.cglib.proxy.MethodProxy;
 public class NotesNativeAPI implements INotesNativeAPI {
 	private static volatile INotesNativeAPI m_instanceWithoutCrashLogging;
 	private static volatile INotesNativeAPI m_instanceWithCrashLogging;
+	/** API wrappers that record metrics by API class */
+	private static final Map<Class<?>,Object> m_instancesWithMetrics = new ConcurrentHashMap<Class<?>,Object>();
 	private static Class m_nativeClazz;
 	
 	private static int m_platformAlignment;
@@ -263,7 +258,7 @@ public class NotesNativeAPI implements INotesNativeAPI {
 			return m_instanceWithCrashLogging;
 		}
 		else {
-			return m_instanceWithoutCrashLogging;
+			return withMetricsIfRecording(INotesNativeAPI.class, m_instanceWithoutCrashLogging);
 		}
 	}
 
@@ -277,8 +272,8 @@ public class NotesNativeAPI implements INotesNativeAPI {
 
 
 	/**
-	 * {@link MethodInterceptor} that writes the caller stacktrace to a file before invoking
-	 * the wrapped methods in order to improve crash cause detection.
+	 * {@link MethodInterceptor} that records each native method invocation in the
+	 * {@link CrashBreadcrumbRing} in order to improve crash cause detection.
 	 * 
 	 * @author Karsten Lehmann
 	 *
@@ -286,107 +281,87 @@ public class NotesNativeAPI implements INotesNativeAPI {
 	 */
 	private static class MethodInterceptorWithStacktraceLogging<T> implements MethodInterceptor {
 		private final T original;
-		private boolean loggedFileLocation;
 		
 		public MethodInterceptorWithStacktraceLogging(T original) {
 			this.original = original;
 		}
 
 		public Object intercept(Object o, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
-			Exception e = new Exception();
-			e.fillInStackTrace();
-
-			File stFile = createStackTraceFile(e);
+			CrashBreadcrumbRing ring = CrashBreadcrumbRing.getInstance();
+			if (ring==null) {
+				return method.invoke(original, args);
+			}
+			
+			boolean recordMetrics = NativeMethodMetrics.isRecording();
+			long t0 = recordMetrics ? System.nanoTime() : 0;
+			int breadcrumbPos = ring.callStarted(method);
 			try {
 				return method.invoke(original, args);
 			}
 			finally {
-				if (stFile!=null)
-					deleteStackTraceFile(stFile);
+				ring.callCompleted(breadcrumbPos);
+				if (recordMetrics) {
+					NativeMethodMetrics.getInstance().record(method, System.nanoTime() - t0);
+				}
 			}
 		}
+	}
 
-		private void deleteStackTraceFile(final File stFile) {
-			AccessController.doPrivileged(new PrivilegedAction<Object>() {
+	/**
+	 * {@link MethodInterceptor} that measures the duration of each native method invocation
+	 * and records it in the {@link NativeMethodMetrics}.
+	 * 
+	 * @author Karsten Lehmann
+	 *
+	 * @param <T> class of wrapped API
+	 */
+	private static class MethodInterceptorWithMetrics<T> implements MethodInterceptor {
+		private final T original;
+		
+		public MethodInterceptorWithMetrics(T original) {
+			this.original = original;
+		}
 
-				@Override
-				public Object run() {
-					if (stFile.exists() && !stFile.delete()) {
-						stFile.deleteOnExit();
-					}
-					return null;
-				}
-			});
+		public Object intercept(Object o, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+			long t0 = System.nanoTime();
+			try {
+				return method.invoke(original, args);
+			}
+			finally {
+				NativeMethodMetrics.getInstance().record(method, System.nanoTime() - t0);
+			}
 		}
+	}
 
-		private File createStackTraceFile(final Exception e) {
-			return AccessController.doPrivileged(new PrivilegedAction<File>() {
+	/**
+	 * Wraps the specified API object to record call counts and durations of native method
+	 * invocations in the {@link NativeMethodMetrics}
+	 * 
+	 * @param api API
+	 * @return wrapped API
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T wrapWithMetrics(final Class<T> apiClazz, final T api) {
+
+		try {
+			return AccessController.doPrivileged(new PrivilegedExceptionAction<T>() {
 
 				@Override
-				public File run() {
-					String outDirPath = System.getProperty("dominojna.dumpdir");
-					if (StringUtil.isEmpty(outDirPath)) {
-						outDirPath = System.getProperty("java.io.tmpdir");
-					}
-					File outDir = new File(outDirPath);
-					if (!outDir.exists())
-						outDir.mkdirs();
-					
-					if (!loggedFileLocation) {
-						System.out.println("Writing stacktrace files in directory "+outDir.getAbsolutePath());
-						loggedFileLocation = true;
-					}
-					
-					File stFile = new File(outDir, "domino-jna-stack-"+Thread.currentThread().getId()+".txt");
-					if (stFile.exists()) {
-						if (!stFile.delete()) {
-							stFile.deleteOnExit();
-							return null;
-						}
-					}
-					FileOutputStream fOut=null;
-					Writer fWriter=null;
-					PrintWriter pWriter=null;
-					try {
-						fOut = new FileOutputStream(stFile);
-						fWriter = new OutputStreamWriter(fOut, Charset.forName("UTF-8"));
-						pWriter = new PrintWriter(fWriter);
-						e.printStackTrace(pWriter);
-						pWriter.flush();
-						FileChannel channel = fOut.getChannel();
-						channel.force(true);
-						return stFile;
-					} catch (IOException e1) {
-						e.printStackTrace();
-						return null;
-					}
-					finally {
-						if (fOut!=null) {
-							try {
-								fOut.close();
-							} catch (IOException e) {
-								e.printStackTrace();
-							}
-						}
-						if (pWriter!=null) {
-							pWriter.close();
-						}
-						if (fWriter!=null) {
-							try {
-								fWriter.close();
-							} catch (IOException e) {
-								e.printStackTrace();
-							}
-						}
-					}
+				public T run() throws Exception {
+					MethodInterceptor handler = new MethodInterceptorWithMetrics<T>(api);
+					T wrapperWithMetrics = (T) Enhancer.create(apiClazz, handler);
+					return wrapperWithMetrics;
 				}
 			});
+		} catch (PrivilegedActionException e) {
+			e.printStackTrace();
+			return api;
 		}
 	}
 
 	/**
-	 * Wraps the specified API object to dump caller stacktraces right before invoking
-	 * native methods
+	 * Wraps the specified API object to record native method invocations in the
+	 * {@link CrashBreadcrumbRing}
 	 * 
 	 * @param api API
 	 * @return wrapped API
@@ -408,6 +383,27 @@ public class NotesNativeAPI implements INotesNativeAPI {
 			return api;
 		}
 	}
+
+	/**
+	 * Returns the API wrapped with {@link #wrapWithMetrics(Class, Object)} while
+	 * {@link NativeMethodMetrics#isRecording()} is active, otherwise the API itself.
+	 * The wrapper is created once per API class.
+	 * 
+	 * @param apiClazz API class
+	 * @param api API
+	 * @return API to use for native calls
+	 */
+	static <T> T withMetricsIfRecording(Class<T> apiClazz, T api) {
+		if (!NativeMethodMetrics.isRecording()) {
+			return api;
+		}
+		Object wrapper = m_instancesWithMetrics.get(apiClazz);
+		if (wrapper==null) {
+			wrapper = wrapWithMetrics(apiClazz, api);
+			m_instancesWithMetrics.put(apiClazz, wrapper);
+		}
+		return apiClazz.cast(wrapper);
+	}
 	
 	public native short NotesInitExtended(int argc, Memory argvPtr);
 	public native void NotesTerm();
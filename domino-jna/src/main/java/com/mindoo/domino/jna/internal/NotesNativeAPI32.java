@@ -77,7 +77,7 @@ public class NotesNativeAPI32 implements INotesNativeAPI32 {
 			return m_instanceWithCrashLogging;
 		}
 		else {
-			return m_instanceWithoutCrashLogging;
+			return NotesNativeAPI.withMetricsIfRecording(INotesNativeAPI32.class, m_instanceWithoutCrashLogging);
 		}
 	}
 	
@@ -100,7 +100,7 @@ public class NotesNativeAPI32V1000 implements INotesNativeAPI32V1000 {
 			return m_instanceWithCrashLogging;
 		}
 		else {
-			return m_instanceWithoutCrashLogging;
+			return NotesNativeAPI.withMetricsIfRecording(INotesNativeAPI32V1000.class, m_instanceWithoutCrashLogging);
 		}
 	}
 }
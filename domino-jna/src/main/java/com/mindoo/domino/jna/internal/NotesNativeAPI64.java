@@ -77,7 +77,7 @@ public class NotesNativeAPI64 implements INotesNativeAPI64 {
 			return m_instanceWithCrashLogging;
 		}
 		else {
-			return m_instanceWithoutCrashLogging;
+			return NotesNativeAPI.withMetricsIfRecording(INotesNativeAPI64.class, m_instanceWithoutCrashLogging);
 		}
 	}
 	
@@ -100,7 +100,7 @@ public class NotesNativeAPI64V1000 implements INotesNativeAPI64V1000 {
 			return m_instanceWithCrashLogging;
 		}
 		else {
-			return m_instanceWithoutCrashLogging;
+			return NotesNativeAPI.withMetricsIfRecording(INotesNativeAPI64V1000.class, m_instanceWithoutCrashLogging);
 		}
 	}
 }
@@ -89,7 +89,7 @@ public class NotesNativeAPIV901 implements INotesNativeAPIV901 {
 			return m_instanceWithCrashLogging;
 		}
 		else {
-			return m_instanceWithoutCrashLogging;
+			return NotesNativeAPI.withMetricsIfRecording(INotesNativeAPIV901.class, m_instanceWithoutCrashLogging);
 		}
 	}
 }
@@ -1,7 +1,6 @@
 package com.mindoo.domino.jna.mq;
 
 import java.nio.ByteBuffer;
-import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 
@@ -10,10 +9,10 @@ import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.IRecyclableNotesObject;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.CallbackPool;
 import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
 import com.mindoo.domino.jna.internal.NotesConstants;
-import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.mq.MessageQueue.IMQCallback.Action;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.mindoo.domino.jna.utils.PlatformUtils;
@@ -198,67 +197,37 @@ public class MessageQueue implements IRecyclableNotesObject {
 			throw new IllegalArgumentException("Max size for the buffer is "+NotesConstants.MQ_MAX_MSGSIZE+" bytes. You specified one with "+length+" bytes.");
 		}
 
-		final NotesCallbacks.MQScanCallback cCallback;
-		if (PlatformUtils.isWin32()) {
-			cCallback = new Win32NotesCallbacks.MQScanCallbackWin32() {
+		final NotesCallbacks.MQScanCallback cCallback = CallbackPool.MQSCAN.acquire(new NotesCallbacks.MQScanCallback() {
 
-				@Override
-				public short invoke(Pointer pBuffer, short length, short priority, Pointer ctx) {
-					if (callback==null) {
-						return INotesErrorConstants.ERR_MQSCAN_DEQUEUE;
-					}
-					ByteBuffer byteBuf = pBuffer.getByteBuffer(0, length & 0xffff);
-					ByteBuffer roByteBuf = byteBuf.asReadOnlyBuffer();
-
-					Action action = callback.dataReceived(roByteBuf, priority & 0xffff);
-					switch (action) {
-					case Continue:
-						return 0;
-					case Abort:
-						return INotesErrorConstants.ERR_MQSCAN_ABORT;
-					case Dequeue:
-						return INotesErrorConstants.ERR_MQSCAN_DEQUEUE;
-					case Delete:
-						return INotesErrorConstants.ERR_MQSCAN_DELETE;
-					}
-
-					return 0;
+			@Override
+			public short invoke(Pointer pBuffer, short length, short priority, Pointer ctx) {
+				if (callback==null) {
+					return INotesErrorConstants.ERR_MQSCAN_DEQUEUE;
 				}
-			};
-		}
-		else {
-			cCallback = new NotesCallbacks.MQScanCallback() {
-
-				@Override
-				public short invoke(Pointer pBuffer, short length, short priority, Pointer ctx) {
-					if (callback==null) {
-						return INotesErrorConstants.ERR_MQSCAN_DEQUEUE;
-					}
-					ByteBuffer byteBuf = pBuffer.getByteBuffer(0, length & 0xffff);
-					ByteBuffer roByteBuf = byteBuf.asReadOnlyBuffer();
-
-					Action action = callback.dataReceived(roByteBuf, priority & 0xffff);
-					switch (action) {
-					case Continue:
-						return 0;
-					case Abort:
-						return INotesErrorConstants.ERR_MQSCAN_ABORT;
-					case Dequeue:
-						return INotesErrorConstants.ERR_MQSCAN_DEQUEUE;
-					case Delete:
-						return INotesErrorConstants.ERR_MQSCAN_DELETE;
-					}
+				ByteBuffer byteBuf = pBuffer.getByteBuffer(0, length & 0xffff);
+				ByteBuffer roByteBuf = byteBuf.asReadOnlyBuffer();
 
+				Action action = callback.dataReceived(roByteBuf, priority & 0xffff);
+				switch (action) {
+				case Continue:
 					return 0;
+				case Abort:
+					return INotesErrorConstants.ERR_MQSCAN_ABORT;
+				case Dequeue:
+					return INotesErrorConstants.ERR_MQSCAN_DEQUEUE;
+				case Delete:
+					return INotesErrorConstants.ERR_MQSCAN_DELETE;
 				}
-			};
-		}
+
+				return 0;
+			}
+		});
 
 		final ShortByReference retMsgLength = new ShortByReference();
 		short result;
 		try {
 			//AccessController call required to prevent SecurityException when running in XPages
-			result = AccessController.doPrivileged(new PrivilegedExceptionAction<Short>() {
+			result = CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Short>() {
 
 				@Override
 				public Short run() throws Exception {
@@ -271,6 +240,9 @@ public class MessageQueue implements IRecyclableNotesObject {
 			else
 				throw new NotesError(0, "Error scanning message queue", e);
 		}
+		finally {
+			CallbackPool.MQSCAN.release(cCallback);
+		}
 		NotesErrorUtils.checkResult(result);
 
 		return retMsgLength.getValue() & 0xffff;
@@ -0,0 +1,210 @@
+package com.mindoo.domino.jna.sync;
+
+import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
+import com.mindoo.domino.jna.sync.ISyncTarget.DataToRead;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
+
+/**
+ * {@link SyncChangeProcessor} that decouples the database search from the
+ * sync target: changes are put into bounded queues and written to the target
+ * by a number of writer threads.<br>
+ * <br>
+ * Each writer thread has its own queue and changes are assigned by UNID,
+ * so changes of the same note are written in the order they have been found.
+ * When a queue is full, the search thread waits (backpressure).
+ *
+ * @author Karsten Lehmann
+ *
+ * @param <CTX> sync context type
+ */
+class PipelinedSyncChangeProcessor<CTX> extends SyncChangeProcessor<CTX> {
+	/** marker to tell a writer thread that there are no more changes */
+	private static final SyncChange END_OF_CHANGES = new SyncChange(null, null, 0, null, null);
+
+	private BlockingQueue<SyncChange>[] m_queues;
+	private ExecutorService m_executor;
+	private AtomicReference<Throwable> m_error = new AtomicReference<Throwable>();
+
+	@SuppressWarnings("unchecked")
+	public PipelinedSyncChangeProcessor(NotesDatabase dbSource, ISyncTarget<CTX> target, CTX ctx,
+			EnumSet<DataToRead> dataToRead, TargetResultCounter targetResults, int writerThreadCount, int queueSize) {
+		super(dbSource, target, ctx, dataToRead, targetResults);
+
+		int queueSizePerWriter = Math.max(1, queueSize / writerThreadCount);
+		m_queues = new BlockingQueue[writerThreadCount];
+		for (int i=0; i<writerThreadCount; i++) {
+			m_queues[i] = new ArrayBlockingQueue<SyncChange>(queueSizePerWriter);
+		}
+
+		final AtomicInteger threadNo = new AtomicInteger();
+		m_executor = Executors.newFixedThreadPool(writerThreadCount, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SyncUtil-Writer-"+threadNo.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		for (int i=0; i<writerThreadCount; i++) {
+			final BlockingQueue<SyncChange> queue = m_queues[i];
+
+			m_executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						initWriterThread();
+					}
+					catch (Throwable t) {
+						m_error.compareAndSet(null, t);
+						return;
+					}
+					
+					try {
+						NotesGC.runWithAutoGC(new Callable<Object>() {
+
+							@Override
+							public Object call() throws Exception {
+								//notes need to be opened with a database handle of this thread
+								NotesDatabase db = isReadingNotes() ? m_dbSource.reopenDatabase() : null;
+
+								while (true) {
+									SyncChange change = queue.take();
+									if (change==END_OF_CHANGES || m_error.get()!=null) {
+										break;
+									}
+									apply(db, change);
+								}
+								return null;
+							}
+						});
+					}
+					catch (Throwable t) {
+						m_error.compareAndSet(null, t);
+					}
+					finally {
+						termWriterThread();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Initializes a writer thread for Domino C API calls
+	 */
+	void initWriterThread() {
+		NotesInitUtils.notesInitThread();
+	}
+
+	/**
+	 * Terminates a writer thread for Domino C API calls
+	 */
+	void termWriterThread() {
+		NotesInitUtils.notesTermThread();
+	}
+
+	@Override
+	public boolean process(SyncChange change) {
+		IItemTableData summaryBufferData = change.getSummaryBufferData();
+		if (summaryBufferData!=null) {
+			//the summary buffer is freed when the search callback returns, so the
+			//writer threads get a copy of the item names, types and values
+			change = new SyncChange(change.getType(), change.getOID(), change.getNoteId(), change.getUNID(),
+					NotesLookupResultBufferDecoder.copyItemTable(summaryBufferData));
+		}
+
+		return enqueue(m_queues[getQueueIndex(change.getUNID())], change);
+	}
+
+	/**
+	 * Returns the writer queue for a UNID, so that all changes of a note are written
+	 * by the same writer thread
+	 *
+	 * @param unid UNID
+	 * @return queue index
+	 */
+	int getQueueIndex(String unid) {
+		return ((unid==null ? 0 : unid.hashCode()) & Integer.MAX_VALUE) % m_queues.length;
+	}
+
+	/**
+	 * Adds a change to a writer queue, waiting while the queue is full
+	 *
+	 * @param queue queue
+	 * @param change change
+	 * @return true if successful, false if a writer thread failed
+	 */
+	private boolean enqueue(BlockingQueue<SyncChange> queue, SyncChange change) {
+		try {
+			while (!queue.offer(change, 100, TimeUnit.MILLISECONDS)) {
+				if (m_error.get()!=null) {
+					return false;
+				}
+			}
+			return m_error.get()==null;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for the sync target writer threads", e);
+		}
+	}
+
+	@Override
+	public void finish() {
+		for (BlockingQueue<SyncChange> currQueue : m_queues) {
+			if (!enqueue(currQueue, END_OF_CHANGES)) {
+				break;
+			}
+		}
+
+		m_executor.shutdown();
+		try {
+			while (!m_executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				if (m_error.get()!=null) {
+					//unblock writers that wait for more changes
+					m_executor.shutdownNow();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for the sync target writer threads", e);
+		}
+
+		Throwable t = m_error.get();
+		if (t!=null) {
+			throw new NotesError(0, "Error writing changes to the sync target", t);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (!m_executor.isTerminated()) {
+			m_executor.shutdownNow();
+			try {
+				m_executor.awaitTermination(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.mindoo.domino.jna.sync;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.constants.OpenNote;
+import com.mindoo.domino.jna.sync.ISyncTarget.DataToRead;
+import com.mindoo.domino.jna.sync.ISyncTarget.TargetResult;
+
+/**
+ * Applies the changes found by the database search of {@link SyncUtil} to
+ * the {@link ISyncTarget}. This implementation writes the changes directly
+ * in the search thread.
+ *
+ * @author Karsten Lehmann
+ *
+ * @param <CTX> sync context type
+ */
+class SyncChangeProcessor<CTX> {
+	protected final NotesDatabase m_dbSource;
+	protected final ISyncTarget<CTX> m_target;
+	protected final CTX m_ctx;
+	protected final EnumSet<DataToRead> m_dataToRead;
+	protected final TargetResultCounter m_targetResults;
+
+	/**
+	 * Type of change found by the database search
+	 */
+	static enum ChangeType {MatchingFormula, NotMatchingFormula, Deleted}
+
+	/**
+	 * Data of a single note change
+	 */
+	static class SyncChange {
+		private ChangeType m_type;
+		private NotesOriginatorIdData m_oid;
+		private int m_noteId;
+		private String m_unid;
+		private IItemTableData m_summaryBufferData;
+
+		public SyncChange(ChangeType type, NotesOriginatorIdData oid, int noteId, String unid, IItemTableData summaryBufferData) {
+			m_type = type;
+			m_oid = oid;
+			m_noteId = noteId;
+			m_unid = unid;
+			m_summaryBufferData = summaryBufferData;
+		}
+
+		public ChangeType getType() {
+			return m_type;
+		}
+
+		public NotesOriginatorIdData getOID() {
+			return m_oid;
+		}
+
+		public int getNoteId() {
+			return m_noteId;
+		}
+
+		public String getUNID() {
+			return m_unid;
+		}
+
+		public IItemTableData getSummaryBufferData() {
+			return m_summaryBufferData;
+		}
+	}
+
+	/**
+	 * Thread-safe counter for the {@link TargetResult} values returned by the sync target
+	 */
+	static class TargetResultCounter {
+		private AtomicInteger m_added = new AtomicInteger();
+		private AtomicInteger m_updated = new AtomicInteger();
+		private AtomicInteger m_removed = new AtomicInteger();
+
+		public void count(TargetResult result) {
+			if (result==TargetResult.Added)
+				m_added.incrementAndGet();
+			else if (result==TargetResult.Removed)
+				m_removed.incrementAndGet();
+			else if (result==TargetResult.Updated)
+				m_updated.incrementAndGet();
+		}
+
+		public int getAdded() {
+			return m_added.get();
+		}
+
+		public int getUpdated() {
+			return m_updated.get();
+		}
+
+		public int getRemoved() {
+			return m_removed.get();
+		}
+	}
+
+	public SyncChangeProcessor(NotesDatabase dbSource, ISyncTarget<CTX> target, CTX ctx, EnumSet<DataToRead> dataToRead,
+			TargetResultCounter targetResults) {
+		m_dbSource = dbSource;
+		m_target = target;
+		m_ctx = ctx;
+		m_dataToRead = dataToRead;
+		m_targetResults = targetResults;
+	}
+
+	/**
+	 * Checks if we need to open the changed notes
+	 *
+	 * @return true if notes need to be opened
+	 */
+	protected boolean isReadingNotes() {
+		return m_dataToRead.contains(DataToRead.NoteWithAllItems) || m_dataToRead.contains(DataToRead.NoteWithSummaryItems);
+	}
+
+	/**
+	 * Method is called from the search callback with a change to process
+	 *
+	 * @param change change
+	 * @return true to continue the search, false to stop it
+	 */
+	public boolean process(SyncChange change) {
+		apply(m_dbSource, change);
+		return true;
+	}
+
+	/**
+	 * Writes a change to the sync target
+	 *
+	 * @param db database to open notes
+	 * @param change change
+	 */
+	protected void apply(NotesDatabase db, SyncChange change) {
+		TargetResult tResult;
+
+		if (change.getType()==ChangeType.MatchingFormula) {
+			NotesNote note = null;
+			if (m_dataToRead.contains(DataToRead.NoteWithAllItems)) {
+				try {
+					note = db.openNoteById(change.getNoteId());
+				}
+				catch (Exception e) {
+					m_target.log(Level.WARNING, "Error loading document with note id "+change.getNoteId()+" and UNID "+change.getUNID()+". Seems to have been deleted in the meantime and gets ignored.", e);
+					return;
+				}
+			}
+			else if (m_dataToRead.contains(DataToRead.NoteWithSummaryItems)) {
+				try {
+					note = db.openNoteById(change.getNoteId(), EnumSet.of(OpenNote.SUMMARY));
+				}
+				catch (Exception e) {
+					m_target.log(Level.WARNING, "Error loading document with note id "+change.getNoteId()+" and UNID "+change.getUNID()+". Seems to have been deleted in the meantime and gets ignored.", e);
+					return;
+				}
+			}
+
+			try {
+				tResult = m_target.noteChangedMatchingFormula(m_ctx, change.getOID(), change.getSummaryBufferData(), note);
+			}
+			finally {
+				if (note!=null) {
+					note.recycle();
+				}
+			}
+		}
+		else if (change.getType()==ChangeType.NotMatchingFormula) {
+			tResult = m_target.noteChangedNotMatchingFormula(m_ctx, change.getOID());
+		}
+		else {
+			tResult = m_target.noteDeleted(m_ctx, change.getOID());
+		}
+
+		m_targetResults.count(tResult);
+	}
+
+	/**
+	 * Method is called when the search is done and waits until all changes
+	 * have been written
+	 */
+	public void finish() {
+		//
+	}
+
+	/**
+	 * Releases resources, called after {@link #finish()} or when the search failed
+	 */
+	public void close() {
+		//
+	}
+}
@@ -20,7 +20,6 @@ import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
 import com.mindoo.domino.jna.NotesSearch.SearchCallback;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.constants.NoteClass;
-import com.mindoo.domino.jna.constants.OpenNote;
 import com.mindoo.domino.jna.constants.Search;
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.sync.ISyncTarget.DataToRead;
@@ -84,6 +83,41 @@ public class SyncUtil {
 	 * @param <CTX> sync context type
 	 */
 	public static <CTX> SyncResult sync(final NotesDatabase dbSource, String selectionFormula, final ISyncTarget<CTX> target, EnumSet<SyncSetting> settings) {
+		return sync(dbSource, selectionFormula, target, settings, 0, 0);
+	}
+	
+	/**
+	 * Synchronizes a subset of a Domino database with a {@link ISyncTarget}.<br>
+	 * <br>
+	 * With a <code>writerThreadCount</code> greater than 0, the sync runs in pipelined mode:
+	 * the database search only copies the summary buffer data of changed notes to the Java heap and puts the
+	 * changes into a bounded queue, while the specified number of writer threads call the
+	 * {@link ISyncTarget} methods <code>noteChangedMatchingFormula</code>, <code>noteChangedNotMatchingFormula</code>
+	 * and <code>noteDeleted</code>. This way, slow targets do not block the search.
+	 * The search waits when the queue is full. Changes of the same note are always processed
+	 * by the same writer thread. Notes to be read as {@link NotesNote} are opened
+	 * by the writer threads.<br>
+	 * <br>
+	 * {@link ISyncTarget#endingSync(Object, String, String, NotesTimeDate)} is called after all writer
+	 * threads are done, so the new sync end date is only stored when the target contains all changes.
+	 * The target implementation needs to be thread-safe in pipelined mode.
+	 * 
+	 * @param dbSource source database
+	 * @param selectionFormula selection formula for content
+	 * @param target sync target
+	 * @param settings optional enum set of settings to control the sync process (e.g. to enforce a complete comparion between the database and the sync target, although we have a last sync end date) or null
+	 * @param writerThreadCount number of threads writing to the target or 0 to write in the search thread
+	 * @param queueSize maximum number of changes waiting to be written to the target in pipelined mode, e.g. 1000
+	 * @return result statistics
+	 * 
+	 * @param <CTX> sync context type
+	 */
+	public static <CTX> SyncResult sync(final NotesDatabase dbSource, String selectionFormula, final ISyncTarget<CTX> target, EnumSet<SyncSetting> settings,
+			int writerThreadCount, int queueSize) {
+		if (writerThreadCount>0 && queueSize<1) {
+			throw new IllegalArgumentException("Queue size must be greater than 0: "+queueSize);
+		}
+		
 		long t0=System.currentTimeMillis();
 		
 		if (settings==null)
@@ -283,9 +317,7 @@ public class SyncUtil {
 			Map<String,String> additionalComputedSummaryBufferEntries = target.getSummaryBufferItemsAndFormulas();
 			final LinkedHashMap<String,String> additionalComputedSummaryBufferEntriesSorted = additionalComputedSummaryBufferEntries==null ? null : new LinkedHashMap<String, String>(additionalComputedSummaryBufferEntries);
 			
-			final int[] addedToTarget = new int[1];
-			final int[] updatedInTarget = new int[1];
-			final int[] removedFromTarget = new int[1];
+			final SyncChangeProcessor.TargetResultCounter targetResults = new SyncChangeProcessor.TargetResultCounter();
 			
 			final int[] notesMatchingFormula = new int[1];
 			final int[] notesNotMatchingFormula = new int[1];
@@ -295,98 +327,62 @@ public class SyncUtil {
 				//purge entries from target, when they no longer match the changed formula
 				for (Entry<String,NotesOriginatorIdData> currEntry : purgeInTarget.entrySet()) {
 					TargetResult tResult = target.noteChangedNotMatchingFormula(ctx, currEntry.getValue());
-					if (tResult==TargetResult.Added)
-						addedToTarget[0]++;
-					else if (tResult==TargetResult.Removed)
-						removedFromTarget[0]++;
-					else if (tResult==TargetResult.Updated)
-						updatedInTarget[0]++;
+					targetResults.count(tResult);
 				}
 			}
 			
 			//the actual lookup and copy operation
 			if (!skipSearchAndCopy && (searchFilter==null || !searchFilter.isEmpty())) {
-				NotesTimeDate copyOpEndDate = NotesSearch.search(dbSource, searchFilter, selectionFormula, additionalComputedSummaryBufferEntriesSorted, "-", searchFlags, EnumSet.of(NoteClass.DOCUMENT),
-						sinceDateForSearch, new SearchCallback() {
-
-					@Override
-					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+				final SyncChangeProcessor<CTX> changeProcessor;
+				if (writerThreadCount>0) {
+					changeProcessor = new PipelinedSyncChangeProcessor<CTX>(dbSource, target, ctx, dataToRead, targetResults,
+							writerThreadCount, queueSize);
+				}
+				else {
+					changeProcessor = new SyncChangeProcessor<CTX>(dbSource, target, ctx, dataToRead, targetResults);
+				}
+				
+				NotesTimeDate copyOpEndDate;
+				try {
+					copyOpEndDate = NotesSearch.search(dbSource, searchFilter, selectionFormula, additionalComputedSummaryBufferEntriesSorted, "-", searchFlags, EnumSet.of(NoteClass.DOCUMENT),
+							sinceDateForSearch, new SearchCallback() {
 
-						NotesOriginatorIdData oidData = searchMatch.getOIDData();
-						int noteId = searchMatch.getNoteId();
-						String unid = searchMatch.getUNID();
-						
-						NotesNote note = null;
-						if (dataToRead.contains(DataToRead.NoteWithAllItems)) {
-							try {
-								note = dbSource.openNoteById(noteId);
-							}
-							catch (Exception e) {
-								target.log(Level.WARNING, "Error loading document with note id "+noteId+" and UNID "+unid+". Seems to have been deleted in the meantime and gets ignored.", e);
-								return Action.Continue;
-							}
-						}
-						else if (dataToRead.contains(DataToRead.NoteWithSummaryItems)) {
-							try {
-								note = dbSource.openNoteById(noteId, EnumSet.of(OpenNote.SUMMARY));
-							}
-							catch (Exception e) {
-								target.log(Level.WARNING, "Error loading document with note id "+noteId+" and UNID "+unid+". Seems to have been deleted in the meantime and gets ignored.", e);
-								return Action.Continue;
-							}
-						}
-						
-						TargetResult tResult = target.noteChangedMatchingFormula(ctx, oidData, summaryBufferData, note);
-						if (tResult==TargetResult.Added)
-							addedToTarget[0]++;
-						else if (tResult==TargetResult.Removed)
-							removedFromTarget[0]++;
-						else if (tResult==TargetResult.Updated)
-							updatedInTarget[0]++;
-						
-						notesMatchingFormula[0]++;
-						
-						if (note!=null) {
-							note.recycle();
+						@Override
+						public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+							notesMatchingFormula[0]++;
+							
+							boolean goOn = changeProcessor.process(new SyncChangeProcessor.SyncChange(SyncChangeProcessor.ChangeType.MatchingFormula,
+									searchMatch.getOIDData(), searchMatch.getNoteId(), searchMatch.getUNID(), summaryBufferData));
+							return goOn ? Action.Continue : Action.Stop;
 						}
 
-						return Action.Continue;
-					}
-
-					@Override
-					public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
-						
-						NotesOriginatorIdData oidData = searchMatch.getOIDData();
-						
-						TargetResult tResult = target.noteChangedNotMatchingFormula(ctx, oidData);
-						if (tResult==TargetResult.Added)
-							addedToTarget[0]++;
-						else if (tResult==TargetResult.Removed)
-							removedFromTarget[0]++;
-						else if (tResult==TargetResult.Updated)
-							updatedInTarget[0]++;
-						
-						notesNotMatchingFormula[0]++;
-						return Action.Continue;
-					}
+						@Override
+						public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+							notesNotMatchingFormula[0]++;
+							
+							boolean goOn = changeProcessor.process(new SyncChangeProcessor.SyncChange(SyncChangeProcessor.ChangeType.NotMatchingFormula,
+									searchMatch.getOIDData(), searchMatch.getNoteId(), searchMatch.getUNID(), null));
+							return goOn ? Action.Continue : Action.Stop;
+						}
 
-					@Override
-					public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
-						
-						NotesOriginatorIdData oidData = searchMatch.getOIDData();
-						
-						TargetResult tResult = target.noteDeleted(ctx, oidData);
-						if (tResult==TargetResult.Added)
-							addedToTarget[0]++;
-						else if (tResult==TargetResult.Removed)
-							removedFromTarget[0]++;
-						else if (tResult==TargetResult.Updated)
-							updatedInTarget[0]++;
-						
-						notesDeleted[0]++;
-						return Action.Continue;
-					}
-				});
+						@Override
+						public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+							notesDeleted[0]++;
+							
+							boolean goOn = changeProcessor.process(new SyncChangeProcessor.SyncChange(SyncChangeProcessor.ChangeType.Deleted,
+									searchMatch.getOIDData(), searchMatch.getNoteId(), searchMatch.getUNID(), null));
+							return goOn ? Action.Continue : Action.Stop;
+						}
+					});
+					
+					//wait until all changes have been written, so that we only store the new
+					//sync end date when the target contains all the data
+					changeProcessor.finish();
+				}
+				finally {
+					changeProcessor.close();
+				}
+				
 				if (startDateForNextSync==null) {
 					startDateForNextSync = copyOpEndDate;
 				}
@@ -396,7 +392,7 @@ public class SyncUtil {
 			
 			long t1=System.currentTimeMillis();
 			return new SyncResult((int) (t1-t0), isWipeReqired, selectionFormulaHasChanged, sinceDateForSearch, startDateForNextSync,
-					addedToTarget[0], updatedInTarget[0], removedFromTarget[0],
+					targetResults.getAdded(), targetResults.getUpdated(), targetResults.getRemoved(),
 					notesMatchingFormula[0], notesNotMatchingFormula[0], notesDeleted[0]);
 		}
 		catch (Throwable t) {
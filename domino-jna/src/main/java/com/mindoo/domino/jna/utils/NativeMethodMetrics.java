@@ -0,0 +1,402 @@
+package com.mindoo.domino.jna.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records call counts and latencies of native Domino C API methods, e.g. to find out
+ * how much time is spent in NIFReadEntries compared to NSFSearch.<br>
+ * <br>
+ * Recording is disabled by default. Enable it with {@link #setEnabled(boolean)}, via JMX
+ * or by setting the system property "dominojna.nativemetrics" to "true". The MBean is registered
+ * when the class is first used, e.g. on the first native API access. While enabled,
+ * the native API instances are wrapped with a proxy that measures each call; this works
+ * with both JNA modes (direct and classic).<br>
+ * <br>
+ * For each method (overloads are combined), we record the number of calls, the total
+ * time and a latency histogram with logarithmic buckets (about 12% precision), using
+ * striped counters to keep the overhead for concurrent callers low.
+ * The metrics can be read via {@link #getMethodMetrics()} or JMX with object name
+ * {@value #OBJECTNAME}.
+ *
+ * @author Karsten Lehmann
+ */
+public class NativeMethodMetrics implements NativeMethodMetricsMXBean {
+	public static final String OBJECTNAME = "com.mindoo.domino.jna:type=NativeMethodMetrics";
+
+	/** durations below this value get their own bucket */
+	private static final int LINEAR_BUCKETS = 16;
+	/** number of sub buckets per power of two */
+	private static final int SUBBUCKET_BITS = 3;
+	/** highest power of two with its own buckets (2^40 ns = ~18 minutes) */
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - 3) * (1 << SUBBUCKET_BITS);
+
+	private static final NativeMethodMetrics m_instance = new NativeMethodMetrics();
+	private static volatile boolean m_enabled = "true".equalsIgnoreCase(System.getProperty("dominojna.nativemetrics"));
+
+	static {
+		registerMBean();
+	}
+
+	/** stats by method name */
+	private final ConcurrentHashMap<String,MethodStats> m_statsByName = new ConcurrentHashMap<String,MethodStats>();
+	/** cache to avoid computing the method name for each call */
+	private final ConcurrentHashMap<Method,MethodStats> m_statsByMethod = new ConcurrentHashMap<Method,MethodStats>();
+
+	private NativeMethodMetrics() {
+	}
+
+	/**
+	 * Returns the metrics instance
+	 *
+	 * @return instance
+	 */
+	public static NativeMethodMetrics getInstance() {
+		return m_instance;
+	}
+
+	/**
+	 * Returns whether native method calls are recorded. Is checked for every native API access,
+	 * so we use a static method here.
+	 *
+	 * @return true if enabled
+	 */
+	public static boolean isRecording() {
+		return m_enabled;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return m_enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		m_enabled = enabled;
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server, so that recording can be enabled
+	 * via JMX. Errors are not thrown, because the class is loaded on the first native API access
+	 * and the metrics can still be used via {@link #getInstance()}
+	 */
+	private static void registerMBean() {
+		try {
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+			mbeanServer.registerMBean(m_instance, new ObjectName(OBJECTNAME));
+		}
+		catch (InstanceAlreadyExistsException e) {
+			//registered by another classloader
+		}
+		catch (Throwable t) {
+			//e.g. JMX not available or not permitted
+			t.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records a native method call
+	 *
+	 * @param method called method
+	 * @param durationNanos duration in nanoseconds
+	 */
+	public void record(Method method, long durationNanos) {
+		MethodStats stats = m_statsByMethod.get(method);
+		if (stats==null) {
+			String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+			stats = m_statsByName.get(name);
+			if (stats==null) {
+				MethodStats newStats = new MethodStats(name);
+				stats = m_statsByName.putIfAbsent(name, newStats);
+				if (stats==null) {
+					stats = newStats;
+				}
+			}
+			m_statsByMethod.put(method, stats);
+		}
+		stats.record(durationNanos);
+	}
+
+	@Override
+	public List<MethodMetrics> getMethodMetrics() {
+		List<MethodMetrics> metrics = new ArrayList<MethodMetrics>(m_statsByName.size());
+		for (MethodStats currStats : m_statsByName.values()) {
+			MethodMetrics currMetrics = currStats.snapshot();
+			if (currMetrics.getCallCount()>0) {
+				metrics.add(currMetrics);
+			}
+		}
+		Collections.sort(metrics, new Comparator<MethodMetrics>() {
+
+			@Override
+			public int compare(MethodMetrics o1, MethodMetrics o2) {
+				return Long.compare(o2.getTotalNanos(), o1.getTotalNanos());
+			}
+		});
+		return metrics;
+	}
+
+	/**
+	 * Returns the metrics of a single method
+	 *
+	 * @param methodName method name with simple interface name, e.g. "INotesNativeAPI64.NIFReadEntries"
+	 * @return metrics or null if the method has not been called
+	 */
+	public MethodMetrics getMethodMetrics(String methodName) {
+		MethodStats stats = m_statsByName.get(methodName);
+		return stats==null ? null : stats.snapshot();
+	}
+
+	@Override
+	public long getTotalCallCount() {
+		long count = 0;
+		for (MethodStats currStats : m_statsByName.values()) {
+			count += currStats.m_calls.sum();
+		}
+		return count;
+	}
+
+	@Override
+	public long getTotalNanos() {
+		long nanos = 0;
+		for (MethodStats currStats : m_statsByName.values()) {
+			nanos += currStats.m_totalNanos.sum();
+		}
+		return nanos;
+	}
+
+	@Override
+	public void reset() {
+		for (MethodStats currStats : m_statsByName.values()) {
+			currStats.reset();
+		}
+	}
+
+	/**
+	 * Computes the histogram bucket for a duration
+	 *
+	 * @param durationNanos duration
+	 * @return bucket index
+	 */
+	static int getBucket(long durationNanos) {
+		if (durationNanos < LINEAR_BUCKETS) {
+			return durationNanos<0 ? 0 : (int) durationNanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(durationNanos);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = (int) ((durationNanos >>> (exponent - SUBBUCKET_BITS)) & ((1 << SUBBUCKET_BITS) - 1));
+		return LINEAR_BUCKETS + (exponent - 4) * (1 << SUBBUCKET_BITS) + subBucket;
+	}
+
+	/**
+	 * Returns the highest duration that falls into a bucket
+	 *
+	 * @param bucket bucket index
+	 * @return duration in nanoseconds
+	 */
+	static long getBucketUpperBound(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR_BUCKETS) / (1 << SUBBUCKET_BITS) + 4;
+		int subBucket = (bucket - LINEAR_BUCKETS) % (1 << SUBBUCKET_BITS);
+		long lowerBound = ((long) ((1 << SUBBUCKET_BITS) + subBucket)) << (exponent - SUBBUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUBBUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Counters of a single method
+	 */
+	private static class MethodStats {
+		private final String m_name;
+		private final LongAdder m_calls = new LongAdder();
+		private final LongAdder m_totalNanos = new LongAdder();
+		private final LongAccumulator m_maxNanos = new LongAccumulator(Math::max, 0);
+		/** striped counter per bucket, created on first use because most buckets stay empty */
+		private final AtomicReferenceArray<LongAdder> m_histogram = new AtomicReferenceArray<LongAdder>(BUCKET_COUNT);
+
+		public MethodStats(String name) {
+			m_name = name;
+		}
+
+		public void record(long durationNanos) {
+			m_calls.increment();
+			m_totalNanos.add(durationNanos);
+			m_maxNanos.accumulate(durationNanos);
+			int bucket = getBucket(durationNanos);
+			LongAdder counter = m_histogram.get(bucket);
+			if (counter==null) {
+				LongAdder newCounter = new LongAdder();
+				counter = m_histogram.compareAndSet(bucket, null, newCounter) ? newCounter : m_histogram.get(bucket);
+			}
+			counter.increment();
+		}
+
+		public void reset() {
+			m_calls.reset();
+			m_totalNanos.reset();
+			m_maxNanos.reset();
+			for (int i=0; i<BUCKET_COUNT; i++) {
+				LongAdder counter = m_histogram.get(i);
+				if (counter!=null) {
+					counter.reset();
+				}
+			}
+		}
+
+		public MethodMetrics snapshot() {
+			long[] histogram = new long[BUCKET_COUNT];
+			long histogramCount = 0;
+			for (int i=0; i<BUCKET_COUNT; i++) {
+				LongAdder counter = m_histogram.get(i);
+				histogram[i] = counter==null ? 0 : counter.sum();
+				histogramCount += histogram[i];
+			}
+			return new MethodMetrics(m_name, m_calls.sum(), m_totalNanos.sum(), m_maxNanos.get(),
+					histogram, histogramCount);
+		}
+	}
+
+	/**
+	 * Snapshot of the metrics of a single native method
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static class MethodMetrics {
+		private String m_methodName;
+		private long m_callCount;
+		private long m_totalNanos;
+		private long m_maxNanos;
+		private long[] m_histogram;
+		private long m_histogramCount;
+
+		private MethodMetrics(String methodName, long callCount, long totalNanos, long maxNanos,
+				long[] histogram, long histogramCount) {
+			m_methodName = methodName;
+			m_callCount = callCount;
+			m_totalNanos = totalNanos;
+			m_maxNanos = maxNanos;
+			m_histogram = histogram;
+			m_histogramCount = histogramCount;
+		}
+
+		/**
+		 * Returns the method name with simple interface name, e.g. "INotesNativeAPI64.NIFReadEntries"
+		 *
+		 * @return name
+		 */
+		public String getMethodName() {
+			return m_methodName;
+		}
+
+		/**
+		 * Returns the number of calls
+		 *
+		 * @return count
+		 */
+		public long getCallCount() {
+			return m_callCount;
+		}
+
+		/**
+		 * Returns the total time spent in the method
+		 *
+		 * @return nanoseconds
+		 */
+		public long getTotalNanos() {
+			return m_totalNanos;
+		}
+
+		/**
+		 * Returns the average duration of a call
+		 *
+		 * @return nanoseconds
+		 */
+		public long getMeanNanos() {
+			return m_callCount==0 ? 0 : m_totalNanos / m_callCount;
+		}
+
+		/**
+		 * Returns the longest duration of a call
+		 *
+		 * @return nanoseconds
+		 */
+		public long getMaxNanos() {
+			return m_maxNanos;
+		}
+
+		/**
+		 * Returns the median duration of a call
+		 *
+		 * @return nanoseconds
+		 */
+		public long getP50Nanos() {
+			return getPercentileNanos(50);
+		}
+
+		/**
+		 * Returns the 99th percentile of the call duration
+		 *
+		 * @return nanoseconds
+		 */
+		public long getP99Nanos() {
+			return getPercentileNanos(99);
+		}
+
+		/**
+		 * Returns the 99.9th percentile of the call duration
+		 *
+		 * @return nanoseconds
+		 */
+		public long getP999Nanos() {
+			return getPercentileNanos(99.9);
+		}
+
+		/**
+		 * Returns the duration that the specified percentage of calls did not exceed,
+		 * with the precision of the histogram buckets
+		 *
+		 * @param percentile percentile between 0 and 100
+		 * @return nanoseconds
+		 */
+		public long getPercentileNanos(double percentile) {
+			if (percentile<0 || percentile>100) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 100: "+percentile);
+			}
+			if (m_histogramCount==0) {
+				return 0;
+			}
+			long targetCount = Math.max(1, (long) Math.ceil(m_histogramCount * percentile / 100));
+			long count = 0;
+			for (int i=0; i<m_histogram.length; i++) {
+				count += m_histogram[i];
+				if (count >= targetCount) {
+					return Math.min(getBucketUpperBound(i), m_maxNanos);
+				}
+			}
+			return m_maxNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "MethodMetrics [method="+m_methodName+", calls="+m_callCount+", total="+m_totalNanos+
+					"ns, mean="+getMeanNanos()+"ns, p50="+getP50Nanos()+"ns, p99="+getP99Nanos()+
+					"ns, max="+m_maxNanos+"ns]";
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.mindoo.domino.jna.utils;
+
+import java.util.List;
+
+import com.mindoo.domino.jna.utils.NativeMethodMetrics.MethodMetrics;
+
+/**
+ * JMX interface of {@link NativeMethodMetrics}, registered as
+ * {@value NativeMethodMetrics#OBJECTNAME}
+ *
+ * @author Karsten Lehmann
+ */
+public interface NativeMethodMetricsMXBean {
+
+	/**
+	 * Returns whether native method calls are recorded
+	 *
+	 * @return true if enabled
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Enables or disables recording native method calls
+	 *
+	 * @param enabled true to enable
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Returns the metrics of all called native methods, sorted by total time descending
+	 *
+	 * @return metrics
+	 */
+	public List<MethodMetrics> getMethodMetrics();
+
+	/**
+	 * Returns the total number of recorded native method calls
+	 *
+	 * @return count
+	 */
+	public long getTotalCallCount();
+
+	/**
+	 * Returns the total time spent in native methods in nanoseconds
+	 *
+	 * @return time
+	 */
+	public long getTotalNanos();
+
+	/**
+	 * Clears all recorded metrics
+	 */
+	public void reset();
+}
@@ -0,0 +1,950 @@
+package com.mindoo.domino.jna.utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compressed set of note ids in Java heap memory, organized like a roaring bitmap:
+ * ids are grouped by their upper 16 bits and each group stores the lower 16 bits
+ * either as sorted char array (sparse groups) or as 65536 bit wide bitmap (dense groups).<br>
+ * <br>
+ * The class can be used to mirror the content of a {@link com.mindoo.domino.jna.NotesIDTable}
+ * (see {@link com.mindoo.domino.jna.NotesIDTable#toBitmap()}) and do set algebra like
+ * {@link #or(NoteIdBitmap)}, {@link #and(NoteIdBitmap)} or {@link #andNot(NoteIdBitmap)}
+ * without a native call per note id and without boxing the ids.<br>
+ * <br>
+ * Ids are compared as unsigned 32 bit values, so iteration order is the same as
+ * in a Notes ID table (ids with the high order bit set, e.g. category ids, come last).<br>
+ * <br>
+ * This class is not thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteIdBitmap implements Cloneable {
+	/** max number of values stored in an array container before we switch to a bitmap */
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1024;
+
+	private char[] m_keys;
+	private Container[] m_containers;
+	private int m_size;
+
+	/**
+	 * Creates a new empty bitmap
+	 */
+	public NoteIdBitmap() {
+		m_keys = new char[4];
+		m_containers = new Container[4];
+	}
+
+	/**
+	 * Creates a new bitmap with the specified ids
+	 *
+	 * @param ids ids to add
+	 */
+	public NoteIdBitmap(int... ids) {
+		this();
+		for (int currId : ids) {
+			add(currId);
+		}
+	}
+
+	private static char highBits(int id) {
+		return (char) (id >>> 16);
+	}
+
+	private static char lowBits(int id) {
+		return (char) id;
+	}
+
+	/**
+	 * Returns the container index for a key or (-(insertion point) - 1)
+	 *
+	 * @param key key
+	 * @return index
+	 */
+	private int indexOfKey(char key) {
+		//fast path for ids that are added in ascending order, e.g. when reading an ID table
+		if (m_size>0 && m_keys[m_size-1]==key) {
+			return m_size-1;
+		}
+		return Arrays.binarySearch(m_keys, 0, m_size, key);
+	}
+
+	private void insertContainerAt(int idx, char key, Container container) {
+		if (m_size==m_keys.length) {
+			int newCapacity = m_keys.length*2;
+			m_keys = Arrays.copyOf(m_keys, newCapacity);
+			m_containers = Arrays.copyOf(m_containers, newCapacity);
+		}
+		System.arraycopy(m_keys, idx, m_keys, idx+1, m_size-idx);
+		System.arraycopy(m_containers, idx, m_containers, idx+1, m_size-idx);
+		m_keys[idx] = key;
+		m_containers[idx] = container;
+		m_size++;
+	}
+
+	private void removeContainerAt(int idx) {
+		System.arraycopy(m_keys, idx+1, m_keys, idx, m_size-idx-1);
+		System.arraycopy(m_containers, idx+1, m_containers, idx, m_size-idx-1);
+		m_size--;
+		m_containers[m_size] = null;
+	}
+
+	/**
+	 * Adds a note id
+	 *
+	 * @param id note id
+	 * @return true if the id has been added, false if it already existed
+	 */
+	public boolean add(int id) {
+		char key = highBits(id);
+		int idx = indexOfKey(key);
+		if (idx>=0) {
+			Container container = m_containers[idx];
+			int oldCardinality = container.getCardinality();
+			container = container.add(lowBits(id));
+			m_containers[idx] = container;
+			return container.getCardinality() > oldCardinality;
+		}
+		else {
+			ArrayContainer container = new ArrayContainer();
+			container.add(lowBits(id));
+			insertContainerAt(-idx-1, key, container);
+			return true;
+		}
+	}
+
+	/**
+	 * Removes a note id
+	 *
+	 * @param id note id
+	 * @return true if the id has been removed, false if it did not exist
+	 */
+	public boolean remove(int id) {
+		int idx = indexOfKey(highBits(id));
+		if (idx<0) {
+			return false;
+		}
+		Container container = m_containers[idx];
+		int oldCardinality = container.getCardinality();
+		container = container.remove(lowBits(id));
+		if (container.getCardinality()==0) {
+			removeContainerAt(idx);
+		}
+		else {
+			m_containers[idx] = container;
+		}
+		return container.getCardinality() < oldCardinality;
+	}
+
+	/**
+	 * Checks if the bitmap contains a note id
+	 *
+	 * @param id note id
+	 * @return true if id exists
+	 */
+	public boolean contains(int id) {
+		int idx = indexOfKey(highBits(id));
+		return idx>=0 && m_containers[idx].contains(lowBits(id));
+	}
+
+	/**
+	 * Returns the number of ids in the bitmap
+	 *
+	 * @return count
+	 */
+	public int getCount() {
+		int count = 0;
+		for (int i=0; i<m_size; i++) {
+			count += m_containers[i].getCardinality();
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if the bitmap is empty
+	 *
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return m_size==0;
+	}
+
+	/**
+	 * Removes all ids from the bitmap
+	 */
+	public void clear() {
+		Arrays.fill(m_containers, 0, m_size, null);
+		m_size = 0;
+	}
+
+	/**
+	 * Returns the number of ids in the bitmap that are smaller or equal
+	 * to the specified id (unsigned comparison)
+	 *
+	 * @param id note id
+	 * @return rank
+	 */
+	public int rank(int id) {
+		char key = highBits(id);
+		int rank = 0;
+		for (int i=0; i<m_size; i++) {
+			char currKey = m_keys[i];
+			if (currKey < key) {
+				rank += m_containers[i].getCardinality();
+			}
+			else {
+				if (currKey == key) {
+					rank += m_containers[i].rank(lowBits(id));
+				}
+				break;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns the first id of the bitmap
+	 *
+	 * @return id
+	 * @throws NoSuchElementException if bitmap is empty
+	 */
+	public int getFirstId() {
+		if (m_size==0) {
+			throw new NoSuchElementException("Bitmap is empty");
+		}
+		return (m_keys[0] << 16) | m_containers[0].first();
+	}
+
+	/**
+	 * Returns the last id of the bitmap
+	 *
+	 * @return id
+	 * @throws NoSuchElementException if bitmap is empty
+	 */
+	public int getLastId() {
+		if (m_size==0) {
+			throw new NoSuchElementException("Bitmap is empty");
+		}
+		return (m_keys[m_size-1] << 16) | m_containers[m_size-1].last();
+	}
+
+	/**
+	 * Adds all ids of another bitmap to this bitmap
+	 *
+	 * @param other other bitmap
+	 */
+	public void or(NoteIdBitmap other) {
+		int i = 0;
+		int j = 0;
+		while (i<m_size && j<other.m_size) {
+			char key1 = m_keys[i];
+			char key2 = other.m_keys[j];
+			if (key1 == key2) {
+				m_containers[i] = m_containers[i].or(other.m_containers[j]);
+				i++;
+				j++;
+			}
+			else if (key1 < key2) {
+				i++;
+			}
+			else {
+				insertContainerAt(i, key2, other.m_containers[j].clone());
+				i++;
+				j++;
+			}
+		}
+		while (j<other.m_size) {
+			insertContainerAt(m_size, other.m_keys[j], other.m_containers[j].clone());
+			j++;
+		}
+	}
+
+	/**
+	 * Removes all ids from this bitmap that do not exist in another bitmap
+	 *
+	 * @param other other bitmap
+	 */
+	public void and(NoteIdBitmap other) {
+		int newSize = 0;
+		int j = 0;
+		for (int i=0; i<m_size; i++) {
+			char key = m_keys[i];
+			while (j<other.m_size && other.m_keys[j] < key) {
+				j++;
+			}
+			if (j<other.m_size && other.m_keys[j] == key) {
+				Container result = m_containers[i].and(other.m_containers[j]);
+				if (result.getCardinality()>0) {
+					m_keys[newSize] = key;
+					m_containers[newSize] = result;
+					newSize++;
+				}
+			}
+		}
+		Arrays.fill(m_containers, newSize, m_size, null);
+		m_size = newSize;
+	}
+
+	/**
+	 * Removes all ids from this bitmap that exist in another bitmap
+	 *
+	 * @param other other bitmap
+	 */
+	public void andNot(NoteIdBitmap other) {
+		int newSize = 0;
+		int j = 0;
+		for (int i=0; i<m_size; i++) {
+			char key = m_keys[i];
+			Container result = m_containers[i];
+			while (j<other.m_size && other.m_keys[j] < key) {
+				j++;
+			}
+			if (j<other.m_size && other.m_keys[j] == key) {
+				result = result.andNot(other.m_containers[j]);
+			}
+			if (result.getCardinality()>0) {
+				m_keys[newSize] = key;
+				m_containers[newSize] = result;
+				newSize++;
+			}
+		}
+		Arrays.fill(m_containers, newSize, m_size, null);
+		m_size = newSize;
+	}
+
+	/**
+	 * Returns the union of two bitmaps as new bitmap
+	 *
+	 * @param b1 first bitmap
+	 * @param b2 second bitmap
+	 * @return union
+	 */
+	public static NoteIdBitmap or(NoteIdBitmap b1, NoteIdBitmap b2) {
+		NoteIdBitmap result = b1.clone();
+		result.or(b2);
+		return result;
+	}
+
+	/**
+	 * Returns the intersection of two bitmaps as new bitmap
+	 *
+	 * @param b1 first bitmap
+	 * @param b2 second bitmap
+	 * @return intersection
+	 */
+	public static NoteIdBitmap and(NoteIdBitmap b1, NoteIdBitmap b2) {
+		NoteIdBitmap result = b1.clone();
+		result.and(b2);
+		return result;
+	}
+
+	/**
+	 * Returns the ids of the first bitmap that do not exist in the second one
+	 *
+	 * @param b1 first bitmap
+	 * @param b2 second bitmap
+	 * @return difference
+	 */
+	public static NoteIdBitmap andNot(NoteIdBitmap b1, NoteIdBitmap b2) {
+		NoteIdBitmap result = b1.clone();
+		result.andNot(b2);
+		return result;
+	}
+
+	/**
+	 * Returns an iterator over the ids in ascending (unsigned) order
+	 *
+	 * @return iterator
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			private int m_containerIdx = 0;
+			private int m_high;
+			private ContainerIterator m_currIt = nextContainerIterator();
+
+			private ContainerIterator nextContainerIterator() {
+				while (m_containerIdx < m_size) {
+					Container container = m_containers[m_containerIdx];
+					m_high = m_keys[m_containerIdx] << 16;
+					m_containerIdx++;
+					if (container.getCardinality()>0) {
+						return container.iterator();
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return m_currIt!=null;
+			}
+
+			@Override
+			public int nextInt() {
+				if (m_currIt==null) {
+					throw new NoSuchElementException();
+				}
+				int id = m_high | m_currIt.next();
+				if (!m_currIt.hasNext()) {
+					m_currIt = nextContainerIterator();
+				}
+				return id;
+			}
+		};
+	}
+
+	/**
+	 * Returns the ids as int array in ascending (unsigned) order
+	 *
+	 * @return array
+	 */
+	public int[] toArray() {
+		int[] ids = new int[getCount()];
+		int pos = 0;
+		PrimitiveIterator.OfInt it = iterator();
+		while (it.hasNext()) {
+			ids[pos++] = it.nextInt();
+		}
+		return ids;
+	}
+
+	@Override
+	public NoteIdBitmap clone() {
+		NoteIdBitmap clone = new NoteIdBitmap();
+		clone.m_keys = Arrays.copyOf(m_keys, Math.max(4, m_size));
+		clone.m_containers = new Container[clone.m_keys.length];
+		for (int i=0; i<m_size; i++) {
+			clone.m_containers[i] = m_containers[i].clone();
+		}
+		clone.m_size = m_size;
+		return clone;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj==this) {
+			return true;
+		}
+		if (!(obj instanceof NoteIdBitmap)) {
+			return false;
+		}
+		NoteIdBitmap other = (NoteIdBitmap) obj;
+		if (m_size!=other.m_size) {
+			return false;
+		}
+		for (int i=0; i<m_size; i++) {
+			if (m_keys[i]!=other.m_keys[i] || !m_containers[i].equalsContainer(other.m_containers[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		PrimitiveIterator.OfInt it = iterator();
+		while (it.hasNext()) {
+			hash = 31 * hash + it.nextInt();
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the number of groups that store their ids as bitmap instead of a sorted array
+	 *
+	 * @return count
+	 */
+	int getBitmapContainerCount() {
+		int count = 0;
+		for (int i=0; i<m_size; i++) {
+			if (m_containers[i] instanceof BitmapContainer) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteIdBitmap [count="+getCount()+", containers="+m_size+"]";
+	}
+
+	/**
+	 * Iterator over the lower 16 bits stored in a container
+	 */
+	private static interface ContainerIterator {
+
+		public boolean hasNext();
+
+		public char next();
+
+	}
+
+	/**
+	 * Storage for the lower 16 bits of all ids with the same upper 16 bits
+	 */
+	private static abstract class Container implements Cloneable {
+
+		public abstract int getCardinality();
+
+		/**
+		 * Adds a value
+		 *
+		 * @param value value
+		 * @return this container or a converted one
+		 */
+		public abstract Container add(char value);
+
+		/**
+		 * Removes a value
+		 *
+		 * @param value value
+		 * @return this container or a converted one
+		 */
+		public abstract Container remove(char value);
+
+		public abstract boolean contains(char value);
+
+		/**
+		 * Returns the number of values smaller or equal to <code>value</code>
+		 *
+		 * @param value value
+		 * @return rank
+		 */
+		public abstract int rank(char value);
+
+		public abstract char first();
+
+		public abstract char last();
+
+		public abstract ContainerIterator iterator();
+
+		public abstract Container clone();
+
+		public abstract BitmapContainer toBitmapContainer();
+
+		public Container or(Container other) {
+			if (this instanceof ArrayContainer && other instanceof ArrayContainer &&
+					getCardinality() + other.getCardinality() <= ARRAY_MAX_SIZE) {
+				return ((ArrayContainer) this).merge((ArrayContainer) other);
+			}
+			BitmapContainer result = toBitmapContainer();
+			result.orInPlace(other);
+			return result;
+		}
+
+		public Container and(Container other) {
+			if (this instanceof ArrayContainer) {
+				return ((ArrayContainer) this).filter(other, true);
+			}
+			else if (other instanceof ArrayContainer) {
+				return ((ArrayContainer) other).filter(this, true);
+			}
+			else {
+				BitmapContainer result = ((BitmapContainer) this).clone();
+				result.andInPlace((BitmapContainer) other);
+				return result.shrink();
+			}
+		}
+
+		public Container andNot(Container other) {
+			if (this instanceof ArrayContainer) {
+				return ((ArrayContainer) this).filter(other, false);
+			}
+			else {
+				BitmapContainer result = ((BitmapContainer) this).clone();
+				result.andNotInPlace(other);
+				return result.shrink();
+			}
+		}
+
+		public boolean equalsContainer(Container other) {
+			if (getCardinality()!=other.getCardinality()) {
+				return false;
+			}
+			ContainerIterator it1 = iterator();
+			ContainerIterator it2 = other.iterator();
+			while (it1.hasNext()) {
+				if (it1.next()!=it2.next()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Container for sparse data, storing up to {@link NoteIdBitmap#ARRAY_MAX_SIZE} sorted values
+	 */
+	private static class ArrayContainer extends Container {
+		private char[] m_values;
+		private int m_cardinality;
+
+		public ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		public ArrayContainer(char[] values, int cardinality) {
+			m_values = values;
+			m_cardinality = cardinality;
+		}
+
+		@Override
+		public int getCardinality() {
+			return m_cardinality;
+		}
+
+		private int indexOf(char value) {
+			//fast path for ascending inserts
+			if (m_cardinality>0 && m_values[m_cardinality-1] < value) {
+				return -m_cardinality-1;
+			}
+			return Arrays.binarySearch(m_values, 0, m_cardinality, value);
+		}
+
+		@Override
+		public Container add(char value) {
+			int idx = indexOf(value);
+			if (idx>=0) {
+				return this;
+			}
+			if (m_cardinality >= ARRAY_MAX_SIZE) {
+				return toBitmapContainer().add(value);
+			}
+			idx = -idx-1;
+			if (m_cardinality==m_values.length) {
+				m_values = Arrays.copyOf(m_values, Math.min(ARRAY_MAX_SIZE, m_values.length*2));
+			}
+			System.arraycopy(m_values, idx, m_values, idx+1, m_cardinality-idx);
+			m_values[idx] = value;
+			m_cardinality++;
+			return this;
+		}
+
+		@Override
+		public Container remove(char value) {
+			int idx = indexOf(value);
+			if (idx>=0) {
+				System.arraycopy(m_values, idx+1, m_values, idx, m_cardinality-idx-1);
+				m_cardinality--;
+			}
+			return this;
+		}
+
+		@Override
+		public boolean contains(char value) {
+			return indexOf(value)>=0;
+		}
+
+		@Override
+		public int rank(char value) {
+			int idx = Arrays.binarySearch(m_values, 0, m_cardinality, value);
+			return idx>=0 ? idx+1 : -idx-1;
+		}
+
+		@Override
+		public char first() {
+			return m_values[0];
+		}
+
+		@Override
+		public char last() {
+			return m_values[m_cardinality-1];
+		}
+
+		@Override
+		public ContainerIterator iterator() {
+			return new ContainerIterator() {
+				private int m_pos;
+
+				@Override
+				public boolean hasNext() {
+					return m_pos < m_cardinality;
+				}
+
+				@Override
+				public char next() {
+					return m_values[m_pos++];
+				}
+			};
+		}
+
+		@Override
+		public ArrayContainer clone() {
+			return new ArrayContainer(Arrays.copyOf(m_values, Math.max(4, m_cardinality)), m_cardinality);
+		}
+
+		@Override
+		public BitmapContainer toBitmapContainer() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i=0; i<m_cardinality; i++) {
+				bitmap.set(m_values[i]);
+			}
+			return bitmap;
+		}
+
+		/**
+		 * Merges the values of two sorted arrays
+		 *
+		 * @param other other container
+		 * @return new container
+		 */
+		public ArrayContainer merge(ArrayContainer other) {
+			char[] result = new char[m_cardinality + other.m_cardinality];
+			int i = 0, j = 0, k = 0;
+			while (i<m_cardinality && j<other.m_cardinality) {
+				char v1 = m_values[i];
+				char v2 = other.m_values[j];
+				if (v1==v2) {
+					result[k++] = v1;
+					i++;
+					j++;
+				}
+				else if (v1<v2) {
+					result[k++] = v1;
+					i++;
+				}
+				else {
+					result[k++] = v2;
+					j++;
+				}
+			}
+			while (i<m_cardinality) {
+				result[k++] = m_values[i++];
+			}
+			while (j<other.m_cardinality) {
+				result[k++] = other.m_values[j++];
+			}
+			return new ArrayContainer(result, k);
+		}
+
+		/**
+		 * Returns a new container with the values that are (or are not) contained in
+		 * another container
+		 *
+		 * @param other other container
+		 * @param keepIfContained true to keep values contained in <code>other</code>, false to keep values not contained
+		 * @return new container
+		 */
+		public ArrayContainer filter(Container other, boolean keepIfContained) {
+			char[] result = new char[Math.max(4, m_cardinality)];
+			int k = 0;
+			for (int i=0; i<m_cardinality; i++) {
+				char v = m_values[i];
+				if (other.contains(v)==keepIfContained) {
+					result[k++] = v;
+				}
+			}
+			return new ArrayContainer(result, k);
+		}
+	}
+
+	/**
+	 * Container for dense data, storing the values as 65536 bit wide bitmap
+	 */
+	private static class BitmapContainer extends Container {
+		private long[] m_words;
+		private int m_cardinality;
+
+		public BitmapContainer() {
+			this(new long[BITMAP_WORDS], 0);
+		}
+
+		private BitmapContainer(long[] words, int cardinality) {
+			m_words = words;
+			m_cardinality = cardinality;
+		}
+
+		@Override
+		public int getCardinality() {
+			return m_cardinality;
+		}
+
+		private void set(char value) {
+			int wordIdx = value >>> 6;
+			long oldWord = m_words[wordIdx];
+			long newWord = oldWord | (1L << value);
+			m_words[wordIdx] = newWord;
+			if (oldWord!=newWord) {
+				m_cardinality++;
+			}
+		}
+
+		@Override
+		public Container add(char value) {
+			set(value);
+			return this;
+		}
+
+		@Override
+		public Container remove(char value) {
+			int wordIdx = value >>> 6;
+			long oldWord = m_words[wordIdx];
+			long newWord = oldWord & ~(1L << value);
+			if (oldWord!=newWord) {
+				m_words[wordIdx] = newWord;
+				m_cardinality--;
+				if (m_cardinality <= ARRAY_MAX_SIZE) {
+					return shrink();
+				}
+			}
+			return this;
+		}
+
+		@Override
+		public boolean contains(char value) {
+			return (m_words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		public int rank(char value) {
+			int wordIdx = value >>> 6;
+			int rank = 0;
+			for (int i=0; i<wordIdx; i++) {
+				rank += Long.bitCount(m_words[i]);
+			}
+			//mask for bits 0 to (value & 63), inclusive
+			long mask = (-1L >>> (63 - (value & 63)));
+			return rank + Long.bitCount(m_words[wordIdx] & mask);
+		}
+
+		@Override
+		public char first() {
+			for (int i=0; i<m_words.length; i++) {
+				if (m_words[i]!=0) {
+					return (char) (i*64 + Long.numberOfTrailingZeros(m_words[i]));
+				}
+			}
+			throw new NoSuchElementException();
+		}
+
+		@Override
+		public char last() {
+			for (int i=m_words.length-1; i>=0; i--) {
+				if (m_words[i]!=0) {
+					return (char) (i*64 + 63 - Long.numberOfLeadingZeros(m_words[i]));
+				}
+			}
+			throw new NoSuchElementException();
+		}
+
+		@Override
+		public ContainerIterator iterator() {
+			return new ContainerIterator() {
+				private int m_wordIdx = -1;
+				private long m_word = 0;
+
+				{
+					advance();
+				}
+
+				private void advance() {
+					while (m_word==0 && m_wordIdx < m_words.length-1) {
+						m_wordIdx++;
+						m_word = m_words[m_wordIdx];
+					}
+				}
+
+				@Override
+				public boolean hasNext() {
+					return m_word!=0;
+				}
+
+				@Override
+				public char next() {
+					long lowestBit = m_word & -m_word;
+					char value = (char) (m_wordIdx*64 + Long.numberOfTrailingZeros(lowestBit));
+					m_word ^= lowestBit;
+					advance();
+					return value;
+				}
+			};
+		}
+
+		@Override
+		public BitmapContainer clone() {
+			return new BitmapContainer(m_words.clone(), m_cardinality);
+		}
+
+		@Override
+		public BitmapContainer toBitmapContainer() {
+			return this;
+		}
+
+		private void recomputeCardinality() {
+			int cardinality = 0;
+			for (int i=0; i<m_words.length; i++) {
+				cardinality += Long.bitCount(m_words[i]);
+			}
+			m_cardinality = cardinality;
+		}
+
+		public void orInPlace(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] otherWords = ((BitmapContainer) other).m_words;
+				for (int i=0; i<m_words.length; i++) {
+					m_words[i] |= otherWords[i];
+				}
+				recomputeCardinality();
+			}
+			else {
+				ContainerIterator it = other.iterator();
+				while (it.hasNext()) {
+					set(it.next());
+				}
+			}
+		}
+
+		public void andInPlace(BitmapContainer other) {
+			for (int i=0; i<m_words.length; i++) {
+				m_words[i] &= other.m_words[i];
+			}
+			recomputeCardinality();
+		}
+
+		public void andNotInPlace(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] otherWords = ((BitmapContainer) other).m_words;
+				for (int i=0; i<m_words.length; i++) {
+					m_words[i] &= ~otherWords[i];
+				}
+				recomputeCardinality();
+			}
+			else {
+				ContainerIterator it = other.iterator();
+				while (it.hasNext()) {
+					char value = it.next();
+					int wordIdx = value >>> 6;
+					long oldWord = m_words[wordIdx];
+					long newWord = oldWord & ~(1L << value);
+					if (oldWord!=newWord) {
+						m_words[wordIdx] = newWord;
+						m_cardinality--;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Converts the container to an array container if its cardinality is low enough
+		 *
+		 * @return this or an array container
+		 */
+		public Container shrink() {
+			if (m_cardinality > ARRAY_MAX_SIZE) {
+				return this;
+			}
+			char[] values = new char[Math.max(4, m_cardinality)];
+			int k = 0;
+			ContainerIterator it = iterator();
+			while (it.hasNext()) {
+				values[k++] = it.next();
+			}
+			return new ArrayContainer(values, k);
+		}
+	}
+}
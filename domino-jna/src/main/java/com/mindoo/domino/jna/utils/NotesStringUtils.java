@@ -6,6 +6,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 import java.util.List;
 
@@ -14,6 +15,8 @@ import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.internal.DisposableMemory;
 import com.mindoo.domino.jna.internal.INotesNativeAPI;
+import com.mindoo.domino.jna.internal.LMBCSDecoder;
+import com.mindoo.domino.jna.internal.LMBCSEncoder;
 import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.internal.ReadOnlyMemory;
@@ -28,6 +31,8 @@ import com.sun.jna.Pointer;
  */
 public class NotesStringUtils {
 	private static final String PREF_USEOSLINEBREAK = "NotesStringUtils.useOSLineDelimiter";
+	private static final String PREF_USEJAVALMBCSDECODER = "NotesStringUtils.useJavaLMBCSDecoder";
+	private static final String PREF_USEJAVALMBCSENCODER = "NotesStringUtils.useJavaLMBCSEncoder";
 	
 	//use simple cache for string-lmbcs conversion of short string
 	private static final boolean USE_STRING2LMBCS_CACHE = true;
@@ -46,6 +51,7 @@ public class NotesStringUtils {
 	private static LRUStringLMBCSCache m_string2LMBCSCache_NotNullTerminated_OriginalLinebreaks = new LRUStringLMBCSCache(MAX_STRING2LMBCS_SIZE_BYTES);
 	
 	private static final Charset charsetUTF8 = Charset.forName("UTF-8");
+	private static final Charset charsetLatin1 = Charset.forName("ISO-8859-1");
 
 	public static void flushCache() {
 		m_string2LMBCSCache_NullTerminated_LinefeedLinebreaks.clear();
@@ -117,6 +123,10 @@ public class NotesStringUtils {
 	 * @return true to use \r\n as newline on Windows, false to use \n everywhere
 	 */
 	public static boolean isUseOSLineDelimiter() {
+		if (!NotesGC.isAutoGCActive()) {
+			return true;
+		}
+		
 		Boolean b = (Boolean) NotesGC.getCustomValue(PREF_USEOSLINEBREAK);
 		if (b==null)
 			return Boolean.TRUE;
@@ -233,6 +243,81 @@ public class NotesStringUtils {
 		return stringList;
 	}
 
+	/**
+	 * Method to control whether LMBCS data is decoded in Java code (default) or whether
+	 * all conversions are done via OSTranslate in the C API. The Java decoder falls back to
+	 * OSTranslate for LMBCS groups it does not support.<br>
+	 * This setting is only valid for the current {@link NotesGC#runWithAutoGC(java.util.concurrent.Callable)}
+	 * call.
+	 * 
+	 * @param b true to use the Java decoder, false to always call OSTranslate
+	 */
+	public static void setUseJavaLMBCSDecoder(boolean b) {
+		NotesGC.setCustomValue(PREF_USEJAVALMBCSDECODER, Boolean.valueOf(b));
+	}
+	
+	/**
+	 * Returns whether LMBCS data is decoded in Java code if possible
+	 * 
+	 * @return true to use the Java decoder (default), false to always call OSTranslate
+	 */
+	public static boolean isUseJavaLMBCSDecoder() {
+		if (!NotesGC.isAutoGCActive()) {
+			return true;
+		}
+		
+		Boolean b = (Boolean) NotesGC.getCustomValue(PREF_USEJAVALMBCSDECODER);
+		if (b==null)
+			return Boolean.TRUE;
+		else
+			return b.booleanValue();
+	}
+	
+	/**
+	 * Method to control whether strings containing only ASCII and Latin-1 characters are
+	 * encoded to LMBCS in Java code (default) or whether all conversions are done via
+	 * OSTranslate in the C API.<br>
+	 * This setting is only valid for the current {@link NotesGC#runWithAutoGC(java.util.concurrent.Callable)}
+	 * call.
+	 * 
+	 * @param b true to use the Java encoder, false to always call OSTranslate
+	 */
+	public static void setUseJavaLMBCSEncoder(boolean b) {
+		NotesGC.setCustomValue(PREF_USEJAVALMBCSENCODER, Boolean.valueOf(b));
+	}
+	
+	/**
+	 * Returns whether strings are encoded to LMBCS in Java code if possible
+	 * 
+	 * @return true to use the Java encoder (default), false to always call OSTranslate
+	 */
+	public static boolean isUseJavaLMBCSEncoder() {
+		if (!NotesGC.isAutoGCActive()) {
+			return true;
+		}
+		
+		Boolean b = (Boolean) NotesGC.getCustomValue(PREF_USEJAVALMBCSENCODER);
+		if (b==null)
+			return Boolean.TRUE;
+		else
+			return b.booleanValue();
+	}
+	
+	/**
+	 * Returns the line delimiter we use for LMBCS null bytes
+	 * 
+	 * @return \r\n on Windows if {@link #isUseOSLineDelimiter()} is true, \n otherwise
+	 */
+	private static String getLineDelimiter() {
+		boolean useOSLineBreak = isUseOSLineDelimiter();
+		if (PlatformUtils.isWindows() && useOSLineBreak) {
+			return "\r\n";
+		}
+		else {
+			return "\n";
+		}
+	}
+	
 	/**
 	 * Converts an LMBCS string to a Java String
 	 * 
@@ -243,151 +328,153 @@ public class NotesStringUtils {
 		if (data==null || data.length==0)
 			return "";
 		
-		int startOffset = 0;
+		return fromLMBCS(data, 0, data.length);
+	}
+	
+	/**
+	 * Converts a part of a byte array with LMBCS data to a Java String
+	 * 
+	 * @param data data array
+	 * @param offset start offset of LMBCS data
+	 * @param len length of LMBCS data
+	 * @return decoded String
+	 */
+	public static String fromLMBCS(byte[] data, int offset, int len) {
+		if (len==0)
+			return "";
+		
+		String lineDelimiter = getLineDelimiter();
 		
-		List<String> lines = new ArrayList<String>();
+		if (!isUseJavaLMBCSDecoder()) {
+			return fromLMBCSNative(data, offset, len, lineDelimiter);
+		}
 		
-		INotesNativeAPI api = NotesNativeAPI.get();
+		if (LMBCSDecoder.isPureAscii(data, offset, len)) {
+			//fast path, nothing to convert
+			return new String(data, offset, len, charsetLatin1);
+		}
 		
-		//output buffer shared across loop runs for each line
-		DisposableMemory outBufUTF8 = null;
-		try {
-			for (int i=0; i<data.length; i++) {
-				if (data[i] == 0) { // code for line break
-					int lengthOfLineDataToConvert = i-startOffset;
-					
-					if (lengthOfLineDataToConvert==0) {
-						lines.add("");
-						startOffset = i+1;
-						
-						if (i==(data.length-1)) {
-							lines.add("");
+		//each LMBCS byte produces at most one UTF-16 character, null bytes produce the line delimiter
+		char[] out = new char[len * lineDelimiter.length()];
+		int outLen = 0;
+		int lineStart = offset;
+		int end = offset + len;
+		
+		INotesNativeAPI api = null;
+		
+		for (int i=offset; i<=end; i++) {
+			if (i==end || data[i]==0) {
+				int lineLen = i - lineStart;
+				
+				if (lineLen>0) {
+					int decodedLen = LMBCSDecoder.decodeLine(data, lineStart, lineLen, out, outLen);
+					if (decodedLen==-1) {
+						//line contains an LMBCS group we cannot decode in Java
+						if (api==null) {
+							api = NotesNativeAPI.get();
 						}
-						
-						continue;
-					}
-					
-					int worstCaseLengthOfConvertedData = 3*lengthOfLineDataToConvert;
-					
-					DisposableMemory inDataMem = new DisposableMemory(lengthOfLineDataToConvert);
-					try {
-						inDataMem.write(0, data, startOffset, lengthOfLineDataToConvert);
-
-						do {
-							if (outBufUTF8!=null && outBufUTF8.size() < (worstCaseLengthOfConvertedData)) {
-								outBufUTF8 = new DisposableMemory(worstCaseLengthOfConvertedData);
-							}
-							
-							if (outBufUTF8==null) {
-								outBufUTF8 = new DisposableMemory(worstCaseLengthOfConvertedData);
-							}
-							
-							int retOutBufLength =
-									api.OSTranslate32(NotesConstants.OS_TRANSLATE_LMBCS_TO_UTF8,
-											inDataMem, lengthOfLineDataToConvert,
-											outBufUTF8, (int) outBufUTF8.size());
-							
-							if (retOutBufLength==outBufUTF8.size()) {
-								// output buffer not large enough, increase it and retry (not expected to happen because of
-								// our worst case computation)
-								long oldOutBufSize = outBufUTF8.size();
-								long newOutBufSize = (long) (((double) oldOutBufSize)*2);
-								outBufUTF8.dispose();
-								outBufUTF8 = new DisposableMemory(newOutBufSize);
-								
-								continue;
-							}
-							else if (retOutBufLength==0) {
-								lines.add("");
-								startOffset = i+1;
-								
-								break;
-							}
-							else {
-								//success
-								String lineAsStr = new String(outBufUTF8.getByteArray(0, retOutBufLength), 0, retOutBufLength, charsetUTF8);
-								lines.add(lineAsStr);
-								startOffset = i+1;
-								
-								if (i==(data.length-1)) {
-									lines.add("");
-								}
-								
-								break;
-							}
+						String lineAsStr = translateLMBCSLineNative(api, data, lineStart, lineLen);
+						decodedLen = lineAsStr.length();
+						if ((outLen + decodedLen) > out.length) {
+							out = Arrays.copyOf(out, Math.max(out.length * 2, outLen + decodedLen + len));
 						}
-						while (true);
+						lineAsStr.getChars(0, decodedLen, out, outLen);
 					}
-					finally {
-						inDataMem.dispose();
+					outLen += decodedLen;
+				}
+				
+				if (i<end) {
+					if ((outLen + lineDelimiter.length()) > out.length) {
+						out = Arrays.copyOf(out, out.length * 2 + lineDelimiter.length());
+					}
+					for (int x=0; x<lineDelimiter.length(); x++) {
+						out[outLen++] = lineDelimiter.charAt(x);
 					}
 				}
+				lineStart = i+1;
 			}
-
-			if (startOffset<data.length) {
-				//convert remaining data
-				int lengthOfLineDataToConvert = data.length-startOffset;
-				int worstCaseLengthOfConvertedData = 3*lengthOfLineDataToConvert;
-
-				DisposableMemory inDataMem = new DisposableMemory(lengthOfLineDataToConvert);
-				try {
-					inDataMem.write(0, data, startOffset, lengthOfLineDataToConvert);
-
-					do {
-						if (outBufUTF8!=null && outBufUTF8.size() < (worstCaseLengthOfConvertedData)) {
-							outBufUTF8 = new DisposableMemory(worstCaseLengthOfConvertedData);
-						}
-						
-						if (outBufUTF8==null) {
-							outBufUTF8 = new DisposableMemory(worstCaseLengthOfConvertedData);
-						}
-						
-						int retOutBufLength =
-								api.OSTranslate32(NotesConstants.OS_TRANSLATE_LMBCS_TO_UTF8,
-										inDataMem, lengthOfLineDataToConvert,
-										outBufUTF8, (int) outBufUTF8.size());
-						
-						if (retOutBufLength==outBufUTF8.size()) {
-							// output buffer not large enough, increase it and retry (not expected to happen because of
-							// our worst case computation)
-							long oldOutBufSize = outBufUTF8.size();
-							long newOutBufSize = (long) (((double) oldOutBufSize)*2);
-							outBufUTF8.dispose();
-							outBufUTF8 = new DisposableMemory(newOutBufSize);
-							
-							continue;
-						}
-						else if (retOutBufLength==0) {
-							lines.add("");
-							
-							break;
-						}
-						else {
-							//success
-							String lineAsStr = new String(outBufUTF8.getByteArray(0, retOutBufLength), 0, retOutBufLength, charsetUTF8);
-							lines.add(lineAsStr);
-							
-							break;
-						}
-					}
-					while (true);
+		}
+		
+		return new String(out, 0, outLen);
+	}
+	
+	/**
+	 * Converts an LMBCS string to a Java String by calling OSTranslate for each line
+	 * 
+	 * @param data data array
+	 * @param offset start offset of LMBCS data
+	 * @param len length of LMBCS data
+	 * @param lineDelimiter delimiter to use for null bytes
+	 * @return decoded String
+	 */
+	private static String fromLMBCSNative(byte[] data, int offset, int len, String lineDelimiter) {
+		INotesNativeAPI api = NotesNativeAPI.get();
+		
+		StringBuilder sb = new StringBuilder(len);
+		int lineStart = offset;
+		int end = offset + len;
+		
+		for (int i=offset; i<=end; i++) {
+			if (i==end || data[i]==0) {
+				int lineLen = i - lineStart;
+				if (lineLen>0) {
+					sb.append(translateLMBCSLineNative(api, data, lineStart, lineLen));
 				}
-				finally {
-					inDataMem.dispose();
+				if (i<end) {
+					sb.append(lineDelimiter);
 				}
+				lineStart = i+1;
 			}
 		}
-		finally {
-			if (outBufUTF8!=null) {
-				outBufUTF8.dispose();
+		return sb.toString();
+	}
+	
+	/**
+	 * Converts a single line of LMBCS data (without null bytes) via OSTranslate
+	 * 
+	 * @param api native API
+	 * @param data data array
+	 * @param offset offset of line data
+	 * @param len length of line data
+	 * @return decoded String
+	 */
+	private static String translateLMBCSLineNative(INotesNativeAPI api, byte[] data, int offset, int len) {
+		int worstCaseLengthOfConvertedData = 3*len;
+		
+		DisposableMemory inDataMem = new DisposableMemory(len);
+		DisposableMemory outBufUTF8 = new DisposableMemory(worstCaseLengthOfConvertedData);
+		try {
+			inDataMem.write(0, data, offset, len);
+
+			do {
+				int retOutBufLength =
+						api.OSTranslate32(NotesConstants.OS_TRANSLATE_LMBCS_TO_UTF8,
+								inDataMem, len,
+								outBufUTF8, (int) outBufUTF8.size());
+				
+				if (retOutBufLength==outBufUTF8.size()) {
+					// output buffer not large enough, increase it and retry (not expected to happen because of
+					// our worst case computation)
+					long oldOutBufSize = outBufUTF8.size();
+					long newOutBufSize = (long) (((double) oldOutBufSize)*2);
+					outBufUTF8.dispose();
+					outBufUTF8 = new DisposableMemory(newOutBufSize);
+					
+					continue;
+				}
+				else if (retOutBufLength==0) {
+					return "";
+				}
+				else {
+					//success
+					return new String(outBufUTF8.getByteArray(0, retOutBufLength), 0, retOutBufLength, charsetUTF8);
+				}
 			}
+			while (true);
 		}
-		boolean useOSLineBreak = isUseOSLineDelimiter();
-		if (PlatformUtils.isWindows() && useOSLineBreak) {
-			return StringUtil.join(lines, "\r\n");
-		}
-		else {
-			return StringUtil.join(lines, "\n");
+		finally {
+			inDataMem.dispose();
+			outBufUTF8.dispose();
 		}
 	}
 	
@@ -448,6 +535,64 @@ public class NotesStringUtils {
 		/** replace all line breaks with \n */
 		LINEFEED}
 	
+	/**
+	 * Computes the number of bytes the string occupies in LMBCS format (without null terminator).
+	 * For strings containing only ASCII and Latin-1 characters, the length is computed in Java,
+	 * other strings are converted via OSTranslate.
+	 * 
+	 * @param inStr string
+	 * @param lineBreakConversion how to convert linebreaks in the string
+	 * @return length in bytes
+	 */
+	public static int getLMBCSLength(String inStr, LineBreakConversion lineBreakConversion) {
+		if (inStr==null || inStr.length()==0) {
+			return 0;
+		}
+		
+		if (isUseJavaLMBCSEncoder()) {
+			int lmbcsLength = LMBCSEncoder.getEncodedLength(inStr, lineBreakConversion);
+			if (lmbcsLength!=-1) {
+				return lmbcsLength;
+			}
+		}
+		
+		Memory m = toLMBCS(inStr, false, lineBreakConversion, false);
+		return m==null ? 0 : (int) m.size();
+	}
+	
+	/**
+	 * Converts a string to LMBCS format and writes the result (without null terminator) to the
+	 * target buffer, starting at its current position. Use {@link #getLMBCSLength(String, LineBreakConversion)}
+	 * to compute the required buffer size.<br>
+	 * <br>
+	 * Strings containing only ASCII and Latin-1 characters are encoded in Java code directly into
+	 * the buffer, e.g. a buffer returned by {@link Pointer#getByteBuffer(long, long)} for native memory.
+	 * 
+	 * @param inStr string
+	 * @param lineBreakConversion how to convert linebreaks in the string
+	 * @param target target buffer
+	 * @return number of bytes written
+	 */
+	public static int toLMBCS(String inStr, LineBreakConversion lineBreakConversion, ByteBuffer target) {
+		if (inStr==null || inStr.length()==0) {
+			return 0;
+		}
+		
+		if (isUseJavaLMBCSEncoder()) {
+			int bytesWritten = LMBCSEncoder.encode(inStr, lineBreakConversion, target);
+			if (bytesWritten!=-1) {
+				return bytesWritten;
+			}
+		}
+		
+		Memory m = toLMBCS(inStr, false, lineBreakConversion, false);
+		if (m==null) {
+			return 0;
+		}
+		target.put(m.getByteBuffer(0, m.size()));
+		return (int) m.size();
+	}
+	
 	/**
 	 * Converts a string to LMBCS format. Does not internally cache the computation result
 	 * because it is unlikely that the same data will be converted again. Call
@@ -487,6 +632,30 @@ public class NotesStringUtils {
 			}
 		}
 		
+		if (isUseJavaLMBCSEncoder()) {
+			int lmbcsLength = LMBCSEncoder.getEncodedLength(inStr, lineBreakConversion);
+			if (lmbcsLength!=-1) {
+				//only ASCII and Latin-1 characters, so we write the LMBCS data directly into
+				//the memory; this is cheaper than looking up the string in the cache
+				int memSize = addNull ? lmbcsLength+1 : lmbcsLength;
+				Memory m;
+				if (noCache) {
+					m = new DisposableMemory(memSize);
+				}
+				else {
+					m = new ReadOnlyMemory(memSize);
+				}
+				LMBCSEncoder.encode(inStr, lineBreakConversion, m.getByteBuffer(0, lmbcsLength));
+				if (addNull) {
+					m.setByte(lmbcsLength, (byte) 0);
+				}
+				if (!noCache) {
+					((ReadOnlyMemory)m).seal();
+				}
+				return m;
+			}
+		}
+		
 		LRUStringLMBCSCache cacheToUse;
 		
 		if (!noCache) {
@@ -0,0 +1,212 @@
+package com.mindoo.domino.jna.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.gc.NotesGC.DominoGCContext;
+
+/**
+ * Pool of worker threads that are initialized for Domino C API calls once
+ * (via {@link NotesInitUtils#notesInitThread()}) and reused for many tasks.<br>
+ * <br>
+ * Tasks either run in their own {@link NotesGC} context that is closed when the task is done,
+ * or are attached to a shared context created via {@link NotesGC#initSharedContext()}, so that they can use
+ * objects like databases that the calling thread has opened while the shared context is active, e.g.<br>
+ * <br>
+ * <code>
+ * try (NotesThreadPool pool = new NotesThreadPool(4);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;DominoGCContext sharedCtx = NotesGC.initSharedContext()) {<br>
+ * &nbsp;&nbsp;&nbsp;NotesDatabase db = new NotesDatabase("", "names.nsf", "");<br>
+ * &nbsp;&nbsp;&nbsp;CompletableFuture&lt;String&gt; title = pool.submit(sharedCtx, () -&gt; db.getTitle());<br>
+ * &nbsp;&nbsp;&nbsp;...<br>
+ * &nbsp;&nbsp;&nbsp;title.get();<br>
+ * }<br>
+ * </code>
+ * <br>
+ * All tasks of a shared context need to be complete before the shared context is closed.<br>
+ * Use {@link #getExecutor(DominoGCContext)} to run {@link CompletableFuture} stages in a shared context.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesThreadPool implements Executor, AutoCloseable {
+	private ExecutorService m_executor;
+
+	/**
+	 * Creates a new pool with thread names "NotesThreadPool-n"
+	 *
+	 * @param threadCount number of threads
+	 */
+	public NotesThreadPool(int threadCount) {
+		this(threadCount, "NotesThreadPool");
+	}
+
+	/**
+	 * Creates a new pool
+	 *
+	 * @param threadCount number of threads
+	 * @param threadNamePrefix prefix for thread names
+	 */
+	public NotesThreadPool(int threadCount, final String threadNamePrefix) {
+		if (threadCount<1) {
+			throw new IllegalArgumentException("Thread count must be at least 1: "+threadCount);
+		}
+		final AtomicInteger threadNo = new AtomicInteger();
+
+		m_executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				Thread t = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						//initialize the thread once for all tasks
+						initWorkerThread();
+						try {
+							r.run();
+						}
+						finally {
+							termWorkerThread();
+						}
+					}
+				}, threadNamePrefix+"-"+threadNo.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Initializes a new worker thread for Domino C API calls
+	 */
+	void initWorkerThread() {
+		NotesInitUtils.notesInitThread();
+	}
+
+	/**
+	 * Terminates a worker thread for Domino C API calls
+	 */
+	void termWorkerThread() {
+		NotesInitUtils.notesTermThread();
+	}
+
+	/**
+	 * Runs a task in its own {@link NotesGC} context. Domino objects created by the task
+	 * are disposed when the task is done.
+	 *
+	 * @param task task
+	 * @return future with task result
+	 *
+	 * @param <T> result type
+	 */
+	public <T> CompletableFuture<T> submit(final Callable<T> task) {
+		return submit(null, task);
+	}
+
+	/**
+	 * Runs a task attached to a shared {@link NotesGC} context. The returned future is
+	 * completed after the task's thread has been detached from the shared context.
+	 *
+	 * @param sharedCtx context created via {@link NotesGC#initSharedContext()} or null to run the task in its own context
+	 * @param task task
+	 * @return future with task result
+	 *
+	 * @param <T> result type
+	 */
+	public <T> CompletableFuture<T> submit(final DominoGCContext sharedCtx, final Callable<T> task) {
+		checkSharedContext(sharedCtx);
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+
+		m_executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				T value = null;
+				Throwable error = null;
+				try (DominoGCContext ctx = openContext(sharedCtx)) {
+					value = task.call();
+				}
+				catch (Throwable t) {
+					error = t;
+				}
+
+				if (error==null) {
+					result.complete(value);
+				}
+				else {
+					result.completeExceptionally(error);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Runs a task in its own {@link NotesGC} context
+	 *
+	 * @param command task
+	 */
+	@Override
+	public void execute(Runnable command) {
+		getExecutor(null).execute(command);
+	}
+
+	/**
+	 * Returns an executor that runs its tasks attached to a shared {@link NotesGC} context,
+	 * e.g. to be used for {@link CompletableFuture#supplyAsync(java.util.function.Supplier, Executor)}
+	 *
+	 * @param sharedCtx context created via {@link NotesGC#initSharedContext()} or null to run each task in its own context
+	 * @return executor
+	 */
+	public Executor getExecutor(final DominoGCContext sharedCtx) {
+		checkSharedContext(sharedCtx);
+
+		return new Executor() {
+
+			@Override
+			public void execute(final Runnable command) {
+				m_executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try (DominoGCContext ctx = openContext(sharedCtx)) {
+							command.run();
+						}
+					}
+				});
+			}
+		};
+	}
+
+	private void checkSharedContext(DominoGCContext sharedCtx) {
+		if (sharedCtx!=null && !sharedCtx.isShared()) {
+			throw new IllegalArgumentException("Context is not shared, use NotesGC.initSharedContext() to create one");
+		}
+	}
+
+	private DominoGCContext openContext(DominoGCContext sharedCtx) {
+		return sharedCtx==null ? NotesGC.initThread() : NotesGC.attachThread(sharedCtx);
+	}
+
+	/**
+	 * Stops accepting tasks and waits until the running tasks are complete
+	 */
+	@Override
+	public void close() {
+		m_executor.shutdown();
+		try {
+			while (!m_executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				//keep waiting
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.CollectionDataCache.CacheState;
+import com.mindoo.domino.jna.constants.ReadMask;
+
+/**
+ * Tests the eviction and thread-safety of {@link CollectionDataCache}, does not
+ * require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestCollectionDataCache {
+	private static final EnumSet<ReadMask> READMASK = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES);
+
+	private static NotesViewEntryData createEntry(int noteId) {
+		NotesViewEntryData entry = new NotesViewEntryData(null);
+		entry.setNoteId(noteId);
+		entry.setColumnValues(new Object[] {"value"+noteId});
+		return entry;
+	}
+
+	private static NotesViewEntryData createStub(int noteId) {
+		NotesViewEntryData entry = new NotesViewEntryData(null);
+		entry.setNoteId(noteId);
+		return entry;
+	}
+
+	private static List<NotesViewEntryData> createEntries(int firstNoteId, int count) {
+		List<NotesViewEntryData> entries = new ArrayList<NotesViewEntryData>(count);
+		for (int i=0; i<count; i++) {
+			entries.add(createEntry(firstNoteId + 4*i));
+		}
+		return entries;
+	}
+
+	@Test
+	public void testLRUEviction() {
+		NotesTimeDate diffTime = new NotesTimeDate(new int[] {1, 1});
+		CollectionDataCache cache = new CollectionDataCache(4);
+
+		cache.addCacheValues(READMASK, diffTime, createEntries(4, 4));
+		Assert.assertEquals(4, cache.size());
+
+		//reading note id 4 from the cache makes it the most recently used entry
+		NotesViewEntryData stub = createStub(4);
+		cache.populateEntryStubsWithData(Arrays.asList(stub));
+		Assert.assertEquals("value4", stub.getColumnValues()[0]);
+		Assert.assertEquals(1, cache.getHitCount());
+
+		cache.addCacheValues(READMASK, diffTime, createEntries(20, 2));
+		Assert.assertEquals(4, cache.size());
+		Assert.assertEquals(2, cache.getEvictionCount());
+		Assert.assertEquals(0, cache.getFlushCount());
+
+		CacheState state = cache.getCacheState();
+		Assert.assertArrayEquals(new int[] {4, 16, 20, 24}, state.getNoteIds().toArray());
+		Assert.assertEquals(diffTime, state.getDiffTime());
+		Assert.assertEquals(READMASK, state.getReadMask());
+
+		List<NotesViewEntryData> evictedStubs = Arrays.asList(createStub(8), createStub(12));
+		cache.populateEntryStubsWithData(evictedStubs);
+		Assert.assertNull(evictedStubs.get(0).getColumnValues());
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testSizeInBytesEviction() {
+		NotesTimeDate diffTime = new NotesTimeDate(new int[] {1, 1});
+		//use note ids with the same number of digits, so that all entries have the same estimated size
+		int entrySize = createEntry(1000).getCacheableData().getEstimatedSize();
+
+		//small enough for a single segment, so that the byte limit applies to the whole cache
+		CollectionDataCache cache = new CollectionDataCache(20, 3L * entrySize);
+		cache.addCacheValues(READMASK, diffTime, createEntries(1000, 10));
+
+		Assert.assertEquals(3, cache.size());
+		Assert.assertEquals(3L * entrySize, cache.sizeInBytes());
+		Assert.assertEquals(7, cache.getEvictionCount());
+		Assert.assertArrayEquals(new int[] {1028, 1032, 1036}, cache.getCacheState().getNoteIds().toArray());
+	}
+
+	@Test
+	public void testFlushOnChangedDiffTimeOrReadMask() {
+		CollectionDataCache cache = new CollectionDataCache();
+		cache.addCacheValues(READMASK, new NotesTimeDate(new int[] {1, 1}), createEntries(4, 10));
+
+		NotesTimeDate newDiffTime = new NotesTimeDate(new int[] {2, 2});
+		cache.addCacheValues(READMASK, newDiffTime, createEntries(1000, 2));
+		Assert.assertEquals(1, cache.getFlushCount());
+		Assert.assertArrayEquals(new int[] {1000, 1004}, cache.getCacheState().getNoteIds().toArray());
+
+		cache.addCacheValues(EnumSet.of(ReadMask.NOTEID), newDiffTime, createEntries(4, 1));
+		Assert.assertEquals(2, cache.getFlushCount());
+		Assert.assertEquals(1, cache.size());
+
+		cache.flush();
+		CacheState state = cache.getCacheState();
+		Assert.assertNull(state.getDiffTime());
+		Assert.assertTrue(state.getNoteIds().isEmpty());
+	}
+
+	/**
+	 * A writer keeps replacing the cache content with two alternating data sets (each with its own
+	 * diff time), while readers check that the cache state never mixes the diff time of one
+	 * data set with note ids of the other one
+	 *
+	 * @throws Exception in case of errors
+	 */
+	@Test
+	public void testConsistentCacheStateWithConcurrentFlushes() throws Exception {
+		final CollectionDataCache cache = new CollectionDataCache();
+		final NotesTimeDate diffTimeA = new NotesTimeDate(new int[] {1, 1});
+		final NotesTimeDate diffTimeB = new NotesTimeDate(new int[] {2, 2});
+		final List<NotesViewEntryData> entriesA = createEntries(4, 200);
+		final List<NotesViewEntryData> entriesB = createEntries(100000, 200);
+
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final int readerCount = 4;
+		final CountDownLatch readersDone = new CountDownLatch(readerCount);
+
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				boolean useA = true;
+				while (!stop.get()) {
+					cache.addCacheValues(READMASK, useA ? diffTimeA : diffTimeB, useA ? entriesA : entriesB);
+					useA = !useA;
+				}
+			}
+		};
+		writer.start();
+
+		for (int i=0; i<readerCount; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j=0; j<5000 && error.get()==null; j++) {
+							CacheState state = cache.getCacheState();
+							NotesTimeDate diffTime = state.getDiffTime();
+							PrimitiveIterator.OfInt noteIdsIt = state.getNoteIds().iterator();
+							while (noteIdsIt.hasNext()) {
+								int noteId = noteIdsIt.nextInt();
+								boolean isA = noteId < 100000;
+								if (isA != diffTimeA.equals(diffTime)) {
+									throw new AssertionError("Note id "+noteId+" does not match diff time "+diffTime);
+								}
+							}
+						}
+					}
+					catch (Throwable t) {
+						error.compareAndSet(null, t);
+					}
+					finally {
+						readersDone.countDown();
+					}
+				}
+			}.start();
+		}
+
+		readersDone.await();
+		stop.set(true);
+		writer.join();
+
+		if (error.get()!=null) {
+			throw new AssertionError(error.get());
+		}
+		Assert.assertTrue(cache.getFlushCount() > 0);
+	}
+}
@@ -0,0 +1,54 @@
+package com.mindoo.domino.jna;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.utils.NotesNamingUtils.Privileges;
+
+/**
+ * Tests the cache keys of {@link NotesDbQueryResultCache}, does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNotesDbQueryResultCache {
+	private static final String DBKEY = "!!fakenames.nsf";
+	private static final String QUERY = "Lastname = 'Abbott'";
+	private static final EnumSet<Privileges> AUTHENTICATED = EnumSet.of(Privileges.Authenticated);
+
+	private static String createKey(List<String> names, EnumSet<Privileges> privileges) {
+		return NotesDbQueryResultCache.createKey(DBKEY, names, privileges, 0, QUERY);
+	}
+
+	@Test
+	public void testUsersGetDifferentKeys() {
+		List<String> user1 = Arrays.asList("CN=User 1/O=Mindoo", "*/O=Mindoo", "*", "Readers");
+		List<String> user2 = Arrays.asList("CN=User 2/O=Mindoo", "*/O=Mindoo", "*");
+
+		String key1 = createKey(user1, AUTHENTICATED);
+		String key2 = createKey(user2, AUTHENTICATED);
+		Assert.assertFalse("Users with different names lists share a key", key1.equals(key2));
+
+		//same user with the same access shares the key, names are case insensitive
+		Assert.assertEquals(key1, createKey(Arrays.asList("cn=user 1/o=mindoo", "*/O=Mindoo", "*", "readers"),
+				AUTHENTICATED));
+
+		//the same names list with other privileges, e.g. full access, gets its own key
+		Assert.assertFalse(key1.equals(createKey(user1, EnumSet.of(Privileges.Authenticated, Privileges.FullAdminAccess))));
+
+		//concatenated names cannot produce the key of another names list
+		Assert.assertFalse(createKey(Arrays.asList("ab"), AUTHENTICATED).equals(
+				createKey(Arrays.asList("a", "b"), AUTHENTICATED)));
+	}
+
+	@Test
+	public void testKeysStartWithDbKey() {
+		//invalidating a database removes the results of all users
+		String key = createKey(Arrays.asList("CN=User 1/O=Mindoo"), AUTHENTICATED);
+		Assert.assertTrue(key.startsWith(DBKEY + "|"));
+		Assert.assertTrue(NotesDbQueryResultCache.createKey(DBKEY, null, null, 4, QUERY).startsWith(DBKEY + "|"));
+	}
+}
@@ -0,0 +1,142 @@
+package com.mindoo.domino.jna.gc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Objects for {@link NotesGC} tests that register fake handles in the active GC context
+ * and record their disposal, does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class FakeGCObjects {
+	private static final AtomicLong nextHandle = new AtomicLong(1000);
+
+	private FakeGCObjects() {
+	}
+
+	/**
+	 * Creates a thread-safe list to record the names of disposed objects
+	 *
+	 * @return list
+	 */
+	public static List<String> createDisposeLog() {
+		return Collections.synchronizedList(new ArrayList<String>());
+	}
+
+	/**
+	 * Object that registers itself in the active GC context and records when
+	 * and by which thread it has been disposed
+	 */
+	public static class FakeObject implements IRecyclableNotesObject {
+		private final String m_name;
+		private final long m_handle = nextHandle.incrementAndGet();
+		private final List<String> m_disposeLog;
+		private volatile boolean m_recycled;
+		private volatile String m_disposingThread;
+
+		public FakeObject(String name, List<String> disposeLog) {
+			m_name = name;
+			m_disposeLog = disposeLog;
+			NotesGC.__objectCreated(FakeObject.class, this);
+		}
+
+		@Override
+		public void recycle() {
+			if (m_recycled) {
+				return;
+			}
+			NotesGC.__objectBeeingBeRecycled(FakeObject.class, this);
+			m_recycled = true;
+			m_disposingThread = Thread.currentThread().getName();
+			m_disposeLog.add(m_name);
+		}
+
+		@Override
+		public boolean isRecycled() {
+			return m_recycled;
+		}
+
+		@Override
+		public boolean isNoRecycle() {
+			return false;
+		}
+
+		@Override
+		public int getHandle32() {
+			return (int) m_handle;
+		}
+
+		@Override
+		public long getHandle64() {
+			return m_handle;
+		}
+
+		/**
+		 * Returns the name of the thread that disposed the object
+		 *
+		 * @return thread name or null if not recycled
+		 */
+		public String getDisposingThread() {
+			return m_disposingThread;
+		}
+
+		/**
+		 * Looks up the object by its handle in the active GC context
+		 *
+		 * @return object
+		 * @throws com.mindoo.domino.jna.errors.NotesError if the handle is not registered
+		 */
+		public IRecyclableNotesObject lookup() {
+			return NotesGC.__b64_checkValidObjectHandle(FakeObject.class, m_handle);
+		}
+
+		@Override
+		public String toString() {
+			return "FakeObject [name="+m_name+", handle="+m_handle+"]";
+		}
+	}
+
+	/**
+	 * Memory handle that registers itself in the active GC context
+	 */
+	public static class FakeMemory implements IAllocatedMemory {
+		private final String m_name;
+		private final long m_handle = nextHandle.incrementAndGet();
+		private final List<String> m_disposeLog;
+		private volatile boolean m_freed;
+
+		public FakeMemory(String name, List<String> disposeLog) {
+			m_name = name;
+			m_disposeLog = disposeLog;
+			NotesGC.__memoryAllocated(this);
+		}
+
+		@Override
+		public void free() {
+			if (m_freed) {
+				return;
+			}
+			NotesGC.__memoryBeeingFreed(this);
+			m_freed = true;
+			m_disposeLog.add(m_name);
+		}
+
+		@Override
+		public boolean isFreed() {
+			return m_freed;
+		}
+
+		@Override
+		public int getHandle32() {
+			return (int) m_handle;
+		}
+
+		@Override
+		public long getHandle64() {
+			return m_handle;
+		}
+	}
+}
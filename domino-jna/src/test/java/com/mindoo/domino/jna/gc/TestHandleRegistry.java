@@ -0,0 +1,245 @@
+package com.mindoo.domino.jna.gc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the handle lookup, removal and disposal order of {@link HandleRegistry},
+ * does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestHandleRegistry {
+	/** index size of a new registry */
+	private static final int INITIAL_INDEX_MASK = 31;
+
+	/**
+	 * Finds handles with the same home slot in the index of a new registry
+	 *
+	 * @param type type
+	 * @param count number of handles
+	 * @return handles
+	 */
+	private static long[] findCollidingHandles(Class<?> type, int count) {
+		long[] handles = new long[count];
+		int slot = HandleRegistry.hash(type, 1000) & INITIAL_INDEX_MASK;
+		int found = 0;
+		for (long handle=1000; found<count; handle++) {
+			if ((HandleRegistry.hash(type, handle) & INITIAL_INDEX_MASK) == slot) {
+				handles[found++] = handle;
+			}
+		}
+		return handles;
+	}
+
+	/**
+	 * Returns the values in the order used by NotesGC to dispose handles
+	 *
+	 * @param registry registry
+	 * @return values, most recently added first
+	 */
+	private static List<String> disposeAll(HandleRegistry<String> registry) {
+		List<String> values = new ArrayList<String>();
+		int pos;
+		while ((pos = registry.lastPosition()) >= 0) {
+			String value = registry.getValueAt(pos);
+			Assert.assertNotNull("Removed entry at last position "+pos, value);
+			values.add(value);
+			Assert.assertEquals(value, registry.remove(registry.getTypeAt(pos), registry.getHandleAt(pos)));
+		}
+		Assert.assertTrue(registry.isEmpty());
+		return values;
+	}
+
+	@Test
+	public void testCollidingKeys() {
+		HandleRegistry<String> registry = new HandleRegistry<String>();
+		long[] handles = findCollidingHandles(null, 6);
+		for (long currHandle : handles) {
+			Assert.assertNull(registry.put(null, currHandle, "h"+currHandle));
+		}
+		//same handle with other types
+		Assert.assertNull(registry.put(String.class, handles[0], "string"));
+		Assert.assertNull(registry.put(Integer.class, handles[0], "integer"));
+		Assert.assertEquals(8, registry.size());
+
+		for (long currHandle : handles) {
+			Assert.assertEquals("h"+currHandle, registry.get(null, currHandle));
+		}
+		Assert.assertEquals("string", registry.get(String.class, handles[0]));
+		Assert.assertEquals("integer", registry.get(Integer.class, handles[0]));
+		Assert.assertNull(registry.get(Long.class, handles[0]));
+		Assert.assertNull(registry.get(null, handles[5] + 1));
+
+		//replacing a value keeps the size
+		Assert.assertEquals("h"+handles[2], registry.put(null, handles[2], "replaced"));
+		Assert.assertEquals("replaced", registry.get(null, handles[2]));
+		Assert.assertEquals(8, registry.size());
+
+		//removing entries from the middle of the probe sequence keeps the following ones reachable
+		Assert.assertEquals("replaced", registry.remove(null, handles[2]));
+		Assert.assertEquals("h"+handles[0], registry.remove(null, handles[0]));
+		Assert.assertNull(registry.remove(null, handles[0]));
+		Assert.assertNull(registry.get(null, handles[0]));
+		Assert.assertNull(registry.get(null, handles[2]));
+		for (int i : new int[] {1, 3, 4, 5}) {
+			Assert.assertEquals("h"+handles[i], registry.get(null, handles[i]));
+		}
+		Assert.assertEquals("string", registry.get(String.class, handles[0]));
+		Assert.assertEquals("integer", registry.get(Integer.class, handles[0]));
+		Assert.assertEquals(6, registry.size());
+
+		//removed keys can be added again
+		Assert.assertNull(registry.put(null, handles[0], "readded"));
+		Assert.assertEquals("readded", registry.get(null, handles[0]));
+		Assert.assertEquals(7, registry.size());
+	}
+
+	@Test
+	public void testRemoveInMiddle() {
+		HandleRegistry<String> registry = new HandleRegistry<String>();
+		for (int i=0; i<10; i++) {
+			registry.put(null, 100+i, "v"+i);
+		}
+		Assert.assertEquals("v3", registry.remove(null, 103));
+		Assert.assertEquals(9, registry.size());
+		//the position of the removed entry stays in use
+		Assert.assertEquals(9, registry.lastPosition());
+		Assert.assertNull(registry.getValueAt(3));
+		for (int i=0; i<10; i++) {
+			Assert.assertEquals(i==3 ? null : "v"+i, registry.get(null, 100+i));
+			if (i!=3) {
+				Assert.assertEquals(100+i, registry.getHandleAt(i));
+				Assert.assertEquals("v"+i, registry.getValueAt(i));
+			}
+		}
+
+		//removing the last entry also drops the removed entries before it
+		Assert.assertEquals("v9", registry.remove(null, 109));
+		Assert.assertEquals(8, registry.lastPosition());
+		for (int i=8; i>=4; i--) {
+			registry.remove(null, 100+i);
+		}
+		Assert.assertEquals(2, registry.lastPosition());
+		Assert.assertEquals(3, registry.size());
+		for (int i=0; i<3; i++) {
+			Assert.assertEquals("v"+i, registry.get(null, 100+i));
+		}
+
+		registry.clear();
+		Assert.assertTrue(registry.isEmpty());
+		Assert.assertEquals(-1, registry.lastPosition());
+		Assert.assertNull(registry.get(null, 100));
+	}
+
+	@Test
+	public void testGrowthAndCompaction() {
+		HandleRegistry<String> registry = new HandleRegistry<String>();
+		for (int i=0; i<16; i++) {
+			registry.put(null, i, "v"+i);
+		}
+		//remove every second entry except the last one
+		for (int i=0; i<16; i+=2) {
+			registry.remove(null, i);
+		}
+		Assert.assertEquals(15, registry.lastPosition());
+		Assert.assertEquals(8, registry.size());
+
+		//the arrays are full and half of the entries are removed, so they get compacted
+		registry.put(null, 16, "v16");
+		Assert.assertEquals(8, registry.lastPosition());
+		for (int pos=0; pos<=8; pos++) {
+			long handle = pos==8 ? 16 : 2*pos + 1;
+			Assert.assertEquals(handle, registry.getHandleAt(pos));
+			Assert.assertEquals("v"+handle, registry.getValueAt(pos));
+			Assert.assertEquals("v"+handle, registry.get(null, handle));
+		}
+
+		//growth beyond the initial capacity
+		for (int i=17; i<1000; i++) {
+			registry.put(i % 2==0 ? null : String.class, i, "v"+i);
+		}
+		Assert.assertEquals(992, registry.size());
+		Assert.assertEquals(991, registry.lastPosition());
+		for (int i=0; i<1000; i++) {
+			Class<?> type = i>16 && i % 2==1 ? String.class : null;
+			boolean removed = i<16 && i % 2==0;
+			Assert.assertEquals(removed ? null : "v"+i, registry.get(type, i));
+		}
+	}
+
+	@Test
+	public void testDisposalOrderIsReverseInsertionOrder() {
+		HandleRegistry<String> registry = new HandleRegistry<String>();
+		List<String> expected = new ArrayList<String>();
+		for (int i=0; i<40; i++) {
+			registry.put(i % 3==0 ? String.class : null, 500+i, "v"+i);
+		}
+		//replaced values keep their position
+		registry.put(null, 501, "v1b");
+		for (int i=0; i<40; i++) {
+			if (i % 4==2) {
+				Assert.assertEquals("v"+i, registry.remove(i % 3==0 ? String.class : null, 500+i));
+			}
+		}
+		for (int i=39; i>=0; i--) {
+			if (i % 4!=2) {
+				expected.add(i==1 ? "v1b" : "v"+i);
+			}
+		}
+		Assert.assertEquals(expected, disposeAll(registry));
+		Assert.assertEquals(-1, registry.lastPosition());
+	}
+
+	@Test
+	public void testRandomOperationsMatchLinkedHashMap() {
+		Random rnd = new Random(42);
+		Class<?>[] types = new Class<?>[] {null, String.class, Integer.class};
+		HandleRegistry<String> registry = new HandleRegistry<String>();
+		//same insertion order semantics as the registry: replacing a value keeps the position
+		Map<String,String> model = new LinkedHashMap<String,String>();
+
+		for (int i=0; i<20000; i++) {
+			Class<?> type = types[rnd.nextInt(types.length)];
+			//small handle range for frequent collisions and replacements
+			long handle = rnd.nextInt(200);
+			String key = type + "/" + handle;
+			int op = rnd.nextInt(10);
+			if (op < 5) {
+				String value = "v"+i;
+				Assert.assertEquals(model.put(key, value), registry.put(type, handle, value));
+			}
+			else if (op < 9) {
+				Assert.assertEquals(model.remove(key), registry.remove(type, handle));
+			}
+			else {
+				Assert.assertEquals(model.get(key), registry.get(type, handle));
+			}
+			Assert.assertEquals(model.size(), registry.size());
+		}
+
+		List<String> expected = new ArrayList<String>(model.values());
+		Collections.reverse(expected);
+		Assert.assertEquals(expected, disposeAll(registry));
+	}
+
+	@Test
+	public void testNullValueRejected() {
+		HandleRegistry<String> registry = new HandleRegistry<String>();
+		try {
+			registry.put(null, 1, null);
+			Assert.fail("Null value has been accepted");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+		Assert.assertTrue(registry.isEmpty());
+	}
+}
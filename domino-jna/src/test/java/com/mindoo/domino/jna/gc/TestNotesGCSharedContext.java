@@ -0,0 +1,235 @@
+package com.mindoo.domino.jna.gc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.FakeGCObjects.FakeMemory;
+import com.mindoo.domino.jna.gc.FakeGCObjects.FakeObject;
+import com.mindoo.domino.jna.gc.NotesGC.DominoGCContext;
+
+/**
+ * Tests handle tracking and disposal of thread and shared {@link NotesGC} contexts,
+ * does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNotesGCSharedContext {
+	/**
+	 * Runs code in a new thread and waits until it is done
+	 *
+	 * @param callable code
+	 * @return result
+	 * @throws Exception error thrown by the code, assertion errors are rethrown as well
+	 *
+	 * @param <T> result type
+	 */
+	private static <T> T runInOtherThread(final Callable<T> callable) throws Exception {
+		final AtomicReference<T> result = new AtomicReference<T>();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread t = new Thread("gctest-worker") {
+			@Override
+			public void run() {
+				try {
+					result.set(callable.call());
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		};
+		t.start();
+		t.join();
+		if (error.get() instanceof Error) {
+			throw (Error) error.get();
+		}
+		else if (error.get()!=null) {
+			throw (Exception) error.get();
+		}
+		return result.get();
+	}
+
+	@Test
+	public void testDisposalInReverseOrderOnClose() {
+		List<String> disposeLog = FakeGCObjects.createDisposeLog();
+		FakeObject objA, objB, objC;
+		FakeMemory memA, memB;
+		try (DominoGCContext ctx = NotesGC.initThread()) {
+			objA = new FakeObject("objA", disposeLog);
+			memA = new FakeMemory("memA", disposeLog);
+			objB = new FakeObject("objB", disposeLog);
+			objC = new FakeObject("objC", disposeLog);
+			memB = new FakeMemory("memB", disposeLog);
+
+			objB.recycle();
+			Assert.assertEquals(Arrays.asList("objB"), disposeLog);
+			try {
+				objB.lookup();
+				Assert.fail("Recycled object has been found");
+			}
+			catch (NotesError e) {
+				//expected
+			}
+
+			//nested contexts do not dispose anything
+			try (DominoGCContext nestedCtx = NotesGC.initThread()) {
+				new FakeObject("objD", disposeLog);
+			}
+			Assert.assertEquals(Arrays.asList("objB"), disposeLog);
+		}
+		Assert.assertFalse(NotesGC.isAutoGCActive());
+		//Domino objects first, then memory, each in reverse order
+		Assert.assertEquals(Arrays.asList("objB", "objD", "objC", "objA", "memB", "memA"), disposeLog);
+		Assert.assertTrue(objA.isRecycled() && objC.isRecycled() && memA.isFreed() && memB.isFreed());
+	}
+
+	@Test
+	public void testAttachAndDetach() throws Exception {
+		final List<String> disposeLog = FakeGCObjects.createDisposeLog();
+		try (DominoGCContext outerCtx = NotesGC.initThread()) {
+			final DominoGCContext sharedCtx = NotesGC.initSharedContext();
+			Assert.assertTrue(sharedCtx.isShared());
+			Assert.assertSame(sharedCtx, NotesGC.getSharedContext());
+			final FakeObject objA = new FakeObject("objA", disposeLog);
+
+			final FakeObject objB = runInOtherThread(new Callable<FakeObject>() {
+
+				@Override
+				public FakeObject call() throws Exception {
+					Assert.assertFalse(NotesGC.isAutoGCActive());
+					FakeObject objB;
+					try (DominoGCContext ctx = NotesGC.attachThread(sharedCtx)) {
+						Assert.assertFalse(ctx.isShared());
+						Assert.assertSame(sharedCtx, NotesGC.getSharedContext());
+						//objects of the creator thread can be used
+						Assert.assertSame(objA, objA.lookup());
+						objB = new FakeObject("objB", disposeLog);
+					}
+					//detaching does not dispose anything
+					Assert.assertFalse(NotesGC.isAutoGCActive());
+					Assert.assertTrue(disposeLog.isEmpty());
+					return objB;
+				}
+			});
+
+			//objects of attached threads are registered in the shared context
+			Assert.assertSame(objB, objB.lookup());
+			sharedCtx.close();
+			Assert.assertEquals(Arrays.asList("objB", "objA"), disposeLog);
+			Assert.assertEquals(Thread.currentThread().getName(), objB.getDisposingThread());
+
+			//the previous context of the thread is active again
+			Assert.assertTrue(NotesGC.isAutoGCActive());
+			Assert.assertNull(NotesGC.getSharedContext());
+			new FakeObject("objC", disposeLog);
+			//closing again is ignored
+			sharedCtx.close();
+		}
+		Assert.assertEquals(Arrays.asList("objB", "objA", "objC"), disposeLog);
+		Assert.assertFalse(NotesGC.isAutoGCActive());
+	}
+
+	@Test
+	public void testAttachAfterCloseIsRejected() throws Exception {
+		final DominoGCContext sharedCtx = NotesGC.initSharedContext();
+		sharedCtx.close();
+		Assert.assertFalse(NotesGC.isAutoGCActive());
+
+		Exception error = runInOtherThread(new Callable<Exception>() {
+
+			@Override
+			public Exception call() throws Exception {
+				try {
+					NotesGC.attachThread(sharedCtx);
+					return null;
+				}
+				catch (IllegalStateException e) {
+					return e;
+				}
+			}
+		});
+		Assert.assertNotNull("Thread has been attached to a closed context", error);
+		Assert.assertFalse(NotesGC.isAutoGCActive());
+
+		try (DominoGCContext ctx = NotesGC.initThread()) {
+			try {
+				NotesGC.attachThread(ctx);
+				Assert.fail("Thread has been attached to a context that is not shared");
+			}
+			catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+
+	@Test
+	public void testCloseByOtherThreadIsRejected() throws Exception {
+		final DominoGCContext sharedCtx = NotesGC.initSharedContext();
+		try {
+			Exception error = runInOtherThread(new Callable<Exception>() {
+
+				@Override
+				public Exception call() throws Exception {
+					try {
+						sharedCtx.close();
+						return null;
+					}
+					catch (IllegalStateException e) {
+						return e;
+					}
+				}
+			});
+			Assert.assertNotNull("Shared context has been closed by another thread", error);
+		}
+		finally {
+			sharedCtx.close();
+		}
+	}
+
+	@Test
+	public void testLastDetachingThreadDisposesAfterInterruptedClose() throws Exception {
+		final List<String> disposeLog = FakeGCObjects.createDisposeLog();
+		final DominoGCContext sharedCtx = NotesGC.initSharedContext();
+		final FakeObject objA = new FakeObject("objA", disposeLog);
+
+		final CountDownLatch attached = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+		final AtomicReference<FakeObject> objB = new AtomicReference<FakeObject>();
+		final AtomicReference<Throwable> workerError = new AtomicReference<Throwable>();
+		Thread worker = new Thread("gctest-lastdetaching") {
+			@Override
+			public void run() {
+				try (DominoGCContext ctx = NotesGC.attachThread(sharedCtx)) {
+					objB.set(new FakeObject("objB", disposeLog));
+					attached.countDown();
+					closed.await();
+					//the shared context is closed, but its objects can still be used until this thread detaches
+					Assert.assertSame(objA, objA.lookup());
+				}
+				catch (Throwable t) {
+					workerError.set(t);
+				}
+			}
+		};
+		worker.start();
+		attached.await();
+
+		//an interrupt stops waiting for the attached thread
+		Thread.currentThread().interrupt();
+		sharedCtx.close();
+		Assert.assertTrue("Interrupt flag has not been restored", Thread.interrupted());
+		Assert.assertFalse(NotesGC.isAutoGCActive());
+		Assert.assertTrue(disposeLog.isEmpty());
+
+		closed.countDown();
+		worker.join();
+		Assert.assertNull(workerError.get());
+		Assert.assertEquals(Arrays.asList("objB", "objA"), disposeLog);
+		Assert.assertEquals("gctest-lastdetaching", objA.getDisposingThread());
+	}
+}
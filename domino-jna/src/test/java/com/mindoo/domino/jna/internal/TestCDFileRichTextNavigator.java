@@ -0,0 +1,275 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.richtext.IRichTextNavigator.RichTextNavPosition;
+import com.sun.jna.Memory;
+
+/**
+ * Tests the navigation in CD record files with {@link CDFileRichTextNavigator}, with and
+ * without memory mapping, does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestCDFileRichTextNavigator {
+	/** more records than the initial capacity of the record offset index */
+	private static final int RECORD_COUNT = 150;
+
+	/**
+	 * Returns the record type as reported by the navigator: BSIG without the length byte,
+	 * WSIG with the 0xff marker, LSIG with the 0x00 marker
+	 *
+	 * @param recordIndex record index
+	 * @return type
+	 */
+	private static short getExpectedType(int recordIndex) {
+		int sig = 0x40 + (recordIndex % 64);
+		switch (recordIndex % 3) {
+		case 0:
+			return (short) sig;
+		case 1:
+			return (short) (sig | NotesConstants.WORDRECORDLENGTH);
+		default:
+			return (short) (sig | NotesConstants.LONGRECORDLENGTH);
+		}
+	}
+
+	private static int getHeaderLength(int recordIndex) {
+		switch (recordIndex % 3) {
+		case 0:
+			return 2;
+		case 1:
+			return 4;
+		default:
+			return 6;
+		}
+	}
+
+	/** odd data lengths produce odd record lengths that get padded to WORD boundaries */
+	private static int getDataLength(int recordIndex) {
+		return 1 + (recordIndex % 5);
+	}
+
+	/**
+	 * Writes a CD record file with the TYPE_COMPOSITE data type WORD followed by
+	 * BSIG, WSIG and LSIG records. The data bytes of each record contain its index.
+	 *
+	 * @param recordCount number of records
+	 * @param truncateLastRecord true to cut off the data of the last record
+	 * @return file
+	 * @throws IOException in case of I/O errors
+	 */
+	private static File createCDFile(int recordCount, boolean truncateLastRecord) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(2 + recordCount * 16).order(ByteOrder.nativeOrder());
+		buf.putShort((short) 1);
+		for (int i=0; i<recordCount; i++) {
+			byte sig = (byte) (0x40 + (i % 64));
+			int headerLength = getHeaderLength(i);
+			int dataLength = getDataLength(i);
+			int recordLength = headerLength + dataLength;
+
+			buf.put(sig);
+			if (headerLength==2) {
+				buf.put((byte) recordLength);
+			}
+			else if (headerLength==4) {
+				buf.put((byte) 0xff);
+				buf.putShort((short) recordLength);
+			}
+			else {
+				buf.put((byte) 0);
+				buf.putInt(recordLength);
+			}
+			for (int j=0; j<dataLength; j++) {
+				buf.put((byte) i);
+			}
+			if ((buf.position() & 1)==1 && i<recordCount-1) {
+				buf.put((byte) 0);
+			}
+		}
+		int fileSize = buf.position();
+		if (truncateLastRecord) {
+			fileSize--;
+		}
+
+		File file = File.createTempFile("cdrecords", ".cd");
+		file.deleteOnExit();
+		FileOutputStream fOut = new FileOutputStream(file);
+		try {
+			fOut.write(buf.array(), 0, fileSize);
+		}
+		finally {
+			fOut.close();
+		}
+		return file;
+	}
+
+	private static void assertRecord(CDFileRichTextNavigator nav, int recordIndex) {
+		String msg = "Record "+recordIndex;
+		Assert.assertEquals(msg, getExpectedType(recordIndex), nav.getCurrentRecordTypeAsShort());
+		Assert.assertEquals(msg, getHeaderLength(recordIndex), nav.getCurrentRecordHeaderLength());
+		Assert.assertEquals(msg, getDataLength(recordIndex), nav.getCurrentRecordDataLength());
+		Assert.assertEquals(msg, getHeaderLength(recordIndex) + getDataLength(recordIndex), nav.getCurrentRecordTotalLength());
+
+		Memory data = nav.getCurrentRecordData();
+		byte[] dataBytes = data.getByteArray(0, getDataLength(recordIndex));
+		for (byte currByte : dataBytes) {
+			Assert.assertEquals(msg, (byte) recordIndex, currByte);
+		}
+		Memory dataWithHeader = nav.getCurrentRecordDataWithHeader();
+		Assert.assertEquals(msg, (byte) (0x40 + (recordIndex % 64)), dataWithHeader.getByte(0));
+	}
+
+	private void testNavigation(boolean useMemoryMapping) throws IOException {
+		File file = createCDFile(RECORD_COUNT, false);
+		FileInputStream fIn = new FileInputStream(file);
+		try {
+			CDFileRichTextNavigator nav = new CDFileRichTextNavigator(fIn, file.getAbsolutePath(), file.length(), useMemoryMapping);
+			Assert.assertEquals(useMemoryMapping, nav.isMemoryMapped());
+			Assert.assertFalse(nav.isEmpty());
+
+			//forward
+			Assert.assertTrue(nav.gotoFirst());
+			Assert.assertFalse(nav.hasPrev());
+			RichTextNavPosition middlePos = null;
+			for (int i=0; i<RECORD_COUNT; i++) {
+				assertRecord(nav, i);
+				if (i==RECORD_COUNT/2) {
+					middlePos = nav.getCurrentRecordPosition();
+				}
+				Assert.assertEquals(i<RECORD_COUNT-1, nav.hasNext());
+				Assert.assertEquals(i<RECORD_COUNT-1, nav.gotoNext());
+			}
+			assertRecord(nav, RECORD_COUNT-1);
+
+			//backward via the record offset index
+			for (int i=RECORD_COUNT-1; i>0; i--) {
+				Assert.assertTrue(nav.hasPrev());
+				Assert.assertTrue(nav.gotoPrev());
+				assertRecord(nav, i-1);
+			}
+			Assert.assertFalse(nav.hasPrev());
+			Assert.assertFalse(nav.gotoPrev());
+			assertRecord(nav, 0);
+
+			Assert.assertTrue(nav.gotoLast());
+			assertRecord(nav, RECORD_COUNT-1);
+
+			nav.restoreCurrentRecordPosition(middlePos);
+			assertRecord(nav, RECORD_COUNT/2);
+			Assert.assertTrue(nav.gotoNext());
+			assertRecord(nav, RECORD_COUNT/2 + 1);
+		}
+		finally {
+			fIn.close();
+		}
+	}
+
+	@Test
+	public void testNavigationMapped() throws IOException {
+		testNavigation(true);
+	}
+
+	@Test
+	public void testNavigationFileChannel() throws IOException {
+		testNavigation(false);
+	}
+
+	private void testGotoLastWithoutPriorScan(boolean useMemoryMapping) throws IOException {
+		File file = createCDFile(RECORD_COUNT, false);
+		FileInputStream fIn = new FileInputStream(file);
+		try {
+			CDFileRichTextNavigator nav = new CDFileRichTextNavigator(fIn, file.getAbsolutePath(), file.length(), useMemoryMapping);
+			Assert.assertTrue(nav.gotoLast());
+			assertRecord(nav, RECORD_COUNT-1);
+			RichTextNavPosition lastPos = nav.getCurrentRecordPosition();
+
+			//the first call of gotoLast has recorded all offsets
+			for (int i=RECORD_COUNT-1; i>0; i--) {
+				Assert.assertTrue(nav.gotoPrev());
+				assertRecord(nav, i-1);
+			}
+			Assert.assertTrue(nav.gotoLast());
+			assertRecord(nav, RECORD_COUNT-1);
+			Assert.assertEquals(lastPos, nav.getCurrentRecordPosition());
+
+			Assert.assertTrue(nav.gotoFirst());
+			nav.restoreCurrentRecordPosition(lastPos);
+			assertRecord(nav, RECORD_COUNT-1);
+		}
+		finally {
+			fIn.close();
+		}
+	}
+
+	@Test
+	public void testGotoLastWithoutPriorScanMapped() throws IOException {
+		testGotoLastWithoutPriorScan(true);
+	}
+
+	@Test
+	public void testGotoLastWithoutPriorScanFileChannel() throws IOException {
+		testGotoLastWithoutPriorScan(false);
+	}
+
+	@Test
+	public void testRestorePositionOfOtherNavigator() throws IOException {
+		File file = createCDFile(3, false);
+		FileInputStream fIn1 = new FileInputStream(file);
+		FileInputStream fIn2 = new FileInputStream(file);
+		try {
+			CDFileRichTextNavigator nav1 = new CDFileRichTextNavigator(fIn1, file.getAbsolutePath(), file.length(), true);
+			CDFileRichTextNavigator nav2 = new CDFileRichTextNavigator(fIn2, file.getAbsolutePath(), file.length(), false);
+			try {
+				nav2.restoreCurrentRecordPosition(nav1.getCurrentRecordPosition());
+				Assert.fail("Position of other navigator has been accepted");
+			}
+			catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+		finally {
+			fIn1.close();
+			fIn2.close();
+		}
+	}
+
+	private void testTruncatedRecord(boolean useMemoryMapping) throws IOException {
+		File file = createCDFile(4, true);
+		FileInputStream fIn = new FileInputStream(file);
+		try {
+			CDFileRichTextNavigator nav = new CDFileRichTextNavigator(fIn, file.getAbsolutePath(), file.length(), useMemoryMapping);
+			Assert.assertTrue(nav.gotoNext());
+			Assert.assertTrue(nav.gotoNext());
+			assertRecord(nav, 2);
+			try {
+				nav.gotoNext();
+				Assert.fail("Record exceeding the file size has been read");
+			}
+			catch (IllegalStateException e) {
+				//expected
+			}
+		}
+		finally {
+			fIn.close();
+		}
+	}
+
+	@Test
+	public void testTruncatedRecordMapped() throws IOException {
+		testTruncatedRecord(true);
+	}
+
+	@Test
+	public void testTruncatedRecordFileChannel() throws IOException {
+		testTruncatedRecord(false);
+	}
+}
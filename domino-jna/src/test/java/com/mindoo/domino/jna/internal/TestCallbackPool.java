@@ -0,0 +1,258 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.IOException;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Tests reuse and thread confinement of pooled callbacks in {@link CallbackPool},
+ * does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestCallbackPool {
+
+	/**
+	 * Target that returns a fixed value
+	 */
+	private static class FixedTarget implements NotesCallbacks.IdEnumerateProc {
+		private final short m_result;
+
+		private FixedTarget(int result) {
+			m_result = (short) result;
+		}
+
+		@Override
+		public short invoke(Pointer parameter, int noteId) {
+			return m_result;
+		}
+	}
+
+	/**
+	 * Runs code in a new thread, so that it starts with an empty thread local pool
+	 *
+	 * @param callable code
+	 * @return result
+	 * @throws Exception error thrown by the code, assertion errors are rethrown as well
+	 *
+	 * @param <T> result type
+	 */
+	private static <T> T runInNewThread(final Callable<T> callable) throws Exception {
+		final AtomicReference<T> result = new AtomicReference<T>();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread t = new Thread("callbackpool-test") {
+			@Override
+			public void run() {
+				try {
+					result.set(callable.call());
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		};
+		t.start();
+		t.join();
+		if (error.get() instanceof Error) {
+			throw (Error) error.get();
+		}
+		else if (error.get()!=null) {
+			throw (Exception) error.get();
+		}
+		return result.get();
+	}
+
+	@Test
+	public void testNestedAcquireReturnsDistinctInstances() throws Exception {
+		runInNewThread(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				NotesCallbacks.IdEnumerateProc outer = CallbackPool.IDENUMERATE.acquire(new FixedTarget(1));
+				try {
+					//e.g. an ID table enumeration from within the outer callback
+					NotesCallbacks.IdEnumerateProc inner = CallbackPool.IDENUMERATE.acquire(new FixedTarget(2));
+					try {
+						Assert.assertNotSame(outer, inner);
+						Assert.assertEquals(1, outer.invoke(null, 0));
+						Assert.assertEquals(2, inner.invoke(null, 0));
+					}
+					finally {
+						CallbackPool.IDENUMERATE.release(inner);
+					}
+					//the outer callback still forwards to its own target
+					Assert.assertEquals(1, outer.invoke(null, 0));
+
+					//the released instance is reused for the next nested call
+					NotesCallbacks.IdEnumerateProc inner2 = CallbackPool.IDENUMERATE.acquire(new FixedTarget(3));
+					Assert.assertSame(inner, inner2);
+					Assert.assertEquals(3, inner2.invoke(null, 0));
+					CallbackPool.IDENUMERATE.release(inner2);
+				}
+				finally {
+					CallbackPool.IDENUMERATE.release(outer);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testReleaseClearsTarget() throws Exception {
+		runInNewThread(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				NotesCallbacks.IdEnumerateProc proc = CallbackPool.IDENUMERATE.acquire(new FixedTarget(1));
+				CallbackPool.IDENUMERATE.release(proc);
+				//the pooled instance does not keep the target reachable
+				try {
+					proc.invoke(null, 0);
+					Assert.fail("Released callback still forwards to its target");
+				}
+				catch (NullPointerException e) {
+					//expected
+				}
+				//releasing null is ignored
+				CallbackPool.IDENUMERATE.release(null);
+				return null;
+			}
+		});
+
+		try {
+			CallbackPool.IDENUMERATE.acquire(null);
+			Assert.fail("Null target has been accepted");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testMaxPooledInstancesPerThread() throws Exception {
+		runInNewThread(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				int count = CallbackPool.MAX_POOLED_PER_THREAD + 2;
+				List<NotesCallbacks.IdEnumerateProc> procs = new ArrayList<NotesCallbacks.IdEnumerateProc>();
+				for (int i=0; i<count; i++) {
+					procs.add(CallbackPool.IDENUMERATE.acquire(new FixedTarget(i)));
+				}
+				for (NotesCallbacks.IdEnumerateProc currProc : procs) {
+					CallbackPool.IDENUMERATE.release(currProc);
+				}
+
+				//only the first released instances are kept, the others get new instances
+				List<NotesCallbacks.IdEnumerateProc> reacquired = new ArrayList<NotesCallbacks.IdEnumerateProc>();
+				for (int i=0; i<count; i++) {
+					reacquired.add(CallbackPool.IDENUMERATE.acquire(new FixedTarget(i)));
+				}
+				int reused = 0;
+				for (int i=0; i<count; i++) {
+					NotesCallbacks.IdEnumerateProc currProc = reacquired.get(i);
+					if (procs.contains(currProc)) {
+						Assert.assertTrue("Instance has been kept although the pool was full",
+								procs.indexOf(currProc) < CallbackPool.MAX_POOLED_PER_THREAD);
+						reused++;
+					}
+					Assert.assertEquals(i, currProc.invoke(null, 0));
+				}
+				Assert.assertEquals(CallbackPool.MAX_POOLED_PER_THREAD, reused);
+				for (NotesCallbacks.IdEnumerateProc currProc : reacquired) {
+					CallbackPool.IDENUMERATE.release(currProc);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testInstancesAreNotSharedAcrossThreads() throws Exception {
+		runInNewThread(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				NotesCallbacks.IdEnumerateProc proc = CallbackPool.IDENUMERATE.acquire(new FixedTarget(1));
+				CallbackPool.IDENUMERATE.release(proc);
+
+				NotesCallbacks.IdEnumerateProc otherThreadProc = runInNewThread(new Callable<NotesCallbacks.IdEnumerateProc>() {
+
+					@Override
+					public NotesCallbacks.IdEnumerateProc call() throws Exception {
+						NotesCallbacks.IdEnumerateProc proc2 = CallbackPool.IDENUMERATE.acquire(new FixedTarget(2));
+						try {
+							Assert.assertEquals(2, proc2.invoke(null, 0));
+							return proc2;
+						}
+						finally {
+							CallbackPool.IDENUMERATE.release(proc2);
+						}
+					}
+				});
+				Assert.assertNotSame(proc, otherThreadProc);
+
+				//the instance released by this thread is still in its pool
+				NotesCallbacks.IdEnumerateProc reacquired = CallbackPool.IDENUMERATE.acquire(new FixedTarget(3));
+				try {
+					Assert.assertSame(proc, reacquired);
+					Assert.assertEquals(3, reacquired.invoke(null, 0));
+				}
+				finally {
+					CallbackPool.IDENUMERATE.release(reacquired);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testDoPrivilegedIfRequired() throws Exception {
+		Assert.assertEquals("result", CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<String>() {
+
+			@Override
+			public String run() throws Exception {
+				return "result";
+			}
+		}));
+
+		final IOException checkedException = new IOException("Checked exception");
+		try {
+			CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Object>() {
+
+				@Override
+				public Object run() throws Exception {
+					throw checkedException;
+				}
+			});
+			Assert.fail("Checked exception has not been thrown");
+		}
+		catch (PrivilegedActionException e) {
+			Assert.assertSame(checkedException, e.getException());
+		}
+
+		//runtime exceptions are not wrapped
+		final IllegalStateException runtimeException = new IllegalStateException("Runtime exception");
+		try {
+			CallbackPool.doPrivilegedIfRequired(new PrivilegedExceptionAction<Object>() {
+
+				@Override
+				public Object run() throws Exception {
+					throw runtimeException;
+				}
+			});
+			Assert.fail("Runtime exception has not been thrown");
+		}
+		catch (IllegalStateException e) {
+			Assert.assertSame(runtimeException, e);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests recording and decoding of native call breadcrumbs with {@link CrashBreadcrumbRing},
+ * does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestCrashBreadcrumbRing {
+
+	private static Method getMethod(String name) throws NoSuchMethodException {
+		return TestCrashBreadcrumbRing.class.getDeclaredMethod(name);
+	}
+
+	private static File createRingFile() throws IOException {
+		File file = File.createTempFile("breadcrumbs", ".ring");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static void nativeCallA() {
+	}
+
+	private static void nativeCallB() {
+	}
+
+	private static int countOccurrences(String str, String part) {
+		int count = 0;
+		int idx = -1;
+		while ((idx = str.indexOf(part, idx+1)) != -1) {
+			count++;
+		}
+		return count;
+	}
+
+	@Test
+	public void testDecodeRoundTrip() throws Exception {
+		File file = createRingFile();
+		CrashBreadcrumbRing ring = new CrashBreadcrumbRing(file, 4, 1);
+		Method methodA = getMethod("nativeCallA");
+		Method methodB = getMethod("nativeCallB");
+
+		//more calls than breadcrumbs per slot, so that the ring wraps
+		for (int i=0; i<100; i++) {
+			ring.callCompleted(ring.callStarted(methodA));
+		}
+		ring.callStarted(methodB);
+
+		String decoded = CrashBreadcrumbRing.decode(file);
+		Assert.assertTrue(decoded, decoded.contains("\"" + Thread.currentThread().getName() + "\", 101 native calls"));
+		Assert.assertTrue(decoded, decoded.contains("stack captured every 1 calls"));
+		Assert.assertFalse(decoded, decoded.contains("OVERFLOW"));
+		//only the last breadcrumbs are kept
+		Assert.assertEquals(decoded, 26, countOccurrences(decoded, " nativeCallA  [stack "));
+		Assert.assertEquals(decoded, 1, countOccurrences(decoded, " nativeCallB  <-- RUNNING"));
+		Assert.assertEquals(decoded, 1, countOccurrences(decoded, "<-- RUNNING"));
+
+		//the stack of the running call starts with the caller of the native method
+		int runningIdx = decoded.indexOf("<-- RUNNING");
+		String stack = decoded.substring(decoded.indexOf('\n', runningIdx) + 1);
+		Assert.assertTrue(decoded, stack.startsWith("\tat " + TestCrashBreadcrumbRing.class.getName() + ".testDecodeRoundTrip("));
+		Assert.assertFalse(decoded, stack.contains(CrashBreadcrumbRing.class.getName() + "."));
+	}
+
+	@Test
+	public void testStackSampling() throws Exception {
+		File file = createRingFile();
+		CrashBreadcrumbRing ring = new CrashBreadcrumbRing(file, 4, 4);
+		Method methodA = getMethod("nativeCallA");
+
+		//calls 1 and 5 capture the stack, the running call 7 does not
+		for (int i=0; i<6; i++) {
+			ring.callCompleted(ring.callStarted(methodA));
+		}
+		ring.callStarted(methodA);
+
+		String decoded = CrashBreadcrumbRing.decode(file);
+		Assert.assertEquals(decoded, 5, countOccurrences(decoded, "  [stack 0]"));
+		Assert.assertTrue(decoded, decoded.contains("nativeCallA  <-- RUNNING  [stack 0]\n  (last sampled stack of this method)\n\tat "
+				+ TestCrashBreadcrumbRing.class.getName() + ".testStackSampling("));
+	}
+
+	/**
+	 * Calls a native method in a new thread and keeps the thread running until the latch is released
+	 */
+	private static Thread startRecordingThread(final CrashBreadcrumbRing ring, final Method method, String name,
+			final CountDownLatch recorded, final CountDownLatch release) {
+		Thread t = new Thread(name) {
+			@Override
+			public void run() {
+				ring.callCompleted(ring.callStarted(method));
+				recorded.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		t.start();
+		return t;
+	}
+
+	@Test
+	public void testSlotOverflowAndReclaim() throws Exception {
+		File file = createRingFile();
+		final CrashBreadcrumbRing ring = new CrashBreadcrumbRing(file, 2, 1);
+		final Method methodA = getMethod("nativeCallA");
+
+		CountDownLatch recorded = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread t1 = startRecordingThread(ring, methodA, "slotthread-1", recorded, release);
+		Thread t2 = startRecordingThread(ring, methodA, "slotthread-2", recorded, release);
+		recorded.await();
+		//all slots are used by running threads
+		CountDownLatch overflowRecorded = new CountDownLatch(1);
+		Thread t3 = startRecordingThread(ring, methodA, "slotthread-3", overflowRecorded, release);
+		overflowRecorded.await();
+
+		String decoded = CrashBreadcrumbRing.decode(file);
+		Assert.assertTrue(decoded, decoded.contains("\"slotthread-1\", 1 native calls"));
+		Assert.assertTrue(decoded, decoded.contains("\"slotthread-2\", 1 native calls"));
+		Assert.assertFalse(decoded, decoded.contains("slotthread-3"));
+		Assert.assertTrue(decoded, decoded.contains("OVERFLOW: 1 threads did not get a free slot"));
+
+		release.countDown();
+		t1.join();
+		t2.join();
+		t3.join();
+		t1 = null;
+		t2 = null;
+		t3 = null;
+
+		//slots get reclaimed after the terminated threads have been garbage collected
+		long waitUntil = System.currentTimeMillis() + 20000;
+		int attempt = 0;
+		while (true) {
+			System.gc();
+			String threadName = "slotthread-reclaim-" + (++attempt);
+			Thread t = startRecordingThread(ring, methodA, threadName, new CountDownLatch(1), new CountDownLatch(0));
+			t.join();
+			decoded = CrashBreadcrumbRing.decode(file);
+			if (decoded.contains("\"" + threadName + "\"")) {
+				break;
+			}
+			if (System.currentTimeMillis() > waitUntil) {
+				Assert.fail("Slots of terminated threads have not been reclaimed: " + decoded);
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	@Test
+	public void testDeleteFile() throws Exception {
+		File file = createRingFile();
+		CrashBreadcrumbRing ring = new CrashBreadcrumbRing(file, 1, 1);
+		ring.deleteFile();
+		Assert.assertFalse(file.exists());
+		//recording still works after the file has been deleted
+		ring.callCompleted(ring.callStarted(getMethod("nativeCallA")));
+	}
+}
@@ -0,0 +1,337 @@
+package com.mindoo.domino.jna.sync;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.sync.SyncChangeProcessor.ChangeType;
+import com.mindoo.domino.jna.sync.SyncChangeProcessor.SyncChange;
+import com.mindoo.domino.jna.sync.SyncChangeProcessor.TargetResultCounter;
+
+/**
+ * Tests the writer queues of {@link PipelinedSyncChangeProcessor}, does not require
+ * a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestPipelinedSyncChangeProcessor {
+
+	/**
+	 * Creates a processor with writer threads that are not initialized for the Domino C API
+	 *
+	 * @param target sync target
+	 * @param targetResults counter for target results
+	 * @param writerThreadCount number of writer threads
+	 * @param queueSize total queue size
+	 * @return processor
+	 */
+	private static PipelinedSyncChangeProcessor<Object> createProcessor(ISyncTarget<Object> target,
+			TargetResultCounter targetResults, int writerThreadCount, int queueSize) {
+		return new PipelinedSyncChangeProcessor<Object>(null, target, null,
+				EnumSet.of(ISyncTarget.DataToRead.SummaryBufferAllItems), targetResults, writerThreadCount, queueSize) {
+
+			@Override
+			void initWriterThread() {
+			}
+
+			@Override
+			void termWriterThread() {
+			}
+		};
+	}
+
+	private static SyncChange createChange(ChangeType type, String unid, int seq, IItemTableData summaryData) {
+		return new SyncChange(type, new NotesOriginatorIdData(unid, seq, new int[] {0, 0}), seq, unid, summaryData);
+	}
+
+	@Test
+	public void testChangesOfSameNoteAreWrittenInOrderBySameWriter() {
+		RecordingTarget target = new RecordingTarget();
+		TargetResultCounter targetResults = new TargetResultCounter();
+		//small queues, so that the search thread needs to wait for the writers
+		PipelinedSyncChangeProcessor<Object> processor = createProcessor(target, targetResults, 3, 6);
+
+		int noteCount = 20;
+		int changesPerNote = 10;
+		try {
+			for (int seq=1; seq<=changesPerNote; seq++) {
+				for (int i=0; i<noteCount; i++) {
+					ChangeType type = seq==changesPerNote ? ChangeType.Deleted : (seq % 2==0 ? ChangeType.NotMatchingFormula : ChangeType.MatchingFormula);
+					Assert.assertTrue(processor.process(createChange(type, "UNID"+i, seq, null)));
+				}
+			}
+			processor.finish();
+		}
+		finally {
+			processor.close();
+		}
+
+		Assert.assertEquals(noteCount * changesPerNote, target.m_writes.size());
+		Assert.assertEquals(noteCount * (changesPerNote/2), targetResults.getAdded());
+		Assert.assertEquals(noteCount * (changesPerNote/2 - 1), targetResults.getUpdated());
+		Assert.assertEquals(noteCount, targetResults.getRemoved());
+
+		Map<String,String> threadByUnid = new HashMap<String,String>();
+		Map<String,Integer> lastSeqByUnid = new HashMap<String,Integer>();
+		for (Write currWrite : target.m_writes) {
+			String thread = threadByUnid.get(currWrite.m_unid);
+			if (thread==null) {
+				threadByUnid.put(currWrite.m_unid, currWrite.m_thread);
+			}
+			else {
+				Assert.assertEquals("Writer thread of "+currWrite.m_unid, thread, currWrite.m_thread);
+			}
+			Integer lastSeq = lastSeqByUnid.get(currWrite.m_unid);
+			Assert.assertEquals("Sequence of "+currWrite.m_unid, lastSeq==null ? 1 : lastSeq.intValue()+1, currWrite.m_seq);
+			lastSeqByUnid.put(currWrite.m_unid, currWrite.m_seq);
+		}
+		//20 UNIDs are expected to be spread across more than one writer
+		Assert.assertTrue(threadByUnid.values().stream().distinct().count() > 1);
+	}
+
+	@Test
+	public void testSummaryDataIsCopiedBeforeBufferIsFreed() {
+		RecordingTarget target = new RecordingTarget();
+		PipelinedSyncChangeProcessor<Object> processor = createProcessor(target, new TargetResultCounter(), 2, 10);
+
+		try {
+			for (int i=0; i<10; i++) {
+				FakeSummaryBuffer buffer = new FakeSummaryBuffer(new String[] {"name", "count", "unsupported"},
+						new int[] {NotesItem.TYPE_TEXT, NotesItem.TYPE_NUMBER, NotesItem.TYPE_COMPOSITE},
+						new Object[] {"Name"+i, Double.valueOf(i), null});
+				IItemTableData summaryData = buffer.createItemTableData();
+				Assert.assertTrue(processor.process(createChange(ChangeType.MatchingFormula, "UNID"+i, 1, summaryData)));
+				//like NotesSearch after the search callback
+				summaryData.free();
+			}
+			processor.finish();
+		}
+		finally {
+			processor.close();
+		}
+
+		Assert.assertEquals(10, target.m_writes.size());
+		for (Write currWrite : target.m_writes) {
+			int i = Integer.parseInt(currWrite.m_unid.substring(4));
+			Assert.assertEquals("Name"+i, currWrite.m_summaryData.get("name"));
+			Assert.assertEquals(Double.valueOf(i), currWrite.m_summaryData.get("count"));
+			Assert.assertNull(currWrite.m_summaryData.get("unsupported"));
+			Assert.assertEquals(NotesItem.TYPE_COMPOSITE, currWrite.m_summaryData.getItemDataType(2));
+		}
+	}
+
+	@Test
+	public void testWriterErrorStopsSearchAndIsRethrown() {
+		RecordingTarget target = new RecordingTarget();
+		target.m_failingUnid = "UNID5";
+		PipelinedSyncChangeProcessor<Object> processor = createProcessor(target, new TargetResultCounter(), 2, 4);
+
+		try {
+			int processed = 0;
+			while (processor.process(createChange(ChangeType.MatchingFormula, "UNID"+processed, 1, null))) {
+				processed++;
+				if (processed>100000) {
+					Assert.fail("Search has not been stopped after writer error");
+				}
+			}
+
+			try {
+				processor.finish();
+				Assert.fail("Writer error has not been rethrown");
+			}
+			catch (NotesError e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+				Assert.assertEquals("Write failed for UNID5", e.getCause().getMessage());
+			}
+		}
+		finally {
+			processor.close();
+		}
+	}
+
+	private static class Write {
+		private String m_thread;
+		private String m_unid;
+		private int m_seq;
+		private IItemTableData m_summaryData;
+
+		private Write(NotesOriginatorIdData oid, IItemTableData summaryData) {
+			m_thread = Thread.currentThread().getName();
+			m_unid = oid.getUNID();
+			m_seq = oid.getSequence();
+			m_summaryData = summaryData;
+		}
+	}
+
+	/**
+	 * Sync target that records the writes and their threads
+	 */
+	private static class RecordingTarget implements ISyncTarget<Object> {
+		private ConcurrentLinkedQueue<Write> m_writes = new ConcurrentLinkedQueue<Write>();
+		private volatile String m_failingUnid;
+
+		private TargetResult record(NotesOriginatorIdData oid, IItemTableData summaryData, TargetResult result) {
+			if (oid.getUNID().equals(m_failingUnid)) {
+				throw new IllegalStateException("Write failed for "+oid.getUNID());
+			}
+			m_writes.add(new Write(oid, summaryData));
+			return result;
+		}
+
+		@Override
+		public TargetResult noteChangedMatchingFormula(Object ctx, NotesOriginatorIdData oid, IItemTableData summaryBufferData,
+				NotesNote note) {
+			return record(oid, summaryBufferData, TargetResult.Added);
+		}
+
+		@Override
+		public TargetResult noteChangedNotMatchingFormula(Object ctx, NotesOriginatorIdData oid) {
+			return record(oid, null, TargetResult.Updated);
+		}
+
+		@Override
+		public TargetResult noteDeleted(Object ctx, NotesOriginatorIdData oid) {
+			return record(oid, null, TargetResult.Removed);
+		}
+
+		@Override
+		public String getLastSyncDbReplicaId() {
+			return null;
+		}
+
+		@Override
+		public String getLastSyncSelectionFormula() {
+			return null;
+		}
+
+		@Override
+		public NotesTimeDate getLastSyncEndDate(String dbInstanceId) {
+			return null;
+		}
+
+		@Override
+		public Object startingSync(String dbReplicaId) {
+			return null;
+		}
+
+		@Override
+		public void clear(Object ctx) {
+		}
+
+		@Override
+		public Collection<NotesOriginatorIdData> scanTargetData(Object ctx) {
+			return new ArrayList<NotesOriginatorIdData>();
+		}
+
+		@Override
+		public NotesIDTable getInitialNoteIdFilter() {
+			return null;
+		}
+
+		@Override
+		public EnumSet<DataToRead> getWhichDataToRead() {
+			return EnumSet.of(DataToRead.SummaryBufferAllItems);
+		}
+
+		@Override
+		public Map<String, String> getSummaryBufferItemsAndFormulas() {
+			return null;
+		}
+
+		@Override
+		public boolean isLoggable(Level level) {
+			return false;
+		}
+
+		@Override
+		public void log(Level level, String msg) {
+		}
+
+		@Override
+		public void log(Level level, String msg, Throwable t) {
+		}
+
+		@Override
+		public void abort(Object ctx, Throwable t) {
+		}
+
+		@Override
+		public void endingSync(Object ctx, String selectionFormulaForNextSync, String dbInstanceId,
+				NotesTimeDate startingDateForNextSync) {
+		}
+	}
+
+	/**
+	 * Summary buffer replacement that, like the decoded NSFSearch buffer, cannot be
+	 * read after it has been freed
+	 */
+	private static class FakeSummaryBuffer implements InvocationHandler {
+		private String[] m_itemNames;
+		private int[] m_itemTypes;
+		private Object[] m_itemValues;
+		private boolean m_preferNotesTimeDates;
+		private boolean m_freed;
+
+		private FakeSummaryBuffer(String[] itemNames, int[] itemTypes, Object[] itemValues) {
+			m_itemNames = itemNames;
+			m_itemTypes = itemTypes;
+			m_itemValues = itemValues;
+		}
+
+		public IItemTableData createItemTableData() {
+			return (IItemTableData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {IItemTableData.class}, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("free".equals(name)) {
+				m_freed = true;
+				return null;
+			}
+			else if ("isFreed".equals(name)) {
+				return m_freed;
+			}
+			else if ("setPreferNotesTimeDates".equals(name)) {
+				m_preferNotesTimeDates = (Boolean) args[0];
+				return null;
+			}
+			else if ("isPreferNotesTimeDates".equals(name)) {
+				return m_preferNotesTimeDates;
+			}
+
+			if (m_freed) {
+				throw new NotesError(0, "Buffer already freed");
+			}
+			if ("getItemNames".equals(name)) {
+				return m_itemNames;
+			}
+			else if ("getItemsCount".equals(name)) {
+				return m_itemNames.length;
+			}
+			else if ("getItemDataType".equals(name)) {
+				return m_itemTypes[(Integer) args[0]];
+			}
+			else if ("getItemValue".equals(name)) {
+				return m_itemValues[(Integer) args[0]];
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+}
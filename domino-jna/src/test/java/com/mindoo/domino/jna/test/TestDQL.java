@@ -4,22 +4,29 @@ package com.mindoo.domino.jna.test;
 import static com.mindoo.domino.jna.dql.DQL.*;
 
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
+import com.mindoo.domino.jna.NoteSummaryIterator.NoteData;
 import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesCollection.Direction;
 import com.mindoo.domino.jna.NotesDatabase.HarvestMode;
 import com.mindoo.domino.jna.NotesDatabase;
 import com.mindoo.domino.jna.NotesDbQueryResult;
+import com.mindoo.domino.jna.NotesDbQueryResultCache;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.NotesViewEntryData;
 import com.mindoo.domino.jna.constants.DBQuery;
 import com.mindoo.domino.jna.constants.Navigate;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.dql.DQL.DQLTerm;
+import com.mindoo.domino.jna.utils.IDUtils;
 
+import junit.framework.Assert;
 import lotus.domino.Session;
 
 /**
@@ -203,4 +210,118 @@ public class TestDQL extends BaseJNATestClass {
 		});
 	}
 
+	/**
+	 * Runs the same DQL query twice via {@link NotesDbQueryResultCache} and
+	 * compares the results with an uncached query
+	 */
+	@Test
+	public void testDQLCachedQuery() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+
+				DQLTerm dqlQuery = and(
+						item("Lastname").isEqualTo("Abbott"),
+						item("Firstname").isGreaterThan("B")
+						);
+
+				NotesDbQueryResultCache cache = new NotesDbQueryResultCache(10);
+
+				NotesDbQueryResult uncachedResult = db.query(dqlQuery);
+				NotesDbQueryResult firstResult = cache.query(db, dqlQuery);
+				NotesDbQueryResult secondResult = cache.query(db, dqlQuery);
+
+				Assert.assertEquals("Query is cached", 1, cache.size());
+				Assert.assertEquals("First cached result is correct", uncachedResult.getIDTable().toBitmap(),
+						firstResult.getIDTable().toBitmap());
+				Assert.assertEquals("Second cached result is correct", uncachedResult.getIDTable().toBitmap(),
+						secondResult.getIDTable().toBitmap());
+				System.out.println("Uncached: "+uncachedResult.getDurationInMillis()+"ms, cached: "+secondResult.getDurationInMillis()+"ms");
+
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Runs the same DQL query via {@link NotesDbQueryResultCache} for two users
+	 * and checks that each user gets the result of an uncached query with own access rights
+	 */
+	@Test
+	public void testDQLCachedQueryForTwoUsers() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbAsIdUser = new NotesDatabase("", DBPATH_FAKENAMES_NSF, IDUtils.getIdUsername());
+				NotesDatabase dbAsOtherUser = new NotesDatabase("", DBPATH_FAKENAMES_NSF, "CN=Peter Tester/O=Mindoo");
+
+				DQLTerm dqlQuery = item("Lastname").isEqualTo("Abbott");
+
+				NotesDbQueryResultCache cache = new NotesDbQueryResultCache(10);
+
+				NotesDbQueryResult idUserResult = cache.query(dbAsIdUser, dqlQuery);
+				NotesDbQueryResult otherUserResult = cache.query(dbAsOtherUser, dqlQuery);
+				Assert.assertEquals("Results are cached per user", 2, cache.size());
+
+				Assert.assertEquals("Result of ID user is correct", dbAsIdUser.query(dqlQuery).getIDTable().toBitmap(),
+						idUserResult.getIDTable().toBitmap());
+				Assert.assertEquals("Result of other user is correct", dbAsOtherUser.query(dqlQuery).getIDTable().toBitmap(),
+						otherUserResult.getIDTable().toBitmap());
+
+				//invalidating the database removes the results of both users
+				cache.invalidate(dbAsIdUser);
+				Assert.assertEquals(0, cache.size());
+
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Reads a sorted page of summary data for a DQL result and compares it
+	 * with the unsorted summary data
+	 */
+	@Test
+	public void testDQLSortedSummaryData() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+
+				NotesDbQueryResult queryResult = db.query(item("Lastname").isGreaterThan("A"));
+
+				Map<String,String> columnFormulas = new HashMap<String,String>();
+				columnFormulas.put("Lastname", "");
+				columnFormulas.put("Firstname", "");
+
+				LinkedHashMap<String,Direction> sortItems = new LinkedHashMap<String,Direction>();
+				sortItems.put("Lastname", Direction.Descending);
+				sortItems.put("Firstname", Direction.Ascending);
+
+				List<NoteData> sortedPage = queryResult.getSortedSummaryData(columnFormulas, sortItems, 0, 50);
+				Assert.assertEquals("Page has 50 entries", 50, sortedPage.size());
+
+				for (int i=1; i<sortedPage.size(); i++) {
+					String prevLastname = sortedPage.get(i-1).getAsString("Lastname", "");
+					String currLastname = sortedPage.get(i).getAsString("Lastname", "");
+					Assert.assertTrue("Lastnames are sorted descending", prevLastname.compareToIgnoreCase(currLastname)>=0);
+				}
+
+				List<NoteData> unsortedPage = queryResult.getSummaryData(columnFormulas, 10, 20);
+				Assert.assertEquals("Page has 20 entries", 20, unsortedPage.size());
+				Assert.assertEquals("First entry of the page is the 11th note id", queryResult.getIDTable().toArray()[10],
+						unsortedPage.get(0).getSearchMatch().getNoteId());
+
+				return null;
+			}
+		});
+	}
+
 }
@@ -1,8 +1,10 @@
 package com.mindoo.domino.jna.test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -12,11 +14,15 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.LazySummaryBuffer;
 import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesDatabase;
 import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesMultiDatabaseSearch;
+import com.mindoo.domino.jna.NotesMultiDatabaseSearch.DatabaseSearchResult;
 import com.mindoo.domino.jna.NotesSearch;
 import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.LazySummarySearchCallback;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.NotesViewEntryData;
 import com.mindoo.domino.jna.constants.FileType;
@@ -26,6 +32,8 @@ import com.mindoo.domino.jna.constants.NoteClass;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.constants.Search;
 import com.mindoo.domino.jna.constants.UpdateCollectionFilters;
+import com.mindoo.domino.jna.directory.DirectoryIndex;
+import com.mindoo.domino.jna.directory.DirectoryIndex.IndexedDatabase;
 import com.mindoo.domino.jna.directory.DirectoryScanner;
 import com.mindoo.domino.jna.directory.DirectoryScanner.DatabaseData;
 import com.mindoo.domino.jna.directory.DirectoryScanner.SearchResultData;
@@ -261,6 +269,44 @@ public class TestDbSearch extends BaseJNATestClass {
 		});
 	}
 	
+	@Test
+	public void testDbSearch_directoryIndex() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				File indexFile = File.createTempFile("directoryindex", ".dat");
+				indexFile.delete();
+				try {
+					DirectoryIndex index = new DirectoryIndex("", "", indexFile);
+					int changes = index.update();
+					System.out.println("Full directory scan found "+changes+" databases");
+					Assert.assertTrue("Index file has been written", indexFile.exists());
+					
+					IndexedDatabase fakeNamesEntry = index.getDatabaseByPath(dbData.getRelativeFilePath());
+					Assert.assertNotNull("Fakenames database has been indexed", fakeNamesEntry);
+					
+					//second instance loads the index file and only scans modified entries
+					DirectoryIndex reloadedIndex = new DirectoryIndex("", "", indexFile);
+					Assert.assertEquals(index.size(), reloadedIndex.size());
+					reloadedIndex.update();
+					
+					List<IndexedDatabase> replicas = reloadedIndex.getDatabasesByReplicaID(dbData.getReplicaID());
+					Assert.assertFalse("Database found by replica id", replicas.isEmpty());
+					Assert.assertTrue("Database found by path prefix",
+							reloadedIndex.getDatabasesByPathPrefix("").size() == reloadedIndex.size());
+				}
+				finally {
+					indexFile.delete();
+				}
+				return null;
+			}
+		});
+	}
+	
 	/**
 	 * Tests the {@link DirectoryScanner} class which internally also uses the database
 	 * search function (NSFSearch) to read directory data
@@ -347,4 +393,145 @@ public class TestDbSearch extends BaseJNATestClass {
 			}
 		});
 	}
+	
+	@Test
+	public void testDbSearch_lazySummary() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				final int[] cnt = new int[1];
+				
+				NotesSearch.search(dbData, null, "Form=\"Person\"", "-", EnumSet.of(Search.SUMMARY),
+						EnumSet.of(NoteClass.DOCUMENT), null, new LazySummarySearchCallback("Form", "Lastname") {
+					//slots are resolved once and reused for all notes
+					final int formSlot = getSlot("Form");
+					final int lastNameSlot = getSlot("Lastname");
+					
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+						cnt[0]++;
+						
+						String form = summary.getString(formSlot, "");
+						Assert.assertEquals("Slot value matches form value", "Person", form);
+						
+						String lastName = summary.getString(lastNameSlot, "");
+						Object lastNameByName = summary.getItemValue("Lastname");
+						String expectedLastName = lastNameByName instanceof List ? (String) ((List<?>) lastNameByName).get(0) : (String) lastNameByName;
+						Assert.assertEquals("Slot value matches value read by name", expectedLastName==null ? "" : expectedLastName, lastName);
+						
+						return cnt[0]<1000 ? Action.Continue : Action.Stop;
+					}
+				});
+				
+				Assert.assertTrue("Documents have been found", cnt[0]>0);
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testDbSearch_lazySummaryWithNoItemNames() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				Map<String,String> columnFormulas = new LinkedHashMap<String,String>();
+				columnFormulas.put("form", "Form");
+				columnFormulas.put("lastname", "Lastname");
+				
+				//values of the eager callback that decodes an IItemTableData
+				final Map<Integer,String> lastNamesByNoteId = new HashMap<Integer,String>();
+				NotesSearch.search(dbData, null, "Form=\"Person\"", columnFormulas, "-", EnumSet.of(Search.SUMMARY, Search.NOITEMNAMES),
+						EnumSet.of(NoteClass.DOCUMENT), null, new NotesSearch.SearchCallback() {
+					
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+						lastNamesByNoteId.put(searchMatch.getNoteId(), summaryBufferData.getAsString("lastname", ""));
+						return lastNamesByNoteId.size()<1000 ? Action.Continue : Action.Stop;
+					}
+				});
+				Assert.assertTrue("Documents have been found", lastNamesByNoteId.size()>0);
+				
+				//the lazy callback reads the same ITEM_VALUE_TABLE layout
+				final int[] cnt = new int[1];
+				NotesSearch.search(dbData, null, "Form=\"Person\"", columnFormulas, "-", EnumSet.of(Search.SUMMARY, Search.NOITEMNAMES),
+						EnumSet.of(NoteClass.DOCUMENT), null, new LazySummarySearchCallback("Lastname", "Form") {
+					final int lastNameSlot = getSlot("Lastname");
+					
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+						cnt[0]++;
+						if (lastNamesByNoteId.containsKey(searchMatch.getNoteId())) {
+							Assert.assertEquals("Lazy value matches decoded value", lastNamesByNoteId.get(searchMatch.getNoteId()),
+									summary.getString(lastNameSlot, ""));
+						}
+						Assert.assertEquals("Column value can be read by name", "Person", summary.getString(summary.getSlot("form"), ""));
+						return cnt[0]<1000 ? Action.Continue : Action.Stop;
+					}
+				});
+				Assert.assertTrue("Documents have been found", cnt[0]>0);
+				
+				//without column formulas, NOITEMNAMES returns values without names like for the decoded IItemTableData
+				final int[] cntNoFormulas = new int[1];
+				NotesSearch.search(dbData, null, "Form=\"Person\"", "-", EnumSet.of(Search.SUMMARY, Search.NOITEMNAMES),
+						EnumSet.of(NoteClass.DOCUMENT), null, new LazySummarySearchCallback("Lastname") {
+					
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, LazySummaryBuffer summary) {
+						cntNoFormulas[0]++;
+						Assert.assertFalse("Values without item names cannot be read by name", summary.hasItem(getSlot("Lastname")));
+						return cntNoFormulas[0]<100 ? Action.Continue : Action.Stop;
+					}
+				});
+				Assert.assertTrue("Documents have been found", cntNoFormulas[0]>0);
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testDbSearch_multiDatabaseSearch() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				final Map<String,Integer> matchesPerDb = new HashMap<String,Integer>();
+				
+				//search the same database twice in parallel; results are passed to the callback one by one
+				List<DatabaseSearchResult> results = new NotesMultiDatabaseSearch("SELECT Form=\"Person\"", 2)
+						.addDatabase(dbData.getServer(), dbData.getRelativeFilePath())
+						.addDatabase(dbData.getServer(), dbData.getRelativeFilePath())
+						.search(new NotesSearch.SearchCallback() {
+
+							@Override
+							public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+								String threadName = Thread.currentThread().getName();
+								Integer cnt = matchesPerDb.get(threadName);
+								matchesPerDb.put(threadName, cnt==null ? 1 : cnt+1);
+								return Action.Continue;
+							}
+						});
+				
+				Assert.assertEquals(2, results.size());
+				for (DatabaseSearchResult currResult : results) {
+					System.out.println(currResult);
+					Assert.assertTrue("Database has been searched", currResult.isSearched());
+					Assert.assertNull("No error occurred", currResult.getError());
+					Assert.assertTrue("Matches have been found", currResult.getMatchCount()>0);
+				}
+				Assert.assertEquals("Both searches return the same number of matches", results.get(0).getMatchCount(), results.get(1).getMatchCount());
+				return null;
+			}
+		});
+	}
 }
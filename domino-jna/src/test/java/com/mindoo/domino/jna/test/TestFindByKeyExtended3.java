@@ -1,12 +1,17 @@
 package com.mindoo.domino.jna.test;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Test;
 
 import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesCollection.EntriesAsListCallback;
 import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.SearchKey;
 import com.mindoo.domino.jna.constants.Find;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.gc.NotesGC;
@@ -45,4 +50,71 @@ public class TestFindByKeyExtended3 extends BaseJNATestClass {
 
 	}
 
+	@Test
+	public void testReusedSearchKey() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+				final NotesCollection view = db.openCollectionByName("PeopleFlatMultiColumnSort");
+
+				EnumSet<Find> findFlags = EnumSet.of(Find.CASE_INSENSITIVE, Find.EQUAL, Find.PARTIAL);
+				SearchKey searchKey = new SearchKey(1);
+
+				for (String currPrefix : new String[] {"A", "B", "Ca", "D"}) {
+					Set<Integer> idsWithKeyArray = view.getAllIdsByKey(findFlags, currPrefix);
+
+					searchKey.setString(0, currPrefix);
+					Set<Integer> idsWithSearchKey = view.getAllIdsByKey(findFlags, searchKey);
+
+					Assert.assertEquals("Lookup result is the same for prefix "+currPrefix, idsWithKeyArray, idsWithSearchKey);
+				}
+				return null;
+			}
+		});
+
+	}
+
+	@Test
+	public void testBatchLookup() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+				final NotesCollection view = db.openCollectionByName("PeopleFlatMultiColumnSort");
+
+				EnumSet<Find> findFlags = EnumSet.of(Find.CASE_INSENSITIVE, Find.EQUAL, Find.PARTIAL);
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY);
+
+				//unsorted and overlapping keys
+				List<Object[]> keys = new ArrayList<Object[]>();
+				for (String currPrefix : new String[] {"D", "A", "Ab", "B", "Xyz", "C"}) {
+					keys.add(new Object[] {currPrefix});
+				}
+
+				List<List<NotesViewEntryData>> batchResult = view.getAllEntriesByKeys(findFlags, returnMask, keys);
+				Assert.assertEquals("One result per key", keys.size(), batchResult.size());
+
+				for (int i=0; i<keys.size(); i++) {
+					List<NotesViewEntryData> singleResult = view.getAllEntriesByKey(findFlags, returnMask,
+							new EntriesAsListCallback(Integer.MAX_VALUE), keys.get(i));
+
+					List<Integer> singleIds = new ArrayList<Integer>();
+					for (NotesViewEntryData currEntry : singleResult) {
+						singleIds.add(currEntry.getNoteId());
+					}
+					List<Integer> batchIds = new ArrayList<Integer>();
+					for (NotesViewEntryData currEntry : batchResult.get(i)) {
+						batchIds.add(currEntry.getNoteId());
+					}
+					Assert.assertEquals("Lookup result is the same for key "+keys.get(i)[0], singleIds, batchIds);
+				}
+				return null;
+			}
+		});
+
+	}
+
 }
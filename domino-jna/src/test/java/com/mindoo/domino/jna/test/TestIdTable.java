@@ -11,6 +11,7 @@ import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.NotesIDTable.ComparisonResult;
 import com.mindoo.domino.jna.NotesIDTable.IEnumerateCallback;
+import com.mindoo.domino.jna.utils.NoteIdBitmap;
 
 import lotus.domino.Session;
 
@@ -227,4 +228,44 @@ public class TestIdTable extends BaseJNATestClass {
 			}
 		});
 	}
+	
+	/**
+	 * Conversion between ID tables and {@link NoteIdBitmap} and bitmap set operations
+	 */
+	@Test
+	public void testIDTable_bitmap() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				System.out.println("Starting id table bitmap test");
+				
+				NotesIDTable table1 = new NotesIDTable(new int[] {4,8,12,16,48,0x80000004});
+				NotesIDTable table2 = new NotesIDTable(new int[] {8,12,16,52});
+				
+				NoteIdBitmap bitmap1 = table1.toBitmap();
+				NoteIdBitmap bitmap2 = table2.toBitmap();
+				Assert.assertArrayEquals("Bitmap has the table content", table1.toArray(), bitmap1.toArray());
+				Assert.assertEquals("Rank is correct", 3, bitmap1.rank(12));
+				
+				NoteIdBitmap union = NoteIdBitmap.or(bitmap1, bitmap2);
+				NotesIDTable unionTable = (NotesIDTable) table1.clone();
+				unionTable.addTable(table2);
+				Assert.assertArrayEquals("Union is correct", unionTable.toArray(), union.toArray());
+				
+				ComparisonResult compResult = table1.findDifferences(table2);
+				Assert.assertArrayEquals("Intersection is correct", compResult.getTableSame().toArray(),
+						NoteIdBitmap.and(bitmap1, bitmap2).toArray());
+				Assert.assertArrayEquals("Difference is correct", compResult.getTableDeletes().toArray(),
+						NoteIdBitmap.andNot(bitmap1, bitmap2).toArray());
+				
+				NotesIDTable tableFromBitmap = new NotesIDTable(union);
+				Assert.assertTrue("ID table created from bitmap is correct", tableFromBitmap.equalsTable(unionTable));
+				
+				System.out.println("Done with id table bitmap test");
+				return null;
+			}
+		});
+	}
 }
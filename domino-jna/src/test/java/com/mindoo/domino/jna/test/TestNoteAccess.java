@@ -19,6 +19,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.mindoo.domino.jna.NoteBulkReader;
+import com.mindoo.domino.jna.NoteBulkReader.INoteConsumer;
 import com.mindoo.domino.jna.NotesAttachment;
 import com.mindoo.domino.jna.NotesAttachment.IDataCallback;
 import com.mindoo.domino.jna.NotesCollection;
@@ -150,6 +152,38 @@ public class TestNoteAccess extends BaseJNATestClass {
 			
 	}
 	
+	@Test
+	public void testNoteAccess_bulkRead() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				NotesCollection colAllDocs = dbData.openCollectionByName("People");
+				colAllDocs.update();
+				
+				LinkedHashSet<Integer> allIds = colAllDocs.getAllIds(Navigate.NEXT_NONCATEGORY);
+				final List<Integer> readIds = new ArrayList<Integer>();
+				
+				NoteBulkReader reader = new NoteBulkReader(dbData, 50, allIds.iterator(), EnumSet.noneOf(OpenNote.class));
+				int count = reader.read(new INoteConsumer() {
+
+					@Override
+					public Action noteOpened(NotesNote note) {
+						Assert.assertNotNull("Note has a lastname", note.getItemValueString("lastname"));
+						readIds.add(note.getNoteId());
+						return Action.Continue;
+					}
+				});
+				
+				Assert.assertEquals("All notes have been read", allIds.size(), count);
+				Assert.assertEquals("All note ids have been read", allIds, new LinkedHashSet<Integer>(readIds));
+				return null;
+			}
+		});
+	}
+	
 //	@Test
 	public void testNoteAccess_createNote() {
 		runWithSession(new IDominoCallable<Object>() {
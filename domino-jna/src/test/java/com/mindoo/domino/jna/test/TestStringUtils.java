@@ -1,5 +1,6 @@
 package com.mindoo.domino.jna.test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -11,9 +12,11 @@ import com.mindoo.domino.jna.NotesDbReplicaInfo;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.NotesUniversalNoteId;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.DisposableMemory;
 import com.mindoo.domino.jna.internal.structs.NotesUniversalNoteIdStruct;
 import com.mindoo.domino.jna.utils.DumpUtil;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils.LineBreakConversion;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringUtil;
 import com.sun.jna.Memory;
@@ -74,6 +77,152 @@ public class TestStringUtils extends BaseJNATestClass {
 		});
 	}
 	
+	/**
+	 * Conformance test for the Java LMBCS decoder: decodes a corpus of strings and
+	 * raw LMBCS byte sequences with both the Java decoder and OSTranslate and
+	 * compares the results
+	 */
+	@Test
+	public void testJavaLMBCSDecoderConformance() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				List<byte[]> corpus = new ArrayList<byte[]>();
+				
+				boolean useOSLineBreak = NotesStringUtils.isUseOSLineDelimiter();
+				String delim;
+				if (PlatformUtils.isWindows() && useOSLineBreak) {
+					delim = "\r\n";
+				}
+				else {
+					delim = "\n";
+				}
+
+				String[] roundtripStrings = new String[] {
+						"",
+						"abc",
+						"Abc\tdef\rghi",
+						"" + UML_A_BIG + UML_O_BIG + UML_U_BIG + UML_A_SMALL + UML_O_SMALL + UML_U_SMALL + SZ,
+						"Price: 10\u20ac, 5\u00a3, 3\u00a5",
+						"\u00bf\u00a1Se\u00f1or?",
+						"Line1" + delim + "Line2" + delim + delim + "Line4" + delim,
+						"Greek \u03b1\u03b2\u03b3, Cyrillic \u0434\u0436",
+						"Japanese \u65e5\u672c\u8a9e, Chinese \u4e2d\u6587",
+						"Arrow \u2192"
+				};
+				String[] testStrings = new String[] {
+						"\u0001\u0002\u001f\u007f\u0080\u009f",
+						"Emoji \ud83d\ude00",
+						"\u0131\u2017\u2591\u25a0\u00a0\u00ad"
+				};
+				for (String currStr : roundtripStrings) {
+					Memory mem = NotesStringUtils.toLMBCS(currStr, false);
+					corpus.add(mem==null ? new byte[0] : toByteArray(mem));
+				}
+				for (String currStr : testStrings) {
+					Memory mem = NotesStringUtils.toLMBCS(currStr, false);
+					corpus.add(mem==null ? new byte[0] : toByteArray(mem));
+				}
+				
+				//all single bytes
+				for (int i=1; i<=0xff; i++) {
+					corpus.add(new byte[] {(byte) i});
+					corpus.add(new byte[] {'a', (byte) i, 'b', 0});
+				}
+				//group 1 and control group with all second bytes
+				for (int i=0; i<=0xff; i++) {
+					corpus.add(new byte[] {0x01, (byte) i});
+					corpus.add(new byte[] {0x0f, (byte) i, 'x'});
+				}
+				//unicode group
+				for (int i=0; i<=0xff; i+=7) {
+					corpus.add(new byte[] {0x14, (byte) 0xf6, (byte) i});
+					corpus.add(new byte[] {0x14, (byte) i, 0x41, 0, 0x14, 0x20, (byte) 0xac});
+				}
+				//truncated group sequences
+				corpus.add(new byte[] {'a', 0x14, 0x20});
+				corpus.add(new byte[] {'a', 0x01});
+				corpus.add(new byte[] {0, 0, 'a', 0x0f});
+
+				for (byte[] currData : corpus) {
+					NotesStringUtils.setUseJavaLMBCSDecoder(false);
+					String strNative = NotesStringUtils.fromLMBCS(currData);
+					
+					NotesStringUtils.setUseJavaLMBCSDecoder(true);
+					String strJava = NotesStringUtils.fromLMBCS(currData);
+					
+					Assert.assertEquals("Java LMBCS decoder produces the same result as OSTranslate for "+
+							Arrays.toString(currData), strNative, strJava);
+				}
+				
+				for (String currStr : roundtripStrings) {
+					Memory mem = NotesStringUtils.toLMBCS(currStr, false);
+					String decodedStr = mem==null ? "" : NotesStringUtils.fromLMBCS(toByteArray(mem));
+					Assert.assertEquals("Java LMBCS decoder roundtrip is correct for "+currStr, currStr, decodedStr);
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Conformance test for the Java LMBCS encoder: encodes strings with all line break
+	 * conversion modes with both the Java encoder and OSTranslate and compares the results
+	 */
+	@Test
+	public void testJavaLMBCSEncoderConformance() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				List<String> testStrings = new ArrayList<String>();
+				testStrings.add("abc");
+				testStrings.add("Abc\tdef\rghi");
+				testStrings.add("" + UML_A_BIG + UML_O_BIG + UML_U_BIG + UML_A_SMALL + UML_O_SMALL + UML_U_SMALL + SZ);
+				testStrings.add("\u00bf\u00a1Se\u00f1or? 5\u00a3, 3\u00a5, \u00a9\u00ae");
+				testStrings.add("Line1\nLine2\r\nLine3\n\nLine5\r\n");
+				testStrings.add("\n\r\n\r");
+				//characters that need OSTranslate
+				testStrings.add("10\u20ac \u00a7 \u00b1 \u00d7 \u03b1\u03b2 \u65e5\u672c \u2192");
+				
+				StringBuilder allLatin1 = new StringBuilder();
+				for (char c=0x20; c<=0xff; c++) {
+					allLatin1.append(c);
+				}
+				testStrings.add(allLatin1.toString());
+				testStrings.add(computeRandomString(10000, true, false));
+
+				for (String currStr : testStrings) {
+					for (LineBreakConversion currConversion : LineBreakConversion.values()) {
+						NotesStringUtils.setUseJavaLMBCSEncoder(false);
+						DisposableMemory memNative = NotesStringUtils.toLMBCSNoCache(currStr, true, currConversion);
+
+						NotesStringUtils.setUseJavaLMBCSEncoder(true);
+						DisposableMemory memJava = NotesStringUtils.toLMBCSNoCache(currStr, true, currConversion);
+						
+						Assert.assertTrue("Java LMBCS encoder produces the same result as OSTranslate for "+currStr+
+								" with "+currConversion, Arrays.equals(toByteArray(memNative), toByteArray(memJava)));
+						
+						int lmbcsLength = NotesStringUtils.getLMBCSLength(currStr, currConversion);
+						Assert.assertEquals("LMBCS length is correct", memNative.size()-1, lmbcsLength);
+						
+						ByteBuffer buf = ByteBuffer.allocateDirect(lmbcsLength);
+						NotesStringUtils.toLMBCS(currStr, currConversion, buf);
+						buf.flip();
+						byte[] bufData = new byte[buf.remaining()];
+						buf.get(bufData);
+						Assert.assertTrue("Writing to ByteBuffer produces the same result", Arrays.equals(memNative.getByteArray(0, lmbcsLength), bufData));
+						
+						memNative.dispose();
+						memJava.dispose();
+					}
+				}
+				return null;
+			}
+		});
+	}
+	
 	private byte[] toByteArray(Memory m) {
 		byte[] arr = new byte[(int) m.size()];
 		m.read(0, arr, 0, arr.length);
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -12,17 +13,24 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesCollectionPosition;
+import com.mindoo.domino.jna.NotesCollection.ColumnHandle;
 import com.mindoo.domino.jna.NotesCollection.Direction;
 import com.mindoo.domino.jna.NotesCollection.EntriesAsListCallback;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback;
 import com.mindoo.domino.jna.NotesDatabase;
 import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.NotesViewEntryCursor;
 import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.NotesViewLookupResultData;
 import com.mindoo.domino.jna.constants.Find;
 import com.mindoo.domino.jna.constants.Navigate;
 import com.mindoo.domino.jna.constants.OpenCollection;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.constants.UpdateCollectionFilters;
+import com.mindoo.domino.jna.utils.LMBCSString;
+import com.mindoo.domino.jna.utils.NotesThreadPool;
 
 import lotus.domino.Database;
 import lotus.domino.Document;
@@ -844,4 +852,149 @@ public class TestViewTraversal extends BaseJNATestClass {
 		});
 	
 	}
+	
+	@Test
+	public void testViewTraversal_readEntriesAsCursor() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				NotesCollection colFromDbData = dbData.openCollectionByName("People");
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.NOTEUNID, ReadMask.INDEXPOSITION,
+						ReadMask.SUMMARYVALUES);
+				
+				NotesViewLookupResultData lkData = colFromDbData.readEntries(new NotesCollectionPosition("0"),
+						EnumSet.of(Navigate.NEXT), 1, EnumSet.of(Navigate.NEXT), 1000, returnMask);
+				List<NotesViewEntryData> entries = lkData.getEntries();
+				
+				NotesViewEntryCursor cursor = colFromDbData.readEntriesAsCursor(new NotesCollectionPosition("0"),
+						EnumSet.of(Navigate.NEXT), 1, EnumSet.of(Navigate.NEXT), 1000, returnMask);
+				
+				Assert.assertEquals("Same number of entries read", entries.size(), cursor.getEntryCount());
+				
+				for (NotesViewEntryData currEntry : entries) {
+					Assert.assertTrue("Cursor has next entry", cursor.next());
+					Assert.assertEquals("Note ids are equal", currEntry.getNoteId(), cursor.getNoteId());
+					Assert.assertEquals("UNIDs are equal", currEntry.getUNID(), cursor.getUNID());
+					Assert.assertEquals("Positions are equal", currEntry.getPositionStr(), cursor.getPositionStr());
+					
+					Object[] columnValues = currEntry.getColumnValues();
+					Assert.assertEquals("Same number of columns", columnValues.length, cursor.getColumnCount());
+					
+					for (int i=0; i<columnValues.length; i++) {
+						Object currValue = columnValues[i];
+						if (currValue instanceof LMBCSString) {
+							Assert.assertEquals("Text values are equal", ((LMBCSString) currValue).getValue(), cursor.getString(i, null));
+						}
+						else if (currValue instanceof Double) {
+							Assert.assertEquals("Number values are equal", ((Double) currValue).doubleValue(), cursor.getDouble(i, 0), 0);
+						}
+						else if (currValue instanceof NotesTimeDate) {
+							Assert.assertEquals("Timedate values are equal", currValue, cursor.getTimeDate(i));
+						}
+					}
+				}
+				Assert.assertFalse("Cursor has no more entries", cursor.next());
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_columnHandles() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				NotesCollection colFromDbData = dbData.openCollectionByName("People");
+				
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), 1000,
+						EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES), new EntriesAsListCallback(1000));
+				
+				Iterator<String> colNames = colFromDbData.getColumnNames();
+				while (colNames.hasNext()) {
+					String currColName = colNames.next();
+					ColumnHandle currHandle = colFromDbData.getColumnHandle(currColName);
+					
+					for (NotesViewEntryData currEntry : entries) {
+						Object valByName = currEntry.get(currColName);
+						Assert.assertEquals("Value of column "+currColName+" is the same", valByName, currEntry.get(currHandle));
+						
+						if (valByName instanceof Double) {
+							Assert.assertEquals("Number value of column "+currColName+" is the same",
+									((Double) valByName).doubleValue(), currEntry.getDouble(currHandle, -1), 0);
+						}
+						else if (valByName instanceof Calendar) {
+							int[] innards = new int[2];
+							Assert.assertTrue("Column "+currColName+" has a date/time", currEntry.getTimeDateInnards(currHandle, innards));
+							Assert.assertEquals("Date/time value of column "+currColName+" is the same",
+									valByName, new NotesTimeDate(innards).toCalendar());
+						}
+					}
+				}
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_readAllEntriesParallel() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				NotesCollection colFromDbData = dbData.openCollectionByName("People");
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION, ReadMask.SUMMARYVALUES);
+				
+				long t0=System.currentTimeMillis();
+				List<NotesViewEntryData> entriesSequential = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				long t1=System.currentTimeMillis();
+				System.out.println("It took "+(t1-t0)+"ms to read "+entriesSequential.size()+" entries sequentially");
+				
+				List<NotesViewEntryData> entriesParallel = colFromDbData.getAllEntriesParallel(4, 16, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				long t2=System.currentTimeMillis();
+				System.out.println("It took "+(t2-t1)+"ms to read "+entriesParallel.size()+" entries in parallel");
+				
+				Assert.assertEquals("Same number of entries read", entriesSequential.size(), entriesParallel.size());
+				
+				for (int i=0; i<entriesSequential.size(); i++) {
+					NotesViewEntryData currSequentialEntry = entriesSequential.get(i);
+					NotesViewEntryData currParallelEntry = entriesParallel.get(i);
+					
+					Assert.assertEquals("Entries are read in collation order", currSequentialEntry.getNoteId(), currParallelEntry.getNoteId());
+					Assert.assertEquals("Positions are equal", currSequentialEntry.getPositionStr(), currParallelEntry.getPositionStr());
+					Assert.assertEquals("Parent collection is set", colFromDbData, currParallelEntry.getParent());
+				}
+				
+				//repeated lookups reuse the threads of a pool
+				try (NotesThreadPool pool = new NotesThreadPool(4)) {
+					for (int i=0; i<2; i++) {
+						long t3=System.currentTimeMillis();
+						List<NotesViewEntryData> entriesWithPool = colFromDbData.getAllEntriesParallel(pool, 4, 16, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+								Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+						long t4=System.currentTimeMillis();
+						System.out.println("It took "+(t4-t3)+"ms to read "+entriesWithPool.size()+" entries in parallel with a thread pool");
+						
+						Assert.assertEquals("Same number of entries read", entriesSequential.size(), entriesWithPool.size());
+						for (int j=0; j<entriesSequential.size(); j++) {
+							Assert.assertEquals("Entries are read in collation order", entriesSequential.get(j).getNoteId(),
+									entriesWithPool.get(j).getNoteId());
+						}
+					}
+				}
+				
+				return null;
+			}
+		});
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.mindoo.domino.jna.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.utils.NativeMethodMetrics.MethodMetrics;
+
+/**
+ * Tests the latency histogram and percentiles of {@link NativeMethodMetrics},
+ * does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNativeMethodMetrics {
+
+	private static void percentileCall() {
+	}
+
+	private static void resetCall() {
+	}
+
+	private static void concurrentCall() {
+	}
+
+	@Test
+	public void testLinearBuckets() {
+		Assert.assertEquals(0, NativeMethodMetrics.getBucket(-5));
+		for (int i=0; i<16; i++) {
+			Assert.assertEquals(i, NativeMethodMetrics.getBucket(i));
+			Assert.assertEquals(i, NativeMethodMetrics.getBucketUpperBound(i));
+		}
+		Assert.assertEquals(16, NativeMethodMetrics.getBucket(16));
+		Assert.assertEquals(16, NativeMethodMetrics.getBucket(17));
+		Assert.assertEquals(17, NativeMethodMetrics.getBucket(18));
+		Assert.assertEquals(17, NativeMethodMetrics.getBucketUpperBound(16));
+	}
+
+	@Test
+	public void testLogarithmicBucketBounds() {
+		int maxBucket = NativeMethodMetrics.getBucket(1L << 40);
+		long duration = 16;
+		while (duration < (1L << 41)) {
+			int bucket = NativeMethodMetrics.getBucket(duration);
+			long upperBound = NativeMethodMetrics.getBucketUpperBound(bucket);
+			String msg = "Duration "+duration+", bucket "+bucket;
+			//the duration falls into its bucket and not into the previous one
+			Assert.assertTrue(msg, upperBound >= duration);
+			Assert.assertTrue(msg, NativeMethodMetrics.getBucketUpperBound(bucket-1) < duration);
+			//precision of 1/8 of the power of two
+			Assert.assertTrue(msg, upperBound - duration < Math.max(2, duration / 8));
+			Assert.assertTrue(msg, bucket >= maxBucket || NativeMethodMetrics.getBucket(upperBound + 1) == bucket + 1);
+
+			duration += Math.max(1, duration / 13);
+		}
+		//durations above 2^41 ns share the last bucket
+		Assert.assertEquals(NativeMethodMetrics.getBucket((1L << 41) - 1), NativeMethodMetrics.getBucket(1L << 41));
+		Assert.assertEquals(NativeMethodMetrics.getBucket((1L << 41) - 1), NativeMethodMetrics.getBucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentileSnapshot() throws Exception {
+		NativeMethodMetrics metrics = NativeMethodMetrics.getInstance();
+		Method method = TestNativeMethodMetrics.class.getDeclaredMethod("percentileCall");
+		String methodName = "TestNativeMethodMetrics.percentileCall";
+		Assert.assertNull(metrics.getMethodMetrics(methodName));
+
+		for (int i=1; i<=100; i++) {
+			metrics.record(method, i);
+		}
+		MethodMetrics snapshot = metrics.getMethodMetrics(methodName);
+		//later calls do not change the snapshot
+		metrics.record(method, 1000000);
+
+		Assert.assertEquals(methodName, snapshot.getMethodName());
+		Assert.assertEquals(100, snapshot.getCallCount());
+		Assert.assertEquals(5050, snapshot.getTotalNanos());
+		Assert.assertEquals(50, snapshot.getMeanNanos());
+		Assert.assertEquals(100, snapshot.getMaxNanos());
+
+		Assert.assertEquals(1, snapshot.getPercentileNanos(0));
+		Assert.assertEquals(10, snapshot.getPercentileNanos(10));
+		//50 falls into the bucket 48-51
+		Assert.assertEquals(51, snapshot.getP50Nanos());
+		//99 falls into the bucket 96-103, limited by the max duration
+		Assert.assertEquals(100, snapshot.getP99Nanos());
+		Assert.assertEquals(100, snapshot.getP999Nanos());
+		Assert.assertEquals(100, snapshot.getPercentileNanos(100));
+
+		try {
+			snapshot.getPercentileNanos(100.1);
+			Assert.fail("Invalid percentile has been accepted");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+
+		Assert.assertEquals(101, metrics.getMethodMetrics(methodName).getCallCount());
+		Assert.assertEquals(1000000, metrics.getMethodMetrics(methodName).getP999Nanos());
+	}
+
+	@Test
+	public void testReset() throws Exception {
+		NativeMethodMetrics metrics = NativeMethodMetrics.getInstance();
+		Method method = TestNativeMethodMetrics.class.getDeclaredMethod("resetCall");
+		String methodName = "TestNativeMethodMetrics.resetCall";
+
+		metrics.record(method, 20);
+		metrics.record(method, 30);
+		Assert.assertEquals(2, metrics.getMethodMetrics(methodName).getCallCount());
+
+		metrics.reset();
+		MethodMetrics snapshot = metrics.getMethodMetrics(methodName);
+		Assert.assertEquals(0, snapshot.getCallCount());
+		Assert.assertEquals(0, snapshot.getMaxNanos());
+		Assert.assertEquals(0, snapshot.getP50Nanos());
+		for (MethodMetrics currMetrics : metrics.getMethodMetrics()) {
+			Assert.assertFalse(methodName.equals(currMetrics.getMethodName()));
+		}
+	}
+
+	@Test
+	public void testEnableViaJMX() throws Exception {
+		NativeMethodMetrics metrics = NativeMethodMetrics.getInstance();
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objName = new ObjectName(NativeMethodMetrics.OBJECTNAME);
+		//registered on class initialization, even if recording is disabled
+		Assert.assertTrue(mbeanServer.isRegistered(objName));
+
+		boolean wasEnabled = NativeMethodMetrics.isRecording();
+		try {
+			mbeanServer.setAttribute(objName, new Attribute("Enabled", Boolean.TRUE));
+			Assert.assertTrue(NativeMethodMetrics.isRecording());
+			Assert.assertTrue(metrics.isEnabled());
+
+			mbeanServer.setAttribute(objName, new Attribute("Enabled", Boolean.FALSE));
+			Assert.assertFalse(NativeMethodMetrics.isRecording());
+		}
+		finally {
+			metrics.setEnabled(wasEnabled);
+		}
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final NativeMethodMetrics metrics = NativeMethodMetrics.getInstance();
+		final Method method = TestNativeMethodMetrics.class.getDeclaredMethod("concurrentCall");
+		String methodName = "TestNativeMethodMetrics.concurrentCall";
+		final int threadCount = 4;
+		final int callsPerThread = 20000;
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t=0; t<threadCount; t++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					//all threads write to the same two buckets
+					for (int i=0; i<callsPerThread; i++) {
+						metrics.record(method, i % 2==0 ? 10 : 1000);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread currThread : threads) {
+			currThread.join();
+		}
+
+		MethodMetrics snapshot = metrics.getMethodMetrics(methodName);
+		Assert.assertEquals(threadCount * callsPerThread, snapshot.getCallCount());
+		Assert.assertEquals(threadCount * callsPerThread / 2 * 1010L, snapshot.getTotalNanos());
+		Assert.assertEquals(1000, snapshot.getMaxNanos());
+		//no histogram increment is lost: exactly half of the calls are in the bucket of 10ns
+		Assert.assertEquals(10, snapshot.getP50Nanos());
+		Assert.assertTrue(snapshot.getPercentileNanos(50.001) > 10);
+	}
+}
@@ -0,0 +1,250 @@
+package com.mindoo.domino.jna.utils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the array and bitmap containers and the set algebra of {@link NoteIdBitmap}
+ * against a {@link TreeSet}, does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNoteIdBitmap {
+	/** ids of the first group of ids with the high order bit set, e.g. category ids */
+	private static final int HIGH_BIT_GROUP = 0x80000000;
+
+	/**
+	 * Creates an empty oracle with the unsigned id order of a Notes ID table
+	 *
+	 * @return set
+	 */
+	private static TreeSet<Integer> createOracle() {
+		return new TreeSet<Integer>((id1, id2) -> Integer.compareUnsigned(id1, id2));
+	}
+
+	private static void assertSameIds(TreeSet<Integer> expected, NoteIdBitmap bitmap) {
+		Assert.assertEquals(expected.size(), bitmap.getCount());
+		Assert.assertEquals(expected.isEmpty(), bitmap.isEmpty());
+
+		int[] ids = bitmap.toArray();
+		Assert.assertEquals(expected.size(), ids.length);
+		Iterator<Integer> expectedIt = expected.iterator();
+		PrimitiveIterator.OfInt it = bitmap.iterator();
+		for (int i=0; i<ids.length; i++) {
+			int expectedId = expectedIt.next();
+			Assert.assertEquals("Position "+i, expectedId, ids[i]);
+			Assert.assertTrue(it.hasNext());
+			Assert.assertEquals("Position "+i, expectedId, it.nextInt());
+		}
+		Assert.assertFalse(it.hasNext());
+
+		if (!expected.isEmpty()) {
+			Assert.assertEquals(expected.first().intValue(), bitmap.getFirstId());
+			Assert.assertEquals(expected.last().intValue(), bitmap.getLastId());
+		}
+	}
+
+	private static void assertRank(TreeSet<Integer> expected, NoteIdBitmap bitmap, int id) {
+		Assert.assertEquals("Rank of "+Integer.toUnsignedString(id), expected.headSet(id, true).size(), bitmap.rank(id));
+	}
+
+	/**
+	 * Adds ids to the bitmap and the oracle
+	 *
+	 * @param bitmap bitmap
+	 * @param oracle oracle
+	 * @param firstId first id
+	 * @param count number of ids
+	 * @param step distance between ids
+	 */
+	private static void addRange(NoteIdBitmap bitmap, TreeSet<Integer> oracle, int firstId, int count, int step) {
+		for (int i=0; i<count; i++) {
+			int id = firstId + i*step;
+			Assert.assertEquals(oracle.add(id), bitmap.add(id));
+		}
+	}
+
+	@Test
+	public void testConversionToBitmapAndBack() {
+		NoteIdBitmap bitmap = new NoteIdBitmap();
+		TreeSet<Integer> oracle = createOracle();
+
+		//4096 ids still fit into an array container
+		addRange(bitmap, oracle, 4, 4096, 4);
+		Assert.assertEquals(0, bitmap.getBitmapContainerCount());
+		assertSameIds(oracle, bitmap);
+
+		//one more id converts the group to a bitmap
+		addRange(bitmap, oracle, 2, 1, 4);
+		Assert.assertEquals(1, bitmap.getBitmapContainerCount());
+		Assert.assertFalse(bitmap.add(2));
+		assertSameIds(oracle, bitmap);
+		for (int id : new int[] {0, 2, 3, 4, 5, 8, 4096*4, 4097*4, 0xffff, 0x10000}) {
+			Assert.assertEquals(oracle.contains(id), bitmap.contains(id));
+			assertRank(oracle, bitmap, id);
+		}
+
+		//removing ids shrinks it back to an array container
+		Assert.assertTrue(bitmap.remove(8));
+		oracle.remove(8);
+		Assert.assertFalse(bitmap.remove(8));
+		Assert.assertFalse(bitmap.remove(3));
+		Assert.assertEquals(0, bitmap.getBitmapContainerCount());
+		assertSameIds(oracle, bitmap);
+
+		//removing all ids of a group removes the group
+		for (Integer currId : oracle) {
+			Assert.assertTrue(bitmap.remove(currId));
+		}
+		oracle.clear();
+		assertSameIds(oracle, bitmap);
+		try {
+			bitmap.getFirstId();
+			Assert.fail("Empty bitmap returned a first id");
+		}
+		catch (NoSuchElementException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testRankAcrossGroupsAndHighIds() {
+		NoteIdBitmap bitmap = new NoteIdBitmap();
+		TreeSet<Integer> oracle = createOracle();
+		//sparse group, dense group, sparse and dense groups of ids with the high order bit set
+		addRange(bitmap, oracle, 0x10004, 100, 4);
+		addRange(bitmap, oracle, 0x30000, 6000, 2);
+		addRange(bitmap, oracle, HIGH_BIT_GROUP + 8, 50, 12);
+		addRange(bitmap, oracle, 0xfffe0000, 10000, 3);
+		addRange(bitmap, oracle, 0xffff0000, 3, 0x7fff);
+		Assert.assertEquals(2, bitmap.getBitmapContainerCount());
+		assertSameIds(oracle, bitmap);
+		Assert.assertEquals(0xfffffffe, bitmap.getLastId());
+
+		int[] probes = new int[] {0, 0x10003, 0x10004, 0x10005, 0x1ffff, 0x30000, 0x30001, 0x30000 + 5999*2,
+				0x7fffffff, HIGH_BIT_GROUP, HIGH_BIT_GROUP + 8, HIGH_BIT_GROUP + 20, 0xfffe0000, 0xfffe0001,
+				0xfffeffff, 0xffff0000, 0xffffffff};
+		for (int currProbe : probes) {
+			assertRank(oracle, bitmap, currProbe);
+			Assert.assertEquals(oracle.contains(currProbe), bitmap.contains(currProbe));
+		}
+		Assert.assertEquals(bitmap.getCount(), bitmap.rank(0xffffffff));
+
+		Assert.assertTrue(bitmap.remove(HIGH_BIT_GROUP + 8));
+		oracle.remove(HIGH_BIT_GROUP + 8);
+		assertSameIds(oracle, bitmap);
+		assertRank(oracle, bitmap, HIGH_BIT_GROUP + 20);
+	}
+
+	/**
+	 * Creates bitmaps with dense and sparse groups of ids
+	 *
+	 * @param rnd random generator
+	 * @param oracle oracle to fill with the same ids
+	 * @param denseGroups groups stored as bitmaps
+	 * @param sparseGroups groups stored as arrays
+	 * @return bitmap
+	 */
+	private static NoteIdBitmap createMixedBitmap(Random rnd, TreeSet<Integer> oracle, int[] denseGroups, int[] sparseGroups) {
+		NoteIdBitmap bitmap = new NoteIdBitmap();
+		for (int currGroup : denseGroups) {
+			for (int i=0; i<8000; i++) {
+				int id = (currGroup << 16) | rnd.nextInt(0x4000);
+				Assert.assertEquals(oracle.add(id), bitmap.add(id));
+			}
+		}
+		for (int currGroup : sparseGroups) {
+			for (int i=0; i<500; i++) {
+				int id = (currGroup << 16) | rnd.nextInt(0x4000);
+				Assert.assertEquals(oracle.add(id), bitmap.add(id));
+			}
+		}
+		return bitmap;
+	}
+
+	@Test
+	public void testSetAlgebraBetweenMixedContainers() {
+		Random rnd = new Random(4711);
+		TreeSet<Integer> oracle1 = createOracle();
+		TreeSet<Integer> oracle2 = createOracle();
+		//group 1: bitmap/array, group 2: array/bitmap, group 3: bitmap/bitmap, group 4: array/array,
+		//groups 5 and 0x8000 only exist in one bitmap
+		NoteIdBitmap b1 = createMixedBitmap(rnd, oracle1, new int[] {1, 3}, new int[] {2, 4, 5});
+		NoteIdBitmap b2 = createMixedBitmap(rnd, oracle2, new int[] {2, 3}, new int[] {1, 4, 0x8000});
+		Assert.assertEquals(2, b1.getBitmapContainerCount());
+		Assert.assertEquals(2, b2.getBitmapContainerCount());
+		NoteIdBitmap b1Copy = b1.clone();
+		NoteIdBitmap b2Copy = b2.clone();
+
+		TreeSet<Integer> expectedOr = createOracle();
+		expectedOr.addAll(oracle1);
+		expectedOr.addAll(oracle2);
+		NoteIdBitmap or = NoteIdBitmap.or(b1, b2);
+		assertSameIds(expectedOr, or);
+		Assert.assertEquals(or, NoteIdBitmap.or(b2, b1));
+
+		TreeSet<Integer> expectedAnd = createOracle();
+		expectedAnd.addAll(oracle1);
+		expectedAnd.retainAll(oracle2);
+		NoteIdBitmap and = NoteIdBitmap.and(b1, b2);
+		assertSameIds(expectedAnd, and);
+		Assert.assertEquals(and, NoteIdBitmap.and(b2, b1));
+
+		TreeSet<Integer> expectedAndNot = createOracle();
+		expectedAndNot.addAll(oracle1);
+		expectedAndNot.removeAll(oracle2);
+		assertSameIds(expectedAndNot, NoteIdBitmap.andNot(b1, b2));
+
+		TreeSet<Integer> expectedAndNotReverse = createOracle();
+		expectedAndNotReverse.addAll(oracle2);
+		expectedAndNotReverse.removeAll(oracle1);
+		assertSameIds(expectedAndNotReverse, NoteIdBitmap.andNot(b2, b1));
+
+		//the static methods do not modify their arguments
+		Assert.assertEquals(b1Copy, b1);
+		Assert.assertEquals(b2Copy, b2);
+		assertSameIds(oracle1, b1);
+		assertSameIds(oracle2, b2);
+
+		//the result of an in place union does not share containers with the other bitmap
+		b1.or(b2);
+		assertSameIds(expectedOr, b1);
+		b2.clear();
+		assertSameIds(expectedOr, b1);
+	}
+
+	@Test
+	public void testRandomOperationsMatchTreeSet() {
+		Random rnd = new Random(42);
+		NoteIdBitmap bitmap = new NoteIdBitmap();
+		TreeSet<Integer> oracle = createOracle();
+		//three groups with ranges small enough to cross the array/bitmap threshold in both directions
+		int[] groups = new int[] {0, 7, 0xc000};
+
+		for (int i=0; i<60000; i++) {
+			int id = (groups[rnd.nextInt(groups.length)] << 16) | rnd.nextInt(9000);
+			//phases with more adds and phases with more removals
+			boolean add = ((i / 15000) % 2 == 0) ? rnd.nextInt(10) < 8 : rnd.nextInt(10) < 2;
+			if (add) {
+				Assert.assertEquals(oracle.add(id), bitmap.add(id));
+			}
+			else {
+				Assert.assertEquals(oracle.remove(id), bitmap.remove(id));
+			}
+			if (i % 5000 == 0) {
+				assertSameIds(oracle, bitmap);
+				assertRank(oracle, bitmap, id);
+			}
+		}
+		assertSameIds(oracle, bitmap);
+		NoteIdBitmap clone = bitmap.clone();
+		Assert.assertEquals(bitmap, clone);
+		Assert.assertEquals(bitmap.hashCode(), clone.hashCode());
+	}
+}
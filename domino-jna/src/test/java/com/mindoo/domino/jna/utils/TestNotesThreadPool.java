@@ -0,0 +1,182 @@
+package com.mindoo.domino.jna.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.gc.FakeGCObjects;
+import com.mindoo.domino.jna.gc.FakeGCObjects.FakeObject;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.gc.NotesGC.DominoGCContext;
+
+/**
+ * Tests running tasks in own and shared {@link NotesGC} contexts with {@link NotesThreadPool},
+ * does not require a Domino runtime
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNotesThreadPool {
+	/**
+	 * Pool with worker threads that are not initialized for the Domino C API
+	 */
+	private static class CountingThreadPool extends NotesThreadPool {
+		private final AtomicInteger m_initCount = new AtomicInteger();
+		private final AtomicInteger m_termCount = new AtomicInteger();
+
+		public CountingThreadPool(int threadCount) {
+			super(threadCount, "TestNotesThreadPool");
+		}
+
+		@Override
+		void initWorkerThread() {
+			m_initCount.incrementAndGet();
+		}
+
+		@Override
+		void termWorkerThread() {
+			m_termCount.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void testSubmitWithOwnContext() throws Exception {
+		final List<String> disposeLog = FakeGCObjects.createDisposeLog();
+		CountingThreadPool pool = new CountingThreadPool(2);
+		try {
+			List<CompletableFuture<FakeObject>> futures = new ArrayList<CompletableFuture<FakeObject>>();
+			for (int i=0; i<10; i++) {
+				final String name = "obj"+i;
+				futures.add(pool.submit(new Callable<FakeObject>() {
+
+					@Override
+					public FakeObject call() throws Exception {
+						Assert.assertTrue(NotesGC.isAutoGCActive());
+						Assert.assertNull(NotesGC.getSharedContext());
+						return new FakeObject(name, disposeLog);
+					}
+				}));
+			}
+			for (CompletableFuture<FakeObject> currFuture : futures) {
+				//objects are disposed when the task is done
+				Assert.assertTrue(currFuture.get().isRecycled());
+			}
+			Assert.assertEquals(10, disposeLog.size());
+		}
+		finally {
+			pool.close();
+		}
+		//worker threads are initialized once and terminated when the pool is closed
+		Assert.assertTrue(pool.m_initCount.get()>=1 && pool.m_initCount.get()<=2);
+		Assert.assertEquals(pool.m_initCount.get(), pool.m_termCount.get());
+	}
+
+	@Test
+	public void testSubmitWithSharedContext() throws Exception {
+		final List<String> disposeLog = FakeGCObjects.createDisposeLog();
+		CountingThreadPool pool = new CountingThreadPool(2);
+		try {
+			final DominoGCContext sharedCtx = NotesGC.initSharedContext();
+			final FakeObject objA = new FakeObject("objA", disposeLog);
+			FakeObject objB;
+			try {
+				objB = pool.submit(sharedCtx, new Callable<FakeObject>() {
+
+					@Override
+					public FakeObject call() throws Exception {
+						Assert.assertSame(sharedCtx, NotesGC.getSharedContext());
+						//object of the submitting thread can be used
+						Assert.assertSame(objA, objA.lookup());
+						return new FakeObject("objB", disposeLog);
+					}
+				}).get();
+
+				String title = CompletableFuture.supplyAsync(() -> {
+					Assert.assertSame(sharedCtx, NotesGC.getSharedContext());
+					return "title";
+				}, pool.getExecutor(sharedCtx)).get();
+				Assert.assertEquals("title", title);
+
+				//objects stay open until the shared context is closed
+				Assert.assertFalse(objB.isRecycled());
+				Assert.assertTrue(disposeLog.isEmpty());
+			}
+			finally {
+				sharedCtx.close();
+			}
+			Assert.assertEquals(Arrays.asList("objB", "objA"), disposeLog);
+			Assert.assertFalse(NotesGC.isAutoGCActive());
+
+			//tasks of a closed shared context fail
+			try {
+				pool.submit(sharedCtx, new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						return null;
+					}
+				}).get();
+				Assert.fail("Task has been attached to a closed context");
+			}
+			catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testTaskErrorCompletesFuture() throws Exception {
+		CountingThreadPool pool = new CountingThreadPool(1);
+		try {
+			CompletableFuture<Object> future = pool.submit(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					throw new IllegalArgumentException("Task failed");
+				}
+			});
+			try {
+				future.get();
+				Assert.fail("Task error has not been reported");
+			}
+			catch (ExecutionException e) {
+				Assert.assertEquals("Task failed", e.getCause().getMessage());
+			}
+		}
+		finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testContextThatIsNotSharedIsRejected() throws Exception {
+		CountingThreadPool pool = new CountingThreadPool(1);
+		try (DominoGCContext ctx = NotesGC.initThread()) {
+			try {
+				pool.submit(ctx, new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						return null;
+					}
+				});
+				Assert.fail("Context that is not shared has been accepted");
+			}
+			catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+		finally {
+			pool.close();
+		}
+	}
+}